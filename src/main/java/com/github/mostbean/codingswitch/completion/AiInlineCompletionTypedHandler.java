@@ -13,12 +13,13 @@ public class AiInlineCompletionTypedHandler extends TypedHandlerDelegate {
 
     @Override
     public @NotNull Result charTyped(char c, @NotNull Project project, @NotNull Editor editor, @NotNull PsiFile file) {
+        AiInlineCompletionService.getInstance().recordKeystroke();
         boolean hasActiveCompletion = AiInlineCompletionService.getInstance().hasActiveCompletion(editor);
         if (!hasActiveCompletion) {
             AiInlineCompletionService.getInstance().hide(editor);
         }
         if (!hasActiveCompletion && AiCompletionEditorGuard.isEligible(project, editor) && shouldSchedule(c)) {
-            AiInlineCompletionService.getInstance().scheduleAuto(project, editor);
+            AiInlineCompletionService.getInstance().scheduleAuto(project, editor, c);
         }
         return Result.CONTINUE;
     }
@@ -20,6 +20,7 @@ public class AiModelProfile {
     private String fimPrefixToken;
     private String fimSuffixToken;
     private String fimMiddleToken;
+    private AiTokenizerKind tokenizer;
 
     public AiModelProfile() {
         this.id = UUID.randomUUID().toString();
@@ -34,6 +35,7 @@ public class AiModelProfile {
         this.fimPrefixToken = "<|fim_prefix|>";
         this.fimSuffixToken = "<|fim_suffix|>";
         this.fimMiddleToken = "<|fim_middle|>";
+        this.tokenizer = AiTokenizerKind.CHARS_ESTIMATE;
     }
 
     public AiModelProfile copy() {
@@ -50,6 +52,7 @@ public class AiModelProfile {
         copy.fimPrefixToken = this.fimPrefixToken;
         copy.fimSuffixToken = this.fimSuffixToken;
         copy.fimMiddleToken = this.fimMiddleToken;
+        copy.tokenizer = this.tokenizer;
         return copy;
     }
 
@@ -154,6 +157,14 @@ public class AiModelProfile {
         this.fimMiddleToken = fimMiddleToken == null || fimMiddleToken.isBlank() ? "<|fim_middle|>" : fimMiddleToken;
     }
 
+    public AiTokenizerKind getTokenizer() {
+        return tokenizer == null ? AiTokenizerKind.CHARS_ESTIMATE : tokenizer;
+    }
+
+    public void setTokenizer(AiTokenizerKind tokenizer) {
+        this.tokenizer = tokenizer == null ? AiTokenizerKind.CHARS_ESTIMATE : tokenizer;
+    }
+
     public String getDisplayName() {
         String profileName = getName();
         return profileName.isBlank() ? getFormat().getDisplayName() : profileName;
@@ -178,7 +189,8 @@ public class AiModelProfile {
             && Objects.equals(getHeadersJson(), that.getHeadersJson())
             && Objects.equals(getFimPrefixToken(), that.getFimPrefixToken())
             && Objects.equals(getFimSuffixToken(), that.getFimSuffixToken())
-            && Objects.equals(getFimMiddleToken(), that.getFimMiddleToken());
+            && Objects.equals(getFimMiddleToken(), that.getFimMiddleToken())
+            && getTokenizer() == that.getTokenizer();
     }
 
     @Override
@@ -195,7 +207,8 @@ public class AiModelProfile {
             fimEnabled,
             getFimPrefixToken(),
             getFimSuffixToken(),
-            getFimMiddleToken()
+            getFimMiddleToken(),
+            getTokenizer()
         );
     }
 }
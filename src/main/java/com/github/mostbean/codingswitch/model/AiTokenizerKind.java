@@ -0,0 +1,9 @@
+package com.github.mostbean.codingswitch.model;
+
+/**
+ * 补全上下文预算使用的分词方式，界面显示名见 I18n 的 aiSettings.tokenizer.* 键。
+ */
+public enum AiTokenizerKind {
+    BPE_ESTIMATE,
+    CHARS_ESTIMATE
+}
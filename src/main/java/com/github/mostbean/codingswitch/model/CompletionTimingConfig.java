@@ -5,10 +5,19 @@ import java.util.Objects;
 public class CompletionTimingConfig {
 
     private int debounceDelayMs = 650;
+    private int minDebounceDelayMs = 150;
+    private boolean adaptiveDebounceEnabled = true;
     private int manualCooldownMs = 350;
     private int streamRenderThrottleMs = 45;
-    private int inFlightRetryDelayMs = 300;
     private int maxPromptTokens = 1500;
+    private boolean connectionPrewarmEnabled = true;
+    private boolean crossFileContextEnabled = false;
+    private boolean speculativePrefetchEnabled = false;
+    private int hedgeDelayMs = 500;
+    private boolean triggerGateEnabled = true;
+    private int minTriggerAcceptRatePercent = 10;
+    private int completionCandidateCount = 1;
+    private boolean persistentCacheEnabled = false;
 
     public CompletionTimingConfig() {
     }
@@ -16,10 +25,19 @@ public class CompletionTimingConfig {
     public CompletionTimingConfig copy() {
         CompletionTimingConfig copy = new CompletionTimingConfig();
         copy.setDebounceDelayMs(debounceDelayMs);
+        copy.setMinDebounceDelayMs(minDebounceDelayMs);
+        copy.setAdaptiveDebounceEnabled(adaptiveDebounceEnabled);
         copy.setManualCooldownMs(manualCooldownMs);
         copy.setStreamRenderThrottleMs(streamRenderThrottleMs);
-        copy.setInFlightRetryDelayMs(inFlightRetryDelayMs);
         copy.setMaxPromptTokens(maxPromptTokens);
+        copy.setConnectionPrewarmEnabled(connectionPrewarmEnabled);
+        copy.setCrossFileContextEnabled(crossFileContextEnabled);
+        copy.setSpeculativePrefetchEnabled(speculativePrefetchEnabled);
+        copy.setHedgeDelayMs(hedgeDelayMs);
+        copy.setTriggerGateEnabled(triggerGateEnabled);
+        copy.setMinTriggerAcceptRatePercent(minTriggerAcceptRatePercent);
+        copy.setCompletionCandidateCount(completionCandidateCount);
+        copy.setPersistentCacheEnabled(persistentCacheEnabled);
         return copy;
     }
 
@@ -31,6 +49,25 @@ public class CompletionTimingConfig {
         this.debounceDelayMs = Math.max(100, Math.min(2000, debounceDelayMs));
     }
 
+    /**
+     * 自适应防抖的下限；上限仍为 debounceDelayMs。
+     */
+    public int getMinDebounceDelayMs() {
+        return minDebounceDelayMs;
+    }
+
+    public void setMinDebounceDelayMs(int minDebounceDelayMs) {
+        this.minDebounceDelayMs = Math.max(50, Math.min(1000, minDebounceDelayMs));
+    }
+
+    public boolean isAdaptiveDebounceEnabled() {
+        return adaptiveDebounceEnabled;
+    }
+
+    public void setAdaptiveDebounceEnabled(boolean adaptiveDebounceEnabled) {
+        this.adaptiveDebounceEnabled = adaptiveDebounceEnabled;
+    }
+
     public int getManualCooldownMs() {
         return manualCooldownMs;
     }
@@ -47,14 +84,6 @@ public class CompletionTimingConfig {
         this.streamRenderThrottleMs = Math.max(16, Math.min(200, streamRenderThrottleMs));
     }
 
-    public int getInFlightRetryDelayMs() {
-        return inFlightRetryDelayMs;
-    }
-
-    public void setInFlightRetryDelayMs(int inFlightRetryDelayMs) {
-        this.inFlightRetryDelayMs = Math.max(100, Math.min(1000, inFlightRetryDelayMs));
-    }
-
     public int getMaxPromptTokens() {
         return maxPromptTokens;
     }
@@ -63,6 +92,85 @@ public class CompletionTimingConfig {
         this.maxPromptTokens = Math.max(256, Math.min(4096, maxPromptTokens));
     }
 
+    public boolean isConnectionPrewarmEnabled() {
+        return connectionPrewarmEnabled;
+    }
+
+    public void setConnectionPrewarmEnabled(boolean connectionPrewarmEnabled) {
+        this.connectionPrewarmEnabled = connectionPrewarmEnabled;
+    }
+
+    public boolean isCrossFileContextEnabled() {
+        return crossFileContextEnabled;
+    }
+
+    public void setCrossFileContextEnabled(boolean crossFileContextEnabled) {
+        this.crossFileContextEnabled = crossFileContextEnabled;
+    }
+
+    public boolean isSpeculativePrefetchEnabled() {
+        return speculativePrefetchEnabled;
+    }
+
+    public void setSpeculativePrefetchEnabled(boolean speculativePrefetchEnabled) {
+        this.speculativePrefetchEnabled = speculativePrefetchEnabled;
+    }
+
+    /**
+     * 主模型超过该时间仍未返回首个 token 时向备用模型发出对冲请求。
+     */
+    public int getHedgeDelayMs() {
+        return hedgeDelayMs;
+    }
+
+    public void setHedgeDelayMs(int hedgeDelayMs) {
+        this.hedgeDelayMs = Math.max(100, Math.min(5000, hedgeDelayMs));
+    }
+
+    /**
+     * 自动补全前按光标所在语法位置和历史接受率过滤触发。
+     */
+    public boolean isTriggerGateEnabled() {
+        return triggerGateEnabled;
+    }
+
+    public void setTriggerGateEnabled(boolean triggerGateEnabled) {
+        this.triggerGateEnabled = triggerGateEnabled;
+    }
+
+    /**
+     * 某类触发位置的近期接受率低于该百分比时只保留少量探索请求。
+     */
+    public int getMinTriggerAcceptRatePercent() {
+        return minTriggerAcceptRatePercent;
+    }
+
+    public void setMinTriggerAcceptRatePercent(int minTriggerAcceptRatePercent) {
+        this.minTriggerAcceptRatePercent = Math.max(0, Math.min(50, minTriggerAcceptRatePercent));
+    }
+
+    /**
+     * 每次补全的候选数，1 表示只请求一条；大于 1 时额外请求备选供切换。
+     */
+    public int getCompletionCandidateCount() {
+        return completionCandidateCount;
+    }
+
+    public void setCompletionCandidateCount(int completionCandidateCount) {
+        this.completionCandidateCount = Math.max(1, Math.min(5, completionCandidateCount));
+    }
+
+    /**
+     * 把补全结果写入插件系统目录下的磁盘缓存，IDE 重启后相同上下文仍可命中。
+     */
+    public boolean isPersistentCacheEnabled() {
+        return persistentCacheEnabled;
+    }
+
+    public void setPersistentCacheEnabled(boolean persistentCacheEnabled) {
+        this.persistentCacheEnabled = persistentCacheEnabled;
+    }
+
     @Override
     public boolean equals(Object other) {
         if (this == other) {
@@ -72,20 +180,38 @@ public class CompletionTimingConfig {
             return false;
         }
         return debounceDelayMs == that.debounceDelayMs
+            && minDebounceDelayMs == that.minDebounceDelayMs
+            && adaptiveDebounceEnabled == that.adaptiveDebounceEnabled
             && manualCooldownMs == that.manualCooldownMs
             && streamRenderThrottleMs == that.streamRenderThrottleMs
-            && inFlightRetryDelayMs == that.inFlightRetryDelayMs
-            && maxPromptTokens == that.maxPromptTokens;
+            && maxPromptTokens == that.maxPromptTokens
+            && connectionPrewarmEnabled == that.connectionPrewarmEnabled
+            && crossFileContextEnabled == that.crossFileContextEnabled
+            && speculativePrefetchEnabled == that.speculativePrefetchEnabled
+            && hedgeDelayMs == that.hedgeDelayMs
+            && triggerGateEnabled == that.triggerGateEnabled
+            && minTriggerAcceptRatePercent == that.minTriggerAcceptRatePercent
+            && completionCandidateCount == that.completionCandidateCount
+            && persistentCacheEnabled == that.persistentCacheEnabled;
     }
 
     @Override
     public int hashCode() {
         return Objects.hash(
             debounceDelayMs,
+            minDebounceDelayMs,
+            adaptiveDebounceEnabled,
             manualCooldownMs,
             streamRenderThrottleMs,
-            inFlightRetryDelayMs,
-            maxPromptTokens
+            maxPromptTokens,
+            connectionPrewarmEnabled,
+            crossFileContextEnabled,
+            speculativePrefetchEnabled,
+            hedgeDelayMs,
+            triggerGateEnabled,
+            minTriggerAcceptRatePercent,
+            completionCandidateCount,
+            persistentCacheEnabled
         );
     }
 }
@@ -0,0 +1,42 @@
+package com.github.mostbean.codingswitch.service;
+
+/**
+ * 根据用户按键节奏和模型首 token 耗时计算自动补全的防抖延迟：
+ * 连续输入时等待超过平时的按键间隔，停顿时尽早触发；模型首 token 较慢时再提前一些以掩盖延迟。
+ */
+final class AiAdaptiveDebounce {
+
+    private static final long MAX_TYPING_INTERVAL_MS = 1500;
+    private static final int MIN_KEYSTROKE_SAMPLES = 8;
+    private static final double PAUSE_FACTOR = 2.0;
+    private static final double TYPING_QUANTILE = 0.75;
+    private static final long SLOW_FIRST_TOKEN_MS = 600;
+
+    private final AiLatencySamples typingIntervals = new AiLatencySamples(48);
+    private long lastKeystrokeAt;
+
+    synchronized void recordKeystroke(long now) {
+        long interval = now - lastKeystrokeAt;
+        lastKeystrokeAt = now;
+        // 超过阈值的间隔是停顿而不是输入节奏，不计入样本。
+        if (interval > 0 && interval <= MAX_TYPING_INTERVAL_MS) {
+            typingIntervals.add(interval);
+        }
+    }
+
+    /**
+     * 返回 [minDelayMs, maxDelayMs] 范围内的延迟；样本不足时使用配置的最大值，保持原有行为。
+     */
+    long delayMs(int minDelayMs, int maxDelayMs, long firstTokenP50Ms) {
+        int min = Math.min(minDelayMs, maxDelayMs);
+        if (typingIntervals.count() < MIN_KEYSTROKE_SAMPLES) {
+            return maxDelayMs;
+        }
+        // 停顿判定：比 75% 的按键间隔都长得多，才认为用户停下来了。
+        long delay = Math.round(typingIntervals.percentile(TYPING_QUANTILE) * PAUSE_FACTOR);
+        if (firstTokenP50Ms > SLOW_FIRST_TOKEN_MS) {
+            delay -= Math.min((firstTokenP50Ms - SLOW_FIRST_TOKEN_MS) / 4, delay / 3);
+        }
+        return Math.max(min, Math.min(maxDelayMs, delay));
+    }
+}
@@ -0,0 +1,151 @@
+package com.github.mostbean.codingswitch.service;
+
+/**
+ * 按常见 BPE 分词器（cl100k/o200k 一类）的预切分规则估算 token：
+ * 英文单词按驼峰片段计，数字每 3 位 1 个，CJK 等非 ASCII 文字每字 1 个，
+ * 连续符号两两合并，缩进空白成段合并，单个空格并入后面的单词。
+ * 不依赖词表文件，截断点总是落在预切分片段边界上。
+ */
+final class AiBpeTokenEstimator implements AiTokenizer {
+
+    static final AiBpeTokenEstimator INSTANCE = new AiBpeTokenEstimator();
+
+    private static final int CHARS_PER_WORD_TOKEN = 10;
+    private static final int CHARS_PER_DIGIT_TOKEN = 3;
+    private static final int CHARS_PER_SYMBOL_TOKEN = 2;
+    private static final int CHARS_PER_WHITESPACE_TOKEN = 8;
+
+    private AiBpeTokenEstimator() {
+    }
+
+    @Override
+    public int countTokens(CharSequence text, int start, int end) {
+        int tokens = 0;
+        int position = start;
+        while (position < end) {
+            int pieceEnd = pieceEnd(text, position, end);
+            tokens += pieceCost(text, position, pieceEnd, end);
+            position = pieceEnd;
+        }
+        return tokens;
+    }
+
+    @Override
+    public int fitTail(CharSequence text, int start, int end, int budget) {
+        int remaining = countTokens(text, start, end);
+        int position = start;
+        while (position < end && remaining > budget) {
+            int pieceEnd = pieceEnd(text, position, end);
+            remaining -= pieceCost(text, position, pieceEnd, end);
+            position = pieceEnd;
+        }
+        return position;
+    }
+
+    @Override
+    public int fitHead(CharSequence text, int start, int end, int budget) {
+        int used = 0;
+        int position = start;
+        int fitEnd = start;
+        while (position < end) {
+            int pieceEnd = pieceEnd(text, position, end);
+            int cost = pieceCost(text, position, pieceEnd, end);
+            used += cost;
+            if (used > budget) {
+                return fitEnd;
+            }
+            position = pieceEnd;
+            // 并入下一个单词的空格单独截断时会变成独立 token，不能停在它后面。
+            if (cost > 0) {
+                fitEnd = position;
+            }
+        }
+        return end;
+    }
+
+    private static int pieceEnd(CharSequence text, int start, int end) {
+        char first = text.charAt(start);
+        int position = start + 1;
+        if (Character.isWhitespace(first)) {
+            while (position < end && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        } else if (isAsciiLetter(first)) {
+            while (position < end && isAsciiLetter(text.charAt(position))) {
+                position++;
+            }
+        } else if (Character.isDigit(first)) {
+            while (position < end && Character.isDigit(text.charAt(position))) {
+                position++;
+            }
+        } else if (Character.isLetter(first)) {
+            while (position < end && isNonAsciiLetter(text.charAt(position))) {
+                position++;
+            }
+        } else {
+            while (position < end && isSymbol(text.charAt(position))) {
+                position++;
+            }
+        }
+        return position;
+    }
+
+    private static int pieceCost(CharSequence text, int start, int pieceEnd, int end) {
+        char first = text.charAt(start);
+        int length = pieceEnd - start;
+        if (Character.isWhitespace(first)) {
+            if (length == 1 && first == ' ' && pieceEnd < end) {
+                return 0;
+            }
+            return 1 + (length - 1) / CHARS_PER_WHITESPACE_TOKEN;
+        }
+        if (isAsciiLetter(first)) {
+            return wordCost(text, start, pieceEnd);
+        }
+        if (Character.isDigit(first)) {
+            return (length + CHARS_PER_DIGIT_TOKEN - 1) / CHARS_PER_DIGIT_TOKEN;
+        }
+        if (Character.isLetter(first)) {
+            return length;
+        }
+        return (length + CHARS_PER_SYMBOL_TOKEN - 1) / CHARS_PER_SYMBOL_TOKEN;
+    }
+
+    /**
+     * 按驼峰拆分，例如 HTTPClientFactory 拆为 HTTP、Client、Factory。
+     */
+    private static int wordCost(CharSequence text, int start, int end) {
+        int tokens = 0;
+        int humpStart = start;
+        for (int i = start + 1; i < end; i++) {
+            char previous = text.charAt(i - 1);
+            char current = text.charAt(i);
+            boolean lowerToUpper = Character.isLowerCase(previous) && Character.isUpperCase(current);
+            boolean acronymEnd = Character.isUpperCase(previous)
+                && Character.isUpperCase(current)
+                && i + 1 < end
+                && Character.isLowerCase(text.charAt(i + 1));
+            if (lowerToUpper || acronymEnd) {
+                tokens += humpCost(i - humpStart);
+                humpStart = i;
+            }
+        }
+        return tokens + humpCost(end - humpStart);
+    }
+
+    private static int humpCost(int length) {
+        return (length + CHARS_PER_WORD_TOKEN - 1) / CHARS_PER_WORD_TOKEN;
+    }
+
+    private static boolean isAsciiLetter(char ch) {
+        return ch >= 'a' && ch <= 'z' || ch >= 'A' && ch <= 'Z';
+    }
+
+    private static boolean isNonAsciiLetter(char ch) {
+        return !isAsciiLetter(ch) && Character.isLetter(ch);
+    }
+
+    private static boolean isSymbol(char ch) {
+        return !Character.isWhitespace(ch) && !Character.isLetterOrDigit(ch);
+    }
+}
@@ -0,0 +1,29 @@
+package com.github.mostbean.codingswitch.service;
+
+/**
+ * 按平均每 4 个字符 1 个 token 估算，未知分词器时的兜底方案。
+ */
+final class AiCharsTokenEstimator implements AiTokenizer {
+
+    static final AiCharsTokenEstimator INSTANCE = new AiCharsTokenEstimator();
+
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private AiCharsTokenEstimator() {
+    }
+
+    @Override
+    public int countTokens(CharSequence text, int start, int end) {
+        return (Math.max(0, end - start) + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    @Override
+    public int fitTail(CharSequence text, int start, int end, int budget) {
+        return Math.max(start, end - Math.max(0, budget) * CHARS_PER_TOKEN);
+    }
+
+    @Override
+    public int fitHead(CharSequence text, int start, int end, int budget) {
+        return Math.min(end, start + Math.max(0, budget) * CHARS_PER_TOKEN);
+    }
+}
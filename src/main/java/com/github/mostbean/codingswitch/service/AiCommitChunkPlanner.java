@@ -0,0 +1,110 @@
+package com.github.mostbean.codingswitch.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 超出预算的提交按模块分块：先去掉所有路径的公共目录，再按下一级目录分组。
+ * 分组内按大小切块，相邻的小块合并，每块不超过 chunkChars。分组按首次出现的顺序排列，
+ * 输入已按优先级排好时，块的顺序也保持优先级，块数超限时被舍弃的是优先级最低的部分。
+ */
+final class AiCommitChunkPlanner {
+
+    record FileDiff(String path, String diff) {
+    }
+
+    record Chunk(String label, List<FileDiff> files) {
+
+        String text() {
+            StringBuilder text = new StringBuilder();
+            for (FileDiff file : files) {
+                text.append(file.diff());
+            }
+            return text.toString();
+        }
+
+        int chars() {
+            int chars = 0;
+            for (FileDiff file : files) {
+                chars += file.diff().length();
+            }
+            return chars;
+        }
+    }
+
+    private AiCommitChunkPlanner() {
+    }
+
+    static List<Chunk> plan(List<FileDiff> files, int chunkChars) {
+        if (files.isEmpty()) {
+            return List.of();
+        }
+        int prefixLength = commonDirectory(files).length();
+        Map<String, List<FileDiff>> groups = new LinkedHashMap<>();
+        for (FileDiff file : files) {
+            String relative = normalize(file.path()).substring(prefixLength);
+            int slash = relative.indexOf('/');
+            // 直接位于公共目录下的文件归为一组，记为 "."。
+            String key = slash < 0 ? "." : relative.substring(0, slash);
+            groups.computeIfAbsent(key, ignored -> new ArrayList<>()).add(file);
+        }
+
+        List<Chunk> chunks = new ArrayList<>();
+        for (Map.Entry<String, List<FileDiff>> group : groups.entrySet()) {
+            List<FileDiff> current = new ArrayList<>();
+            int currentChars = 0;
+            for (FileDiff file : group.getValue()) {
+                if (!current.isEmpty() && currentChars + file.diff().length() > chunkChars) {
+                    chunks.add(new Chunk(group.getKey(), current));
+                    current = new ArrayList<>();
+                    currentChars = 0;
+                }
+                current.add(file);
+                currentChars += file.diff().length();
+            }
+            chunks.add(new Chunk(group.getKey(), current));
+        }
+        return mergeSmallChunks(chunks, chunkChars);
+    }
+
+    private static List<Chunk> mergeSmallChunks(List<Chunk> chunks, int chunkChars) {
+        List<Chunk> merged = new ArrayList<>();
+        for (Chunk chunk : chunks) {
+            Chunk last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && last.chars() + chunk.chars() <= chunkChars) {
+                List<FileDiff> files = new ArrayList<>(last.files());
+                files.addAll(chunk.files());
+                String label = last.label().equals(chunk.label()) ? last.label() : last.label() + ", " + chunk.label();
+                merged.set(merged.size() - 1, new Chunk(label, files));
+            } else {
+                merged.add(chunk);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * 所有路径共同的目录前缀（含结尾的 /）。
+     */
+    private static String commonDirectory(List<FileDiff> files) {
+        String prefix = null;
+        for (FileDiff file : files) {
+            String path = normalize(file.path());
+            String directory = path.substring(0, path.lastIndexOf('/') + 1);
+            if (prefix == null) {
+                prefix = directory;
+            } else {
+                while (!directory.startsWith(prefix)) {
+                    prefix = prefix.substring(0, prefix.lastIndexOf('/', prefix.length() - 2) + 1);
+                }
+            }
+        }
+        return prefix == null ? "" : prefix;
+    }
+
+    private static String normalize(String path) {
+        return path == null ? "" : path.replace('\\', '/');
+    }
+}
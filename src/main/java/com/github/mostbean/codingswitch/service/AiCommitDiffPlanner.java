@@ -0,0 +1,133 @@
+package com.github.mostbean.codingswitch.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 生成提交信息前对变更文件排序：只看变更类型、路径和文件大小，不读取 VCS 内容。
+ * 预算有限时先放源码改动，锁文件、生成产物和超大文件排在最后，最容易被预算截掉。
+ */
+final class AiCommitDiffPlanner {
+
+    private static final Set<String> SOURCE_EXTENSIONS = Set.of(
+        "java", "kt", "kts", "scala", "groovy", "py", "go", "rs", "c", "cc", "cpp", "h", "hpp", "cs",
+        "js", "jsx", "ts", "tsx", "vue", "svelte", "swift", "m", "rb", "php", "dart", "sql", "sh"
+    );
+    private static final Set<String> CONFIG_EXTENSIONS = Set.of(
+        "xml", "gradle", "properties", "json", "yaml", "yml", "toml", "ini", "conf", "cfg"
+    );
+    private static final Set<String> GENERATED_FILE_NAMES = Set.of(
+        "package-lock.json", "yarn.lock", "pnpm-lock.yaml", "gradle.lockfile", "cargo.lock",
+        "poetry.lock", "composer.lock", "go.sum", "gemfile.lock"
+    );
+    private static final List<String> GENERATED_DIRECTORIES = List.of(
+        "/build/", "/dist/", "/out/", "/target/", "/generated/", "/node_modules/", "/vendor/"
+    );
+    private static final long LARGE_FILE_BYTES = 8 * 1024;
+
+    enum Kind {
+        MODIFIED,
+        ADDED,
+        UNVERSIONED,
+        MOVED,
+        DELETED
+    }
+
+    /**
+     * @param index 在原始列表中的位置，得分相同时保持原顺序
+     * @param path 仓库内的相对路径，见 {@link #relativize}
+     * @param sizeBytes 本地文件大小，未知时为 -1
+     */
+    record Item(int index, String path, Kind kind, long sizeBytes) {
+    }
+
+    private AiCommitDiffPlanner() {
+    }
+
+    static List<Item> rank(List<Item> items) {
+        List<Item> ranked = new ArrayList<>(items);
+        ranked.sort(
+            Comparator.comparingDouble(AiCommitDiffPlanner::score).reversed()
+                .thenComparingInt(Item::index)
+        );
+        return ranked;
+    }
+
+    /**
+     * 去掉 root 前缀得到仓库内的相对路径；root 为空或路径不在 root 下时原样返回。
+     * 用绝对路径打分时，仓库本身位于 build、target 等目录下会让所有文件都被当成生成产物。
+     */
+    static String relativize(String path, String root) {
+        String normalized = path == null ? "" : path.replace('\\', '/');
+        if (root == null || root.isEmpty()) {
+            return normalized;
+        }
+        String prefix = root.replace('\\', '/');
+        if (!prefix.endsWith("/")) {
+            prefix += "/";
+        }
+        return normalized.startsWith(prefix) ? normalized.substring(prefix.length()) : normalized;
+    }
+
+    /**
+     * 所有路径共同的目录，找不到仓库根目录时用它代替。
+     */
+    static String commonDirectory(List<String> paths) {
+        String prefix = null;
+        for (String path : paths) {
+            String normalized = path == null ? "" : path.replace('\\', '/');
+            String directory = normalized.substring(0, normalized.lastIndexOf('/') + 1);
+            if (prefix == null) {
+                prefix = directory;
+            } else {
+                while (!directory.startsWith(prefix)) {
+                    prefix = prefix.substring(0, prefix.lastIndexOf('/', prefix.length() - 2) + 1);
+                }
+            }
+        }
+        return prefix == null ? "" : prefix;
+    }
+
+    static double score(Item item) {
+        double score = switch (item.kind()) {
+            case MODIFIED -> 3.0;
+            case ADDED -> 2.5;
+            case UNVERSIONED -> 2.0;
+            case MOVED -> 1.5;
+            case DELETED -> 1.0;
+        };
+        String path = normalizePath(item.path());
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        if (GENERATED_FILE_NAMES.contains(name) || name.contains(".min.") || isGeneratedDirectory(path)) {
+            return score - 4.0;
+        }
+        String extension = name.contains(".") ? name.substring(name.lastIndexOf('.') + 1) : "";
+        if (SOURCE_EXTENSIONS.contains(extension)) {
+            score += path.contains("/test/") || path.contains("/tests/") ? 1.5 : 2.0;
+        } else if (CONFIG_EXTENSIONS.contains(extension)) {
+            score += 1.0;
+        }
+        // 大文件的 diff 往往一个就能占满预算，按数量级降低优先级。
+        if (item.sizeBytes() > LARGE_FILE_BYTES) {
+            score -= Math.min(2.0, Math.log10((double) item.sizeBytes() / LARGE_FILE_BYTES));
+        }
+        return score;
+    }
+
+    private static boolean isGeneratedDirectory(String path) {
+        for (String directory : GENERATED_DIRECTORIES) {
+            if (path.contains(directory)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String normalizePath(String path) {
+        String normalized = path == null ? "" : path.replace('\\', '/').toLowerCase(Locale.ROOT);
+        return normalized.startsWith("/") ? normalized : "/" + normalized;
+    }
+}
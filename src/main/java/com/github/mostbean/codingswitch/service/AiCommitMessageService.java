@@ -1,34 +1,67 @@
 package com.github.mostbean.codingswitch.service;
 
 import com.github.mostbean.codingswitch.model.AiCompletionLengthLevel;
+import com.github.mostbean.codingswitch.model.AiModelProfile;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vcs.changes.Change;
 import com.intellij.openapi.vcs.changes.ContentRevision;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
 import java.util.function.Consumer;
-import java.util.regex.Pattern;
 
 @Service(Service.Level.APP)
 public final class AiCommitMessageService {
 
+    private static final Logger LOG = Logger.getInstance(AiCommitMessageService.class);
     private static final int MAX_TOTAL_CHARS = 40000;
     private static final int MAX_FILE_CONTENT_CHARS = 3600;
     private static final int DIFF_CONTEXT_LINES = 3;
-    private static final int MAX_DIFF_MATRIX_CELLS = 2_000_000;
-    private static final Pattern CONVENTIONAL_COMMIT_PATTERN = Pattern.compile(
-        "^(feat|fix|docs|style|refactor|perf|test|build|ci|chore|revert)(\\([^)]+\\))?!?:\\s+.+",
-        Pattern.CASE_INSENSITIVE
-    );
+    private static final int DIFF_PARALLELISM = 4;
+    private static final int DIFF_LOOKAHEAD = DIFF_PARALLELISM * 2;
+    private static final int CHUNK_CHARS = 16000;
+    private static final int MAX_CHUNKS = 12;
+    private static final int MAX_HIERARCHICAL_CHARS = CHUNK_CHARS * MAX_CHUNKS;
+    private static final long CHUNK_SUMMARY_CACHE_WEIGHT = 512 * 1024;
+    private static final long CHUNK_SUMMARY_TTL_MS = TimeUnit.HOURS.toMillis(6);
+    private static final long PARTIAL_UPDATE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(80);
+    private static final String CHUNK_SUMMARY_SYSTEM_PROMPT = """
+        你是代码变更总结助手。下面是一次大提交中某个模块的 diff 片段。
+        请用%s输出 2 到 5 条短横线列表，概括这个模块里用户或维护者可理解的功能变化或行为变化。
+        只输出列表本身，不要输出标题、解释、Markdown 代码块或任何思考过程。
+        不要编造 diff 中没有出现的内容，尽量少出现类名、方法名和文件名。
+        """;
+
+    private final ExecutorService diffExecutor =
+        AppExecutorUtil.createBoundedApplicationPoolExecutor("Coding Switch Commit Diff", DIFF_PARALLELISM);
+    private final AiCompletionLruCache<String> chunkSummaryCache =
+        new AiCompletionLruCache<>(CHUNK_SUMMARY_CACHE_WEIGHT, CHUNK_SUMMARY_TTL_MS, summary -> 2 * summary.length());
 
     public static AiCommitMessageService getInstance() {
         return ApplicationManager.getApplication().getService(AiCommitMessageService.class);
@@ -69,18 +102,28 @@ public final class AiCommitMessageService {
         }
 
         CommitGenerationContext context = buildCommitGenerationContext(changeList, unversionedFileList);
-        StringBuilder raw = new StringBuilder();
+        AiCommitStreamSanitizer sanitizer = new AiCommitStreamSanitizer();
+        long[] lastPartialAt = {System.nanoTime() - PARTIAL_UPDATE_INTERVAL_NANOS};
+        String[] lastPartial = {""};
         Optional<String> generated = AiCompletionService.getInstance().streamGitCommitText(
             context.systemPrompt(),
             context.userPrompt(),
             AiCompletionLengthLevel.LONG,
             delta -> {
-                raw.append(delta);
-                if (onPartial != null) {
-                    String partial = sanitizeStreamingCommitMessage(raw.toString());
-                    if (!partial.isBlank()) {
-                        onPartial.accept(partial);
-                    }
+                sanitizer.append(delta);
+                if (onPartial == null) {
+                    return;
+                }
+                // 最终结果会整体替换预览，中间预览按间隔节流即可。
+                long now = System.nanoTime();
+                if (now - lastPartialAt[0] < PARTIAL_UPDATE_INTERVAL_NANOS) {
+                    return;
+                }
+                String partial = sanitizer.snapshot();
+                if (!partial.isBlank() && !partial.equals(lastPartial[0])) {
+                    lastPartialAt[0] = now;
+                    lastPartial[0] = partial;
+                    onPartial.accept(partial);
                 }
             }
         );
@@ -93,7 +136,7 @@ public final class AiCommitMessageService {
     private CommitGenerationContext buildCommitGenerationContext(
         List<Change> changeList,
         List<?> unversionedFileList
-    ) throws IOException, VcsException {
+    ) throws IOException, VcsException, InterruptedException {
         AiFeatureSettings.GitCommitMessageLanguage language =
             AiFeatureSettings.getInstance().getGitCommitMessageLanguage();
         CommitLanguagePrompt languagePrompt = commitLanguagePrompt(language);
@@ -135,7 +178,7 @@ public final class AiCommitMessageService {
             languagePrompt.summaryName(),
             languagePrompt.bulletExample1(),
             languagePrompt.bulletExample2()
-        ) + buildChangesSummary(changeList, unversionedFileList);
+        ) + buildChangesSummary(changeList, unversionedFileList, language);
         return new CommitGenerationContext(language, systemPrompt, userPrompt);
     }
 
@@ -204,35 +247,364 @@ public final class AiCommitMessageService {
         return list;
     }
 
-    private String buildChangesSummary(List<Change> changes, List<?> unversionedFiles) {
+    /**
+     * 按排序顺序拼接 diff，预算用完后剩余文件只计入省略数；开启分模块总结时，有文件被省略则改为分模块总结后再合并。
+     */
+    private String buildChangesSummary(
+        List<Change> changes,
+        List<?> unversionedFiles,
+        AiFeatureSettings.GitCommitMessageLanguage language
+    ) throws InterruptedException {
+        List<DiffTask> tasks = rankedDiffTasks(changes, unversionedFiles);
         StringBuilder out = new StringBuilder();
         out.append("下面是当前已选择提交文件的 VCS diff，包含具体代码变更内容：\n\n");
-        int omitted = 0;
-        boolean budgetReached = false;
+        boolean chunkSummary = AiFeatureSettings.getInstance().isGitChunkSummaryEnabled();
+        List<AiCommitChunkPlanner.FileDiff> collected = new ArrayList<>();
+        boolean[] budgetReached = {false};
+        int consumed = collectInOrder(tasks, 0, (task, block) -> {
+            if (chunkSummary) {
+                addFileDiff(collected, task, block);
+            }
+            if (appendWithinBudget(out, block)) {
+                return true;
+            }
+            budgetReached[0] = true;
+            return false;
+        });
+        if (!budgetReached[0]) {
+            return out.toString();
+        }
+        if (chunkSummary) {
+            Optional<String> hierarchical = buildHierarchicalSummary(tasks, consumed, collected, language);
+            if (hierarchical.isPresent()) {
+                return hierarchical.get();
+            }
+        }
+        appendTruncationNotice(out, tasks.size() - consumed + 1);
+        return out.toString();
+    }
+
+    /**
+     * 先按变更类型、路径和大小排序，返回按顺序排列的 diff 计算任务，此时还不读取 VCS 内容。
+     */
+    private List<DiffTask> rankedDiffTasks(List<Change> changes, List<?> unversionedFiles) {
+        Map<String, String> nativeDiffs = AiFeatureSettings.getInstance().isGitNativeDiffEnabled()
+            ? collectNativeDiffs(changes)
+            : Map.of();
+        List<AiCommitDiffPlanner.Item> items = new ArrayList<>();
+        List<DiffTask> tasks = new ArrayList<>();
         for (Change change : changes) {
-            if (budgetReached) {
-                omitted++;
+            String path = resolvePath(change);
+            items.add(new AiCommitDiffPlanner.Item(tasks.size(), path, changeKind(change), changeSize(change)));
+            String nativeDiff = nativeDiffs.get(normalizeSeparators(path));
+            tasks.add(new DiffTask(
+                path,
+                nativeDiff == null ? () -> buildChangeDiff(change) : () -> nativeChangeDiff(change, nativeDiff)
+            ));
+        }
+        for (Object filePath : unversionedFiles) {
+            String path = resolveFilePathText(filePath);
+            items.add(new AiCommitDiffPlanner.Item(
+                tasks.size(),
+                path,
+                AiCommitDiffPlanner.Kind.UNVERSIONED,
+                fileSize(invokeNoArg(filePath, "getIOFile"))
+            ));
+            tasks.add(new DiffTask(path, () -> buildUnversionedFileDiff(filePath)));
+        }
+        List<DiffTask> ranked = new ArrayList<>();
+        for (AiCommitDiffPlanner.Item item : AiCommitDiffPlanner.rank(relativeItems(items))) {
+            ranked.add(tasks.get(item.index()));
+        }
+        return ranked;
+    }
+
+    /**
+     * 排序前把绝对路径换成仓库内的相对路径：优先去掉 git 仓库根目录，找不到时去掉所有变更文件的公共目录。
+     */
+    private static List<AiCommitDiffPlanner.Item> relativeItems(List<AiCommitDiffPlanner.Item> items) {
+        String commonDirectory = AiCommitDiffPlanner.commonDirectory(
+            items.stream().map(AiCommitDiffPlanner.Item::path).toList()
+        );
+        Map<Path, Optional<Path>> rootsByDirectory = new HashMap<>();
+        List<AiCommitDiffPlanner.Item> relative = new ArrayList<>();
+        for (AiCommitDiffPlanner.Item item : items) {
+            String root = repositoryRoot(item.path(), rootsByDirectory).map(Path::toString).orElse(commonDirectory);
+            relative.add(new AiCommitDiffPlanner.Item(
+                item.index(),
+                AiCommitDiffPlanner.relativize(item.path(), root),
+                item.kind(),
+                item.sizeBytes()
+            ));
+        }
+        return relative;
+    }
+
+    private static Optional<Path> repositoryRoot(String path, Map<Path, Optional<Path>> rootsByDirectory) {
+        Path file;
+        try {
+            file = Path.of(path).toAbsolutePath();
+        } catch (InvalidPathException ex) {
+            return Optional.empty();
+        }
+        Path directory = file.getParent();
+        if (directory == null) {
+            return Optional.empty();
+        }
+        return rootsByDirectory.computeIfAbsent(
+            directory,
+            ignored -> Optional.ofNullable(AiGitNativeDiff.findRepositoryRoot(file))
+        );
+    }
+
+    /**
+     * 从 from 开始在有界线程池上并行计算 diff，按任务顺序交给 sink；只预先提交有限个任务，
+     * sink 返回 false 时取消未完成的任务。返回已交给 sink 的任务数（含 from 之前的部分）。
+     */
+    private int collectInOrder(List<DiffTask> tasks, int from, BiPredicate<DiffTask, String> sink)
+        throws InterruptedException {
+        ArrayDeque<Future<String>> pending = new ArrayDeque<>();
+        int submitted = from;
+        int consumed = from;
+        try {
+            while (consumed < tasks.size()) {
+                while (submitted < tasks.size() && pending.size() < DIFF_LOOKAHEAD) {
+                    pending.add(diffExecutor.submit(tasks.get(submitted++).diff()));
+                }
+                String block = awaitDiff(pending.poll());
+                if (!sink.test(tasks.get(consumed++), block)) {
+                    break;
+                }
+            }
+        } finally {
+            for (Future<String> future : pending) {
+                future.cancel(true);
+            }
+        }
+        return consumed;
+    }
+
+    private void addFileDiff(List<AiCommitChunkPlanner.FileDiff> files, DiffTask task, String block) {
+        if (block == null || block.isBlank()) {
+            return;
+        }
+        String diff = block.length() > CHUNK_CHARS ? trimDiffBlockToBudget(block, CHUNK_CHARS) : block;
+        files.add(new AiCommitChunkPlanner.FileDiff(task.path(), diff));
+    }
+
+    /**
+     * 超出预算时的分层生成：继续收集剩余 diff 后按模块分块，各块并发调用 Git 提交模型总结，
+     * 再把各块摘要作为最终提示。摘要按内容哈希缓存，重新生成时只总结有变化的块。
+     * 只有一个块或全部总结失败时返回空，由调用方退回截断后的 diff。
+     */
+    private Optional<String> buildHierarchicalSummary(
+        List<DiffTask> tasks,
+        int consumed,
+        List<AiCommitChunkPlanner.FileDiff> collected,
+        AiFeatureSettings.GitCommitMessageLanguage language
+    ) throws InterruptedException {
+        List<AiCommitChunkPlanner.FileDiff> files = new ArrayList<>(collected);
+        int[] totalChars = {files.stream().mapToInt(file -> file.diff().length()).sum()};
+        int collectedTasks = totalChars[0] >= MAX_HIERARCHICAL_CHARS
+            ? consumed
+            : collectInOrder(tasks, consumed, (task, block) -> {
+                int before = files.size();
+                addFileDiff(files, task, block);
+                if (files.size() > before) {
+                    totalChars[0] += files.get(before).diff().length();
+                }
+                return totalChars[0] < MAX_HIERARCHICAL_CHARS;
+            });
+        List<AiCommitChunkPlanner.Chunk> chunks = AiCommitChunkPlanner.plan(files, CHUNK_CHARS);
+        if (chunks.size() <= 1) {
+            return Optional.empty();
+        }
+        List<AiCommitChunkPlanner.Chunk> summarized = chunks.subList(0, Math.min(chunks.size(), MAX_CHUNKS));
+        List<String> summaries = summarizeChunks(summarized, language);
+        if (summaries.stream().allMatch(Objects::isNull)) {
+            return Optional.empty();
+        }
+
+        StringBuilder out = new StringBuilder();
+        out.append("下面的提交共涉及 ").append(tasks.size())
+            .append(" 个文件，完整 diff 超出长度限制，已按模块分别总结。请综合各模块摘要生成一条整体的提交信息：\n\n");
+        List<String> unsummarized = new ArrayList<>();
+        for (int i = 0; i < summarized.size(); i++) {
+            AiCommitChunkPlanner.Chunk chunk = summarized.get(i);
+            String summary = summaries.get(i);
+            if (summary == null) {
+                chunk.files().forEach(file -> unsummarized.add(file.path()));
                 continue;
             }
-            if (!appendWithinBudget(out, buildChangeDiff(change))) {
-                omitted++;
-                budgetReached = true;
+            out.append("## 模块: ").append(chunk.label())
+                .append("（").append(chunk.files().size()).append(" 个文件）\n")
+                .append(summary).append("\n\n");
+        }
+        for (AiCommitChunkPlanner.Chunk chunk : chunks.subList(summarized.size(), chunks.size())) {
+            chunk.files().forEach(file -> unsummarized.add(file.path()));
+        }
+        for (DiffTask task : tasks.subList(collectedTasks, tasks.size())) {
+            unsummarized.add(task.path());
+        }
+        if (!unsummarized.isEmpty()) {
+            out.append("其余未总结的文件：\n");
+            int listed = 0;
+            for (String path : unsummarized) {
+                if (!appendLineWithinBudget(out, "- " + path, MAX_TOTAL_CHARS)) {
+                    break;
+                }
+                listed++;
+            }
+            if (listed < unsummarized.size()) {
+                appendLineWithinBudget(out, "... and " + (unsummarized.size() - listed) + " more", MAX_TOTAL_CHARS);
             }
         }
-        for (Object filePath : unversionedFiles) {
-            if (budgetReached) {
-                omitted++;
+        return Optional.of(out.toString());
+    }
+
+    /**
+     * 并发总结各块，结果与 chunks 一一对应，失败的块为 null。网络并发仍受 Git 提交模型端点的上限约束。
+     */
+    private List<String> summarizeChunks(
+        List<AiCommitChunkPlanner.Chunk> chunks,
+        AiFeatureSettings.GitCommitMessageLanguage language
+    ) throws InterruptedException {
+        AiModelProfile profile = AiFeatureSettings.getInstance().getActiveGitCommitProfile();
+        String profileId = profile == null ? "" : profile.getId();
+        String systemPrompt = CHUNK_SUMMARY_SYSTEM_PROMPT.formatted(commitLanguagePrompt(language).languageName());
+        List<Future<String>> futures = new ArrayList<>();
+        for (AiCommitChunkPlanner.Chunk chunk : chunks) {
+            String userPrompt = "模块: " + chunk.label() + "\n\n" + chunk.text();
+            String key = sha256(profileId + "\n" + systemPrompt + "\n" + userPrompt);
+            String cached = chunkSummaryCache.get(key);
+            if (cached != null) {
+                futures.add(CompletableFuture.completedFuture(cached));
                 continue;
             }
-            if (!appendWithinBudget(out, buildUnversionedFileDiff(filePath))) {
-                omitted++;
-                budgetReached = true;
+            // FutureTask 取消时会中断执行中的请求，放弃生成后不再继续消耗剩余的块请求。
+            FutureTask<String> task = new FutureTask<>(() -> summarizeChunk(systemPrompt, userPrompt, key));
+            NetworkExecutor.getInstance().unbounded().execute(task);
+            futures.add(task);
+        }
+        List<String> summaries = new ArrayList<>();
+        try {
+            for (Future<String> future : futures) {
+                try {
+                    summaries.add(future.get());
+                } catch (ExecutionException ex) {
+                    LOG.warn("Failed to summarize commit chunk", ex.getCause());
+                    summaries.add(null);
+                }
+            }
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+        return summaries;
+    }
+
+    private String summarizeChunk(String systemPrompt, String userPrompt, String cacheKey) {
+        try {
+            String summary = AiCompletionService.getInstance()
+                .generateGitCommitText(systemPrompt, userPrompt, AiCompletionLengthLevel.MEDIUM)
+                .map(value -> stripThinkingContent(value).strip())
+                .filter(value -> !value.isBlank())
+                .orElse(null);
+            if (summary != null) {
+                chunkSummaryCache.put(cacheKey, summary);
             }
+            return summary;
+        } catch (IOException ex) {
+            LOG.info("Commit chunk summary request failed: " + ex.getMessage());
+            return null;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
         }
-        if (omitted > 0) {
-            appendTruncationNotice(out, omitted);
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
         }
-        return out.toString();
+    }
+
+    /**
+     * 按仓库分组后每个仓库执行一次 git diff HEAD（与提交窗口显示的工作区对比一致），
+     * 返回 绝对路径 → diff 块。移动的文件同时传入新旧路径，便于 git 识别重命名。
+     */
+    private Map<String, String> collectNativeDiffs(List<Change> changes) {
+        Map<Path, List<String>> pathsByRoot = new LinkedHashMap<>();
+        for (Change change : changes) {
+            for (ContentRevision revision : new ContentRevision[] {change.getBeforeRevision(), change.getAfterRevision()}) {
+                if (revision == null || revision.getFile() == null) {
+                    continue;
+                }
+                Path file;
+                try {
+                    file = Path.of(revision.getFile().getPath());
+                } catch (InvalidPathException ex) {
+                    // 无法表示为本地路径的文件不走 git diff，仍按 VCS 内容比较生成 diff。
+                    continue;
+                }
+                Path root = AiGitNativeDiff.findRepositoryRoot(file);
+                if (root != null) {
+                    String relative = normalizeSeparators(root.relativize(file).toString());
+                    List<String> paths = pathsByRoot.computeIfAbsent(root, ignored -> new ArrayList<>());
+                    if (!paths.contains(relative)) {
+                        paths.add(relative);
+                    }
+                }
+            }
+        }
+        Map<String, String> diffs = new HashMap<>();
+        for (Map.Entry<Path, List<String>> entry : pathsByRoot.entrySet()) {
+            AiGitNativeDiff.collect(entry.getKey(), entry.getValue(), MAX_TOTAL_CHARS * 2).forEach(
+                (relative, diff) -> diffs.put(normalizeSeparators(entry.getKey().resolve(relative).toString()), diff)
+            );
+        }
+        return diffs;
+    }
+
+    private String nativeChangeDiff(Change change, String gitDiff) {
+        int headerEnd = gitDiff.indexOf('\n') + 1;
+        return gitDiff.substring(0, headerEnd)
+            + "Change-Type: " + change.getType() + "\n"
+            + gitDiff.substring(headerEnd)
+            + "\n";
+    }
+
+    private static String normalizeSeparators(String path) {
+        return path.replace('\\', '/');
+    }
+
+    private String awaitDiff(Future<String> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            LOG.warn("Failed to build diff for commit message", ex.getCause());
+            return null;
+        }
+    }
+
+    private AiCommitDiffPlanner.Kind changeKind(Change change) {
+        return switch (change.getType()) {
+            case NEW -> AiCommitDiffPlanner.Kind.ADDED;
+            case DELETED -> AiCommitDiffPlanner.Kind.DELETED;
+            case MOVED -> AiCommitDiffPlanner.Kind.MOVED;
+            default -> AiCommitDiffPlanner.Kind.MODIFIED;
+        };
+    }
+
+    private long changeSize(Change change) {
+        ContentRevision after = change.getAfterRevision();
+        return after == null || after.getFile() == null ? -1 : fileSize(after.getFile().getIOFile());
+    }
+
+    private long fileSize(Object ioFile) {
+        return ioFile instanceof File file && file.isFile() ? file.length() : -1;
     }
 
     private boolean appendWithinBudget(StringBuilder out, String block) {
@@ -406,14 +778,7 @@ public final class AiCommitMessageService {
             out.append("@@ no textual changes @@\n");
             return;
         }
-        String[] beforeLines = splitLines(before);
-        String[] afterLines = splitLines(after);
-        long cells = (long) (beforeLines.length + 1) * (afterLines.length + 1);
-        if (cells > MAX_DIFF_MATRIX_CELLS) {
-            appendFallbackFocusedDiff(out, beforeLines, afterLines);
-            return;
-        }
-        appendUnifiedDiff(out, buildLineDiff(beforeLines, afterLines));
+        appendUnifiedDiff(out, AiLineDiff.diff(splitLines(before), splitLines(after)));
     }
 
     private String[] splitLines(String value) {
@@ -423,44 +788,10 @@ public final class AiCommitMessageService {
             .split("\\n", -1);
     }
 
-    private List<DiffLine> buildLineDiff(String[] beforeLines, String[] afterLines) {
-        int[][] lcs = new int[beforeLines.length + 1][afterLines.length + 1];
-        for (int i = beforeLines.length - 1; i >= 0; i--) {
-            for (int j = afterLines.length - 1; j >= 0; j--) {
-                if (beforeLines[i].equals(afterLines[j])) {
-                    lcs[i][j] = lcs[i + 1][j + 1] + 1;
-                } else {
-                    lcs[i][j] = Math.max(lcs[i + 1][j], lcs[i][j + 1]);
-                }
-            }
-        }
-
-        List<DiffLine> lines = new ArrayList<>();
-        int oldLine = 1;
-        int newLine = 1;
-        int i = 0;
-        int j = 0;
-        while (i < beforeLines.length || j < afterLines.length) {
-            if (i < beforeLines.length && j < afterLines.length && beforeLines[i].equals(afterLines[j])) {
-                lines.add(new DiffLine(DiffType.EQUAL, beforeLines[i], oldLine++, newLine++));
-                i++;
-                j++;
-            } else if (j >= afterLines.length
-                || (i < beforeLines.length && lcs[i + 1][j] >= lcs[i][j + 1])) {
-                lines.add(new DiffLine(DiffType.DELETE, beforeLines[i], oldLine++, 0));
-                i++;
-            } else {
-                lines.add(new DiffLine(DiffType.INSERT, afterLines[j], 0, newLine++));
-                j++;
-            }
-        }
-        return lines;
-    }
-
-    private void appendUnifiedDiff(StringBuilder out, List<DiffLine> lines) {
+    private void appendUnifiedDiff(StringBuilder out, List<AiLineDiff.Line> lines) {
         List<Integer> changes = new ArrayList<>();
         for (int i = 0; i < lines.size(); i++) {
-            if (lines.get(i).type() != DiffType.EQUAL) {
+            if (lines.get(i).type() != AiLineDiff.Type.EQUAL) {
                 changes.add(i);
             }
         }
@@ -485,31 +816,31 @@ public final class AiCommitMessageService {
         }
     }
 
-    private void appendHunk(StringBuilder out, List<DiffLine> lines, int start, int end) {
+    private void appendHunk(StringBuilder out, List<AiLineDiff.Line> lines, int start, int end) {
         int oldStart = firstLineNumber(lines, start, end, true);
         int newStart = firstLineNumber(lines, start, end, false);
         int oldCount = 0;
         int newCount = 0;
         for (int i = start; i <= end; i++) {
-            DiffLine line = lines.get(i);
-            if (line.type() != DiffType.INSERT) {
+            AiLineDiff.Line line = lines.get(i);
+            if (line.type() != AiLineDiff.Type.INSERT) {
                 oldCount++;
             }
-            if (line.type() != DiffType.DELETE) {
+            if (line.type() != AiLineDiff.Type.DELETE) {
                 newCount++;
             }
         }
         out.append("@@ -").append(oldStart).append(",").append(oldCount)
             .append(" +").append(newStart).append(",").append(newCount).append(" @@\n");
         for (int i = start; i <= end; i++) {
-            DiffLine line = lines.get(i);
+            AiLineDiff.Line line = lines.get(i);
             out.append(linePrefix(line.type())).append(line.text()).append("\n");
         }
     }
 
-    private int firstLineNumber(List<DiffLine> lines, int start, int end, boolean oldSide) {
+    private int firstLineNumber(List<AiLineDiff.Line> lines, int start, int end, boolean oldSide) {
         for (int i = start; i <= end; i++) {
-            DiffLine line = lines.get(i);
+            AiLineDiff.Line line = lines.get(i);
             int lineNumber = oldSide ? line.oldLine() : line.newLine();
             if (lineNumber > 0) {
                 return lineNumber;
@@ -518,7 +849,7 @@ public final class AiCommitMessageService {
         return 1;
     }
 
-    private String linePrefix(DiffType type) {
+    private String linePrefix(AiLineDiff.Type type) {
         return switch (type) {
             case EQUAL -> " ";
             case DELETE -> "-";
@@ -526,52 +857,6 @@ public final class AiCommitMessageService {
         };
     }
 
-    private void appendFallbackFocusedDiff(StringBuilder out, String[] beforeLines, String[] afterLines) {
-        int prefix = 0;
-        int maxPrefix = Math.min(beforeLines.length, afterLines.length);
-        while (prefix < maxPrefix && beforeLines[prefix].equals(afterLines[prefix])) {
-            prefix++;
-        }
-
-        int beforeSuffix = beforeLines.length - 1;
-        int afterSuffix = afterLines.length - 1;
-        while (beforeSuffix >= prefix
-            && afterSuffix >= prefix
-            && beforeLines[beforeSuffix].equals(afterLines[afterSuffix])) {
-            beforeSuffix--;
-            afterSuffix--;
-        }
-
-        int contextStart = Math.max(0, prefix - DIFF_CONTEXT_LINES);
-        int beforeContextEnd = Math.min(beforeLines.length - 1, beforeSuffix + DIFF_CONTEXT_LINES);
-        int afterContextEnd = Math.min(afterLines.length - 1, afterSuffix + DIFF_CONTEXT_LINES);
-        out.append("@@ selected change @@\n");
-        for (int i = contextStart; i < prefix && i < beforeLines.length; i++) {
-            out.append(" ").append(beforeLines[i]).append("\n");
-        }
-        for (int i = prefix; i <= beforeSuffix && i < beforeLines.length; i++) {
-            out.append("-").append(beforeLines[i]).append("\n");
-        }
-        for (int i = prefix; i <= afterSuffix && i < afterLines.length; i++) {
-            out.append("+").append(afterLines[i]).append("\n");
-        }
-        for (int i = Math.max(prefix, afterSuffix + 1); i <= afterContextEnd && i < afterLines.length; i++) {
-            out.append(" ").append(afterLines[i]).append("\n");
-        }
-        if (beforeContextEnd + afterContextEnd < beforeLines.length + afterLines.length - 2) {
-            out.append("... diff truncated ...\n");
-        }
-    }
-
-    private enum DiffType {
-        EQUAL,
-        DELETE,
-        INSERT
-    }
-
-    private record DiffLine(DiffType type, String text, int oldLine, int newLine) {
-    }
-
     private record CommitLanguagePrompt(
         String languageName,
         String summaryName,
@@ -581,6 +866,9 @@ public final class AiCommitMessageService {
     ) {
     }
 
+    private record DiffTask(String path, Callable<String> diff) {
+    }
+
     private record CommitGenerationContext(
         AiFeatureSettings.GitCommitMessageLanguage language,
         String systemPrompt,
@@ -609,7 +897,7 @@ public final class AiCommitMessageService {
         if (raw == null) {
             return "";
         }
-        String text = stripThinkingContent(raw, false)
+        String text = stripThinkingContent(raw)
             .trim()
             .replace("\r\n", "\n")
             .replace("\r", "\n")
@@ -619,7 +907,7 @@ public final class AiCommitMessageService {
         if (text.isBlank()) {
             return "";
         }
-        if (looksLikeToolCall(text)) {
+        if (AiCommitStreamSanitizer.looksLikeToolCall(text)) {
             return extractConventionalCommit(text).orElse("");
         }
 
@@ -628,28 +916,15 @@ public final class AiCommitMessageService {
             return "";
         }
 
-        return extractCommitMessageFromFirstConventionalLine(lines).orElseGet(() -> joinCommitLines(lines));
-    }
-
-    private String sanitizeStreamingCommitMessage(String raw) {
-        if (raw == null || raw.isBlank()) {
-            return "";
-        }
-        String text = stripThinkingContent(raw, true)
-            .stripLeading()
-            .replace("\r\n", "\n")
-            .replace("\r", "\n");
-        if (text.isBlank()) {
-            return "";
-        }
-        return sanitizeCommitMessage(text);
+        return extractCommitMessageFromFirstConventionalLine(lines)
+            .orElseGet(() -> AiCommitStreamSanitizer.joinCommitLines(lines));
     }
 
     private List<String> effectiveCommitLines(String text) {
         List<String> lines = new ArrayList<>();
         for (String line : text.split("\\n")) {
-            String normalized = normalizeOutputLine(line);
-            if (!normalized.isBlank() && !isMetaResponseLine(normalized)) {
+            String normalized = AiCommitStreamSanitizer.normalizeOutputLine(line);
+            if (!normalized.isBlank() && !AiCommitStreamSanitizer.isMetaResponseLine(normalized)) {
                 lines.add(normalized);
             }
         }
@@ -657,19 +932,19 @@ public final class AiCommitMessageService {
     }
 
     private Optional<String> extractConventionalCommit(String text) {
-        return extractCommitMessageFromFirstConventionalLine(effectiveCommitLines(stripThinkingContent(text, false)));
+        return extractCommitMessageFromFirstConventionalLine(effectiveCommitLines(stripThinkingContent(text)));
     }
 
     private Optional<String> extractCommitMessageFromFirstConventionalLine(List<String> lines) {
         for (int i = 0; i < lines.size(); i++) {
-            if (CONVENTIONAL_COMMIT_PATTERN.matcher(lines.get(i)).matches()) {
-                return Optional.of(joinCommitLines(lines.subList(i, lines.size())));
+            if (AiCommitStreamSanitizer.CONVENTIONAL_COMMIT_PATTERN.matcher(lines.get(i)).matches()) {
+                return Optional.of(AiCommitStreamSanitizer.joinCommitLines(lines.subList(i, lines.size())));
             }
         }
         return Optional.empty();
     }
 
-    private String stripThinkingContent(String raw, boolean streaming) {
+    private String stripThinkingContent(String raw) {
         if (raw == null || raw.isBlank()) {
             return "";
         }
@@ -680,9 +955,6 @@ public final class AiCommitMessageService {
 
         int openTagIndex = firstUnclosedThinkingTagIndex(text);
         if (openTagIndex >= 0) {
-            if (streaming) {
-                return text.substring(0, openTagIndex).trim();
-            }
             text = text.substring(0, openTagIndex);
         }
         return text.trim();
@@ -704,44 +976,6 @@ public final class AiCommitMessageService {
         return result;
     }
 
-    private String normalizeOutputLine(String line) {
-        String value = line == null ? "" : line.trim();
-        value = value.replaceFirst("^>\\s*", "")
-            .trim();
-        while ((value.startsWith("\"") && value.endsWith("\""))
-            || (value.startsWith("'") && value.endsWith("'"))
-            || (value.startsWith("`") && value.endsWith("`"))) {
-            value = value.substring(1, value.length() - 1).trim();
-        }
-        return value;
-    }
-
-    private boolean isMetaResponseLine(String line) {
-        if (CONVENTIONAL_COMMIT_PATTERN.matcher(line).matches()) {
-            return false;
-        }
-        String lower = line.toLowerCase();
-        return line.matches("^(明白|好的|可以|当然|我会|下面是|以下是|已根据|根据).*$")
-            || line.matches("^(我需要|需要先|请先|请提供|无法|不能|没有看到|未提供).*$")
-            || lower.matches("^(sure|ok|okay|here is|here's|i will|i can).*$")
-            || line.contains("仅返回提交信息")
-            || line.contains("提交信息本身")
-            || lower.contains("conventional commits 规范")
-            || lower.contains("commit message itself");
-    }
-
-    private boolean looksLikeToolCall(String text) {
-        String lower = text.toLowerCase();
-        return lower.contains("<tool_call")
-            || lower.contains("</tool_call")
-            || lower.contains("tool_call")
-            || lower.contains("git status")
-            || lower.contains("bash")
-            || lower.contains("/system")
-            || lower.contains("-reminder")
-            || lower.contains("\\x1b[31m");
-    }
-
     private String simplifyImplementationNames(
         String message,
         AiFeatureSettings.GitCommitMessageLanguage language
@@ -878,20 +1112,4 @@ public final class AiCommitMessageService {
         }
         return text.toString();
     }
-
-    private String joinCommitLines(List<String> lines) {
-        List<String> result = new ArrayList<>();
-        for (String line : lines) {
-            if (result.size() >= 16) {
-                break;
-            }
-            if (!line.isBlank()) {
-                result.add(line);
-            }
-        }
-        if (result.size() > 1 && result.get(1).startsWith("- ")) {
-            return result.get(0) + "\n\n" + String.join("\n", result.subList(1, result.size()));
-        }
-        return String.join("\n", result).trim();
-    }
 }
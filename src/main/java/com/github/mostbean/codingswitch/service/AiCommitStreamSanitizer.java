@@ -0,0 +1,241 @@
+package com.github.mostbean.codingswitch.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * 流式提交信息的增量清洗：逐段接收模型输出，跳过 think / reasoning / analysis 标签内的内容，
+ * 按行规范化并丢弃空行、代码块标记和客套话，同时记下第一条 Conventional Commit 标题的位置。
+ * 每段输出只处理新增部分，不再对整个缓冲区重复做正则替换；跨段的标签只暂存可能是标签开头的几个字符。
+ * 行级规则同时供最终结果的整体清洗使用。
+ */
+final class AiCommitStreamSanitizer {
+
+    static final Pattern CONVENTIONAL_COMMIT_PATTERN = Pattern.compile(
+        "^(feat|fix|docs|style|refactor|perf|test|build|ci|chore|revert)(\\([^)]+\\))?!?:\\s+.+",
+        Pattern.CASE_INSENSITIVE
+    );
+    static final int MAX_COMMIT_LINES = 16;
+    private static final List<String> THINKING_TAGS = List.of("think", "reasoning", "analysis");
+    private static final int MAX_TAG_CHARS = 256;
+    private static final int NEED_MORE = -2;
+
+    private final List<String> lines = new ArrayList<>();
+    private final StringBuilder currentLine = new StringBuilder();
+    private String carry = "";
+    private String openTag;
+    private int firstConventionalLine = -1;
+    private boolean toolCallSeen;
+
+    void append(String delta) {
+        if (delta == null || delta.isEmpty()) {
+            return;
+        }
+        String text = carry + delta.replace("\r\n", "\n").replace('\r', '\n');
+        carry = "";
+        int index = 0;
+        while (index < text.length()) {
+            if (openTag != null) {
+                String closeTag = "</" + openTag + ">";
+                int close = indexOfIgnoreCase(text, closeTag, index);
+                if (close < 0) {
+                    // 结束标签可能被拆到下一段，只保留末尾不足一个标签长度的字符。
+                    carry = text.substring(Math.max(index, text.length() - closeTag.length() + 1));
+                    return;
+                }
+                index = close + closeTag.length();
+                openTag = null;
+                continue;
+            }
+            int lt = text.indexOf('<', index);
+            if (lt < 0) {
+                appendVisible(text, index, text.length());
+                return;
+            }
+            appendVisible(text, index, lt);
+            int tagEnd = openTagEnd(text, lt);
+            if (tagEnd == NEED_MORE) {
+                carry = text.substring(lt);
+                return;
+            }
+            if (tagEnd < 0) {
+                appendVisible(text, lt, lt + 1);
+                index = lt + 1;
+            } else {
+                index = tagEnd;
+            }
+        }
+    }
+
+    /**
+     * 当前可展示的提交信息；工作量只与已保留的行数有关，与缓冲区总长度无关。
+     */
+    String snapshot() {
+        List<String> visible = new ArrayList<>();
+        boolean toolCall = toolCallSeen;
+        int start = firstConventionalLine;
+        if (start < 0 && !toolCall) {
+            start = 0;
+        }
+        if (start >= 0) {
+            for (int i = start; i < lines.size() && visible.size() < MAX_COMMIT_LINES; i++) {
+                visible.add(lines.get(i));
+            }
+        }
+        String partial = currentLine.toString();
+        toolCall |= looksLikeToolCall(partial);
+        // 未写完的行可能是代码块标记的开头，先不展示。
+        String normalized = partial.strip().matches("`{1,2}") ? "" : normalizeOutputLine(partial);
+        if (!isFence(partial) && isCommitLine(normalized) && visible.size() < MAX_COMMIT_LINES) {
+            if (start < 0 && CONVENTIONAL_COMMIT_PATTERN.matcher(normalized).matches()) {
+                visible.add(normalized);
+            } else if (start >= 0) {
+                visible.add(normalized);
+            }
+        }
+        if (toolCall && firstConventionalLine < 0 && !startsWithConventional(visible)) {
+            return "";
+        }
+        return joinCommitLines(visible);
+    }
+
+    /**
+     * text[lt] 为 '<' 时判断是否为思考标签的开始：是则返回标签结束后的位置并进入标签，
+     * 不是返回 -1，内容不足以判断时返回 NEED_MORE。
+     */
+    private int openTagEnd(String text, int lt) {
+        boolean undecided = false;
+        for (String tag : THINKING_TAGS) {
+            int nameEnd = lt + 1 + tag.length();
+            if (nameEnd >= text.length()) {
+                String available = text.substring(lt + 1);
+                if (tag.startsWith(available.toLowerCase(Locale.ROOT))) {
+                    undecided = true;
+                }
+                continue;
+            }
+            if (!text.regionMatches(true, lt + 1, tag, 0, tag.length())) {
+                continue;
+            }
+            char next = text.charAt(nameEnd);
+            if (next != '>' && !Character.isWhitespace(next)) {
+                continue;
+            }
+            int close = text.indexOf('>', nameEnd);
+            if (close < 0) {
+                if (text.length() - lt > MAX_TAG_CHARS) {
+                    return -1;
+                }
+                undecided = true;
+                continue;
+            }
+            openTag = tag;
+            return close + 1;
+        }
+        return undecided ? NEED_MORE : -1;
+    }
+
+    private void appendVisible(String text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char ch = text.charAt(i);
+            if (ch == '\n') {
+                completeLine(currentLine.toString());
+                currentLine.setLength(0);
+            } else {
+                currentLine.append(ch);
+            }
+        }
+    }
+
+    private void completeLine(String line) {
+        if (looksLikeToolCall(line)) {
+            toolCallSeen = true;
+        }
+        String normalized = normalizeOutputLine(line);
+        if (isFence(line) || !isCommitLine(normalized)) {
+            return;
+        }
+        lines.add(normalized);
+        if (firstConventionalLine < 0 && CONVENTIONAL_COMMIT_PATTERN.matcher(normalized).matches()) {
+            firstConventionalLine = lines.size() - 1;
+        }
+    }
+
+    private static boolean isCommitLine(String normalized) {
+        return !normalized.isBlank() && !isMetaResponseLine(normalized);
+    }
+
+    private static boolean isFence(String line) {
+        return line.strip().startsWith("```");
+    }
+
+    private static boolean startsWithConventional(List<String> visible) {
+        return !visible.isEmpty() && CONVENTIONAL_COMMIT_PATTERN.matcher(visible.get(0)).matches();
+    }
+
+    private static int indexOfIgnoreCase(String text, String target, int from) {
+        for (int i = from; i + target.length() <= text.length(); i++) {
+            if (text.regionMatches(true, i, target, 0, target.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static String normalizeOutputLine(String line) {
+        String value = line == null ? "" : line.trim();
+        value = value.replaceFirst("^>\\s*", "")
+            .trim();
+        while (value.length() >= 2
+            && ((value.startsWith("\"") && value.endsWith("\""))
+            || (value.startsWith("'") && value.endsWith("'"))
+            || (value.startsWith("`") && value.endsWith("`")))) {
+            value = value.substring(1, value.length() - 1).trim();
+        }
+        return value;
+    }
+
+    static boolean isMetaResponseLine(String line) {
+        if (CONVENTIONAL_COMMIT_PATTERN.matcher(line).matches()) {
+            return false;
+        }
+        String lower = line.toLowerCase();
+        return line.matches("^(明白|好的|可以|当然|我会|下面是|以下是|已根据|根据).*$")
+            || line.matches("^(我需要|需要先|请先|请提供|无法|不能|没有看到|未提供).*$")
+            || lower.matches("^(sure|ok|okay|here is|here's|i will|i can).*$")
+            || line.contains("仅返回提交信息")
+            || line.contains("提交信息本身")
+            || lower.contains("conventional commits 规范")
+            || lower.contains("commit message itself");
+    }
+
+    static boolean looksLikeToolCall(String text) {
+        String lower = text.toLowerCase();
+        return lower.contains("<tool_call")
+            || lower.contains("</tool_call")
+            || lower.contains("tool_call")
+            || lower.contains("git status")
+            || lower.contains("bash")
+            || lower.contains("/system")
+            || lower.contains("-reminder")
+            || lower.contains("\\x1b[31m");
+    }
+
+    static String joinCommitLines(List<String> lines) {
+        List<String> result = new ArrayList<>();
+        for (String line : lines) {
+            if (result.size() >= MAX_COMMIT_LINES) {
+                break;
+            }
+            if (!line.isBlank()) {
+                result.add(line);
+            }
+        }
+        if (result.size() > 1 && result.get(1).startsWith("- ")) {
+            return result.get(0) + "\n\n" + String.join("\n", result.subList(1, result.size()));
+        }
+        return String.join("\n", result).trim();
+    }
+}
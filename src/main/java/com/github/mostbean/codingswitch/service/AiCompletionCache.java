@@ -1,126 +1,381 @@
 package com.github.mostbean.codingswitch.service;
 
 import com.github.mostbean.codingswitch.model.AiCompletionRequest;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.components.Service;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 @Service(Service.Level.APP)
-public final class AiCompletionCache {
+public final class AiCompletionCache implements Disposable {
 
-    private static final int MAX_CACHE_SIZE = 100;
-    private static final int MAX_CONTEXT_CACHE_SIZE = 80;
-    private static final int MAX_NEGATIVE_CACHE_SIZE = 80;
+    private static final Logger LOG = Logger.getInstance(AiCompletionCache.class);
+
+    private static final long MAX_CACHE_WEIGHT = 1024 * 1024;
+    private static final long MAX_CONTEXT_CACHE_WEIGHT = 1024 * 1024;
+    private static final long MAX_NEGATIVE_CACHE_WEIGHT = 128 * 1024;
+    private static final long MAX_TYPE_THROUGH_WEIGHT = 512 * 1024;
+    private static final int MAX_TYPE_THROUGH_ENTRIES_PER_FILE = 4;
+    private static final int TYPE_THROUGH_PREFIX_CHARS = 256;
+    private static final int TYPE_THROUGH_SUFFIX_CHARS = 200;
     private static final int PREFIX_HASH_CHARS = 1200;
     private static final int SUFFIX_HASH_CHARS = 500;
     private static final long CACHE_EXPIRY_MS = 5 * 60 * 1000; // 5 minutes
     private static final long NEGATIVE_CACHE_EXPIRY_MS = 20 * 1000;
+    private static final long SWEEP_INTERVAL_SECONDS = 60;
+    private static final long MAX_SPECULATIVE_MARKER_WEIGHT = 16 * 1024;
+    private static final long MAX_ALTERNATES_WEIGHT = 512 * 1024;
+    private static final long MAX_PERSISTENT_BYTES = 32L * 1024 * 1024;
+    private static final long PERSISTENT_EXPIRY_MS = 7L * 24 * 60 * 60 * 1000;
 
-    private final Map<String, CacheEntry> cache = new LinkedHashMap<>() {
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
-            return size() > MAX_CACHE_SIZE;
-        }
-    };
-    private final Map<String, CacheEntry> contextCache = new LinkedHashMap<>() {
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
-            return size() > MAX_CONTEXT_CACHE_SIZE;
-        }
-    };
-    private final Map<String, NegativeCacheEntry> negativeCache = new LinkedHashMap<>() {
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<String, NegativeCacheEntry> eldest) {
-            return size() > MAX_NEGATIVE_CACHE_SIZE;
-        }
-    };
+    private final AiCompletionLruCache<String> cache =
+        new AiCompletionLruCache<>(MAX_CACHE_WEIGHT, CACHE_EXPIRY_MS, AiCompletionCache::textWeight);
+    private final AiCompletionLruCache<String> contextCache =
+        new AiCompletionLruCache<>(MAX_CONTEXT_CACHE_WEIGHT, CACHE_EXPIRY_MS, AiCompletionCache::textWeight);
+    private final AiCompletionLruCache<Boolean> negativeCache =
+        new AiCompletionLruCache<>(MAX_NEGATIVE_CACHE_WEIGHT, NEGATIVE_CACHE_EXPIRY_MS, ignored -> 0);
+
+    /**
+     * 记录每个文件最近的补全结果，用于用户照着建议继续输入时直接返回剩余部分。
+     */
+    private final AiCompletionLruCache<List<TypeThroughEntry>> typeThroughCache =
+        new AiCompletionLruCache<>(MAX_TYPE_THROUGH_WEIGHT, CACHE_EXPIRY_MS, AiCompletionCache::typeThroughWeight);
+    /**
+     * 记录由投机预取写入的精确缓存条目，命中时回报给预取预算。
+     */
+    private final AiCompletionLruCache<Long> speculativeMarkers =
+        new AiCompletionLruCache<>(MAX_SPECULATIVE_MARKER_WEIGHT, CACHE_EXPIRY_MS, ignored -> 0);
+    /**
+     * 多候选模式下已排好序的备选补全，按与精确缓存相同的位置键存放，切换候选时不再请求网络。
+     */
+    private final AiCompletionLruCache<List<String>> alternatesCache =
+        new AiCompletionLruCache<>(MAX_ALTERNATES_WEIGHT, CACHE_EXPIRY_MS, AiCompletionCache::alternatesWeight);
+    /**
+     * 可选的磁盘层，在内存上下文缓存未命中后查询，跨 IDE 重启保留；首次使用时才打开。
+     */
+    private final Object persistentLock = new Object();
+    private volatile AiCompletionDiskCache persistent;
+    private volatile boolean persistentFailed;
+    private final ScheduledFuture<?> sweepTask = AppExecutorUtil.getAppScheduledExecutorService()
+        .scheduleWithFixedDelay(this::sweepExpired, SWEEP_INTERVAL_SECONDS, SWEEP_INTERVAL_SECONDS, TimeUnit.SECONDS);
 
     public static AiCompletionCache getInstance() {
         return ApplicationManager.getApplication().getService(AiCompletionCache.class);
     }
 
-    public synchronized Optional<String> get(String filePath, int offset, long documentStamp) {
-        String key = buildKey(filePath, offset, documentStamp);
-        CacheEntry entry = cache.get(key);
-        if (entry != null && !entry.isExpired()) {
-            return Optional.of(entry.completion());
+    public Optional<String> get(String filePath, int offset, long documentStamp) {
+        return Optional.ofNullable(cache.get(buildKey(filePath, offset, documentStamp)));
+    }
+
+    public void put(String filePath, int offset, long documentStamp, String completion) {
+        if (completion == null || completion.isBlank()) {
+            return;
+        }
+        cache.put(buildKey(filePath, offset, documentStamp), completion);
+    }
+
+    /**
+     * 计算上下文缓存键。同一次请求只需计算一次，再传给 getContext/putContext/isNegativeCached/putNegative。
+     * retrievalChars 为前缀开头跨文件检索片段的长度，片段不在前缀末尾的哈希范围内，需单独计入键中。
+     */
+    public String contextKey(AiCompletionRequest request, int retrievalChars) {
+        String scope = requestScope(request);
+        String prefix = request.fimPrefix();
+        String suffix = request.fimSuffix();
+        StringBuilder key = new StringBuilder(scope.length() + 99).append(scope).append(':');
+        AiCompletionContextHash.appendHash128(key, prefix, Math.max(0, prefix.length() - PREFIX_HASH_CHARS), prefix.length());
+        key.append(':');
+        AiCompletionContextHash.appendHash128(key, suffix, 0, Math.min(suffix.length(), SUFFIX_HASH_CHARS));
+        if (retrievalChars > 0) {
+            key.append(':');
+            AiCompletionContextHash.appendHash128(key, prefix, 0, Math.min(retrievalChars, prefix.length()));
         }
-        if (entry != null) {
-            cache.remove(key);
+        return key.toString();
+    }
+
+    public List<String> getAlternates(String filePath, int offset, long documentStamp) {
+        List<String> alternates = alternatesCache.get(buildKey(filePath, offset, documentStamp));
+        return alternates == null ? List.of() : alternates;
+    }
+
+    public void putAlternates(String filePath, int offset, long documentStamp, List<String> alternates) {
+        if (alternates == null || alternates.isEmpty()) {
+            return;
         }
-        return Optional.empty();
+        alternatesCache.put(buildKey(filePath, offset, documentStamp), List.copyOf(alternates));
     }
 
-    public synchronized void put(String filePath, int offset, long documentStamp, String completion) {
+    public void markSpeculative(String filePath, int offset, long documentStamp, long prefetchId) {
+        speculativeMarkers.put(buildKey(filePath, offset, documentStamp), prefetchId);
+    }
+
+    /**
+     * 取出并移除精确缓存条目对应的预取 ID，条目不是预取写入时返回 0。
+     */
+    public long takeSpeculative(String filePath, int offset, long documentStamp) {
+        Long prefetchId = speculativeMarkers.remove(buildKey(filePath, offset, documentStamp));
+        return prefetchId == null ? 0 : prefetchId;
+    }
+
+    public Optional<String> getContext(String contextKey) {
+        return Optional.ofNullable(contextCache.get(contextKey));
+    }
+
+    public void putContext(String contextKey, String completion) {
         if (completion == null || completion.isBlank()) {
             return;
         }
-        String key = buildKey(filePath, offset, documentStamp);
-        cache.put(key, new CacheEntry(completion, System.currentTimeMillis()));
+        contextCache.put(contextKey, completion);
+        negativeCache.remove(contextKey);
     }
 
-    public synchronized Optional<String> getContext(AiCompletionRequest request) {
-        String key = buildContextKey(request);
-        CacheEntry entry = contextCache.get(key);
-        if (entry != null && !entry.isExpired()) {
-            return Optional.of(entry.completion());
+    /**
+     * 查询磁盘层；键在上下文键前加上模型配置 ID，同样的上下文换了网关或配置不会串用结果。
+     */
+    public Optional<String> getPersistent(AiCompletionRequest request, String contextKey) {
+        AiCompletionDiskCache disk = persistent();
+        if (disk == null) {
+            return Optional.empty();
         }
-        if (entry != null) {
-            contextCache.remove(key);
+        try {
+            return Optional.ofNullable(disk.get(persistentKey(request, contextKey)));
+        } catch (IOException ex) {
+            disablePersistent(ex);
+            return Optional.empty();
         }
-        return Optional.empty();
     }
 
-    public synchronized void putContext(AiCompletionRequest request, String completion) {
+    public void putPersistent(AiCompletionRequest request, String contextKey, String completion) {
         if (completion == null || completion.isBlank()) {
             return;
         }
-        contextCache.put(buildContextKey(request), new CacheEntry(completion, System.currentTimeMillis()));
-        negativeCache.remove(buildContextKey(request));
+        AiCompletionDiskCache disk = persistent();
+        if (disk == null) {
+            return;
+        }
+        try {
+            disk.put(persistentKey(request, contextKey), completion);
+        } catch (IOException ex) {
+            disablePersistent(ex);
+        }
     }
 
-    public synchronized boolean isNegativeCached(AiCompletionRequest request) {
-        String key = buildContextKey(request);
-        NegativeCacheEntry entry = negativeCache.get(key);
-        if (entry != null && !entry.isExpired()) {
-            return true;
+    /**
+     * 清空磁盘层，关闭持久化时文件仍会保留，需要单独清除。
+     */
+    public void clearPersistent() throws IOException {
+        synchronized (persistentLock) {
+            if (persistent != null) {
+                persistent.clear();
+                return;
+            }
         }
-        if (entry != null) {
-            negativeCache.remove(key);
+        Files.deleteIfExists(persistentFile());
+    }
+
+    public boolean isNegativeCached(String contextKey) {
+        return negativeCache.get(contextKey) != null;
+    }
+
+    public void putNegative(String contextKey) {
+        negativeCache.put(contextKey, Boolean.TRUE);
+    }
+
+    /**
+     * 当前前缀等于之前请求的前缀加上其补全的开头部分时，返回补全尚未输入的剩余部分。
+     */
+    public Optional<String> getTypeThrough(String filePath, int offset, AiCompletionRequest request) {
+        List<TypeThroughEntry> entries = filePath == null ? null : typeThroughCache.get(filePath);
+        if (entries == null) {
+            return Optional.empty();
         }
-        return false;
+        String scope = requestScope(request);
+        String prefix = request.fimPrefix();
+        String suffixHead = head(request.fimSuffix(), TYPE_THROUGH_SUFFIX_CHARS);
+        for (TypeThroughEntry entry : entries) {
+            if (entry.isExpired()) {
+                continue;
+            }
+            int typed = offset - entry.offset();
+            if (typed < 0
+                || typed >= entry.completion().length()
+                || !entry.scope().equals(scope)
+                || !entry.suffixHead().equals(suffixHead)
+                || prefix.length() < typed + entry.prefixTail().length()) {
+                continue;
+            }
+            int typedStart = prefix.length() - typed;
+            if (!entry.completion().regionMatches(0, prefix, typedStart, typed)
+                || !prefix.startsWith(entry.prefixTail(), typedStart - entry.prefixTail().length())) {
+                continue;
+            }
+            String remaining = entry.completion().substring(typed);
+            if (!remaining.isBlank()) {
+                return Optional.of(remaining);
+            }
+        }
+        return Optional.empty();
     }
 
-    public synchronized void putNegative(AiCompletionRequest request) {
-        negativeCache.put(buildContextKey(request), new NegativeCacheEntry(System.currentTimeMillis()));
+    public void putTypeThrough(String filePath, int offset, AiCompletionRequest request, String completion) {
+        if (filePath == null || filePath.isBlank() || completion == null || completion.isBlank()) {
+            return;
+        }
+        TypeThroughEntry latest = new TypeThroughEntry(
+            requestScope(request),
+            offset,
+            tail(request.fimPrefix(), TYPE_THROUGH_PREFIX_CHARS),
+            head(request.fimSuffix(), TYPE_THROUGH_SUFFIX_CHARS),
+            completion,
+            System.currentTimeMillis()
+        );
+        // 同一文件的并发补全在分段锁内合并，不会互相覆盖对方刚写入的条目。
+        typeThroughCache.compute(filePath, previous -> {
+            List<TypeThroughEntry> entries = new ArrayList<>();
+            entries.add(latest);
+            if (previous != null) {
+                for (TypeThroughEntry entry : previous) {
+                    if (entries.size() >= MAX_TYPE_THROUGH_ENTRIES_PER_FILE) {
+                        break;
+                    }
+                    if (entry.offset() != offset && !entry.isExpired()) {
+                        entries.add(entry);
+                    }
+                }
+            }
+            return List.copyOf(entries);
+        });
     }
 
-    public synchronized void invalidate(String filePath) {
-        cache.entrySet().removeIf(entry -> entry.getKey().startsWith(filePath + ":"));
+    public void invalidate(String filePath) {
+        cache.removeIf(key -> key.startsWith(filePath + ":"));
+        speculativeMarkers.removeIf(key -> key.startsWith(filePath + ":"));
+        alternatesCache.removeIf(key -> key.startsWith(filePath + ":"));
+        typeThroughCache.remove(filePath);
     }
 
-    public synchronized void clear() {
+    public void clear() {
         cache.clear();
         contextCache.clear();
         negativeCache.clear();
+        typeThroughCache.clear();
+        speculativeMarkers.clear();
+        alternatesCache.clear();
+    }
+
+    /**
+     * 各级缓存的命中、未命中、淘汰与过期计数，用于诊断缓存效果。
+     */
+    public Map<String, AiCompletionLruCache.Stats> stats() {
+        Map<String, AiCompletionLruCache.Stats> stats = new LinkedHashMap<>();
+        stats.put("exact", cache.stats());
+        stats.put("context", contextCache.stats());
+        stats.put("negative", negativeCache.stats());
+        stats.put("typeThrough", typeThroughCache.stats());
+        stats.put("alternates", alternatesCache.stats());
+        return stats;
+    }
+
+    private void sweepExpired() {
+        cache.sweepExpired();
+        contextCache.sweepExpired();
+        negativeCache.sweepExpired();
+        typeThroughCache.sweepExpired();
+        speculativeMarkers.sweepExpired();
+        alternatesCache.sweepExpired();
+    }
+
+    @Override
+    public void dispose() {
+        sweepTask.cancel(false);
+        synchronized (persistentLock) {
+            if (persistent != null) {
+                try {
+                    persistent.close();
+                } catch (IOException ignored) {
+                    // 退出时关闭失败不影响下次打开，未写完的尾部记录会在打开时截断。
+                }
+                persistent = null;
+            }
+        }
+    }
+
+    private AiCompletionDiskCache persistent() {
+        if (persistentFailed || !AiFeatureSettings.getInstance().getTimingConfig().isPersistentCacheEnabled()) {
+            return null;
+        }
+        AiCompletionDiskCache disk = persistent;
+        if (disk != null) {
+            return disk;
+        }
+        synchronized (persistentLock) {
+            if (persistent == null && !persistentFailed) {
+                try {
+                    persistent = AiCompletionDiskCache.open(persistentFile(), MAX_PERSISTENT_BYTES, PERSISTENT_EXPIRY_MS);
+                } catch (IOException ex) {
+                    disablePersistent(ex);
+                }
+            }
+            return persistent;
+        }
+    }
+
+    private void disablePersistent(IOException ex) {
+        // 磁盘层出错时本次会话不再使用，只退回内存缓存。
+        persistentFailed = true;
+        LOG.warn("Completion disk cache disabled", ex);
+    }
+
+    private static Path persistentFile() {
+        return Path.of(PathManager.getSystemPath(), "coding-switch", "completion-cache.log");
+    }
+
+    private static String persistentKey(AiCompletionRequest request, String contextKey) {
+        return request.profile().getId() + "|" + contextKey;
+    }
+
+    private static int textWeight(String value) {
+        return value == null ? 0 : 2 * value.length();
+    }
+
+    private static int alternatesWeight(List<String> alternates) {
+        int weight = 0;
+        for (String alternate : alternates) {
+            weight += textWeight(alternate);
+        }
+        return weight;
+    }
+
+    private static int typeThroughWeight(List<TypeThroughEntry> entries) {
+        int weight = 0;
+        for (TypeThroughEntry entry : entries) {
+            weight += 2 * (entry.prefixTail().length() + entry.suffixHead().length() + entry.completion().length());
+        }
+        return weight;
     }
 
     private String buildKey(String filePath, int offset, long documentStamp) {
         return filePath + ":" + offset + ":" + documentStamp;
     }
 
-    private String buildContextKey(AiCompletionRequest request) {
+    private String requestScope(AiCompletionRequest request) {
         return request.profile().getFormat().name()
             + ":"
             + request.profile().getModel()
             + ":"
-            + request.lengthLevel().name()
-            + ":"
-            + hash(tail(request.fimPrefix(), PREFIX_HASH_CHARS))
-            + ":"
-            + hash(head(request.fimSuffix(), SUFFIX_HASH_CHARS));
+            + request.lengthLevel().name();
     }
 
     private String head(String value, int maxChars) {
@@ -137,19 +392,16 @@ public final class AiCompletionCache {
         return value.substring(value.length() - maxChars);
     }
 
-    private String hash(String value) {
-        return Integer.toHexString(value.hashCode());
-    }
-
-    private record CacheEntry(String completion, long createdAt) {
+    private record TypeThroughEntry(
+        String scope,
+        int offset,
+        String prefixTail,
+        String suffixHead,
+        String completion,
+        long createdAt
+    ) {
         boolean isExpired() {
             return System.currentTimeMillis() - createdAt > CACHE_EXPIRY_MS;
         }
     }
-
-    private record NegativeCacheEntry(long createdAt) {
-        boolean isExpired() {
-            return System.currentTimeMillis() - createdAt > NEGATIVE_CACHE_EXPIRY_MS;
-        }
-    }
 }
@@ -0,0 +1,51 @@
+package com.github.mostbean.codingswitch.service;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 补全请求的取消句柄。请求被更新的输入或新请求取代时，中断底层 HTTP 请求与 SSE 读取。
+ */
+public final class AiCompletionCancellation {
+
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private final List<Runnable> abortActions = new CopyOnWriteArrayList<>();
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    public void cancel() {
+        if (!cancelled.compareAndSet(false, true)) {
+            return;
+        }
+        for (Runnable action : abortActions) {
+            runOnce(action);
+        }
+    }
+
+    /**
+     * 注册取消时执行的中断动作；若已取消则立即执行。
+     */
+    void onCancel(Runnable action) {
+        if (action == null) {
+            return;
+        }
+        abortActions.add(action);
+        if (cancelled.get()) {
+            runOnce(action);
+        }
+    }
+
+    private void runOnce(Runnable action) {
+        if (!abortActions.remove(action)) {
+            return;
+        }
+        try {
+            action.run();
+        } catch (RuntimeException ignored) {
+            // 中断动作只用于尽快释放连接，失败时由读取方按取消状态退出。
+        }
+    }
+}
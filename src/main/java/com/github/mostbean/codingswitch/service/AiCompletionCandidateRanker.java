@@ -0,0 +1,135 @@
+package com.github.mostbean.codingswitch.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * 多候选补全的本地排序：去重后按新增语法错误、与光标后文本的衔接、长度和多个采样间的一致程度打分，
+ * 不再请求模型。已展示的首选结果不参与排序，只用于去重。
+ */
+final class AiCompletionCandidateRanker {
+
+    private static final double SYNTAX_ERROR_PENALTY = 2.0;
+    private static final double SUFFIX_REPEAT_PENALTY = 1.5;
+    private static final double SHORT_PENALTY = 1.0;
+    private static final double AGREEMENT_BONUS = 0.5;
+    private static final int MIN_USEFUL_CHARS = 3;
+    private static final int FULL_LENGTH_CHARS = 80;
+
+    private AiCompletionCandidateRanker() {
+    }
+
+    /**
+     * 返回按得分从高到低排列的备选，最多 limit 条。
+     *
+     * @param introducedErrors 候选插入后比插入前多出的语法错误数，无法检查时返回 0
+     */
+    static List<String> rank(
+        String primary,
+        List<String> candidates,
+        String suffix,
+        ToIntFunction<String> introducedErrors,
+        int limit
+    ) {
+        String primaryKey = primary == null ? "" : dedupeKey(primary);
+        Map<String, Candidate> unique = new LinkedHashMap<>();
+        for (String candidate : candidates) {
+            if (candidate == null || candidate.isBlank()) {
+                continue;
+            }
+            String key = dedupeKey(candidate);
+            if (key.equals(primaryKey)) {
+                continue;
+            }
+            unique.computeIfAbsent(key, ignored -> new Candidate(candidate)).votes++;
+        }
+
+        String suffixHead = firstNonBlankLine(suffix);
+        List<Candidate> ranked = new ArrayList<>(unique.values());
+        for (Candidate candidate : ranked) {
+            candidate.score = score(candidate, suffixHead, introducedErrors);
+        }
+        ranked.sort(Comparator.comparingDouble((Candidate candidate) -> candidate.score).reversed());
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < ranked.size() && i < limit; i++) {
+            result.add(ranked.get(i).text);
+        }
+        return result;
+    }
+
+    private static double score(Candidate candidate, String suffixHead, ToIntFunction<String> introducedErrors) {
+        String text = candidate.text;
+        double score = (candidate.votes - 1) * AGREEMENT_BONUS;
+        score -= SYNTAX_ERROR_PENALTY * Math.max(0, introducedErrors.applyAsInt(text));
+        // 最后一行与光标后的下一行相同，说明候选把已有代码又写了一遍。
+        if (!suffixHead.isEmpty() && suffixHead.equals(lastNonBlankLine(text))) {
+            score -= SUFFIX_REPEAT_PENALTY;
+        }
+        int useful = nonWhitespaceChars(text);
+        if (useful < MIN_USEFUL_CHARS) {
+            score -= SHORT_PENALTY;
+        }
+        score += Math.min(1.0, Math.log1p(useful) / Math.log1p(FULL_LENGTH_CHARS));
+        return score;
+    }
+
+    /**
+     * 去掉首尾空白和每行行尾空白后比较，只差缩进外空白的候选视为相同。
+     */
+    static String dedupeKey(String text) {
+        StringBuilder key = new StringBuilder(text.length());
+        for (String line : text.strip().split("\n", -1)) {
+            if (!key.isEmpty()) {
+                key.append('\n');
+            }
+            key.append(line.stripTrailing());
+        }
+        return key.toString();
+    }
+
+    private static String firstNonBlankLine(String text) {
+        if (text == null) {
+            return "";
+        }
+        for (String line : text.split("\n")) {
+            if (!line.isBlank()) {
+                return line.strip();
+            }
+        }
+        return "";
+    }
+
+    private static String lastNonBlankLine(String text) {
+        String[] lines = text.split("\n");
+        for (int i = lines.length - 1; i >= 0; i--) {
+            if (!lines[i].isBlank()) {
+                return lines[i].strip();
+            }
+        }
+        return "";
+    }
+
+    private static int nonWhitespaceChars(String text) {
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static final class Candidate {
+        private final String text;
+        private int votes;
+        private double score;
+
+        private Candidate(String text) {
+            this.text = text;
+        }
+    }
+}
@@ -2,15 +2,44 @@ package com.github.mostbean.codingswitch.service;
 
 import com.github.mostbean.codingswitch.model.AiCompletionRequest;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Consumer;
 
 interface AiCompletionClient {
     String complete(AiCompletionRequest request) throws IOException, InterruptedException;
 
+    /**
+     * 接口是否支持一次请求返回多个候选（n 参数）。不支持时调用方应并行发出多个独立请求。
+     */
+    default boolean supportsChoices() {
+        return false;
+    }
+
+    /**
+     * 请求 count 个候选；默认逐个调用 complete。
+     */
+    default List<String> completeChoices(AiCompletionRequest request, int count)
+        throws IOException, InterruptedException {
+        List<String> choices = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            choices.add(complete(request));
+        }
+        return choices;
+    }
+
     default void streamComplete(AiCompletionRequest request, Consumer<String> onDelta)
         throws IOException, InterruptedException {
+        streamComplete(request, new AiCompletionCancellation(), onDelta);
+    }
+
+    default void streamComplete(
+        AiCompletionRequest request,
+        AiCompletionCancellation cancellation,
+        Consumer<String> onDelta
+    ) throws IOException, InterruptedException {
         String completion = complete(request);
-        if (completion != null && !completion.isEmpty()) {
+        if (!cancellation.isCancelled() && completion != null && !completion.isEmpty()) {
             onDelta.accept(completion);
         }
     }
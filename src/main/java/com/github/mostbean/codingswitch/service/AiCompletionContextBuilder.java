@@ -4,20 +4,32 @@ import com.github.mostbean.codingswitch.model.AiCompletionTriggerMode;
 import com.github.mostbean.codingswitch.model.AiCompletionLengthLevel;
 import com.github.mostbean.codingswitch.model.AiModelFormat;
 import com.github.mostbean.codingswitch.model.AiModelProfile;
+import com.intellij.lang.Commenter;
+import com.intellij.lang.LanguageCommenters;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.event.DocumentEvent;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
+import java.util.ArrayList;
+import java.util.List;
 
 final class AiCompletionContextBuilder {
 
-    private static final int APPROX_CHARS_PER_TOKEN = 4;
-    private static final int MIN_CONTEXT_CHARS = 512;
+    private static final int MIN_CONTEXT_TOKENS = 128;
+    private static final int MAX_CHARS_PER_TOKEN = 16;
     private static final int PREFIX_BUDGET_PERCENT = 70;
     private static final int SUFFIX_BUDGET_PERCENT = 20;
+    private static final int RETRIEVAL_BUDGET_PERCENT = 15;
+    private static final int RETRIEVAL_QUERY_CHARS = 1500;
+    private static final int MAX_RETRIEVED_SNIPPETS = 4;
     private static final int MAX_HEADER_SCAN_LINES = 80;
+    private static final int MAX_HEADER_LINE_CHARS = 512;
+    private static final Key<HeaderRange> HEADER_RANGE_KEY = Key.create("codingSwitch.aiCompletion.headerRange");
 
     private AiCompletionContextBuilder() {
     }
@@ -36,16 +48,23 @@ final class AiCompletionContextBuilder {
 
         Document document = editor.getDocument();
         int offset = Math.max(0, Math.min(editor.getCaretModel().getOffset(), document.getTextLength()));
-        String text = document.getText();
-        ContextSlices slices = buildContextSlices(text, offset);
-        String prefix = slices.prefix();
-        String suffix = slices.suffix();
-
         PsiFile psiFile = PsiDocumentManager.getInstance(project).getPsiFile(document);
         String language = psiFile == null ? "unknown" : psiFile.getLanguage().getDisplayName();
         VirtualFile file = psiFile == null ? null : psiFile.getVirtualFile();
         String path = file == null ? "" : file.getPath();
 
+        RetrievalScope retrieval = AiFeatureSettings.getInstance().getTimingConfig().isCrossFileContextEnabled()
+            ? new RetrievalScope(
+                AiCompletionRetrievalService.getInstance(project),
+                path,
+                project.getBasePath(),
+                lineCommentPrefix(psiFile)
+            )
+            : null;
+        ContextSlices slices = buildContextSlices(document, offset, AiTokenizer.forProfile(profile), retrieval);
+        String prefix = slices.prefix();
+        String suffix = slices.suffix();
+
         String systemPrompt;
         String userPrompt;
 
@@ -107,50 +126,167 @@ final class AiCompletionContextBuilder {
             );
         }
 
-        return new Context(systemPrompt, userPrompt, path, prefix, suffix);
+        return new Context(systemPrompt, userPrompt, path, prefix, suffix, slices.tokens(), slices.retrievalChars());
+    }
+
+    /**
+     * 文件头部之前的内容发生变化时清除缓存的头部范围，头部之后的编辑不影响扫描结果。
+     */
+    static void invalidateHeaderRange(DocumentEvent event) {
+        Document document = event.getDocument();
+        HeaderRange cached = document.getUserData(HEADER_RANGE_KEY);
+        if (cached != null && event.getOffset() <= cached.scanEnd()) {
+            document.putUserData(HEADER_RANGE_KEY, null);
+        }
     }
 
-    private static ContextSlices buildContextSlices(String text, int offset) {
-        int totalContextChars = Math.max(
-            MIN_CONTEXT_CHARS,
-            AiFeatureSettings.getInstance().getTimingConfig().getMaxPromptTokens() * APPROX_CHARS_PER_TOKEN
+    private static ContextSlices buildContextSlices(
+        Document document,
+        int offset,
+        AiTokenizer tokenizer,
+        RetrievalScope retrieval
+    ) {
+        int totalTokens = Math.max(
+            MIN_CONTEXT_TOKENS,
+            AiFeatureSettings.getInstance().getTimingConfig().getMaxPromptTokens()
         );
-        int prefixBudget = Math.max(1, totalContextChars * PREFIX_BUDGET_PERCENT / 100);
-        int suffixBudget = Math.max(1, totalContextChars * SUFFIX_BUDGET_PERCENT / 100);
-        int headerBudget = Math.max(0, totalContextChars - prefixBudget - suffixBudget);
-
-        int prefixStart = Math.max(0, offset - prefixBudget);
-        int suffixEnd = Math.min(text.length(), offset + suffixBudget);
-        String localPrefix = text.substring(prefixStart, offset);
-        String suffix = text.substring(offset, suffixEnd);
-        String header = prefixStart > 0 && headerBudget > 0
-            ? fileHeaderContext(text, prefixStart, headerBudget)
-            : "";
+        CharSequence text = document.getCharsSequence();
+        // 先取得候选片段，只为确实存在的片段预留预算，没有片段时前缀使用全部份额。
+        List<RetrievedContext> snippets = retrieval == null
+            ? List.of()
+            : retrieveSnippets(retrieval, text, offset, tokenizer);
+        int snippetTokens = snippets.stream().mapToInt(RetrievedContext::tokens).sum();
+        int retrievalReserve = Math.min(totalTokens * RETRIEVAL_BUDGET_PERCENT / 100, snippetTokens);
+        int prefixBudget = Math.max(1, totalTokens * PREFIX_BUDGET_PERCENT / 100 - retrievalReserve);
+        int suffixBudget = Math.max(1, totalTokens * SUFFIX_BUDGET_PERCENT / 100);
+        int headerBudget = Math.max(0, totalTokens - prefixBudget - suffixBudget - retrievalReserve);
+
+        // 只对窗口内的字符做有界拷贝，避免 getText() 在大文件上复制整个文档。
+        int prefixWindowStart = Math.max(0, offset - prefixBudget * MAX_CHARS_PER_TOKEN);
+        int suffixWindowEnd = (int) Math.min(text.length(), (long) offset + (long) suffixBudget * MAX_CHARS_PER_TOKEN);
+        int prefixStart = tokenizer.fitTail(text, prefixWindowStart, offset, prefixBudget);
+        int suffixEnd = tokenizer.fitHead(text, offset, suffixWindowEnd, suffixBudget);
+        String localPrefix = text.subSequence(prefixStart, offset).toString();
+        String suffix = text.subSequence(offset, suffixEnd).toString();
+        int headerEnd = prefixStart > 0 && headerBudget > 0
+            ? fileHeaderEnd(document, text, prefixStart, headerBudget, tokenizer)
+            : 0;
+        String header = headerEnd > 0 ? text.subSequence(0, headerEnd).toString().stripTrailing() : "";
         String prefix = header.isBlank()
             ? localPrefix
             : header + "\n\n...\n" + localPrefix;
-        return new ContextSlices(prefix, suffix);
+        int headerTokens = header.isBlank() ? 0 : tokenizer.countTokens(header, 0, header.length());
+        int prefixTokens = tokenizer.countTokens(text, prefixStart, offset);
+        int suffixTokens = tokenizer.countTokens(text, offset, suffixEnd);
+
+        // 检索片段只使用本地上下文用剩的预算，文件较短时能放入更多相关代码。
+        int retrievalBudget = totalTokens - headerTokens - prefixTokens - suffixTokens;
+        RetrievedContext retrieved = retrievalBudget <= 0
+            ? RetrievedContext.EMPTY
+            : fitSnippets(snippets, retrievalBudget);
+        if (!retrieved.text().isEmpty()) {
+            prefix = retrieved.text() + prefix;
+        }
+        PromptTokens tokens = new PromptTokens(headerTokens, prefixTokens, suffixTokens, retrieved.tokens());
+        return new ContextSlices(prefix, suffix, tokens, retrieved.text().length());
+    }
+
+    /**
+     * 查询相关片段并按检索顺序格式化，附带各自的 token 数。
+     */
+    private static List<RetrievedContext> retrieveSnippets(
+        RetrievalScope retrieval,
+        CharSequence text,
+        int offset,
+        AiTokenizer tokenizer
+    ) {
+        List<AiCompletionSnippetIndex.Snippet> snippets = retrieval.service().query(
+            retrieval.path(),
+            text,
+            Math.max(0, offset - RETRIEVAL_QUERY_CHARS),
+            offset,
+            MAX_RETRIEVED_SNIPPETS
+        );
+        List<RetrievedContext> formatted = new ArrayList<>(snippets.size());
+        for (AiCompletionSnippetIndex.Snippet snippet : snippets) {
+            String block = formatSnippet(snippet, retrieval);
+            formatted.add(new RetrievedContext(block, tokenizer.countTokens(block, 0, block.length())));
+        }
+        return formatted;
+    }
+
+    private static RetrievedContext fitSnippets(List<RetrievedContext> snippets, int budget) {
+        StringBuilder block = new StringBuilder();
+        int used = 0;
+        for (RetrievedContext snippet : snippets) {
+            if (used + snippet.tokens() > budget) {
+                continue;
+            }
+            block.append(snippet.text());
+            used += snippet.tokens();
+        }
+        return block.isEmpty() ? RetrievedContext.EMPTY : new RetrievedContext(block.append('\n').toString(), used);
     }
 
-    private static String fileHeaderContext(String text, int beforeOffset, int budget) {
-        int headerEnd = Math.min(findHeaderEnd(text), beforeOffset);
+    private static String formatSnippet(AiCompletionSnippetIndex.Snippet snippet, RetrievalScope retrieval) {
+        String path = snippet.path();
+        String basePath = retrieval.basePath();
+        if (basePath != null && path.startsWith(basePath + "/")) {
+            path = path.substring(basePath.length() + 1);
+        }
+        StringBuilder out = new StringBuilder();
+        out.append(retrieval.commentPrefix()).append(" Compare this snippet from ").append(path).append(":\n");
+        for (String line : snippet.text().stripTrailing().split("\n", -1)) {
+            out.append(retrieval.commentPrefix()).append(' ').append(line.stripTrailing()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static String lineCommentPrefix(PsiFile psiFile) {
+        Commenter commenter = psiFile == null ? null : LanguageCommenters.INSTANCE.forLanguage(psiFile.getLanguage());
+        String prefix = commenter == null ? null : commenter.getLineCommentPrefix();
+        return prefix == null || prefix.isBlank() ? "//" : prefix.strip();
+    }
+
+    /**
+     * 返回可放入预算的文件头部结束位置，超出预算时尽量在整行处截断。
+     */
+    private static int fileHeaderEnd(
+        Document document,
+        CharSequence text,
+        int beforeOffset,
+        int budget,
+        AiTokenizer tokenizer
+    ) {
+        HeaderRange range = document.getUserData(HEADER_RANGE_KEY);
+        if (range == null) {
+            range = findHeaderRange(text);
+            document.putUserData(HEADER_RANGE_KEY, range);
+        }
+        int headerEnd = Math.min(range.headerEnd(), beforeOffset);
         if (headerEnd <= 0) {
-            return "";
+            return 0;
+        }
+        int end = tokenizer.fitHead(text, 0, headerEnd, budget);
+        if (end >= headerEnd) {
+            return headerEnd;
         }
-        return takeHeadByLine(text.substring(0, headerEnd).stripTrailing(), budget);
+        int lineEnd = StringUtil.lastIndexOf(text, '\n', 0, end);
+        return lineEnd >= end / 2 ? lineEnd : end;
     }
 
-    private static int findHeaderEnd(String text) {
+    private static HeaderRange findHeaderRange(CharSequence text) {
         int position = 0;
         int headerEnd = 0;
+        int scanEnd = 0;
         boolean sawHeaderLine = false;
         for (int lineCount = 0; position < text.length() && lineCount < MAX_HEADER_SCAN_LINES; lineCount++) {
-            int lineEnd = text.indexOf('\n', position);
+            int lineEnd = StringUtil.indexOf(text, '\n', position);
             if (lineEnd < 0) {
                 lineEnd = text.length();
             }
-            String line = text.substring(position, lineEnd);
-            String trimmed = line.strip();
+            scanEnd = lineEnd;
+            String trimmed = stripLine(text, position, lineEnd);
             boolean headerLine = isHeaderLine(trimmed);
             boolean skippableBeforeCode = trimmed.isEmpty() || isCommentLine(trimmed);
             if (headerLine) {
@@ -164,8 +300,19 @@ final class AiCompletionContextBuilder {
                 break;
             }
             position = lineEnd < text.length() ? lineEnd + 1 : lineEnd;
+            scanEnd = position;
+        }
+        return new HeaderRange(sawHeaderLine ? headerEnd : 0, scanEnd);
+    }
+
+    private static String stripLine(CharSequence text, int start, int end) {
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
         }
-        return sawHeaderLine ? headerEnd : 0;
+        return text.subSequence(start, Math.min(end, start + MAX_HEADER_LINE_CHARS)).toString();
     }
 
     private static boolean isHeaderLine(String line) {
@@ -189,20 +336,44 @@ final class AiCompletionContextBuilder {
             || line.startsWith("--");
     }
 
-    private static String takeHeadByLine(String text, int maxChars) {
-        if (text.length() <= maxChars) {
-            return text;
-        }
-        int end = text.lastIndexOf('\n', maxChars);
-        if (end < maxChars / 2) {
-            end = maxChars;
+    private record ContextSlices(String prefix, String suffix, PromptTokens tokens, int retrievalChars) {
+    }
+
+    /**
+     * headerEnd 为头部结束位置；scanEnd 为扫描实际读到的位置，之后的编辑不会改变扫描结果。
+     */
+    private record HeaderRange(int headerEnd, int scanEnd) {
+    }
+
+    record Context(
+        String systemPrompt,
+        String userPrompt,
+        String filePath,
+        String fimPrefix,
+        String fimSuffix,
+        PromptTokens tokens,
+        int retrievalChars
+    ) {
+    }
+
+    /**
+     * 本次请求上下文各部分按所选分词器计得的 token 数。
+     */
+    record PromptTokens(int header, int prefix, int suffix, int retrieval) {
+        int total() {
+            return header + prefix + suffix + retrieval;
         }
-        return text.substring(0, end).stripTrailing();
     }
 
-    private record ContextSlices(String prefix, String suffix) {
+    private record RetrievalScope(
+        AiCompletionRetrievalService service,
+        String path,
+        String basePath,
+        String commentPrefix
+    ) {
     }
 
-    record Context(String systemPrompt, String userPrompt, String filePath, String fimPrefix, String fimSuffix) {
+    private record RetrievedContext(String text, int tokens) {
+        private static final RetrievedContext EMPTY = new RetrievedContext("", 0);
     }
 }
@@ -0,0 +1,48 @@
+package com.github.mostbean.codingswitch.service;
+
+/**
+ * 补全上下文缓存键使用的 128 位哈希：直接遍历 CharSequence 的指定区间，不截取子串，
+ * 两条相互独立的 64 位通道一次遍历完成，避免 String.hashCode 的 32 位碰撞导致返回错误上下文的补全。
+ */
+final class AiCompletionContextHash {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final long MIX_MULTIPLIER = 0xbf58476d1ce4e5b9L;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private AiCompletionContextHash() {
+    }
+
+    /**
+     * 将 text[start, end) 的 128 位哈希以 32 位十六进制追加到 out。
+     */
+    static void appendHash128(StringBuilder out, CharSequence text, int start, int end) {
+        long first = FNV_OFFSET;
+        long second = GOLDEN_GAMMA;
+        for (int i = start; i < end; i++) {
+            char ch = text.charAt(i);
+            first = (first ^ ch) * FNV_PRIME;
+            second = Long.rotateLeft(second + ch * GOLDEN_GAMMA, 29) * MIX_MULTIPLIER;
+        }
+        int length = end - start;
+        appendHex(out, mix(first ^ length));
+        appendHex(out, mix(second + length));
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private static void appendHex(StringBuilder out, long value) {
+        for (int shift = 60; shift >= 0; shift -= 4) {
+            out.append(HEX_DIGITS[(int) (value >>> shift) & 0xf]);
+        }
+    }
+}
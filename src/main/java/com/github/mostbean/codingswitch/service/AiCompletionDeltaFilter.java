@@ -0,0 +1,30 @@
+package com.github.mostbean.codingswitch.service;
+
+import com.github.mostbean.codingswitch.model.AiCompletionLengthLevel;
+import com.github.mostbean.codingswitch.model.AiCompletionRequest;
+
+/**
+ * 流式补全的增量过滤器：每次只检查新到达的字符，返回可以立即展示的部分。
+ * 非流式结果和缓存结果也经过同一个过滤器，保证两条路径得到相同的文本。
+ */
+interface AiCompletionDeltaFilter {
+
+    String append(String delta);
+
+    /**
+     * 流结束时调用，返回此前为判断而暂缓输出的剩余内容。
+     */
+    String finish();
+
+    static AiCompletionDeltaFilter forRequest(AiCompletionRequest request) {
+        if (request.lengthLevel() == AiCompletionLengthLevel.SINGLE_LINE) {
+            return new AiSingleLineDeltaFilter();
+        }
+        return new AiSuffixEchoDeltaFilter(request.fimSuffix());
+    }
+
+    static String apply(AiCompletionRequest request, String completion) {
+        AiCompletionDeltaFilter filter = forRequest(request);
+        return filter.append(completion) + filter.finish();
+    }
+}
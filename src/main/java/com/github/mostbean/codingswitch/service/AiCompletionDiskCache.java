@@ -0,0 +1,292 @@
+package com.github.mostbean.codingswitch.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32;
+
+/**
+ * 补全结果的磁盘缓存：单个追加写入的日志文件，内存里只保留 键 → 文件位置 的索引，值按需读取。
+ * 每条记录带 CRC，打开时扫描重建索引，遇到写了一半的尾部记录直接截断。
+ * 文件超过上限时只保留最新的一半条目重写，旧条目和被覆盖的条目在重写时丢弃。
+ * 读写都在同一把锁内完成；使用 ReentrantLock 而不是 synchronized，避免文件 IO 钉住虚拟线程。
+ */
+final class AiCompletionDiskCache implements AutoCloseable {
+
+    private static final int MAGIC = 0x43534331;
+    private static final int FILE_HEADER_BYTES = 4;
+    private static final int ENTRY_HEADER_BYTES = 8 + 4 + 4;
+    private static final int ENTRY_TRAILER_BYTES = 4;
+    private static final int MAX_KEY_BYTES = 1024;
+    private static final int MAX_VALUE_BYTES = 64 * 1024;
+
+    private final Path file;
+    private final long maxBytes;
+    private final long expiryMs;
+    private final LongSupplier clock;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Entry> index = new HashMap<>();
+    private FileChannel channel;
+    private long size;
+
+    private AiCompletionDiskCache(Path file, long maxBytes, long expiryMs, LongSupplier clock) {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.expiryMs = expiryMs;
+        this.clock = clock;
+    }
+
+    static AiCompletionDiskCache open(Path file, long maxBytes, long expiryMs) throws IOException {
+        return open(file, maxBytes, expiryMs, System::currentTimeMillis);
+    }
+
+    static AiCompletionDiskCache open(Path file, long maxBytes, long expiryMs, LongSupplier clock) throws IOException {
+        AiCompletionDiskCache cache = new AiCompletionDiskCache(file, maxBytes, expiryMs, clock);
+        cache.lock.lock();
+        try {
+            cache.load();
+        } finally {
+            cache.lock.unlock();
+        }
+        return cache;
+    }
+
+    String get(String key) throws IOException {
+        lock.lock();
+        try {
+            Entry entry = index.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (clock.getAsLong() - entry.createdAt() > expiryMs) {
+                index.remove(key);
+                return null;
+            }
+            ByteBuffer value = ByteBuffer.allocate(entry.valueLength());
+            readFully(entry.valuePosition(), value);
+            return new String(value.array(), StandardCharsets.UTF_8);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void put(String key, String value) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length > MAX_KEY_BYTES || valueBytes.length > MAX_VALUE_BYTES) {
+            return;
+        }
+        lock.lock();
+        try {
+            append(keyBytes, valueBytes, clock.getAsLong());
+            if (size > maxBytes) {
+                compact();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int entryCount() {
+        lock.lock();
+        try {
+            return index.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long sizeBytes() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void clear() throws IOException {
+        lock.lock();
+        try {
+            index.clear();
+            channel.truncate(FILE_HEADER_BYTES);
+            size = FILE_HEADER_BYTES;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void load() throws IOException {
+        Files.createDirectories(file.getParent());
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long fileSize = channel.size();
+        ByteBuffer magic = ByteBuffer.allocate(FILE_HEADER_BYTES);
+        if (fileSize < FILE_HEADER_BYTES || channel.read(magic, 0) < FILE_HEADER_BYTES || magic.getInt(0) != MAGIC) {
+            resetFile();
+            return;
+        }
+        long position = FILE_HEADER_BYTES;
+        long now = clock.getAsLong();
+        ByteBuffer header = ByteBuffer.allocate(ENTRY_HEADER_BYTES);
+        while (position + ENTRY_HEADER_BYTES <= fileSize) {
+            header.clear();
+            readFully(position, header);
+            long createdAt = header.getLong(0);
+            int keyLength = header.getInt(8);
+            int valueLength = header.getInt(12);
+            long entryEnd = position + ENTRY_HEADER_BYTES + keyLength + valueLength + ENTRY_TRAILER_BYTES;
+            if (keyLength <= 0 || keyLength > MAX_KEY_BYTES
+                || valueLength < 0 || valueLength > MAX_VALUE_BYTES
+                || entryEnd > fileSize) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.allocate(keyLength + valueLength + ENTRY_TRAILER_BYTES);
+            readFully(position + ENTRY_HEADER_BYTES, body);
+            if (checksum(body.array(), keyLength + valueLength) != body.getInt(keyLength + valueLength)) {
+                break;
+            }
+            if (now - createdAt <= expiryMs) {
+                String key = new String(body.array(), 0, keyLength, StandardCharsets.UTF_8);
+                index.put(key, new Entry(position + ENTRY_HEADER_BYTES + keyLength, valueLength, createdAt, entryEnd - position));
+            }
+            position = entryEnd;
+        }
+        // 进程在写入中途退出时只会留下不完整的尾部记录，截掉后继续追加。
+        if (position < fileSize) {
+            channel.truncate(position);
+        }
+        size = position;
+    }
+
+    private void resetFile() throws IOException {
+        channel.truncate(0);
+        ByteBuffer magic = ByteBuffer.allocate(FILE_HEADER_BYTES).putInt(0, MAGIC);
+        writeFully(0, magic);
+        size = FILE_HEADER_BYTES;
+        index.clear();
+    }
+
+    private void append(byte[] key, byte[] value, long createdAt) throws IOException {
+        ByteBuffer record = encode(key, value, createdAt);
+        long position = size;
+        writeFully(position, record);
+        size += record.capacity();
+        index.put(
+            new String(key, StandardCharsets.UTF_8),
+            new Entry(position + ENTRY_HEADER_BYTES + key.length, value.length, createdAt, record.capacity())
+        );
+    }
+
+    /**
+     * 按写入时间从新到旧保留条目，直到占满上限的一半，写入临时文件后原子替换。
+     */
+    private void compact() throws IOException {
+        List<Map.Entry<String, Entry>> entries = new ArrayList<>(index.entrySet());
+        entries.sort(Comparator.comparingLong((Map.Entry<String, Entry> item) -> item.getValue().createdAt()).reversed());
+        long now = clock.getAsLong();
+        long budget = maxBytes / 2;
+        long kept = FILE_HEADER_BYTES;
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Map<String, Entry> compacted = new HashMap<>();
+        try (FileChannel target = FileChannel.open(
+            temp,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE
+        )) {
+            ByteBuffer magic = ByteBuffer.allocate(FILE_HEADER_BYTES).putInt(0, MAGIC);
+            while (magic.hasRemaining()) {
+                target.write(magic);
+            }
+            for (Map.Entry<String, Entry> item : entries) {
+                Entry entry = item.getValue();
+                if (now - entry.createdAt() > expiryMs || kept + entry.recordLength() > budget) {
+                    continue;
+                }
+                ByteBuffer value = ByteBuffer.allocate(entry.valueLength());
+                readFully(entry.valuePosition(), value);
+                byte[] key = item.getKey().getBytes(StandardCharsets.UTF_8);
+                ByteBuffer record = encode(key, value.array(), entry.createdAt());
+                while (record.hasRemaining()) {
+                    target.write(record);
+                }
+                compacted.put(item.getKey(), new Entry(
+                    kept + ENTRY_HEADER_BYTES + key.length,
+                    entry.valueLength(),
+                    entry.createdAt(),
+                    entry.recordLength()
+                ));
+                kept += entry.recordLength();
+            }
+            target.force(false);
+        }
+        channel.close();
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index.clear();
+        index.putAll(compacted);
+        size = kept;
+    }
+
+    private static ByteBuffer encode(byte[] key, byte[] value, long createdAt) {
+        ByteBuffer record = ByteBuffer.allocate(ENTRY_HEADER_BYTES + key.length + value.length + ENTRY_TRAILER_BYTES);
+        record.putLong(createdAt).putInt(key.length).putInt(value.length).put(key).put(value);
+        CRC32 crc = new CRC32();
+        crc.update(key);
+        crc.update(value);
+        record.putInt((int) crc.getValue());
+        return record.flip();
+    }
+
+    private static int checksum(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+
+    private void readFully(long position, ByteBuffer buffer) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset);
+            if (read < 0) {
+                throw new IOException("补全缓存文件意外结束");
+            }
+            offset += read;
+        }
+    }
+
+    private void writeFully(long position, ByteBuffer buffer) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer, offset);
+        }
+    }
+
+    /**
+     * recordLength 为整条记录（头、键、值、CRC）在文件中占用的字节数。
+     */
+    private record Entry(long valuePosition, int valueLength, long createdAt, long recordLength) {
+    }
+}
@@ -0,0 +1,176 @@
+package com.github.mostbean.codingswitch.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 同一补全上下文的单次请求：第一个请求方发起网络流，之后到达的请求方订阅同一条流，
+ * 先补发已产生的内容再接收后续增量。所有订阅方都退出后才取消底层请求。
+ * 回调会等待读操作，因此只在锁内记录文本和订阅列表，释放锁后再派发：每个订阅方记住已派发的位置，
+ * 由各自的派发锁保证增量按顺序送达；退出订阅只需短暂持有流的锁，不会在 EDT 上等待正在派发的回调。
+ */
+final class AiCompletionFlight {
+
+    private final AiCompletionCancellation upstream = new AiCompletionCancellation();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final StringBuilder text = new StringBuilder();
+    private final List<Subscription> subscriptions = new ArrayList<>();
+    private boolean finished;
+    private AiCompletionService.CompletionStatus status;
+    private IOException failure;
+
+    /**
+     * 底层网络请求的取消句柄，在所有订阅方都退出或请求未成功结束时触发，挂在请求上的备选随之取消。
+     */
+    AiCompletionCancellation upstream() {
+        return upstream;
+    }
+
+    /**
+     * 订阅这条流；已产生的内容会立即补发，流已结束时订阅直接处于完成状态。
+     */
+    Subscription join(Consumer<String> onDelta) {
+        Subscription subscription = new Subscription(onDelta);
+        lock.lock();
+        try {
+            if (finished) {
+                subscription.released.countDown();
+            } else {
+                subscriptions.add(subscription);
+            }
+        } finally {
+            lock.unlock();
+        }
+        subscription.deliver();
+        return subscription;
+    }
+
+    void publish(String delta) {
+        List<Subscription> targets;
+        lock.lock();
+        try {
+            if (finished || delta == null || delta.isEmpty()) {
+                return;
+            }
+            text.append(delta);
+            targets = List.copyOf(subscriptions);
+        } finally {
+            lock.unlock();
+        }
+        for (Subscription subscription : targets) {
+            subscription.deliver();
+        }
+    }
+
+    void complete(AiCompletionService.CompletionStatus status) {
+        finish(status, null);
+    }
+
+    void fail(IOException failure) {
+        finish(null, failure);
+    }
+
+    private void finish(AiCompletionService.CompletionStatus status, IOException failure) {
+        lock.lock();
+        try {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            this.status = status;
+            this.failure = failure;
+            for (Subscription subscription : subscriptions) {
+                subscription.released.countDown();
+            }
+            subscriptions.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void leave(Subscription subscription) {
+        boolean cancelUpstream;
+        lock.lock();
+        try {
+            if (!subscriptions.remove(subscription)) {
+                return;
+            }
+            subscription.left = true;
+            subscription.released.countDown();
+            cancelUpstream = subscriptions.isEmpty() && !finished;
+        } finally {
+            lock.unlock();
+        }
+        if (cancelUpstream) {
+            upstream.cancel();
+        }
+    }
+
+    final class Subscription {
+        private final Consumer<String> onDelta;
+        private final CountDownLatch released = new CountDownLatch(1);
+        private final ReentrantLock delivery = new ReentrantLock();
+        private boolean left;
+        private int delivered;
+
+        private Subscription(Consumer<String> onDelta) {
+            this.onDelta = onDelta;
+        }
+
+        /**
+         * 把尚未派发的文本交给回调；回调期间不持有流的锁，派发锁保证同一订阅方的增量不乱序。
+         */
+        private void deliver() {
+            delivery.lock();
+            try {
+                while (true) {
+                    String pending;
+                    lock.lock();
+                    try {
+                        if (left || delivered >= text.length()) {
+                            return;
+                        }
+                        pending = text.substring(delivered);
+                        delivered = text.length();
+                    } finally {
+                        lock.unlock();
+                    }
+                    onDelta.accept(pending);
+                }
+            } finally {
+                delivery.unlock();
+            }
+        }
+
+        /**
+         * 退出订阅，不再接收增量；若没有其他订阅方则取消底层请求。
+         */
+        void leave() {
+            AiCompletionFlight.this.leave(this);
+        }
+
+        /**
+         * 等待流结束或本订阅退出。流结束时返回发起方给出的最终状态，提前退出时返回 null；
+         * 发起方请求失败时抛出同一异常。
+         */
+        AiCompletionService.CompletionStatus await() throws IOException, InterruptedException {
+            released.await();
+            lock.lock();
+            try {
+                if (left) {
+                    return null;
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+                return status;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
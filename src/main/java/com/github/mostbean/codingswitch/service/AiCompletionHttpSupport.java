@@ -3,32 +3,129 @@ package com.github.mostbean.codingswitch.service;
 import com.github.mostbean.codingswitch.model.AiModelProfile;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Map;
-import java.util.function.Consumer;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 
 final class AiCompletionHttpSupport {
 
+    private static final long PREWARM_INTERVAL_MS = 30_000;
+    private static final int PREWARM_TIMEOUT_SECONDS = 5;
+    private static final int SSE_READ_BUFFER_SIZE = 8192;
+
+    /**
+     * 按模型配置复用 HttpClient，使补全请求共享连接池，避免每次按键都重新握手。
+     */
+    private static final Map<String, PooledClient> SHARED_CLIENTS = new ConcurrentHashMap<>();
+    private static final Map<String, Long> LAST_PREWARM_MS = new ConcurrentHashMap<>();
+
     private AiCompletionHttpSupport() {
     }
 
     static HttpClient createClient(AiModelProfile profile) {
         return HttpClient.newBuilder()
-            .version(HttpClient.Version.HTTP_1_1)
+            .version(preferredVersion(profile.getBaseUrl()))
             .followRedirects(HttpClient.Redirect.NORMAL)
             .connectTimeout(Duration.ofSeconds(profile.getTimeoutSeconds()))
             .build();
     }
 
+    static HttpClient sharedClient(AiModelProfile profile) {
+        String key = clientKey(profile);
+        String signature = clientSignature(profile);
+        PooledClient pooled = SHARED_CLIENTS.compute(key, (ignored, existing) -> {
+            if (existing != null && existing.signature().equals(signature)) {
+                return existing;
+            }
+            if (existing != null) {
+                existing.client().shutdown();
+            }
+            return new PooledClient(signature, createClient(profile));
+        });
+        return pooled.client();
+    }
+
+    /**
+     * 配置变更后释放已删除或连接参数已变化的客户端，正在进行的请求会继续完成。
+     */
+    static void retainClients(Collection<AiModelProfile> profiles) {
+        Set<String> signatures = new HashSet<>();
+        if (profiles != null) {
+            for (AiModelProfile profile : profiles) {
+                if (profile != null) {
+                    signatures.add(clientKey(profile) + "\n" + clientSignature(profile));
+                }
+            }
+        }
+        SHARED_CLIENTS.entrySet().removeIf(entry -> {
+            if (signatures.contains(entry.getKey() + "\n" + entry.getValue().signature())) {
+                return false;
+            }
+            entry.getValue().client().shutdown();
+            LAST_PREWARM_MS.remove(entry.getKey());
+            return true;
+        });
+    }
+
+    /**
+     * 预先建立到网关的连接（TCP/TLS 以及 HTTP/2 协商），结果直接丢弃。
+     */
+    static void prewarm(AiModelProfile profile) {
+        if (profile == null) {
+            return;
+        }
+        URI uri;
+        try {
+            uri = URI.create(profile.getBaseUrl());
+        } catch (IllegalArgumentException ignored) {
+            return;
+        }
+        if (uri.getScheme() == null || uri.getHost() == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        String key = clientKey(profile);
+        Long last = LAST_PREWARM_MS.get(key);
+        if (last != null && now - last < PREWARM_INTERVAL_MS) {
+            return;
+        }
+        LAST_PREWARM_MS.put(key, now);
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(uri)
+            .timeout(Duration.ofSeconds(Math.min(PREWARM_TIMEOUT_SECONDS, profile.getTimeoutSeconds())))
+            .method("HEAD", HttpRequest.BodyPublishers.noBody())
+            .build();
+        sharedClient(profile).sendAsync(request, HttpResponse.BodyHandlers.discarding())
+            .exceptionally(ignored -> null);
+    }
+
+    private static HttpClient.Version preferredVersion(String baseUrl) {
+        // 明文 HTTP 下的 h2c 升级会被部分本地模型服务和代理错误处理，只对 HTTPS 通过 ALPN 协商 HTTP/2。
+        String value = baseUrl == null ? "" : baseUrl.trim().toLowerCase();
+        return value.startsWith("https://") ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1;
+    }
+
+    private static String clientKey(AiModelProfile profile) {
+        return profile.getId() == null ? "" : profile.getId();
+    }
+
+    private static String clientSignature(AiModelProfile profile) {
+        return profile.getBaseUrl() + "\n" + profile.getTimeoutSeconds() + "\n" + profile.getHeadersJson();
+    }
+
     static String postJson(HttpClient client, AiModelProfile profile, String url, Map<String, String> headers, String body)
         throws IOException, InterruptedException {
         HttpRequest.Builder builder = HttpRequest.newBuilder()
@@ -60,7 +157,8 @@ final class AiCompletionHttpSupport {
         String url,
         Map<String, String> headers,
         String body,
-        Consumer<String> onEvent
+        AiCompletionCancellation cancellation,
+        AiSseFramer.EventHandler onEvent
     ) throws IOException, InterruptedException {
         HttpRequest.Builder builder = HttpRequest.newBuilder()
             .uri(URI.create(url))
@@ -73,24 +171,48 @@ final class AiCompletionHttpSupport {
             }
         }
         addCustomHeaders(builder, profile.getHeadersJson());
+        if (cancellation.isCancelled()) {
+            return;
+        }
+        CompletableFuture<HttpResponse<InputStream>> future = client.sendAsync(
+            builder.POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8)).build(),
+            HttpResponse.BodyHandlers.ofInputStream()
+        );
+        cancellation.onCancel(() -> future.cancel(true));
         HttpResponse<InputStream> response;
         try {
-            response = client.send(
-                builder.POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8)).build(),
-                HttpResponse.BodyHandlers.ofInputStream()
-            );
-        } catch (IOException ex) {
-            throw rethrowAsNetworkError(ex, url);
+            response = future.get();
+        } catch (CancellationException ex) {
+            return;
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            throw ex;
+        } catch (ExecutionException ex) {
+            if (cancellation.isCancelled()) {
+                return;
+            }
+            Throwable cause = ex.getCause() == null ? ex : ex.getCause();
+            IOException failure = cause instanceof IOException io ? io : new IOException(cause.getMessage(), cause);
+            throw rethrowAsNetworkError(failure, url);
+        }
+        InputStream responseBody = response.body();
+        cancellation.onCancel(() -> closeQuietly(responseBody));
+        if (cancellation.isCancelled()) {
+            closeQuietly(responseBody);
+            return;
         }
         int statusCode = response.statusCode();
         if (statusCode < 200 || statusCode >= 300) {
-            String responseBody = new String(response.body().readAllBytes(), StandardCharsets.UTF_8);
-            String detail = responseBody.length() > 240 ? responseBody.substring(0, 240) + "..." : responseBody;
+            String errorBody = new String(responseBody.readAllBytes(), StandardCharsets.UTF_8);
+            String detail = errorBody.length() > 240 ? errorBody.substring(0, 240) + "..." : errorBody;
             throw new IOException("HTTP " + statusCode + (detail.isBlank() ? "" : ": " + detail));
         }
         try {
-            readServerSentEvents(response.body(), onEvent);
+            readServerSentEvents(responseBody, cancellation, onEvent);
         } catch (IOException ex) {
+            if (cancellation.isCancelled()) {
+                return;
+            }
             throw rethrowAsNetworkError(ex, url);
         }
     }
@@ -101,16 +223,17 @@ final class AiCompletionHttpSupport {
         String url,
         Map<String, String> headers,
         String body,
-        Consumer<String> onEvent
+        AiCompletionCancellation cancellation,
+        AiSseFramer.EventHandler onEvent
     ) throws IOException, InterruptedException {
         IOException last = null;
         for (int attempt = 0; attempt < 2; attempt++) {
             try {
-                postJsonStream(client, profile, url, headers, body, onEvent);
+                postJsonStream(client, profile, url, headers, body, cancellation, onEvent);
                 return;
             } catch (IOException ex) {
                 last = ex;
-                if (attempt == 1 || !isRetryableNetworkError(ex)) {
+                if (attempt == 1 || cancellation.isCancelled() || !isRetryableNetworkError(ex)) {
                     throw ex;
                 }
             }
@@ -197,37 +320,33 @@ final class AiCompletionHttpSupport {
         }
     }
 
-    private static void readServerSentEvents(InputStream inputStream, Consumer<String> onEvent) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
-            StringBuilder data = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.isEmpty()) {
-                    emitEvent(data, onEvent);
-                    continue;
-                }
-                if (line.startsWith(":")) {
-                    continue;
-                }
-                if (line.startsWith("data:")) {
-                    if (data.length() > 0) {
-                        data.append('\n');
-                    }
-                    data.append(line.substring("data:".length()).trim());
-                }
+    private static void readServerSentEvents(
+        InputStream inputStream,
+        AiCompletionCancellation cancellation,
+        AiSseFramer.EventHandler onEvent
+    ) throws IOException {
+        AiSseFramer framer = new AiSseFramer(data -> {
+            if (!cancellation.isCancelled()) {
+                onEvent.onEvent(data);
+            }
+        });
+        byte[] buffer = new byte[SSE_READ_BUFFER_SIZE];
+        try (inputStream) {
+            int read;
+            while (!cancellation.isCancelled() && (read = inputStream.read(buffer)) >= 0) {
+                framer.feed(buffer, 0, read);
+            }
+            if (!cancellation.isCancelled()) {
+                framer.finish();
             }
-            emitEvent(data, onEvent);
         }
     }
 
-    private static void emitEvent(StringBuilder data, Consumer<String> onEvent) {
-        if (data.isEmpty()) {
-            return;
-        }
-        String event = data.toString();
-        data.setLength(0);
-        if (!"[DONE]".equals(event)) {
-            onEvent.accept(event);
+    private static void closeQuietly(InputStream inputStream) {
+        try {
+            inputStream.close();
+        } catch (IOException ignored) {
+            // 关闭只用于中断读取，异常无需处理。
         }
     }
 
@@ -237,4 +356,7 @@ final class AiCompletionHttpSupport {
         }
         return value.replaceAll("/+$", "");
     }
+
+    private record PooledClient(String signature, HttpClient client) {
+    }
 }
@@ -0,0 +1,233 @@
+package com.github.mostbean.codingswitch.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * 分段加锁的 LRU 缓存：每段是按访问顺序排列的 LinkedHashMap，按字符权重而不是条目数淘汰，
+ * 不同文件/项目的请求落在不同分段上，避免在同一把锁上串行。
+ */
+final class AiCompletionLruCache<V> {
+
+    private static final int DEFAULT_SEGMENT_COUNT = 8;
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final Segment<V>[] segments;
+    private final long expiryMs;
+    private final ToIntFunction<V> weigher;
+    private final LongSupplier clock;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    AiCompletionLruCache(long maxWeight, long expiryMs, ToIntFunction<V> weigher) {
+        this(maxWeight, expiryMs, weigher, DEFAULT_SEGMENT_COUNT, System::currentTimeMillis);
+    }
+
+    @SuppressWarnings("unchecked")
+    AiCompletionLruCache(
+        long maxWeight,
+        long expiryMs,
+        ToIntFunction<V> weigher,
+        int segmentCount,
+        LongSupplier clock
+    ) {
+        this.expiryMs = expiryMs;
+        this.weigher = weigher;
+        this.clock = clock;
+        int count = Integer.highestOneBit(Math.max(1, segmentCount));
+        this.segments = new Segment[count];
+        long segmentWeight = Math.max(1, maxWeight / count);
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment<>(segmentWeight);
+        }
+    }
+
+    V get(String key) {
+        Segment<V> segment = segmentFor(key);
+        long now = clock.getAsLong();
+        synchronized (segment) {
+            Node<V> node = segment.entries.get(key);
+            if (node == null) {
+                misses.increment();
+                return null;
+            }
+            if (isExpired(node, now)) {
+                segment.remove(key);
+                expirations.increment();
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return node.value();
+        }
+    }
+
+    void put(String key, V value) {
+        if (key == null || value == null) {
+            return;
+        }
+        int weight = weigh(key, value);
+        Segment<V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.remove(key);
+            insert(segment, key, value, weight);
+        }
+    }
+
+    /**
+     * 在分段锁内根据当前值计算新值并写回，返回 null 时移除条目；读到的旧值不计入命中统计，
+     * 过期条目按不存在处理。remapping 持有分段锁执行，不能再访问本缓存。
+     */
+    void compute(String key, UnaryOperator<V> remapping) {
+        Segment<V> segment = segmentFor(key);
+        long now = clock.getAsLong();
+        synchronized (segment) {
+            Node<V> node = segment.remove(key);
+            if (node != null && isExpired(node, now)) {
+                expirations.increment();
+                node = null;
+            }
+            V value = remapping.apply(node == null ? null : node.value());
+            if (value != null) {
+                insert(segment, key, value, weigh(key, value));
+            }
+        }
+    }
+
+    /**
+     * 移除条目并返回其值，条目不存在或已过期时返回 null；不计入命中统计。
+     */
+    V remove(String key) {
+        Segment<V> segment = segmentFor(key);
+        long now = clock.getAsLong();
+        synchronized (segment) {
+            Node<V> node = segment.remove(key);
+            if (node == null) {
+                return null;
+            }
+            if (isExpired(node, now)) {
+                expirations.increment();
+                return null;
+            }
+            return node.value();
+        }
+    }
+
+    void removeIf(Predicate<String> keyFilter) {
+        for (Segment<V> segment : segments) {
+            synchronized (segment) {
+                Iterator<Map.Entry<String, Node<V>>> iterator = segment.entries.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Map.Entry<String, Node<V>> entry = iterator.next();
+                    if (keyFilter.test(entry.getKey())) {
+                        iterator.remove();
+                        segment.weight -= entry.getValue().weight();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 清理已过期条目，由后台定时任务调用，避免过期条目一直占用权重直到被再次访问。
+     */
+    void sweepExpired() {
+        long now = clock.getAsLong();
+        for (Segment<V> segment : segments) {
+            synchronized (segment) {
+                Iterator<Node<V>> iterator = segment.entries.values().iterator();
+                while (iterator.hasNext()) {
+                    Node<V> node = iterator.next();
+                    if (isExpired(node, now)) {
+                        iterator.remove();
+                        segment.weight -= node.weight();
+                        expirations.increment();
+                    }
+                }
+            }
+        }
+    }
+
+    void clear() {
+        for (Segment<V> segment : segments) {
+            synchronized (segment) {
+                segment.entries.clear();
+                segment.weight = 0;
+            }
+        }
+    }
+
+    Stats stats() {
+        int size = 0;
+        long weight = 0;
+        for (Segment<V> segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+                weight += segment.weight;
+            }
+        }
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), expirations.sum(), size, weight);
+    }
+
+    private void insert(Segment<V> segment, String key, V value, int weight) {
+        if (weight > segment.maxWeight) {
+            evictions.increment();
+            return;
+        }
+        segment.entries.put(key, new Node<>(value, weight, clock.getAsLong()));
+        segment.weight += weight;
+        Iterator<Node<V>> iterator = segment.entries.values().iterator();
+        while (segment.weight > segment.maxWeight && iterator.hasNext()) {
+            Node<V> eldest = iterator.next();
+            iterator.remove();
+            segment.weight -= eldest.weight();
+            evictions.increment();
+        }
+    }
+
+    private boolean isExpired(Node<V> node, long now) {
+        return now - node.createdAt() > expiryMs;
+    }
+
+    private int weigh(String key, V value) {
+        return ENTRY_OVERHEAD + 2 * key.length() + Math.max(0, weigher.applyAsInt(value));
+    }
+
+    private Segment<V> segmentFor(String key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return segments[hash & (segments.length - 1)];
+    }
+
+    record Stats(long hits, long misses, long evictions, long expirations, int size, long weight) {
+    }
+
+    private record Node<V>(V value, int weight, long createdAt) {
+    }
+
+    private static final class Segment<V> {
+        private final LinkedHashMap<String, Node<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private final long maxWeight;
+        private long weight;
+
+        private Segment(long maxWeight) {
+            this.maxWeight = maxWeight;
+        }
+
+        private Node<V> remove(String key) {
+            Node<V> removed = entries.remove(key);
+            if (removed != null) {
+                weight -= removed.weight();
+            }
+            return removed;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.github.mostbean.codingswitch.service;
+
+import com.github.mostbean.codingswitch.model.AiModelProfile;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内的行内补全指标：按模型配置统计请求结果分布、缓存命中、异常、建议的展示与接受，
+ * 以及首 token 与完整请求耗时直方图。记录全部是无锁累加，只在内存中保留，重启后清空。
+ */
+@Service(Service.Level.APP)
+public final class AiCompletionMetrics {
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    public enum CacheHit {
+        EXACT,
+        CONTEXT,
+        TYPE_THROUGH,
+        PERSISTENT,
+        NEGATIVE
+    }
+
+    public enum SuggestionEvent {
+        SHOWN,
+        ACCEPTED,
+        ACCEPTED_LINE,
+        REJECTED
+    }
+
+    private final Map<String, ProfileMetrics> profiles = new ConcurrentHashMap<>();
+    private volatile long startedAt = System.currentTimeMillis();
+
+    public static AiCompletionMetrics getInstance() {
+        return ApplicationManager.getApplication().getService(AiCompletionMetrics.class);
+    }
+
+    void recordResult(AiModelProfile profile, AiCompletionService.CompletionStatus status) {
+        ProfileMetrics metrics = metrics(profile);
+        metrics.requests.increment();
+        metrics.statuses[status.ordinal()].increment();
+    }
+
+    void recordError(AiModelProfile profile) {
+        ProfileMetrics metrics = metrics(profile);
+        metrics.requests.increment();
+        metrics.errors.increment();
+    }
+
+    void recordCacheHit(AiModelProfile profile, CacheHit hit) {
+        metrics(profile).cacheHits[hit.ordinal()].increment();
+    }
+
+    void recordFirstToken(AiModelProfile profile, long latencyMs) {
+        metrics(profile).firstToken.record(latencyMs);
+    }
+
+    void recordTotalLatency(AiModelProfile profile, long latencyMs) {
+        metrics(profile).total.record(latencyMs);
+    }
+
+    void recordSuggestion(AiModelProfile profile, SuggestionEvent event) {
+        metrics(profile).suggestions[event.ordinal()].increment();
+    }
+
+    public List<ProfileSnapshot> snapshot() {
+        List<ProfileSnapshot> snapshots = new ArrayList<>();
+        profiles.forEach((profileId, metrics) -> snapshots.add(metrics.snapshot(profileId)));
+        snapshots.sort(Comparator.comparing(ProfileSnapshot::profileName, String.CASE_INSENSITIVE_ORDER));
+        return snapshots;
+    }
+
+    public void reset() {
+        profiles.clear();
+        startedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * 导出当前指标、缓存统计、对冲胜出次数、触发闸门统计和最近一次上下文 token 数，用于对比网关和调整补全参数。
+     */
+    public String exportJson() {
+        JsonObject root = new JsonObject();
+        root.addProperty("startedAt", startedAt);
+        root.addProperty("exportedAt", System.currentTimeMillis());
+        JsonArray profileArray = new JsonArray();
+        for (ProfileSnapshot snapshot : snapshot()) {
+            profileArray.add(toJson(snapshot));
+        }
+        root.add("profiles", profileArray);
+
+        JsonObject caches = new JsonObject();
+        AiCompletionCache.getInstance().stats().forEach((name, stats) -> caches.add(name, GSON.toJsonTree(stats)));
+        root.add("caches", caches);
+        AiCompletionService completionService = AiCompletionService.getInstance();
+        JsonObject hedgeWins = new JsonObject();
+        completionService.getHedgeWins().forEach(hedgeWins::addProperty);
+        root.add("hedgeWins", hedgeWins);
+        root.add("triggerGate", GSON.toJsonTree(AiInlineCompletionService.getInstance().getTriggerGateStats()));
+        AiCompletionContextBuilder.PromptTokens tokens = completionService.getLastPromptTokens();
+        if (tokens != null) {
+            JsonObject promptTokens = GSON.toJsonTree(tokens).getAsJsonObject();
+            promptTokens.addProperty("total", tokens.total());
+            root.add("lastPromptTokens", promptTokens);
+        }
+        return GSON.toJson(root);
+    }
+
+    private static JsonObject toJson(ProfileSnapshot snapshot) {
+        JsonObject object = new JsonObject();
+        object.addProperty("profileId", snapshot.profileId());
+        object.addProperty("profileName", snapshot.profileName());
+        object.addProperty("requests", snapshot.requests());
+        object.addProperty("errors", snapshot.errors());
+        object.add("statuses", GSON.toJsonTree(snapshot.statuses()));
+        object.add("cacheHits", GSON.toJsonTree(snapshot.cacheHits()));
+        object.add("suggestions", GSON.toJsonTree(snapshot.suggestions()));
+        object.addProperty("acceptRate", snapshot.acceptRate());
+        object.add("firstTokenMs", GSON.toJsonTree(snapshot.firstToken()));
+        object.add("totalMs", GSON.toJsonTree(snapshot.total()));
+        return object;
+    }
+
+    private ProfileMetrics metrics(AiModelProfile profile) {
+        String profileId = profile == null ? "" : profile.getId();
+        ProfileMetrics metrics = profiles.computeIfAbsent(profileId, ignored -> new ProfileMetrics());
+        if (profile != null) {
+            metrics.profileName = profile.getName();
+        }
+        return metrics;
+    }
+
+    private static final class ProfileMetrics {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder[] statuses = adders(AiCompletionService.CompletionStatus.values().length);
+        private final LongAdder[] cacheHits = adders(CacheHit.values().length);
+        private final LongAdder[] suggestions = adders(SuggestionEvent.values().length);
+        private final AiLatencyHistogram firstToken = new AiLatencyHistogram();
+        private final AiLatencyHistogram total = new AiLatencyHistogram();
+        private volatile String profileName = "";
+
+        private ProfileSnapshot snapshot(String profileId) {
+            return new ProfileSnapshot(
+                profileId,
+                profileName,
+                requests.sum(),
+                errors.sum(),
+                sums(statuses, AiCompletionService.CompletionStatus.class),
+                sums(cacheHits, CacheHit.class),
+                sums(suggestions, SuggestionEvent.class),
+                LatencySummary.of(firstToken),
+                LatencySummary.of(total)
+            );
+        }
+
+        private static LongAdder[] adders(int size) {
+            LongAdder[] adders = new LongAdder[size];
+            for (int i = 0; i < size; i++) {
+                adders[i] = new LongAdder();
+            }
+            return adders;
+        }
+
+        private static <E extends Enum<E>> Map<E, Long> sums(LongAdder[] adders, Class<E> type) {
+            Map<E, Long> sums = new EnumMap<>(type);
+            for (E key : type.getEnumConstants()) {
+                sums.put(key, adders[key.ordinal()].sum());
+            }
+            return sums;
+        }
+    }
+
+    /**
+     * 单个模型配置的指标快照，空 profileId 表示请求在选定模型前就被跳过。
+     */
+    public record ProfileSnapshot(
+        String profileId,
+        String profileName,
+        long requests,
+        long errors,
+        Map<AiCompletionService.CompletionStatus, Long> statuses,
+        Map<CacheHit, Long> cacheHits,
+        Map<SuggestionEvent, Long> suggestions,
+        LatencySummary firstToken,
+        LatencySummary total
+    ) {
+        /**
+         * 被接受（整段或逐行）的建议占展示次数的比例，没有展示时返回 -1。
+         */
+        public double acceptRate() {
+            long shown = suggestions.get(SuggestionEvent.SHOWN);
+            if (shown == 0) {
+                return -1;
+            }
+            return (double) (suggestions.get(SuggestionEvent.ACCEPTED) + suggestions.get(SuggestionEvent.ACCEPTED_LINE))
+                / shown;
+        }
+    }
+
+    /**
+     * 耗时摘要，单位毫秒；没有样本时除 count 外均为 -1。
+     */
+    public record LatencySummary(long count, long mean, long p50, long p90, long p99, long max) {
+        private static LatencySummary of(AiLatencyHistogram histogram) {
+            return new LatencySummary(
+                histogram.count(),
+                histogram.mean(),
+                histogram.percentile(0.5),
+                histogram.percentile(0.9),
+                histogram.percentile(0.99),
+                histogram.max()
+            );
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.github.mostbean.codingswitch.service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileEditor.FileEditorManagerListener;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 维护当前项目中已打开和最近编辑文件的片段索引，供补全上下文检索相关代码。
+ * 文档变化只记录待更新文件，索引在后台线程防抖后重建，EDT 上不做切分和哈希。
+ */
+@Service(Service.Level.PROJECT)
+public final class AiCompletionRetrievalService implements Disposable {
+
+    private static final int MAX_INDEXED_FILES = 24;
+    private static final int MAX_INDEXED_FILE_CHARS = 512 * 1024;
+    private static final long UPDATE_DELAY_MS = 400;
+
+    private final Project project;
+    private final AiCompletionSnippetIndex index = new AiCompletionSnippetIndex(MAX_INDEXED_FILES);
+    private final Map<String, ScheduledFuture<?>> pendingUpdates = new ConcurrentHashMap<>();
+    private final AtomicBoolean installed = new AtomicBoolean(false);
+
+    public AiCompletionRetrievalService(Project project) {
+        this.project = project;
+    }
+
+    public static AiCompletionRetrievalService getInstance(Project project) {
+        return project.getService(AiCompletionRetrievalService.class);
+    }
+
+    public void install() {
+        if (!installed.compareAndSet(false, true)) {
+            return;
+        }
+        EditorFactory.getInstance().getEventMulticaster().addDocumentListener(new DocumentListener() {
+            @Override
+            public void documentChanged(@NotNull DocumentEvent event) {
+                VirtualFile file = FileDocumentManager.getInstance().getFile(event.getDocument());
+                if (file != null) {
+                    scheduleUpdate(file);
+                }
+            }
+        }, this);
+        project.getMessageBus().connect(this).subscribe(
+            FileEditorManagerListener.FILE_EDITOR_MANAGER,
+            new FileEditorManagerListener() {
+                @Override
+                public void fileOpened(@NotNull FileEditorManager source, @NotNull VirtualFile file) {
+                    scheduleUpdate(file);
+                }
+            }
+        );
+        for (VirtualFile file : FileEditorManager.getInstance(project).getOpenFiles()) {
+            scheduleUpdate(file);
+        }
+    }
+
+    List<AiCompletionSnippetIndex.Snippet> query(
+        String currentPath,
+        CharSequence text,
+        int start,
+        int end,
+        int maxResults
+    ) {
+        return index.query(currentPath, text, start, end, maxResults);
+    }
+
+    private void scheduleUpdate(VirtualFile file) {
+        if (!AiFeatureSettings.getInstance().getTimingConfig().isCrossFileContextEnabled() || !isIndexable(file)) {
+            return;
+        }
+        String path = file.getPath();
+        ScheduledFuture<?> previous = pendingUpdates.put(
+            path,
+            AppExecutorUtil.getAppScheduledExecutorService().schedule(
+                () -> update(file),
+                UPDATE_DELAY_MS,
+                TimeUnit.MILLISECONDS
+            )
+        );
+        if (previous != null) {
+            previous.cancel(false);
+        }
+    }
+
+    private boolean isIndexable(VirtualFile file) {
+        return file.isValid()
+            && file.isInLocalFileSystem()
+            && !file.isDirectory()
+            && !file.getFileType().isBinary()
+            && file.getLength() <= MAX_INDEXED_FILE_CHARS
+            && ProjectFileIndex.getInstance(project).isInContent(file);
+    }
+
+    private void update(VirtualFile file) {
+        String path = file.getPath();
+        pendingUpdates.remove(path);
+        if (project.isDisposed()) {
+            return;
+        }
+        DocumentSnapshot snapshot = PlatformReadAccess.compute(() -> {
+            if (!file.isValid()) {
+                return null;
+            }
+            Document document = FileDocumentManager.getInstance().getDocument(file);
+            return document == null || document.getTextLength() > MAX_INDEXED_FILE_CHARS
+                ? null
+                : new DocumentSnapshot(document.getImmutableCharSequence(), document.getModificationStamp());
+        });
+        if (snapshot == null) {
+            index.remove(path);
+            return;
+        }
+        index.update(path, snapshot.text(), snapshot.stamp(), System.currentTimeMillis());
+    }
+
+    @Override
+    public void dispose() {
+        pendingUpdates.values().forEach(future -> future.cancel(false));
+        pendingUpdates.clear();
+        index.clear();
+    }
+
+    private record DocumentSnapshot(CharSequence text, long stamp) {
+    }
+}
@@ -8,21 +8,40 @@ import com.github.mostbean.codingswitch.model.AiModelProfile;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.Service;
 import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
 
 @Service(Service.Level.APP)
 public final class AiCompletionService {
 
-    private static final int SUFFIX_ECHO_GUARD_CHARS = 120;
+    private static final int FIRST_TOKEN_SAMPLES = 32;
+    private static final int MAX_ALTERNATES = 4;
 
-    private final Map<String, Long> inFlightCompletionKeys = new ConcurrentHashMap<>();
+    private final Map<String, AiCompletionFlight> flights = new ConcurrentHashMap<>();
+    private volatile AiCompletionContextBuilder.PromptTokens lastPromptTokens;
+    private final AiSpeculativePrefetchBudget prefetchBudget = new AiSpeculativePrefetchBudget();
+    private final Map<String, AiLatencySamples> firstTokenLatencies = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> hedgeWins = new ConcurrentHashMap<>();
     private long lastManualCompletionRequestMs = 0L;
+    private volatile AlternatesSource lastAlternatesSource;
 
     public static AiCompletionService getInstance() {
         return ApplicationManager.getApplication().getService(AiCompletionService.class);
@@ -72,145 +91,524 @@ public final class AiCompletionService {
         String filePath = context.snapshot().context().filePath();
         Optional<String> cached = cache.get(filePath, context.snapshot().caretOffset(), context.snapshot().documentStamp());
         if (cached.isPresent()) {
-            inFlightCompletionKeys.remove(context.inFlightKey());
+            recordSpeculativeHit(cache, filePath, context.snapshot());
             return Optional.ofNullable(normalizeCompletion(context.request(), cached.get()))
                 .filter(value -> !value.isBlank());
         }
-        Optional<String> contextCached = cache.getContext(context.request());
+        Optional<String> contextCached = cache.getContext(context.contextKey());
         if (contextCached.isPresent()) {
             String completion = normalizeCompletion(context.request(), contextCached.get());
             if (completion != null && !completion.isBlank()) {
                 cache.put(filePath, context.snapshot().caretOffset(), context.snapshot().documentStamp(), completion);
-                inFlightCompletionKeys.remove(context.inFlightKey());
+                cache.putTypeThrough(filePath, context.snapshot().caretOffset(), context.request(), completion);
                 return Optional.of(completion);
             }
         }
-        if (cache.isNegativeCached(context.request())) {
-            inFlightCompletionKeys.remove(context.inFlightKey());
+        Optional<String> persisted = cache.getPersistent(context.request(), context.contextKey());
+        if (persisted.isPresent()) {
+            String completion = normalizeCompletion(context.request(), persisted.get());
+            if (completion != null && !completion.isBlank()) {
+                cache.put(filePath, context.snapshot().caretOffset(), context.snapshot().documentStamp(), completion);
+                cache.putContext(context.contextKey(), completion);
+                cache.putTypeThrough(filePath, context.snapshot().caretOffset(), context.request(), completion);
+                return Optional.of(completion);
+            }
+        }
+        Optional<String> typeThrough = cache.getTypeThrough(filePath, context.snapshot().caretOffset(), context.request());
+        if (typeThrough.isPresent()) {
+            String completion = normalizeCompletion(context.request(), typeThrough.get());
+            if (completion != null && !completion.isBlank()) {
+                cache.put(filePath, context.snapshot().caretOffset(), context.snapshot().documentStamp(), completion);
+                return Optional.of(completion);
+            }
+        }
+        if (cache.isNegativeCached(context.contextKey())) {
             return Optional.empty();
         }
 
-        try {
-            String completion = createClient(context.profile().getFormat()).complete(context.request());
-            completion = normalizeCompletion(context.request(), completion);
-            if (completion == null || completion.isBlank()) {
-                cache.putNegative(context.request());
-                return Optional.empty();
-            }
-            if (!isStillValid(editor, context.snapshot())) {
-                return Optional.empty();
-            }
-            cache.put(filePath, context.snapshot().caretOffset(), context.snapshot().documentStamp(), completion);
-            cache.putContext(context.request(), completion);
-            return Optional.of(completion);
-        } finally {
-            inFlightCompletionKeys.remove(context.inFlightKey());
+        String completion = createClient(context.profile().getFormat()).complete(context.request());
+        completion = normalizeCompletion(context.request(), completion);
+        if (completion == null || completion.isBlank()) {
+            cache.putNegative(context.contextKey());
+            return Optional.empty();
         }
+        if (!isStillValid(editor, context.snapshot())) {
+            return Optional.empty();
+        }
+        cache.put(filePath, context.snapshot().caretOffset(), context.snapshot().documentStamp(), completion);
+        cache.putContext(context.contextKey(), completion);
+        cache.putPersistent(context.request(), context.contextKey(), completion);
+        cache.putTypeThrough(filePath, context.snapshot().caretOffset(), context.request(), completion);
+        return Optional.of(completion);
     }
 
     public CompletionResult streamComplete(
         Project project,
         Editor editor,
         AiCompletionTriggerMode triggerMode,
+        AiCompletionCancellation cancellation,
         Consumer<String> onDelta
+    ) throws IOException, InterruptedException {
+        return streamComplete(project, editor, triggerMode, cancellation, onDelta, false);
+    }
+
+    /**
+     * 接受补全后为新光标位置投机预取下一段补全，结果只写入缓存，受预取预算限制。
+     */
+    public CompletionResult prefetch(Project project, Editor editor, AiCompletionCancellation cancellation)
+        throws IOException, InterruptedException {
+        return streamComplete(
+            project,
+            editor,
+            AiCompletionTriggerMode.AUTO,
+            cancellation,
+            ignored -> {
+            },
+            true
+        );
+    }
+
+    private CompletionResult streamComplete(
+        Project project,
+        Editor editor,
+        AiCompletionTriggerMode triggerMode,
+        AiCompletionCancellation cancellation,
+        Consumer<String> onDelta,
+        boolean speculative
     ) throws IOException, InterruptedException {
         CompletionPreparation preparation = prepareCompletionRequest(project, editor, triggerMode);
         CompletionRequestContext context = preparation.context();
+        // 投机预取不计入请求指标，只记录它的首 token 耗时。
+        AiCompletionMetrics metrics = speculative ? null : AiCompletionMetrics.getInstance();
         if (context == null) {
+            if (metrics != null) {
+                metrics.recordResult(AiFeatureSettings.getInstance().getActiveCompletionProfile(), preparation.status());
+            }
             return CompletionResult.skipped(preparation.status(), preparation.message());
         }
+        try {
+            CompletionResult result = streamComplete(editor, triggerMode, cancellation, onDelta, speculative, context);
+            if (metrics != null) {
+                metrics.recordResult(context.profile(), result.status());
+            }
+            return result;
+        } catch (IOException | InterruptedException | RuntimeException ex) {
+            if (metrics != null) {
+                metrics.recordError(context.profile());
+            }
+            throw ex;
+        }
+    }
 
+    private CompletionResult streamComplete(
+        Editor editor,
+        AiCompletionTriggerMode triggerMode,
+        AiCompletionCancellation cancellation,
+        Consumer<String> onDelta,
+        boolean speculative,
+        CompletionRequestContext context
+    ) throws IOException, InterruptedException {
         AiCompletionCache cache = AiCompletionCache.getInstance();
         String filePath = context.snapshot().context().filePath();
         Optional<String> cached = cache.get(filePath, context.snapshot().caretOffset(), context.snapshot().documentStamp());
         if (cached.isPresent()) {
             String completion = normalizeCompletion(context.request(), cached.get());
             if (completion != null && !completion.isBlank()) {
+                if (!speculative) {
+                    recordSpeculativeHit(cache, filePath, context.snapshot());
+                    recordCacheHit(context.profile(), AiCompletionMetrics.CacheHit.EXACT);
+                }
                 onDelta.accept(completion);
-                inFlightCompletionKeys.remove(context.inFlightKey());
                 return CompletionResult.success();
             }
-            inFlightCompletionKeys.remove(context.inFlightKey());
             return CompletionResult.skipped(CompletionStatus.NO_RESULT);
         }
-        Optional<String> contextCached = cache.getContext(context.request());
+        Optional<String> contextCached = cache.getContext(context.contextKey());
         if (contextCached.isPresent()) {
             String completion = normalizeCompletion(context.request(), contextCached.get());
             if (completion != null && !completion.isBlank()) {
                 cache.put(filePath, context.snapshot().caretOffset(), context.snapshot().documentStamp(), completion);
+                cache.putTypeThrough(filePath, context.snapshot().caretOffset(), context.request(), completion);
+                if (!speculative) {
+                    recordCacheHit(context.profile(), AiCompletionMetrics.CacheHit.CONTEXT);
+                }
+                onDelta.accept(completion);
+                return CompletionResult.success();
+            }
+        }
+        Optional<String> persisted = cache.getPersistent(context.request(), context.contextKey());
+        if (persisted.isPresent()) {
+            String completion = normalizeCompletion(context.request(), persisted.get());
+            if (completion != null && !completion.isBlank()) {
+                cache.put(filePath, context.snapshot().caretOffset(), context.snapshot().documentStamp(), completion);
+                cache.putContext(context.contextKey(), completion);
+                cache.putTypeThrough(filePath, context.snapshot().caretOffset(), context.request(), completion);
+                if (!speculative) {
+                    recordCacheHit(context.profile(), AiCompletionMetrics.CacheHit.PERSISTENT);
+                }
                 onDelta.accept(completion);
-                inFlightCompletionKeys.remove(context.inFlightKey());
                 return CompletionResult.success();
             }
         }
-        if (triggerMode == AiCompletionTriggerMode.AUTO && cache.isNegativeCached(context.request())) {
-            inFlightCompletionKeys.remove(context.inFlightKey());
+        Optional<String> typeThrough = cache.getTypeThrough(filePath, context.snapshot().caretOffset(), context.request());
+        if (typeThrough.isPresent()) {
+            String completion = normalizeCompletion(context.request(), typeThrough.get());
+            if (completion != null && !completion.isBlank()) {
+                cache.put(filePath, context.snapshot().caretOffset(), context.snapshot().documentStamp(), completion);
+                if (!speculative) {
+                    recordCacheHit(context.profile(), AiCompletionMetrics.CacheHit.TYPE_THROUGH);
+                }
+                onDelta.accept(completion);
+                return CompletionResult.success();
+            }
+        }
+        if (triggerMode == AiCompletionTriggerMode.AUTO && cache.isNegativeCached(context.contextKey())) {
+            if (!speculative) {
+                recordCacheHit(context.profile(), AiCompletionMetrics.CacheHit.NEGATIVE);
+            }
             return CompletionResult.skipped(CompletionStatus.NEGATIVE_CACHED);
         }
 
-        StringBuilder fullCompletion = new StringBuilder();
+        // 相同上下文已有请求在进行时，预取直接让路，普通请求订阅同一条流。
+        if (speculative && flights.containsKey(context.contextKey())) {
+            return CompletionResult.skipped(CompletionStatus.IN_FLIGHT);
+        }
+        long prefetchId = 0;
+        if (speculative) {
+            prefetchId = prefetchBudget.tryAcquire();
+            if (prefetchId == 0) {
+                return CompletionResult.skipped(CompletionStatus.COOLDOWN);
+            }
+        }
+        AiCompletionFlight flight = new AiCompletionFlight();
+        AiCompletionFlight running = flights.putIfAbsent(context.contextKey(), flight);
+        if (running != null) {
+            if (speculative) {
+                // 检查之后才有别的请求建立了同一条流，这次预取没有发出，额度还给预算。
+                prefetchBudget.release(prefetchId);
+                return CompletionResult.skipped(CompletionStatus.IN_FLIGHT);
+            }
+            return subscribe(running, editor, context.snapshot(), cancellation, onDelta);
+        }
+
         AtomicBoolean hasText = new AtomicBoolean(false);
-        AtomicBoolean staleContext = new AtomicBoolean(false);
-        CompletionDeltaFilter deltaFilter = createDeltaFilter(context.request());
+        AiCompletionFlight.Subscription subscription =
+            flight.join(subscriberDelta(editor, context.snapshot(), cancellation, hasText, onDelta));
+        cancellation.onCancel(subscription::leave);
         try {
-            AiCompletionClient client = createClient(context.profile().getFormat());
-            try {
-                client.streamComplete(context.request(), delta -> {
-                    if (delta == null || delta.isEmpty()) {
-                        return;
-                    }
-                    if (!isStillValid(editor, context.snapshot())) {
-                        staleContext.set(true);
-                        return;
-                    }
-                    String visibleDelta = deltaFilter == null ? delta : deltaFilter.append(delta);
-                    if (visibleDelta.isEmpty()) {
-                        return;
+            // 只有发起网络流的一方占用端点许可，订阅已有流的请求方只是等待，不占许可。
+            long flightPrefetchId = prefetchId;
+            CompletionStatus status = NetworkExecutor.getInstance().callBounded(
+                NetworkExecutor.endpointKey(context.profile()),
+                () -> streamFlight(flight, triggerMode, speculative, flightPrefetchId, context)
+            );
+            flights.remove(context.contextKey(), flight);
+            if (status != CompletionStatus.SUCCESS) {
+                // 首选没有结果时，挂在这次请求上的备选也不再需要。
+                flight.upstream().cancel();
+            }
+            flight.complete(status);
+        } catch (IOException ex) {
+            flights.remove(context.contextKey(), flight);
+            flight.upstream().cancel();
+            flight.fail(ex);
+            throw ex;
+        } catch (InterruptedException | RuntimeException ex) {
+            flights.remove(context.contextKey(), flight);
+            flight.upstream().cancel();
+            flight.fail(new IOException("补全请求失败", ex));
+            throw ex;
+        }
+        return subscriberResult(subscription.await(), hasText);
+    }
+
+    private CompletionResult subscribe(
+        AiCompletionFlight flight,
+        Editor editor,
+        CompletionSnapshot snapshot,
+        AiCompletionCancellation cancellation,
+        Consumer<String> onDelta
+    ) throws IOException, InterruptedException {
+        AtomicBoolean hasText = new AtomicBoolean(false);
+        AiCompletionFlight.Subscription subscription =
+            flight.join(subscriberDelta(editor, snapshot, cancellation, hasText, onDelta));
+        cancellation.onCancel(subscription::leave);
+        return subscriberResult(subscription.await(), hasText);
+    }
+
+    private Consumer<String> subscriberDelta(
+        Editor editor,
+        CompletionSnapshot snapshot,
+        AiCompletionCancellation cancellation,
+        AtomicBoolean hasText,
+        Consumer<String> onDelta
+    ) {
+        return delta -> {
+            if (cancellation.isCancelled()) {
+                return;
+            }
+            if (!isStillValid(editor, snapshot)) {
+                // 文档或光标已变化，后续内容不会再展示；没有其他订阅方时底层流随之中断。
+                cancellation.cancel();
+                return;
+            }
+            hasText.set(true);
+            onDelta.accept(delta);
+        };
+    }
+
+    private static CompletionResult subscriberResult(CompletionStatus flightStatus, AtomicBoolean hasText) {
+        if (flightStatus == null) {
+            return CompletionResult.skipped(CompletionStatus.STALE_CONTEXT);
+        }
+        if (hasText.get()) {
+            return CompletionResult.success();
+        }
+        return CompletionResult.skipped(
+            flightStatus == CompletionStatus.SUCCESS ? CompletionStatus.NO_RESULT : flightStatus
+        );
+    }
+
+    /**
+     * 发起网络流并把可见增量广播给所有订阅方，返回这次请求本身的结果并负责写入缓存。
+     */
+    private CompletionStatus streamFlight(
+        AiCompletionFlight flight,
+        AiCompletionTriggerMode triggerMode,
+        boolean speculative,
+        long prefetchId,
+        CompletionRequestContext context
+    ) throws IOException, InterruptedException {
+        AiCompletionCancellation upstream = flight.upstream();
+        if (upstream.isCancelled()) {
+            return CompletionStatus.STALE_CONTEXT;
+        }
+        AiCompletionCache cache = AiCompletionCache.getInstance();
+        String filePath = context.snapshot().context().filePath();
+        StringBuilder fullCompletion = new StringBuilder();
+        AiCompletionDeltaFilter deltaFilter = AiCompletionDeltaFilter.forRequest(context.request());
+        AiCompletionClient client = createClient(context.profile().getFormat());
+        // 只有手动触发才与首选并行获取备选；自动触发的建议等第一次切换候选时再按需获取。
+        CompletableFuture<List<String>> alternates = !speculative && triggerMode == AiCompletionTriggerMode.MANUAL
+            ? requestAlternates(client, context, upstream)
+            : null;
+        Consumer<String> handleDelta = delta -> {
+            if (delta == null || delta.isEmpty() || upstream.isCancelled()) {
+                return;
+            }
+            String visibleDelta = deltaFilter.append(delta);
+            if (visibleDelta.isEmpty()) {
+                return;
+            }
+            fullCompletion.append(visibleDelta);
+            flight.publish(visibleDelta);
+        };
+        // 投机预取不做对冲，避免一次预取消耗两份 token。
+        AiHedgedCompletion.Attempt hedge = speculative ? null : hedgeAttempt(context.request());
+        long requestStartedAt = System.nanoTime();
+        try {
+            if (hedge == null) {
+                AtomicBoolean firstTokenRecorded = new AtomicBoolean(false);
+                client.streamComplete(context.request(), upstream, delta -> {
+                    if (delta != null && !delta.isEmpty() && !upstream.isCancelled()
+                        && firstTokenRecorded.compareAndSet(false, true)) {
+                        recordFirstTokenLatency(
+                            context.profile(),
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - requestStartedAt)
+                        );
                     }
-                    hasText.set(true);
-                    fullCompletion.append(visibleDelta);
-                    onDelta.accept(visibleDelta);
+                    handleDelta.accept(delta);
                 });
-                if (deltaFilter != null) {
-                    String remaining = deltaFilter.finish();
-                    if (!remaining.isEmpty() && isStillValid(editor, context.snapshot())) {
-                        hasText.set(true);
-                        fullCompletion.append(remaining);
-                        onDelta.accept(remaining);
-                    } else if (!remaining.isEmpty()) {
-                        staleContext.set(true);
-                    }
-                }
-            } catch (IOException ex) {
-                if (hasText.get()) {
-                    throw ex;
-                }
-                String completion = client.complete(context.request());
-                completion = normalizeCompletion(context.request(), completion);
-                if (completion != null && !completion.isBlank() && isStillValid(editor, context.snapshot())) {
-                    hasText.set(true);
-                    fullCompletion.append(completion);
-                    onDelta.accept(completion);
-                } else if (completion != null && !completion.isBlank()) {
-                    staleContext.set(true);
-                }
+            } else {
+                AiHedgedCompletion.Outcome outcome = new AiHedgedCompletion(
+                    new AiHedgedCompletion.Attempt(client, context.request()),
+                    hedge,
+                    AppExecutorUtil.getAppScheduledExecutorService(),
+                    NetworkExecutor.getInstance().unbounded()
+                ).stream(
+                    AiFeatureSettings.getInstance().getTimingConfig().getHedgeDelayMs(),
+                    upstream,
+                    (winner, latencyMs) -> recordFirstTokenLatency(
+                        winner == AiHedgedCompletion.Winner.SECONDARY ? hedge.request().profile() : context.profile(),
+                        latencyMs
+                    ),
+                    handleDelta
+                );
+                recordHedgeOutcome(context.profile(), hedge.request().profile(), outcome);
             }
-            if (hasText.get()) {
-                String completion = fullCompletion.toString();
-                cache.put(filePath, context.snapshot().caretOffset(), context.snapshot().documentStamp(), completion);
-                cache.putContext(context.request(), completion);
-                return CompletionResult.success();
+            if (upstream.isCancelled()) {
+                return CompletionStatus.STALE_CONTEXT;
+            }
+            String remaining = deltaFilter.finish();
+            fullCompletion.append(remaining);
+            flight.publish(remaining);
+        } catch (IOException ex) {
+            if (upstream.isCancelled()) {
+                return CompletionStatus.STALE_CONTEXT;
             }
-            if (staleContext.get()) {
-                return CompletionResult.skipped(CompletionStatus.STALE_CONTEXT);
+            if (!fullCompletion.isEmpty()) {
+                throw ex;
             }
-            if (triggerMode == AiCompletionTriggerMode.AUTO) {
-                cache.putNegative(context.request());
+            String completion = normalizeCompletion(context.request(), client.complete(context.request()));
+            if (completion != null && !completion.isBlank()) {
+                fullCompletion.append(completion);
+                flight.publish(completion);
             }
-            return CompletionResult.skipped(CompletionStatus.NO_RESULT);
-        } finally {
-            inFlightCompletionKeys.remove(context.inFlightKey());
         }
+        if (!fullCompletion.isEmpty()) {
+            if (!speculative) {
+                AiCompletionMetrics.getInstance().recordTotalLatency(
+                    context.profile(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - requestStartedAt)
+                );
+            }
+            String completion = fullCompletion.toString();
+            cache.put(filePath, context.snapshot().caretOffset(), context.snapshot().documentStamp(), completion);
+            cache.putContext(context.contextKey(), completion);
+            cache.putPersistent(context.request(), context.contextKey(), completion);
+            cache.putTypeThrough(filePath, context.snapshot().caretOffset(), context.request(), completion);
+            if (speculative) {
+                cache.markSpeculative(
+                    filePath,
+                    context.snapshot().caretOffset(),
+                    context.snapshot().documentStamp(),
+                    prefetchId
+                );
+            }
+            if (alternates != null) {
+                alternates.thenAccept(candidates -> storeAlternates(context, completion, candidates));
+            } else if (!speculative) {
+                lastAlternatesSource = new AlternatesSource(context, completion);
+            }
+            return CompletionStatus.SUCCESS;
+        }
+        if (triggerMode == AiCompletionTriggerMode.AUTO) {
+            cache.putNegative(context.contextKey());
+        }
+        return CompletionStatus.NO_RESULT;
+    }
+
+    /**
+     * 多候选模式下获取备选：接口支持 n 参数时合并为一次请求，否则并行发出独立请求。
+     * 每个请求都占用端点许可，取消时中断仍在进行的请求；失败的备选直接忽略，不影响首选。
+     */
+    private CompletableFuture<List<String>> requestAlternates(
+        AiCompletionClient client,
+        CompletionRequestContext context,
+        AiCompletionCancellation cancellation
+    ) {
+        int count = AiFeatureSettings.getInstance().getTimingConfig().getCompletionCandidateCount() - 1;
+        if (count <= 0 || cancellation.isCancelled()) {
+            return null;
+        }
+        NetworkExecutor network = NetworkExecutor.getInstance();
+        String endpoint = NetworkExecutor.endpointKey(context.profile());
+        AiCompletionRequest request = context.request();
+        NetworkExecutor.NetworkCall<List<String>> call = client.supportsChoices()
+            ? () -> client.completeChoices(request, count)
+            : () -> Collections.singletonList(client.complete(request));
+        int calls = client.supportsChoices() ? 1 : count;
+        List<CompletableFuture<List<String>>> samples = new ArrayList<>();
+        for (int i = 0; i < calls; i++) {
+            CompletableFuture<List<String>> sample = new CompletableFuture<>();
+            FutureTask<Void> task = new FutureTask<>(() -> {
+                sample.complete(completeQuietly(() -> network.callBounded(endpoint, call)));
+                return null;
+            });
+            cancellation.onCancel(() -> {
+                task.cancel(true);
+                sample.complete(List.of());
+            });
+            network.unbounded().execute(task);
+            samples.add(sample);
+        }
+        return CompletableFuture.allOf(samples.toArray(CompletableFuture[]::new)).thenApply(ignored -> {
+            List<String> candidates = new ArrayList<>();
+            samples.forEach(sample -> candidates.addAll(sample.join()));
+            return candidates;
+        });
+    }
+
+    /**
+     * 按需获取自动触发建议的备选，只对最近一次成功的补全生效；位置或文档已变化、未开启多候选时返回 null。
+     * 结果写入备选缓存后返回排序后的备选列表。
+     */
+    public CompletableFuture<List<String>> requestAlternates(
+        Editor editor,
+        int offset,
+        long documentStamp,
+        AiCompletionCancellation cancellation
+    ) {
+        AlternatesSource source = lastAlternatesSource;
+        VirtualFile file = editor == null ? null : FileDocumentManager.getInstance().getFile(editor.getDocument());
+        if (source == null || file == null
+            || !file.getPath().equals(source.context().snapshot().context().filePath())
+            || source.context().snapshot().caretOffset() != offset
+            || source.context().snapshot().documentStamp() != documentStamp) {
+            return null;
+        }
+        CompletableFuture<List<String>> alternates = requestAlternates(
+            createClient(source.context().profile().getFormat()),
+            source.context(),
+            cancellation
+        );
+        if (alternates == null) {
+            return null;
+        }
+        return alternates.thenApply(candidates -> {
+            storeAlternates(source.context(), source.primary(), candidates);
+            return AiCompletionCache.getInstance().getAlternates(file.getPath(), offset, documentStamp);
+        });
+    }
+
+    private static List<String> completeQuietly(NetworkExecutor.NetworkCall<List<String>> call) {
+        try {
+            return call.call();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return List.of();
+        } catch (IOException | RuntimeException ex) {
+            return List.of();
+        }
+    }
+
+    private void storeAlternates(CompletionRequestContext context, String primary, List<String> candidates) {
+        List<String> normalized = new ArrayList<>();
+        for (String candidate : candidates) {
+            String completion = normalizeCompletion(context.request(), candidate);
+            if (completion != null && !completion.isBlank()) {
+                normalized.add(completion);
+            }
+        }
+        if (normalized.isEmpty()) {
+            return;
+        }
+        ToIntFunction<String> introducedErrors = context.syntaxChecker() == null
+            ? ignored -> 0
+            : context.syntaxChecker().introducedErrors(context.request().fimPrefix(), context.request().fimSuffix());
+        AiCompletionCache.getInstance().putAlternates(
+            context.snapshot().context().filePath(),
+            context.snapshot().caretOffset(),
+            context.snapshot().documentStamp(),
+            AiCompletionCandidateRanker.rank(
+                primary,
+                normalized,
+                context.request().fimSuffix(),
+                introducedErrors,
+                MAX_ALTERNATES
+            )
+        );
+    }
+
+    /**
+     * 多候选模式下该位置已缓存的备选补全（已排序，不含首选），没有时返回空列表。
+     */
+    public List<String> cachedAlternates(Editor editor, int offset, long documentStamp) {
+        VirtualFile file = editor == null ? null : FileDocumentManager.getInstance().getFile(editor.getDocument());
+        if (file == null) {
+            return List.of();
+        }
+        return AiCompletionCache.getInstance().getAlternates(file.getPath(), offset, documentStamp);
     }
 
     private CompletionPreparation prepareCompletionRequest(
@@ -232,66 +630,67 @@ public final class AiCompletionService {
             return CompletionPreparation.skipped(CompletionStatus.COOLDOWN);
         }
 
-        String inFlightKey = PlatformReadAccess.compute(() -> completionKey(project, editor, triggerMode));
-        if (inFlightCompletionKeys.putIfAbsent(inFlightKey, System.currentTimeMillis()) != null) {
-            return CompletionPreparation.skipped(CompletionStatus.IN_FLIGHT);
+        AiModelProfile profile = settings.getActiveCompletionProfile();
+        if (profile == null || profile.getModel().isBlank()) {
+            return CompletionPreparation.unavailable("请先配置补全模型");
         }
-
-        try {
-            AiModelProfile profile = settings.getActiveCompletionProfile();
-            if (profile == null || profile.getModel().isBlank()) {
-                inFlightCompletionKeys.remove(inFlightKey);
-                return CompletionPreparation.unavailable("请先配置补全模型");
-            }
-            String apiKey = settings.getApiKey(profile.getId());
-            if (apiKey.isBlank()) {
-                inFlightCompletionKeys.remove(inFlightKey);
-                return CompletionPreparation.unavailable("请先配置补全模型 API Key");
-            }
-
-            AiCompletionLengthLevel lengthLevel = settings.getCompletionLengthLevel(triggerMode);
-            CompletionSnapshot snapshot = PlatformReadAccess.compute(() -> new CompletionSnapshot(
-                editor.getDocument().getModificationStamp(),
-                editor.getCaretModel().getOffset(),
-                AiCompletionContextBuilder.build(project, editor, triggerMode, lengthLevel)
-            ));
-            AiCompletionRequest request = new AiCompletionRequest(
-                profile,
-                apiKey,
-                snapshot.context().systemPrompt(),
-                snapshot.context().userPrompt(),
-                lengthLevel,
-                lengthLevel.getMaxTokens(),
-                snapshot.context().fimPrefix(),
-                snapshot.context().fimSuffix()
-            );
-            return CompletionPreparation.ready(new CompletionRequestContext(inFlightKey, profile, request, snapshot));
-        } catch (RuntimeException ex) {
-            inFlightCompletionKeys.remove(inFlightKey);
-            throw ex;
+        String apiKey = settings.getApiKey(profile.getId());
+        if (apiKey.isBlank()) {
+            return CompletionPreparation.unavailable("请先配置补全模型 API Key");
         }
-    }
 
-    public boolean isCompletionInProgress(Project project, Editor editor) {
-        if (project == null || editor == null) {
-            return false;
-        }
-        return PlatformReadAccess.compute(() ->
-            inFlightCompletionKeys.containsKey(completionKey(project, editor, AiCompletionTriggerMode.AUTO))
-                || inFlightCompletionKeys.containsKey(completionKey(project, editor, AiCompletionTriggerMode.MANUAL))
+        AiCompletionLengthLevel lengthLevel = settings.getCompletionLengthLevel(triggerMode);
+        CompletionSnapshot snapshot = PlatformReadAccess.compute(() -> new CompletionSnapshot(
+            editor.getDocument().getModificationStamp(),
+            editor.getCaretModel().getOffset(),
+            AiCompletionContextBuilder.build(project, editor, triggerMode, lengthLevel)
+        ));
+        lastPromptTokens = snapshot.context().tokens();
+        AiCompletionRequest request = new AiCompletionRequest(
+            profile,
+            apiKey,
+            snapshot.context().systemPrompt(),
+            snapshot.context().userPrompt(),
+            lengthLevel,
+            lengthLevel.getMaxTokens(),
+            snapshot.context().fimPrefix(),
+            snapshot.context().fimSuffix()
         );
+        String contextKey = AiCompletionCache.getInstance().contextKey(request, snapshot.context().retrievalChars());
+        AiCompletionSyntaxChecker syntaxChecker = settings.getTimingConfig().getCompletionCandidateCount() > 1
+            ? PlatformReadAccess.compute(() -> AiCompletionSyntaxChecker.forFile(
+                project,
+                PsiDocumentManager.getInstance(project).getPsiFile(editor.getDocument())
+            ))
+            : null;
+        return CompletionPreparation.ready(
+            new CompletionRequestContext(profile, request, contextKey, snapshot, syntaxChecker)
+        );
+    }
+
+    /**
+     * 最近一次补全请求上下文的 token 数，用于诊断预算是否合适。
+     */
+    AiCompletionContextBuilder.PromptTokens getLastPromptTokens() {
+        return lastPromptTokens;
     }
 
     public Optional<String> generateText(String systemPrompt, String userPrompt, AiCompletionLengthLevel lengthLevel)
         throws IOException, InterruptedException {
-        AiFeatureSettings settings = AiFeatureSettings.getInstance();
-        return generateText(systemPrompt, userPrompt, lengthLevel, settings.getActiveCompletionProfile());
+        AiModelProfile profile = AiFeatureSettings.getInstance().getActiveCompletionProfile();
+        return NetworkExecutor.getInstance().callBounded(
+            NetworkExecutor.endpointKey(profile),
+            () -> generateText(systemPrompt, userPrompt, lengthLevel, profile)
+        );
     }
 
     public Optional<String> generateGitCommitText(String systemPrompt, String userPrompt, AiCompletionLengthLevel lengthLevel)
         throws IOException, InterruptedException {
-        AiFeatureSettings settings = AiFeatureSettings.getInstance();
-        return generateText(systemPrompt, userPrompt, lengthLevel, settings.getActiveGitCommitProfile());
+        AiModelProfile profile = AiFeatureSettings.getInstance().getActiveGitCommitProfile();
+        return NetworkExecutor.getInstance().callBounded(
+            NetworkExecutor.endpointKey(profile),
+            () -> generateText(systemPrompt, userPrompt, lengthLevel, profile)
+        );
     }
 
     public Optional<String> streamGitCommitText(
@@ -300,8 +699,11 @@ public final class AiCompletionService {
         AiCompletionLengthLevel lengthLevel,
         Consumer<String> onDelta
     ) throws IOException, InterruptedException {
-        AiFeatureSettings settings = AiFeatureSettings.getInstance();
-        return streamText(systemPrompt, userPrompt, lengthLevel, settings.getActiveGitCommitProfile(), onDelta);
+        AiModelProfile profile = AiFeatureSettings.getInstance().getActiveGitCommitProfile();
+        return NetworkExecutor.getInstance().callBounded(
+            NetworkExecutor.endpointKey(profile),
+            () -> streamText(systemPrompt, userPrompt, lengthLevel, profile, onDelta)
+        );
     }
 
     private Optional<String> generateText(
@@ -502,105 +904,89 @@ public final class AiCompletionService {
         if (completion == null) {
             return null;
         }
-        if (request.lengthLevel() == AiCompletionLengthLevel.SINGLE_LINE) {
-            return firstEffectiveLine(completion);
-        }
-        return trimCompletionTail(trimSuffixEcho(request, completion));
+        return AiCompletionDeltaFilter.apply(request, completion);
     }
 
-    private String firstEffectiveLine(String text) {
-        if (text == null || text.isEmpty()) {
-            return "";
-        }
-        String normalized = text.replace("\r\n", "\n").replace("\r", "\n");
-        for (String line : normalized.split("\n", -1)) {
-            if (!line.isBlank()) {
-                return line.stripTrailing();
-            }
+    private synchronized boolean shouldSkipManualRequest() {
+        long now = System.currentTimeMillis();
+        long cooldown = AiFeatureSettings.getInstance().getTimingConfig().getManualCooldownMs();
+        if (now - lastManualCompletionRequestMs < cooldown) {
+            return true;
         }
-        return "";
+        lastManualCompletionRequestMs = now;
+        return false;
     }
 
-    private CompletionDeltaFilter createDeltaFilter(AiCompletionRequest request) {
-        if (request.lengthLevel() == AiCompletionLengthLevel.SINGLE_LINE) {
-            return new SingleLineDeltaFilter();
-        }
-        return new SuffixEchoDeltaFilter(request);
+    /**
+     * 指定模型配置最近请求的首 token 耗时中位数（毫秒），没有样本时返回 -1。
+     */
+    long firstTokenLatencyP50(AiModelProfile profile) {
+        AiLatencySamples samples = profile == null ? null : firstTokenLatencies.get(profile.getId());
+        return samples == null ? -1 : samples.percentile(0.5);
     }
 
-    private String trimSuffixEcho(AiCompletionRequest request, String completion) {
-        if (completion == null || completion.isEmpty()) {
-            return completion;
-        }
-        String suffixLine = firstEffectiveLine(request.fimSuffix()).strip();
-        if (suffixLine.isEmpty()) {
-            return completion;
-        }
-        int echoStart = suffixEchoStart(completion, suffixLine);
-        if (echoStart < 0) {
-            return completion;
-        }
-        return completion.substring(0, echoStart).stripTrailing();
+    private void recordFirstTokenLatency(AiModelProfile profile, long latencyMs) {
+        firstTokenLatencies
+            .computeIfAbsent(profile.getId(), ignored -> new AiLatencySamples(FIRST_TOKEN_SAMPLES))
+            .add(latencyMs);
+        AiCompletionMetrics.getInstance().recordFirstToken(profile, latencyMs);
     }
 
-    private String trimCompletionTail(String completion) {
-        return completion == null ? null : completion.stripTrailing();
+    private void recordCacheHit(AiModelProfile profile, AiCompletionMetrics.CacheHit hit) {
+        AiCompletionMetrics.getInstance().recordCacheHit(profile, hit);
     }
 
-    private int suffixEchoStart(String completion, String suffixLine) {
-        int exactIndex = completion.indexOf(suffixLine);
-        if (exactIndex >= 0) {
-            return exactIndex;
-        }
-
-        String normalizedSuffixLine = removeWhitespace(suffixLine);
-        if (normalizedSuffixLine.isEmpty()) {
-            return -1;
-        }
-
-        int lineStart = 0;
-        while (lineStart < completion.length()) {
-            int lineEnd = completion.indexOf('\n', lineStart);
-            if (lineEnd < 0) {
-                lineEnd = completion.length();
-            }
-            String line = completion.substring(lineStart, lineEnd).strip();
-            if (removeWhitespace(line).equals(normalizedSuffixLine)) {
-                return lineStart;
-            }
-            lineStart = lineEnd + 1;
-        }
-        return -1;
+    /**
+     * 对冲请求真正发出后各模型胜出的次数，键为模型 ID，空键表示两边都没有返回内容。
+     */
+    Map<String, Long> getHedgeWins() {
+        Map<String, Long> wins = new HashMap<>();
+        hedgeWins.forEach((profileId, count) -> wins.put(profileId, count.get()));
+        return wins;
     }
 
-    private String removeWhitespace(String value) {
-        StringBuilder result = new StringBuilder(value.length());
-        for (int i = 0; i < value.length(); i++) {
-            char ch = value.charAt(i);
-            if (!Character.isWhitespace(ch)) {
-                result.append(ch);
-            }
+    private void recordHedgeOutcome(AiModelProfile primary, AiModelProfile secondary, AiHedgedCompletion.Outcome outcome) {
+        if (!outcome.hedged()) {
+            return;
         }
-        return result.toString();
+        String profileId = switch (outcome.winner()) {
+            case PRIMARY -> primary.getId();
+            case SECONDARY -> secondary.getId();
+            case NONE -> "";
+        };
+        hedgeWins.computeIfAbsent(profileId, ignored -> new AtomicLong()).incrementAndGet();
     }
 
-    private synchronized boolean shouldSkipManualRequest() {
-        long now = System.currentTimeMillis();
-        long cooldown = AiFeatureSettings.getInstance().getTimingConfig().getManualCooldownMs();
-        if (now - lastManualCompletionRequestMs < cooldown) {
-            return true;
+    private AiHedgedCompletion.Attempt hedgeAttempt(AiCompletionRequest request) {
+        AiFeatureSettings settings = AiFeatureSettings.getInstance();
+        AiModelProfile profile = settings.getHedgeCompletionProfile();
+        if (profile == null || profile.getModel().isBlank()) {
+            return null;
         }
-        lastManualCompletionRequestMs = now;
-        return false;
+        String apiKey = settings.getApiKey(profile.getId());
+        if (apiKey.isBlank()) {
+            return null;
+        }
+        return new AiHedgedCompletion.Attempt(
+            createClient(profile.getFormat()),
+            new AiCompletionRequest(
+                profile,
+                apiKey,
+                request.systemPrompt(),
+                request.userPrompt(),
+                request.lengthLevel(),
+                request.maxTokens(),
+                request.fimPrefix(),
+                request.fimSuffix()
+            )
+        );
     }
 
-    private String completionKey(Project project, Editor editor, AiCompletionTriggerMode triggerMode) {
-        String projectKey = project == null ? "" : project.getLocationHash();
-        return projectKey
-            + ":"
-            + System.identityHashCode(editor.getDocument())
-            + ":"
-            + triggerMode.name().toLowerCase();
+    private void recordSpeculativeHit(AiCompletionCache cache, String filePath, CompletionSnapshot snapshot) {
+        long prefetchId = cache.takeSpeculative(filePath, snapshot.caretOffset(), snapshot.documentStamp());
+        if (prefetchId != 0) {
+            prefetchBudget.recordHit(prefetchId);
+        }
     }
 
     private boolean isStillValid(Editor editor, CompletionSnapshot snapshot) {
@@ -645,75 +1031,15 @@ public final class AiCompletionService {
         }
     }
 
+    private record AlternatesSource(CompletionRequestContext context, String primary) {
+    }
+
     private record CompletionRequestContext(
-        String inFlightKey,
         AiModelProfile profile,
         AiCompletionRequest request,
-        CompletionSnapshot snapshot
+        String contextKey,
+        CompletionSnapshot snapshot,
+        AiCompletionSyntaxChecker syntaxChecker
     ) {
     }
-
-    private interface CompletionDeltaFilter {
-        String append(String delta);
-
-        String finish();
-    }
-
-    private final class SingleLineDeltaFilter implements CompletionDeltaFilter {
-        private final StringBuilder raw = new StringBuilder();
-        private int emittedLength;
-
-        @Override
-        public String append(String delta) {
-            raw.append(delta);
-            String visible = firstEffectiveLine(raw.toString());
-            if (visible.length() <= emittedLength) {
-                return "";
-            }
-            String next = visible.substring(emittedLength);
-            emittedLength = visible.length();
-            return next;
-        }
-
-        @Override
-        public String finish() {
-            return "";
-        }
-    }
-
-    private final class SuffixEchoDeltaFilter implements CompletionDeltaFilter {
-        private final AiCompletionRequest request;
-        private final StringBuilder raw = new StringBuilder();
-        private int emittedLength;
-
-        private SuffixEchoDeltaFilter(AiCompletionRequest request) {
-            this.request = request;
-        }
-
-        @Override
-        public String append(String delta) {
-            raw.append(delta);
-            String visible = trimSuffixEcho(request, raw.toString());
-            boolean echoDetected = visible.length() < raw.length();
-            int flushUntil = echoDetected
-                ? visible.length()
-                : Math.max(0, visible.length() - SUFFIX_ECHO_GUARD_CHARS);
-            return emitUntil(visible, flushUntil);
-        }
-
-        @Override
-        public String finish() {
-            String visible = trimCompletionTail(trimSuffixEcho(request, raw.toString()));
-            return emitUntil(visible, visible.length());
-        }
-
-        private String emitUntil(String visible, int flushUntil) {
-            if (flushUntil <= emittedLength) {
-                return "";
-            }
-            String next = visible.substring(emittedLength, flushUntil);
-            emittedLength = flushUntil;
-            return next;
-        }
-    }
 }
@@ -0,0 +1,274 @@
+package com.github.mostbean.codingswitch.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 跨文件补全片段索引：把文件切成重叠的行窗口，按文件建立“标识符 -> 窗口”倒排表，
+ * 查询时只累加共享标识符的窗口，按与光标附近标识符集合的 Jaccard 相似度排序。
+ * 更新在后台线程完成，条目整体替换，查询只读取不可变数据，不需要加锁。
+ */
+final class AiCompletionSnippetIndex {
+
+    private static final int WINDOW_LINES = 20;
+    private static final int WINDOW_STRIDE = 10;
+    private static final int MAX_WINDOWS_PER_FILE = 400;
+    private static final int MIN_WINDOW_IDENTIFIERS = 3;
+    private static final int MIN_IDENTIFIER_LENGTH = 3;
+    private static final double MIN_SCORE = 0.08;
+    private static final int CANDIDATES_PER_RESULT = 4;
+    private static final int[] STOP_WORDS = stopWordHashes(
+        "and", "bool", "boolean", "break", "case", "catch", "class", "const", "def", "else", "elif", "export",
+        "extends", "false", "final", "for", "from", "func", "function", "implements", "import", "int", "interface",
+        "let", "long", "new", "nil", "none", "not", "null", "override", "package", "private", "protected", "public",
+        "return", "self", "static", "str", "string", "this", "throw", "throws", "true", "try", "var", "void", "while"
+    );
+
+    private final Map<String, FileEntry> files = new ConcurrentHashMap<>();
+    private final int maxFiles;
+
+    AiCompletionSnippetIndex(int maxFiles) {
+        this.maxFiles = Math.max(1, maxFiles);
+    }
+
+    boolean isCurrent(String path, long stamp) {
+        FileEntry entry = files.get(path);
+        return entry != null && entry.stamp() == stamp;
+    }
+
+    void update(String path, CharSequence text, long stamp, long touchedAt) {
+        if (isCurrent(path, stamp)) {
+            return;
+        }
+        files.put(path, buildEntry(path, text, stamp, touchedAt));
+        while (files.size() > maxFiles) {
+            files.values().stream()
+                .min(Comparator.comparingLong(FileEntry::touchedAt))
+                .ifPresent(oldest -> files.remove(oldest.path(), oldest));
+        }
+    }
+
+    void remove(String path) {
+        files.remove(path);
+    }
+
+    void clear() {
+        files.clear();
+    }
+
+    /**
+     * 查询 text[start, end) 相似的片段，排除当前文件，同一文件内重叠的窗口只保留得分最高的一个。
+     */
+    List<Snippet> query(String excludePath, CharSequence text, int start, int end, int maxResults) {
+        int[] queryIds = identifierHashes(text, start, end);
+        if (queryIds.length == 0 || maxResults <= 0) {
+            return List.of();
+        }
+        // 只保留有限个最高分候选，倒排表保证只访问至少共享一个标识符的窗口。
+        Candidate[] top = new Candidate[maxResults * CANDIDATES_PER_RESULT];
+        int topCount = 0;
+        for (FileEntry entry : files.values()) {
+            if (entry.path().equals(excludePath)) {
+                continue;
+            }
+            int[] shared = new int[entry.windows().size()];
+            for (int id : queryIds) {
+                int index = Arrays.binarySearch(entry.postingIds(), id);
+                if (index < 0) {
+                    continue;
+                }
+                for (int p = entry.postingStarts()[index]; p < entry.postingStarts()[index + 1]; p++) {
+                    shared[entry.postingWindows()[p]]++;
+                }
+            }
+            for (int w = 0; w < shared.length; w++) {
+                if (shared[w] == 0) {
+                    continue;
+                }
+                Window window = entry.windows().get(w);
+                double score = (double) shared[w] / (queryIds.length + window.identifierCount() - shared[w]);
+                if (score >= MIN_SCORE) {
+                    topCount = insertCandidate(top, topCount, new Candidate(entry, window, score));
+                }
+            }
+        }
+        List<Candidate> candidates = Arrays.asList(top).subList(0, topCount);
+
+        List<Snippet> snippets = new ArrayList<>();
+        List<Candidate> selected = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            if (snippets.size() >= maxResults) {
+                break;
+            }
+            if (overlapsSelected(candidate, selected)) {
+                continue;
+            }
+            selected.add(candidate);
+            Window window = candidate.window();
+            snippets.add(new Snippet(
+                candidate.entry().path(),
+                window.startLine(),
+                candidate.entry().text().subSequence(window.startOffset(), window.endOffset()).toString(),
+                candidate.score()
+            ));
+        }
+        return snippets;
+    }
+
+    private static int insertCandidate(Candidate[] top, int count, Candidate candidate) {
+        int position = count < top.length ? count : top.length - 1;
+        if (count == top.length && top[position].score() >= candidate.score()) {
+            return count;
+        }
+        while (position > 0 && top[position - 1].score() < candidate.score()) {
+            top[position] = top[position - 1];
+            position--;
+        }
+        top[position] = candidate;
+        return Math.min(count + 1, top.length);
+    }
+
+    private static boolean overlapsSelected(Candidate candidate, List<Candidate> selected) {
+        for (Candidate other : selected) {
+            if (other.entry() == candidate.entry()
+                && candidate.window().startOffset() < other.window().endOffset()
+                && other.window().startOffset() < candidate.window().endOffset()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static FileEntry buildEntry(String path, CharSequence text, long stamp, long touchedAt) {
+        List<Integer> lineStarts = new ArrayList<>();
+        lineStarts.add(0);
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n' && i + 1 < text.length()) {
+                lineStarts.add(i + 1);
+            }
+        }
+        List<Window> windows = new ArrayList<>();
+        List<int[]> windowIdentifiers = new ArrayList<>();
+        int postingCount = 0;
+        int lineCount = lineStarts.size();
+        for (int line = 0; line < lineCount && windows.size() < MAX_WINDOWS_PER_FILE; line += WINDOW_STRIDE) {
+            int endLine = Math.min(lineCount, line + WINDOW_LINES);
+            int startOffset = lineStarts.get(line);
+            int endOffset = endLine < lineCount ? lineStarts.get(endLine) : text.length();
+            int[] identifiers = identifierHashes(text, startOffset, endOffset);
+            if (identifiers.length >= MIN_WINDOW_IDENTIFIERS) {
+                windows.add(new Window(line, startOffset, endOffset, identifiers.length));
+                windowIdentifiers.add(identifiers);
+                postingCount += identifiers.length;
+            }
+            if (endLine >= lineCount) {
+                break;
+            }
+        }
+
+        // 高 32 位为标识符哈希，低 32 位为窗口序号，排序后即按标识符分组的倒排表。
+        long[] postings = new long[postingCount];
+        int position = 0;
+        for (int w = 0; w < windowIdentifiers.size(); w++) {
+            for (int id : windowIdentifiers.get(w)) {
+                postings[position++] = ((long) id << 32) | w;
+            }
+        }
+        Arrays.sort(postings);
+        int[] postingIds = new int[postingCount];
+        int[] postingStarts = new int[postingCount + 1];
+        int[] postingWindows = new int[postingCount];
+        int idCount = 0;
+        for (int i = 0; i < postingCount; i++) {
+            int id = (int) (postings[i] >> 32);
+            if (idCount == 0 || postingIds[idCount - 1] != id) {
+                postingIds[idCount] = id;
+                postingStarts[idCount] = i;
+                idCount++;
+            }
+            postingWindows[i] = (int) postings[i];
+        }
+        postingStarts[idCount] = postingCount;
+        return new FileEntry(
+            path,
+            text,
+            stamp,
+            touchedAt,
+            List.copyOf(windows),
+            Arrays.copyOf(postingIds, idCount),
+            Arrays.copyOf(postingStarts, idCount + 1),
+            postingWindows
+        );
+    }
+
+    /**
+     * 提取区间内标识符的哈希，返回排序去重后的数组；不截取子串。
+     */
+    static int[] identifierHashes(CharSequence text, int start, int end) {
+        int[] hashes = new int[32];
+        int count = 0;
+        int position = start;
+        while (position < end) {
+            char ch = text.charAt(position);
+            if (!Character.isJavaIdentifierStart(ch)) {
+                position++;
+                continue;
+            }
+            int hash = 0;
+            int identifierStart = position;
+            while (position < end && Character.isJavaIdentifierPart(text.charAt(position))) {
+                hash = 31 * hash + Character.toLowerCase(text.charAt(position));
+                position++;
+            }
+            if (position - identifierStart < MIN_IDENTIFIER_LENGTH || Arrays.binarySearch(STOP_WORDS, hash) >= 0) {
+                continue;
+            }
+            if (count == hashes.length) {
+                hashes = Arrays.copyOf(hashes, count * 2);
+            }
+            hashes[count++] = hash;
+        }
+        Arrays.sort(hashes, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || hashes[unique - 1] != hashes[i]) {
+                hashes[unique++] = hashes[i];
+            }
+        }
+        return Arrays.copyOf(hashes, unique);
+    }
+
+    private static int[] stopWordHashes(String... words) {
+        int[] hashes = new int[words.length];
+        for (int i = 0; i < words.length; i++) {
+            hashes[i] = words[i].hashCode();
+        }
+        Arrays.sort(hashes);
+        return hashes;
+    }
+
+    record Snippet(String path, int startLine, String text, double score) {
+    }
+
+    private record FileEntry(
+        String path,
+        CharSequence text,
+        long stamp,
+        long touchedAt,
+        List<Window> windows,
+        int[] postingIds,
+        int[] postingStarts,
+        int[] postingWindows
+    ) {
+    }
+
+    private record Window(int startLine, int startOffset, int endOffset, int identifierCount) {
+    }
+
+    private record Candidate(FileEntry entry, Window window, double score) {
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.mostbean.codingswitch.service;
+
+import com.intellij.lang.Language;
+import com.intellij.lang.LanguageParserDefinitions;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiErrorElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiFileFactory;
+import com.intellij.psi.util.PsiTreeUtil;
+import java.util.function.ToIntFunction;
+
+/**
+ * 用 IDE 的 PSI 解析器检查候选补全：把上下文窗口内的前缀、候选和后缀拼成临时文件解析，
+ * 与不插入候选时的错误数比较。窗口本身可能截断在语句中间，因此只看新增的错误。
+ */
+final class AiCompletionSyntaxChecker {
+
+    private final Project project;
+    private final Language language;
+
+    private AiCompletionSyntaxChecker(Project project, Language language) {
+        this.project = project;
+        this.language = language;
+    }
+
+    /**
+     * 需在读动作中调用；语言没有 PSI 解析器时返回 null。
+     */
+    static AiCompletionSyntaxChecker forFile(Project project, PsiFile file) {
+        if (project == null || file == null) {
+            return null;
+        }
+        Language language = file.getLanguage();
+        if (LanguageParserDefinitions.INSTANCE.forLanguage(language) == null) {
+            return null;
+        }
+        return new AiCompletionSyntaxChecker(project, language);
+    }
+
+    /**
+     * 返回候选插入 prefix 与 suffix 之间后新增的语法错误数；基线错误数只解析一次。
+     */
+    ToIntFunction<String> introducedErrors(String prefix, String suffix) {
+        int[] baseline = {-1};
+        return candidate -> {
+            if (project.isDisposed()) {
+                return 0;
+            }
+            if (baseline[0] < 0) {
+                baseline[0] = errorCount(prefix + suffix);
+            }
+            return Math.max(0, errorCount(prefix + candidate + suffix) - baseline[0]);
+        };
+    }
+
+    private int errorCount(String text) {
+        return PlatformReadAccess.compute(() -> {
+            PsiFile file = PsiFileFactory.getInstance(project)
+                .createFileFromText("coding-switch-candidate", language, text, false, false);
+            return file == null ? 0 : PsiTreeUtil.collectElementsOfType(file, PsiErrorElement.class).size();
+        });
+    }
+}
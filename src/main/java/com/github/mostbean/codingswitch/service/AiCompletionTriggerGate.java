@@ -0,0 +1,149 @@
+package com.github.mostbean.codingswitch.service;
+
+import com.intellij.lang.Language;
+import com.intellij.lang.LanguageParserDefinitions;
+import com.intellij.lang.ParserDefinition;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.ex.EditorEx;
+import com.intellij.openapi.editor.highlighter.HighlighterIterator;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.tree.IElementType;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 自动补全的触发闸门：按键后先用编辑器高亮器里现成的词法 token 判断光标位置，
+ * 不等待 PSI 提交也不重新解析；通过语法规则后再由接受率模型决定是否真正排队请求。
+ */
+final class AiCompletionTriggerGate {
+
+    private final AiTriggerAcceptanceModel acceptanceModel = new AiTriggerAcceptanceModel();
+    private final LongAdder[] skipped = new LongAdder[AiTriggerContextClassifier.SkipReason.values().length];
+    private final LongAdder suppressed = new LongAdder();
+
+    AiCompletionTriggerGate() {
+        for (int i = 0; i < skipped.length; i++) {
+            skipped[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 在 EDT 上调用，typed 是刚输入的字符（回车为 '\n'）。返回本次触发的上下文类别，应跳过时返回 null。
+     */
+    AiTriggerContextClassifier.TriggerContext evaluate(Project project, Editor editor, char typed, double minAcceptRate) {
+        Document document = editor.getDocument();
+        int offset = editor.getCaretModel().getOffset();
+        int line = document.getLineNumber(offset);
+        CharSequence chars = document.getImmutableCharSequence();
+        PsiFile file = PsiDocumentManager.getInstance(project).getPsiFile(document);
+        Language language = file == null ? null : file.getLanguage();
+
+        AiTriggerContextClassifier.Decision decision = AiTriggerContextClassifier.classify(
+            AiTriggerContextClassifier.rulesFor(language == null ? null : language.getID()),
+            tokenKind(editor, offset),
+            chars.subSequence(document.getLineStartOffset(line), offset),
+            chars.subSequence(offset, document.getLineEndOffset(line)),
+            typed
+        );
+        if (decision.skipped()) {
+            skipped[decision.skipReason().ordinal()].increment();
+            return null;
+        }
+        if (!acceptanceModel.shouldTrigger(decision.context(), minAcceptRate, ThreadLocalRandom.current().nextDouble())) {
+            suppressed.increment();
+            return null;
+        }
+        return decision.context();
+    }
+
+    void recordTriggered(AiTriggerContextClassifier.TriggerContext context) {
+        if (context != null) {
+            acceptanceModel.recordTriggered(context);
+        }
+    }
+
+    void recordAccepted(AiTriggerContextClassifier.TriggerContext context) {
+        if (context != null) {
+            acceptanceModel.recordAccepted(context);
+        }
+    }
+
+    Stats stats(double minAcceptRate) {
+        Map<AiTriggerContextClassifier.SkipReason, Long> skips = new EnumMap<>(AiTriggerContextClassifier.SkipReason.class);
+        for (AiTriggerContextClassifier.SkipReason reason : AiTriggerContextClassifier.SkipReason.values()) {
+            skips.put(reason, skipped[reason.ordinal()].sum());
+        }
+        return new Stats(skips, suppressed.sum(), acceptanceModel.stats(minAcceptRate));
+    }
+
+    /**
+     * 光标前一个字符所在 token 的类别。token 恰好在光标处结束且已闭合（字符串收尾引号、块注释结束符）时，
+     * 光标其实已在它之外。
+     */
+    private static AiTriggerContextClassifier.TokenKind tokenKind(Editor editor, int offset) {
+        if (!(editor instanceof EditorEx editorEx) || offset == 0) {
+            return AiTriggerContextClassifier.TokenKind.CODE;
+        }
+        HighlighterIterator iterator = editorEx.getHighlighter().createIterator(offset - 1);
+        if (iterator.atEnd()) {
+            return AiTriggerContextClassifier.TokenKind.CODE;
+        }
+        AiTriggerContextClassifier.TokenKind kind = classifyToken(iterator.getTokenType());
+        if (kind == AiTriggerContextClassifier.TokenKind.CODE || iterator.getEnd() != offset) {
+            return kind;
+        }
+        CharSequence token = editor.getDocument().getImmutableCharSequence()
+            .subSequence(iterator.getStart(), iterator.getEnd());
+        return isClosed(kind, token) ? AiTriggerContextClassifier.TokenKind.CODE : kind;
+    }
+
+    private static AiTriggerContextClassifier.TokenKind classifyToken(IElementType type) {
+        if (type == null) {
+            return AiTriggerContextClassifier.TokenKind.CODE;
+        }
+        ParserDefinition definition = LanguageParserDefinitions.INSTANCE.forLanguage(type.getLanguage());
+        if (definition != null) {
+            if (definition.getCommentTokens().contains(type)) {
+                return AiTriggerContextClassifier.TokenKind.COMMENT;
+            }
+            if (definition.getStringLiteralElements().contains(type)) {
+                return AiTriggerContextClassifier.TokenKind.STRING;
+            }
+        }
+        // 没有解析器定义的语言（如 TextMate 高亮）只能按 token 名称判断。
+        String name = type.toString().toUpperCase(Locale.ROOT);
+        if (name.contains("COMMENT")) {
+            return AiTriggerContextClassifier.TokenKind.COMMENT;
+        }
+        if (name.contains("STRING") || name.contains("CHAR_LITERAL") || name.contains("TEXT_BLOCK")) {
+            return AiTriggerContextClassifier.TokenKind.STRING;
+        }
+        return AiTriggerContextClassifier.TokenKind.CODE;
+    }
+
+    private static boolean isClosed(AiTriggerContextClassifier.TokenKind kind, CharSequence token) {
+        int length = token.length();
+        if (kind == AiTriggerContextClassifier.TokenKind.STRING) {
+            char last = length < 2 ? 0 : token.charAt(length - 1);
+            return (last == '"' || last == '\'' || last == '`') && token.charAt(length - 2) != '\\';
+        }
+        String text = token.toString();
+        return text.endsWith("*/") || text.endsWith("-->");
+    }
+
+    /**
+     * 闸门统计：按原因计数的语法跳过次数、被接受率模型抑制的次数，以及各上下文类别的学习状态。
+     */
+    record Stats(
+        Map<AiTriggerContextClassifier.SkipReason, Long> skipped,
+        long suppressed,
+        Map<AiTriggerContextClassifier.TriggerContext, AiTriggerAcceptanceModel.Stats> contexts
+    ) {
+    }
+}
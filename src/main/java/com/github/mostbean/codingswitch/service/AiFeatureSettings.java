@@ -34,6 +34,8 @@ public final class AiFeatureSettings implements PersistentStateComponent<AiFeatu
         public boolean codeCompletionEnabled = false;
         public boolean gitCommitMessageEnabled = false;
         public String gitCommitMessageLanguage = GitCommitMessageLanguage.CHINESE.name();
+        public boolean gitNativeDiffEnabled = false;
+        public boolean gitChunkSummaryEnabled = false;
         public boolean autoCompletionEnabled = false;
         public int autoCompletionMaxTokens = 64;
         public int manualCompletionMaxTokens = 160;
@@ -41,6 +43,7 @@ public final class AiFeatureSettings implements PersistentStateComponent<AiFeatu
         public String manualCompletionLengthLevel = AiCompletionLengthLevel.SHORT.name();
         public String activeCompletionProfileId = "";
         public String activeGitCommitProfileId = "";
+        public String hedgeCompletionProfileId = "";
         public String manualCompletionShortcut = DEFAULT_MANUAL_SHORTCUT;
         public CompletionTimingConfig timingConfig = new CompletionTimingConfig();
         public List<AiModelProfile> profiles = new ArrayList<>();
@@ -63,6 +66,7 @@ public final class AiFeatureSettings implements PersistentStateComponent<AiFeatu
     @Override
     public void loadState(@NotNull State state) {
         this.state = normalize(state);
+        AiCompletionHttpSupport.retainClients(this.state.profiles);
     }
 
     public State snapshot() {
@@ -85,6 +89,20 @@ public final class AiFeatureSettings implements PersistentStateComponent<AiFeatu
         return getActiveState().gitCommitMessageEnabled;
     }
 
+    /**
+     * 生成提交信息时直接读取 git diff HEAD 的输出，而不是加载修改前后的全文自行比较。
+     */
+    public boolean isGitNativeDiffEnabled() {
+        return getActiveState().gitNativeDiffEnabled;
+    }
+
+    /**
+     * diff 超出长度限制时先分模块总结再生成提交信息，会额外调用 Git 提交模型；关闭时只截断并提示省略的文件数。
+     */
+    public boolean isGitChunkSummaryEnabled() {
+        return getActiveState().gitChunkSummaryEnabled;
+    }
+
     public GitCommitMessageLanguage getGitCommitMessageLanguage() {
         return parseGitCommitMessageLanguage(getActiveState().gitCommitMessageLanguage);
     }
@@ -99,6 +117,23 @@ public final class AiFeatureSettings implements PersistentStateComponent<AiFeatu
         return getActiveProfile(getActiveState().activeCompletionProfileId);
     }
 
+    /**
+     * 补全对冲使用的备用模型；未配置或与当前补全模型相同时返回 null。
+     */
+    public AiModelProfile getHedgeCompletionProfile() {
+        State active = getActiveState();
+        String hedgeId = active.hedgeCompletionProfileId == null ? "" : active.hedgeCompletionProfileId;
+        if (hedgeId.isBlank() || Objects.equals(hedgeId, active.activeCompletionProfileId)) {
+            return null;
+        }
+        for (AiModelProfile profile : active.profiles) {
+            if (Objects.equals(hedgeId, profile.getId())) {
+                return profile.copy();
+            }
+        }
+        return null;
+    }
+
     public AiModelProfile getActiveGitCommitProfile() {
         return getActiveProfile(getActiveState().activeGitCommitProfileId);
     }
@@ -180,6 +215,7 @@ public final class AiFeatureSettings implements PersistentStateComponent<AiFeatu
 
     public void overwriteLocalState(State next) {
         this.state = normalize(copyState(next));
+        AiCompletionHttpSupport.retainClients(this.state.profiles);
     }
 
     public void writeSharedState(State next) {
@@ -187,6 +223,7 @@ public final class AiFeatureSettings implements PersistentStateComponent<AiFeatu
         PluginDataStorage.writeJson(PluginDataStorage.getSharedAiFeaturesPath(), normalized);
         sharedStateCache = normalized;
         sharedStateCacheTimestamp = System.currentTimeMillis();
+        AiCompletionHttpSupport.retainClients(normalized.profiles);
     }
 
     public void notifyStateChanged() {
@@ -251,6 +288,7 @@ public final class AiFeatureSettings implements PersistentStateComponent<AiFeatu
             writeSharedState(normalized);
         } else {
             state = normalized;
+            AiCompletionHttpSupport.retainClients(normalized.profiles);
         }
     }
 
@@ -282,6 +320,8 @@ public final class AiFeatureSettings implements PersistentStateComponent<AiFeatu
         copy.codeCompletionEnabled = safe.codeCompletionEnabled;
         copy.gitCommitMessageEnabled = safe.gitCommitMessageEnabled;
         copy.gitCommitMessageLanguage = safe.gitCommitMessageLanguage;
+        copy.gitNativeDiffEnabled = safe.gitNativeDiffEnabled;
+        copy.gitChunkSummaryEnabled = safe.gitChunkSummaryEnabled;
         copy.autoCompletionEnabled = safe.autoCompletionEnabled;
         copy.autoCompletionMaxTokens = safe.autoCompletionMaxTokens;
         copy.manualCompletionMaxTokens = safe.manualCompletionMaxTokens;
@@ -289,6 +329,7 @@ public final class AiFeatureSettings implements PersistentStateComponent<AiFeatu
         copy.manualCompletionLengthLevel = safe.manualCompletionLengthLevel;
         copy.activeCompletionProfileId = safe.activeCompletionProfileId;
         copy.activeGitCommitProfileId = safe.activeGitCommitProfileId;
+        copy.hedgeCompletionProfileId = safe.hedgeCompletionProfileId;
         copy.manualCompletionShortcut = safe.manualCompletionShortcut;
         copy.timingConfig = safe.timingConfig != null ? safe.timingConfig.copy() : new CompletionTimingConfig();
         copy.profiles = new ArrayList<>();
@@ -363,6 +404,11 @@ public final class AiFeatureSettings implements PersistentStateComponent<AiFeatu
                 ? ""
                 : normalized.profiles.get(0).getId();
         }
+        boolean hedgeExists = normalized.profiles.stream()
+            .anyMatch(profile -> Objects.equals(profile.getId(), normalized.hedgeCompletionProfileId));
+        if (!hedgeExists || Objects.equals(normalized.hedgeCompletionProfileId, normalized.activeCompletionProfileId)) {
+            normalized.hedgeCompletionProfileId = "";
+        }
         boolean activeGitExists = normalized.profiles.stream()
             .anyMatch(profile -> Objects.equals(profile.getId(), normalized.activeGitCommitProfileId));
         if (!activeGitExists) {
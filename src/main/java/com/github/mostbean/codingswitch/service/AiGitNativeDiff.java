@@ -0,0 +1,182 @@
+package com.github.mostbean.codingswitch.service;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 直接读取 git 生成的 diff：同一仓库的所有路径只执行一次 git diff HEAD，边读边按文件拆分，
+ * 不再把每个文件的修改前后全文加载到内存里重新比较。输出超过上限后停止读取并结束进程，
+ * 没拿到的文件由调用方回退到自行计算的 diff。
+ */
+final class AiGitNativeDiff {
+
+    private static final Logger LOG = Logger.getInstance(AiGitNativeDiff.class);
+    private static final long TIMEOUT_SECONDS = 20;
+    private static final int MAX_ARGUMENT_CHARS = 16_000;
+    private static final String FILE_HEADER = "diff --git ";
+
+    private AiGitNativeDiff() {
+    }
+
+    /**
+     * 从文件所在目录向上查找包含 .git 的目录（工作树中的 .git 也可能是文件），找不到时返回 null。
+     */
+    static Path findRepositoryRoot(Path file) {
+        for (Path dir = file == null ? null : file.toAbsolutePath().getParent(); dir != null; dir = dir.getParent()) {
+            if (Files.exists(dir.resolve(".git"))) {
+                return dir;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 返回 仓库内相对路径 → 该文件的 diff 块；git 不可用或执行失败时返回已拿到的部分（可能为空）。
+     * 路径作为命令行参数传入，按长度分批，避免超出 Windows 命令行上限。
+     */
+    static Map<String, String> collect(Path root, List<String> relativePaths, int maxChars) {
+        Map<String, String> diffs = new LinkedHashMap<>();
+        List<String> batch = new ArrayList<>();
+        int batchChars = 0;
+        for (int i = 0; i <= relativePaths.size(); i++) {
+            boolean last = i == relativePaths.size();
+            if (!batch.isEmpty() && (last || batchChars + relativePaths.get(i).length() > MAX_ARGUMENT_CHARS)) {
+                Parsed parsed = run(root, batch, maxChars - chars(diffs));
+                if (parsed == null) {
+                    return diffs;
+                }
+                diffs.putAll(parsed.diffs());
+                if (parsed.truncated()) {
+                    return diffs;
+                }
+                batch.clear();
+                batchChars = 0;
+            }
+            if (!last) {
+                batch.add(relativePaths.get(i));
+                batchChars += relativePaths.get(i).length() + 1;
+            }
+        }
+        return diffs;
+    }
+
+    private static Parsed run(Path root, List<String> paths, int maxChars) {
+        List<String> command = new ArrayList<>(List.of(
+            "git", "-c", "core.quotepath=off", "diff", "HEAD",
+            "--no-color", "--no-ext-diff", "--unified=3", "-M", "--"
+        ));
+        command.addAll(paths);
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.directory(root.toFile());
+        builder.redirectError(ProcessBuilder.Redirect.DISCARD);
+        Process process = null;
+        ScheduledFuture<?> timeout = null;
+        try {
+            process = builder.start();
+            Process started = process;
+            timeout = AppExecutorUtil.getAppScheduledExecutorService()
+                .schedule(started::destroyForcibly, TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            Parsed parsed;
+            try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8)
+            )) {
+                parsed = parse(reader, maxChars);
+            }
+            if (parsed.truncated()) {
+                // 已达到上限，不再等待 git 输出剩余内容。
+                return parsed;
+            }
+            return process.waitFor() == 0 ? parsed : null;
+        } catch (IOException ex) {
+            LOG.info("git diff unavailable for " + root + ": " + ex.getMessage());
+            return null;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            if (process != null && process.isAlive()) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * 按 "diff --git" 拆分 git diff 输出。累计字符数超过 maxChars 时停止读取，未读完的文件块直接丢弃。
+     */
+    static Parsed parse(BufferedReader reader, int maxChars) throws IOException {
+        Map<String, String> diffs = new LinkedHashMap<>();
+        StringBuilder block = null;
+        String path = null;
+        int total = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith(FILE_HEADER)) {
+                if (block != null && path != null) {
+                    diffs.put(path, block.toString());
+                }
+                block = new StringBuilder();
+                path = symmetricHeaderPath(line.substring(FILE_HEADER.length()));
+            } else if (block == null) {
+                continue;
+            } else if (line.startsWith("+++ b/")) {
+                path = stripTab(line.substring("+++ b/".length()));
+            } else if (line.startsWith("--- a/") && path == null) {
+                path = stripTab(line.substring("--- a/".length()));
+            } else if (line.startsWith("rename to ")) {
+                path = line.substring("rename to ".length());
+            }
+            total += line.length() + 1;
+            if (total > maxChars) {
+                return new Parsed(diffs, true);
+            }
+            block.append(line).append('\n');
+        }
+        if (block != null && path != null) {
+            diffs.put(path, block.toString());
+        }
+        return new Parsed(diffs, false);
+    }
+
+    /**
+     * "a/x b/x" 形式且前后路径相同时直接取出路径；改名或路径带引号时返回 null，等待后续行确定。
+     */
+    private static String symmetricHeaderPath(String header) {
+        if (!header.startsWith("a/") || header.length() % 2 == 0) {
+            return null;
+        }
+        int half = (header.length() - 1) / 2;
+        String before = header.substring(2, half);
+        String after = header.substring(half + 1);
+        return after.equals("b/" + before) ? before : null;
+    }
+
+    record Parsed(Map<String, String> diffs, boolean truncated) {
+    }
+
+    private static int chars(Map<String, String> diffs) {
+        int total = 0;
+        for (String diff : diffs.values()) {
+            total += diff.length();
+        }
+        return total;
+    }
+
+    private static String stripTab(String path) {
+        return path.endsWith("\t") ? path.substring(0, path.length() - 1) : path;
+    }
+}
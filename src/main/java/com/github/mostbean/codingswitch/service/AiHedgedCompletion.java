@@ -0,0 +1,171 @@
+package com.github.mostbean.codingswitch.service;
+
+import com.github.mostbean.codingswitch.model.AiCompletionRequest;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * 对冲补全：主模型在指定延迟内没有返回首个 token 时，把同一请求发给备用模型，
+ * 先产出内容的一方胜出并继续输出，另一方立即取消。主模型在首个 token 前失败时直接启用备用模型。
+ * 只有胜出方的内容会交给 onDelta，且始终来自同一个线程。
+ */
+final class AiHedgedCompletion {
+
+    enum Winner {
+        PRIMARY,
+        SECONDARY,
+        NONE
+    }
+
+    record Attempt(AiCompletionClient client, AiCompletionRequest request) {
+    }
+
+    /**
+     * hedged 表示备用请求是否真正发出。
+     */
+    record Outcome(Winner winner, boolean hedged) {
+    }
+
+    @FunctionalInterface
+    interface FirstTokenListener {
+        void onFirstToken(Winner winner, long latencyMs);
+    }
+
+    private final Attempt primary;
+    private final Attempt secondary;
+    private final ScheduledExecutorService scheduler;
+    private final Executor executor;
+    private final AiCompletionCancellation primaryCancellation = new AiCompletionCancellation();
+    private final AiCompletionCancellation secondaryCancellation = new AiCompletionCancellation();
+    private final AtomicReference<Winner> winner = new AtomicReference<>(Winner.NONE);
+    private final AtomicBoolean secondaryClaimed = new AtomicBoolean(false);
+    private final CompletableFuture<Void> secondaryDone = new CompletableFuture<>();
+
+    AiHedgedCompletion(Attempt primary, Attempt secondary, ScheduledExecutorService scheduler, Executor executor) {
+        this.primary = primary;
+        this.secondary = secondary;
+        this.scheduler = scheduler;
+        this.executor = executor;
+    }
+
+    Outcome stream(
+        long hedgeDelayMs,
+        AiCompletionCancellation cancellation,
+        FirstTokenListener firstTokenListener,
+        Consumer<String> onDelta
+    ) throws IOException, InterruptedException {
+        cancellation.onCancel(primaryCancellation::cancel);
+        cancellation.onCancel(secondaryCancellation::cancel);
+        ScheduledFuture<?> hedgeTimer = scheduler.schedule(
+            () -> {
+                if (winner.get() == Winner.NONE && !cancellation.isCancelled() && secondaryClaimed.compareAndSet(false, true)) {
+                    startSecondary(firstTokenListener, onDelta);
+                }
+            },
+            hedgeDelayMs,
+            TimeUnit.MILLISECONDS
+        );
+
+        IOException primaryFailure = null;
+        long startedAt = System.nanoTime();
+        try {
+            primary.client().streamComplete(
+                primary.request(),
+                primaryCancellation,
+                delta -> forward(Winner.PRIMARY, startedAt, delta, firstTokenListener, onDelta)
+            );
+        } catch (IOException ex) {
+            primaryFailure = ex;
+        } finally {
+            hedgeTimer.cancel(false);
+        }
+
+        // 抢占启动权：计时任务已经启动备用请求时 CAS 失败，此后不会再有新的备用请求。
+        boolean hedged = !secondaryClaimed.compareAndSet(false, true);
+        if (!hedged && primaryFailure != null && winner.get() == Winner.NONE && !cancellation.isCancelled()) {
+            startSecondary(firstTokenListener, onDelta);
+            hedged = true;
+        }
+        if (winner.get() == Winner.PRIMARY || !hedged) {
+            if (primaryFailure != null) {
+                throw primaryFailure;
+            }
+            return new Outcome(winner.get(), hedged);
+        }
+
+        try {
+            secondaryDone.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (winner.get() == Winner.SECONDARY) {
+                rethrow(cause);
+            }
+            if (primaryFailure != null) {
+                throw primaryFailure;
+            }
+        } catch (InterruptedException ex) {
+            secondaryCancellation.cancel();
+            throw ex;
+        }
+        return new Outcome(winner.get(), true);
+    }
+
+    private void startSecondary(FirstTokenListener firstTokenListener, Consumer<String> onDelta) {
+        long startedAt = System.nanoTime();
+        executor.execute(() -> {
+            try {
+                secondary.client().streamComplete(
+                    secondary.request(),
+                    secondaryCancellation,
+                    delta -> forward(Winner.SECONDARY, startedAt, delta, firstTokenListener, onDelta)
+                );
+                secondaryDone.complete(null);
+            } catch (Throwable ex) {
+                secondaryDone.completeExceptionally(ex);
+            }
+        });
+    }
+
+    private void forward(
+        Winner side,
+        long startedAt,
+        String delta,
+        FirstTokenListener firstTokenListener,
+        Consumer<String> onDelta
+    ) {
+        if (delta == null || delta.isEmpty()) {
+            return;
+        }
+        if (winner.compareAndSet(Winner.NONE, side)) {
+            (side == Winner.PRIMARY ? secondaryCancellation : primaryCancellation).cancel();
+            firstTokenListener.onFirstToken(side, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        }
+        if (winner.get() == side) {
+            onDelta.accept(delta);
+        }
+    }
+
+    private static void rethrow(Throwable cause) throws IOException, InterruptedException {
+        if (cause instanceof IOException io) {
+            throw io;
+        }
+        if (cause instanceof InterruptedException interrupted) {
+            throw interrupted;
+        }
+        if (cause instanceof RuntimeException runtime) {
+            throw runtime;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        throw new IOException(cause);
+    }
+}
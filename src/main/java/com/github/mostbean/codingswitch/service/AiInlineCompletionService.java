@@ -2,6 +2,7 @@ package com.github.mostbean.codingswitch.service;
 
 import com.github.mostbean.codingswitch.model.AiCompletionTriggerMode;
 import com.github.mostbean.codingswitch.model.AiModelProfile;
+import com.github.mostbean.codingswitch.model.CompletionTimingConfig;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.command.WriteCommandAction;
@@ -30,6 +31,7 @@ import java.awt.Graphics;
 import java.awt.Rectangle;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -42,6 +44,10 @@ public final class AiInlineCompletionService implements Disposable {
     private static final Key<InlineSession> SESSION_KEY = Key.create("coding.switch.ai.inline.session");
     private static final Key<Long> REQUEST_ID_KEY = Key.create("coding.switch.ai.inline.request.id");
     private static final Key<ScheduledFuture<?>> AUTO_TASK_KEY = Key.create("coding.switch.ai.inline.auto.task");
+    private static final Key<AiCompletionCancellation> CANCELLATION_KEY =
+        Key.create("coding.switch.ai.inline.cancellation");
+    private static final Key<AiCompletionCancellation> PREFETCH_KEY =
+        Key.create("coding.switch.ai.inline.prefetch");
     private static final int INLINE_HINT_GAP_CHARS = 6;
     private static final Color GHOST_FOREGROUND = new JBColor(new Color(0x8A8A8A), new Color(0x6F737A));
 
@@ -51,25 +57,38 @@ public final class AiInlineCompletionService implements Disposable {
         return thread;
     });
     private final AtomicLong requestIds = new AtomicLong();
+    private final AiAdaptiveDebounce adaptiveDebounce = new AiAdaptiveDebounce();
+    private final AiCompletionTriggerGate triggerGate = new AiCompletionTriggerGate();
 
     public static AiInlineCompletionService getInstance() {
         return ApplicationManager.getApplication().getService(AiInlineCompletionService.class);
     }
 
-    public void scheduleAuto(Project project, Editor editor) {
+    /**
+     * 输入字符后安排自动补全，typed 为刚输入的字符（回车为 '\n'）。语法位置不合适或该类位置近期很少被接受时
+     * 只取消旧的待发请求，不再排队。
+     */
+    public void scheduleAuto(Project project, Editor editor, char typed) {
         if (project == null || editor == null || hasActiveCompletion(editor)) {
             return;
         }
         cancelPendingAuto(editor);
+        CompletionTimingConfig timing = AiFeatureSettings.getInstance().getTimingConfig();
+        AiTriggerContextClassifier.TriggerContext triggerContext = timing.isTriggerGateEnabled()
+            ? triggerGate.evaluate(project, editor, typed, minTriggerAcceptRate(timing))
+            : null;
+        if (timing.isTriggerGateEnabled() && triggerContext == null) {
+            return;
+        }
         long requestId = requestIds.incrementAndGet();
         editor.putUserData(REQUEST_ID_KEY, requestId);
-        long delay = AiFeatureSettings.getInstance().getTimingConfig().getDebounceDelayMs();
+        long delay = autoDelayMs();
         ScheduledFuture<?> future = scheduler.schedule(
             () -> ApplicationManager.getApplication().invokeLater(() -> {
                 Long current = editor.getUserData(REQUEST_ID_KEY);
                 if (current != null && current == requestId) {
                     editor.putUserData(AUTO_TASK_KEY, null);
-                    request(project, editor, AiCompletionTriggerMode.AUTO, requestId);
+                    request(project, editor, AiCompletionTriggerMode.AUTO, requestId, triggerContext);
                 }
             }),
             delay,
@@ -78,15 +97,62 @@ public final class AiInlineCompletionService implements Disposable {
         editor.putUserData(AUTO_TASK_KEY, future);
     }
 
+    /**
+     * 记录一次按键，用于学习用户的输入节奏。
+     */
+    public void recordKeystroke() {
+        adaptiveDebounce.recordKeystroke(System.currentTimeMillis());
+    }
+
+    /**
+     * 触发闸门的统计，供诊断导出。
+     */
+    AiCompletionTriggerGate.Stats getTriggerGateStats() {
+        return triggerGate.stats(minTriggerAcceptRate(AiFeatureSettings.getInstance().getTimingConfig()));
+    }
+
+    private static double minTriggerAcceptRate(CompletionTimingConfig timing) {
+        return timing.getMinTriggerAcceptRatePercent() / 100.0;
+    }
+
+    private long autoDelayMs() {
+        AiFeatureSettings settings = AiFeatureSettings.getInstance();
+        CompletionTimingConfig timing = settings.getTimingConfig();
+        if (!timing.isAdaptiveDebounceEnabled()) {
+            return timing.getDebounceDelayMs();
+        }
+        long firstTokenP50 = AiCompletionService.getInstance().firstTokenLatencyP50(settings.getActiveCompletionProfile());
+        return adaptiveDebounce.delayMs(timing.getMinDebounceDelayMs(), timing.getDebounceDelayMs(), firstTokenP50);
+    }
+
     public void requestManual(Project project, Editor editor) {
         if (project == null || editor == null) {
             return;
         }
         cancelPendingAuto(editor);
+        cancelPrefetch(editor);
         hide(editor);
         long requestId = requestIds.incrementAndGet();
         editor.putUserData(REQUEST_ID_KEY, requestId);
-        request(project, editor, AiCompletionTriggerMode.MANUAL, requestId);
+        request(project, editor, AiCompletionTriggerMode.MANUAL, requestId, null);
+    }
+
+    public void prewarmConnection(Project project, Editor editor) {
+        AiFeatureSettings settings = AiFeatureSettings.getInstance();
+        if (!settings.isCodeCompletionEnabled() || !settings.getTimingConfig().isConnectionPrewarmEnabled()) {
+            return;
+        }
+        if (!AiCompletionEditorGuard.isEligible(project, editor)) {
+            return;
+        }
+        AiModelProfile profile = settings.getActiveCompletionProfile();
+        if (profile == null || profile.getModel().isBlank()) {
+            return;
+        }
+        NetworkExecutor.getInstance().execute(
+            NetworkExecutor.endpointKey(profile),
+            () -> AiCompletionHttpSupport.prewarm(profile)
+        );
     }
 
     public void hide(Editor editor) {
@@ -97,12 +163,19 @@ public final class AiInlineCompletionService implements Disposable {
         if (session == null) {
             return;
         }
+        if (!session.accepted) {
+            recordSuggestion(session, AiCompletionMetrics.SuggestionEvent.REJECTED);
+        }
         session.dispose(editor);
         editor.putUserData(SESSION_KEY, null);
     }
 
     private void cancelPendingAuto(Editor editor) {
-        ScheduledFuture<?> future = editor == null ? null : editor.getUserData(AUTO_TASK_KEY);
+        if (editor == null) {
+            return;
+        }
+        cancelInFlight(editor);
+        ScheduledFuture<?> future = editor.getUserData(AUTO_TASK_KEY);
         if (future == null) {
             return;
         }
@@ -110,6 +183,72 @@ public final class AiInlineCompletionService implements Disposable {
         editor.putUserData(AUTO_TASK_KEY, null);
     }
 
+    private void cancelInFlight(Editor editor) {
+        AiCompletionCancellation cancellation = editor.getUserData(CANCELLATION_KEY);
+        if (cancellation == null) {
+            return;
+        }
+        cancellation.cancel();
+        editor.putUserData(CANCELLATION_KEY, null);
+    }
+
+    private void cancelPrefetch(Editor editor) {
+        AiCompletionCancellation cancellation = editor.getUserData(PREFETCH_KEY);
+        if (cancellation == null) {
+            return;
+        }
+        cancellation.cancel();
+        editor.putUserData(PREFETCH_KEY, null);
+    }
+
+    /**
+     * 建议被完整接受后立即预取新光标处的下一段补全；预取完成时光标和文档未变则直接展示。
+     */
+    private void prefetchAfterAccept(Project project, Editor editor) {
+        cancelPrefetch(editor);
+        if (!AiFeatureSettings.getInstance().getTimingConfig().isSpeculativePrefetchEnabled()
+            || unavailableReason(AiCompletionTriggerMode.AUTO) != null) {
+            return;
+        }
+        int offset = editor.getCaretModel().getOffset();
+        long documentStamp = editor.getDocument().getModificationStamp();
+        AiCompletionCancellation cancellation = new AiCompletionCancellation();
+        editor.putUserData(PREFETCH_KEY, cancellation);
+        NetworkExecutor.getInstance().unbounded().execute(() -> {
+            AiCompletionService.CompletionResult result;
+            try {
+                result = AiCompletionService.getInstance().prefetch(project, editor, cancellation);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception ignored) {
+                // 预取失败不提示，用户继续输入时按正常流程请求。
+                return;
+            } finally {
+                ApplicationManager.getApplication().invokeLater(() -> {
+                    if (editor.getUserData(PREFETCH_KEY) == cancellation) {
+                        editor.putUserData(PREFETCH_KEY, null);
+                    }
+                });
+            }
+            if (!result.isSuccess() || cancellation.isCancelled()) {
+                return;
+            }
+            ApplicationManager.getApplication().invokeLater(() -> {
+                if (editor.isDisposed()
+                    || hasActiveCompletion(editor)
+                    || editor.getCaretModel().getOffset() != offset
+                    || editor.getDocument().getModificationStamp() != documentStamp) {
+                    return;
+                }
+                cancelPendingAuto(editor);
+                long requestId = requestIds.incrementAndGet();
+                editor.putUserData(REQUEST_ID_KEY, requestId);
+                request(project, editor, AiCompletionTriggerMode.AUTO, requestId, null);
+            });
+        });
+    }
+
     public boolean hasActiveCompletion(Editor editor) {
         InlineSession session = editor == null ? null : editor.getUserData(SESSION_KEY);
         return session != null && !session.remainingText.isBlank();
@@ -122,7 +261,9 @@ public final class AiInlineCompletionService implements Disposable {
         }
         session.detachInvalidationListeners(editor);
         insertText(project, editor, session, session.remainingText);
+        recordAccepted(session, AiCompletionMetrics.SuggestionEvent.ACCEPTED);
         hide(editor);
+        prefetchAfterAccept(project, editor);
         return true;
     }
 
@@ -134,12 +275,14 @@ public final class AiInlineCompletionService implements Disposable {
         String chunk = nextLineChunk(session.remainingText);
         session.detachInvalidationListeners(editor);
         insertText(project, editor, session, chunk);
+        recordAccepted(session, AiCompletionMetrics.SuggestionEvent.ACCEPTED_LINE);
         session.consumeVisiblePrefix(chunk);
         session.offset += chunk.length();
         session.documentStamp = editor.getDocument().getModificationStamp();
         session.disposeInlays();
         if (session.remainingText.isBlank()) {
             editor.putUserData(SESSION_KEY, null);
+            prefetchAfterAccept(project, editor);
         } else {
             renderSession(editor, session);
             session.attachInvalidationListeners(editor);
@@ -147,12 +290,72 @@ public final class AiInlineCompletionService implements Disposable {
         return true;
     }
 
-    private void request(Project project, Editor editor, AiCompletionTriggerMode triggerMode, long requestId) {
-        if (triggerMode == AiCompletionTriggerMode.AUTO
-            && AiCompletionService.getInstance().isCompletionInProgress(project, editor)) {
-            scheduleInFlightRetry(project, editor, requestId);
+    /**
+     * 在首选建议和备选之间切换，direction 为 1 或 -1。只在建议尚未被部分接受时可用。
+     * 自动触发的建议没有预先获取备选，第一次切换时按需请求，拿到结果后再完成这次切换。
+     */
+    public boolean cycleCandidate(Editor editor, int direction) {
+        InlineSession session = validSession(editor);
+        if (session == null || session.accepted || session.offset != session.requestOffset) {
+            return false;
+        }
+        if (session.candidates == null) {
+            List<String> alternates = AiCompletionService.getInstance()
+                .cachedAlternates(editor, session.requestOffset, session.requestStamp);
+            if (alternates.isEmpty()) {
+                requestAlternates(editor, session, direction);
+                return false;
+            }
+            List<String> candidates = new ArrayList<>();
+            candidates.add(session.rawText);
+            for (String alternate : alternates) {
+                String text = normalizeDelta(alternate);
+                if (!text.isBlank() && !candidates.contains(text)) {
+                    candidates.add(text);
+                }
+            }
+            if (candidates.size() < 2) {
+                return false;
+            }
+            session.candidates = candidates;
+        }
+        session.candidateIndex = Math.floorMod(session.candidateIndex + direction, session.candidates.size());
+        session.rawText = session.candidates.get(session.candidateIndex);
+        session.remainingText = session.rawText;
+        session.disposeInlays();
+        renderSession(editor, session);
+        return true;
+    }
+
+    private void requestAlternates(Editor editor, InlineSession session, int direction) {
+        if (session.alternatesRequest != null) {
+            return;
+        }
+        session.alternatesRequest = new AiCompletionCancellation();
+        CompletableFuture<List<String>> alternates = AiCompletionService.getInstance()
+            .requestAlternates(editor, session.requestOffset, session.requestStamp, session.alternatesRequest);
+        if (alternates == null) {
             return;
         }
+        alternates.thenAccept(candidates -> {
+            if (candidates.isEmpty()) {
+                return;
+            }
+            ApplicationManager.getApplication().invokeLater(() -> {
+                if (!editor.isDisposed() && editor.getUserData(SESSION_KEY) == session) {
+                    cycleCandidate(editor, direction);
+                }
+            });
+        });
+    }
+
+    private void request(
+        Project project,
+        Editor editor,
+        AiCompletionTriggerMode triggerMode,
+        long requestId,
+        AiTriggerContextClassifier.TriggerContext triggerContext
+    ) {
         String unavailableReason = unavailableReason(triggerMode);
         if (unavailableReason != null) {
             notifyManualFailure(project, triggerMode, unavailableReason);
@@ -160,20 +363,34 @@ public final class AiInlineCompletionService implements Disposable {
         }
         int offset = editor.getCaretModel().getOffset();
         long documentStamp = editor.getDocument().getModificationStamp();
-        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+        AiCompletionCancellation cancellation = new AiCompletionCancellation();
+        editor.putUserData(CANCELLATION_KEY, cancellation);
+        NetworkExecutor.getInstance().unbounded().execute(() -> {
             AiCompletionService.CompletionResult result;
-            StreamAccumulator accumulator = new StreamAccumulator();
+            StreamAccumulator accumulator = new StreamAccumulator(triggerContext);
             try {
-                result = AiCompletionService.getInstance().streamComplete(project, editor, triggerMode, delta ->
-                    enqueueDelta(editor, requestId, offset, documentStamp, accumulator, delta)
+                result = AiCompletionService.getInstance().streamComplete(
+                    project,
+                    editor,
+                    triggerMode,
+                    cancellation,
+                    delta -> enqueueDelta(editor, requestId, offset, documentStamp, accumulator, delta)
                 );
             } catch (InterruptedException ex) {
                 Thread.currentThread().interrupt();
                 notifyManualFailure(project, triggerMode, "生成补全被中断");
                 return;
             } catch (Exception ignored) {
-                notifyManualFailure(project, triggerMode, "生成补全失败: " + ignored.getMessage());
+                if (!cancellation.isCancelled()) {
+                    notifyManualFailure(project, triggerMode, "生成补全失败: " + ignored.getMessage());
+                }
                 return;
+            } finally {
+                ApplicationManager.getApplication().invokeLater(() -> {
+                    if (editor.getUserData(CANCELLATION_KEY) == cancellation) {
+                        editor.putUserData(CANCELLATION_KEY, null);
+                    }
+                });
             }
             if (result.isSuccess()) {
                 flushDelta(editor, requestId, offset, documentStamp, accumulator);
@@ -198,22 +415,6 @@ public final class AiInlineCompletionService implements Disposable {
         }
     }
 
-    private void scheduleInFlightRetry(Project project, Editor editor, long requestId) {
-        long delay = AiFeatureSettings.getInstance().getTimingConfig().getInFlightRetryDelayMs();
-        ScheduledFuture<?> future = scheduler.schedule(
-            () -> ApplicationManager.getApplication().invokeLater(() -> {
-                Long current = editor.getUserData(REQUEST_ID_KEY);
-                if (current != null && current == requestId && !hasActiveCompletion(editor)) {
-                    editor.putUserData(AUTO_TASK_KEY, null);
-                    request(project, editor, AiCompletionTriggerMode.AUTO, requestId);
-                }
-            }),
-            delay,
-            TimeUnit.MILLISECONDS
-        );
-        editor.putUserData(AUTO_TASK_KEY, future);
-    }
-
     private String unavailableReason(AiCompletionTriggerMode triggerMode) {
         AiFeatureSettings settings = AiFeatureSettings.getInstance();
         if (!settings.isCodeCompletionEnabled()) {
@@ -258,6 +459,8 @@ public final class AiInlineCompletionService implements Disposable {
             session.offset += inserted.length();
             session.documentStamp = editor.getDocument().getModificationStamp();
             if (session.remainingText.isBlank()) {
+                // 用户逐字敲完了整段建议，按接受统计。
+                recordAccepted(session, AiCompletionMetrics.SuggestionEvent.ACCEPTED);
                 editor.putUserData(SESSION_KEY, null);
                 session.detachInvalidationListeners(editor);
                 return true;
@@ -280,6 +483,7 @@ public final class AiInlineCompletionService implements Disposable {
 
     private void replaceIndentWithCompletion(Editor editor, InlineSession session, int offset, String inserted) {
         String completion = session.remainingText;
+        recordAccepted(session, AiCompletionMetrics.SuggestionEvent.ACCEPTED);
         session.detachInvalidationListeners(editor);
         session.disposeInlays();
         editor.putUserData(SESSION_KEY, null);
@@ -301,7 +505,14 @@ public final class AiInlineCompletionService implements Disposable {
         }));
     }
 
-    private void appendDelta(Editor editor, long requestId, int offset, long documentStamp, String delta) {
+    private void appendDelta(
+        Editor editor,
+        long requestId,
+        int offset,
+        long documentStamp,
+        AiTriggerContextClassifier.TriggerContext triggerContext,
+        String delta
+    ) {
         Long current = editor.getUserData(REQUEST_ID_KEY);
         if (current == null || current != requestId) {
             return;
@@ -317,16 +528,27 @@ public final class AiInlineCompletionService implements Disposable {
 
         InlineSession session = editor.getUserData(SESSION_KEY);
         if (session == null) {
-            session = new InlineSession(offset, text, documentStamp);
+            session = new InlineSession(
+                offset,
+                text,
+                documentStamp,
+                AiFeatureSettings.getInstance().getActiveCompletionProfile(),
+                triggerContext
+            );
+            // 只有真正展示的建议才计入触发次数：被下一次按键取消或没有结果的请求不代表建议被拒绝。
+            triggerGate.recordTriggered(triggerContext);
+            recordSuggestion(session, AiCompletionMetrics.SuggestionEvent.SHOWN);
             editor.putUserData(SESSION_KEY, session);
             session.attachInvalidationListeners(editor);
+        } else if (session.candidates != null) {
+            // 已切换到备选，首选的迟到增量不再追加。
+            return;
         } else {
             session.appendText(text);
         }
         if (session.remainingText.isEmpty()) {
             return;
         }
-        session.disposeInlays();
         renderSession(editor, session);
     }
 
@@ -373,20 +595,33 @@ public final class AiInlineCompletionService implements Disposable {
             return;
         }
         ApplicationManager.getApplication().invokeLater(() ->
-            appendDelta(editor, requestId, offset, documentStamp, text)
+            appendDelta(editor, requestId, offset, documentStamp, accumulator.triggerContext, text)
         );
     }
 
+    /**
+     * 渲染会话的剩余文本；已有的幽灵文本块就地更新并重新测量，流式追加时不必销毁重建 inlay。
+     */
     private void renderSession(Editor editor, InlineSession session) {
         String text = session.remainingText;
         int newline = text.indexOf('\n');
         String firstLine = newline < 0 ? text : text.substring(0, newline);
         String rest = newline < 0 ? "" : text.substring(newline + 1);
-        if (!firstLine.isEmpty()) {
+        String hint = hint(session, newline >= 0);
+        if (session.inlineInlay != null && session.inlineInlay.isValid() && !firstLine.isEmpty()) {
+            session.inlineInlay.getRenderer().setText(firstLine, hint);
+            session.inlineInlay.update();
+        } else if (!firstLine.isEmpty()) {
             session.inlineInlay = editor.getInlayModel()
-                .addInlineElement(session.offset, true, new GhostInlineRenderer(firstLine, acceptLineHint(newline >= 0)));
+                .addInlineElement(session.offset, true, new GhostInlineRenderer(firstLine, hint));
+        }
+        if (newline < 0) {
+            return;
         }
-        if (newline >= 0) {
+        if (session.blockInlay != null && session.blockInlay.isValid()) {
+            session.blockInlay.getRenderer().setText(rest);
+            session.blockInlay.update();
+        } else {
             int anchorLine = editor.offsetToLogicalPosition(session.offset).line;
             int lineStartX = lineStartX(editor, anchorLine);
             session.blockInlay = editor.getInlayModel()
@@ -394,6 +629,18 @@ public final class AiInlineCompletionService implements Disposable {
         }
     }
 
+    private void recordAccepted(InlineSession session, AiCompletionMetrics.SuggestionEvent event) {
+        if (!session.accepted) {
+            triggerGate.recordAccepted(session.triggerContext);
+        }
+        session.accepted = true;
+        recordSuggestion(session, event);
+    }
+
+    private void recordSuggestion(InlineSession session, AiCompletionMetrics.SuggestionEvent event) {
+        AiCompletionMetrics.getInstance().recordSuggestion(session.profile, event);
+    }
+
     private InlineSession validSession(Editor editor) {
         InlineSession session = editor == null ? null : editor.getUserData(SESSION_KEY);
         if (session == null || session.remainingText.isBlank()) {
@@ -419,8 +666,17 @@ public final class AiInlineCompletionService implements Disposable {
         return newline < 0 ? text : text.substring(0, newline + 1);
     }
 
-    private String acceptLineHint(boolean multiline) {
-        return multiline ? I18n.t("inlineCompletion.hint.acceptLine") : "";
+    private String hint(InlineSession session, boolean multiline) {
+        String hint = multiline ? I18n.t("inlineCompletion.hint.acceptLine") : "";
+        if (session.candidates == null) {
+            return hint;
+        }
+        String candidates = I18n.t(
+            "inlineCompletion.hint.candidates",
+            session.candidateIndex + 1,
+            session.candidates.size()
+        );
+        return hint.isEmpty() ? candidates : hint + "  " + candidates;
     }
 
     private String normalizeDelta(String delta) {
@@ -438,17 +694,35 @@ public final class AiInlineCompletionService implements Disposable {
     }
 
     private static final class InlineSession {
+        private final AiModelProfile profile;
+        private final AiTriggerContextClassifier.TriggerContext triggerContext;
+        private final int requestOffset;
+        private final long requestStamp;
+        private boolean accepted;
+        private List<String> candidates;
+        private AiCompletionCancellation alternatesRequest;
+        private int candidateIndex;
         private int offset;
         private String rawText;
         private String remainingText;
         private long documentStamp;
-        private Inlay<?> inlineInlay;
-        private Inlay<?> blockInlay;
+        private Inlay<GhostInlineRenderer> inlineInlay;
+        private Inlay<GhostBlockRenderer> blockInlay;
         private DocumentListener documentListener;
         private CaretListener caretListener;
         private Disposable invalidationDisposable;
 
-        private InlineSession(int offset, String remainingText, long documentStamp) {
+        private InlineSession(
+            int offset,
+            String remainingText,
+            long documentStamp,
+            AiModelProfile profile,
+            AiTriggerContextClassifier.TriggerContext triggerContext
+        ) {
+            this.profile = profile;
+            this.triggerContext = triggerContext;
+            this.requestOffset = offset;
+            this.requestStamp = documentStamp;
             this.offset = offset;
             this.rawText = remainingText;
             this.remainingText = remainingText;
@@ -504,6 +778,9 @@ public final class AiInlineCompletionService implements Disposable {
         }
 
         private void dispose(Editor editor) {
+            if (alternatesRequest != null) {
+                alternatesRequest.cancel();
+            }
             detachInvalidationListeners(editor);
             disposeInlays();
         }
@@ -522,57 +799,80 @@ public final class AiInlineCompletionService implements Disposable {
 
     private static final class StreamAccumulator {
         private final StringBuilder buffer = new StringBuilder();
+        private final AiTriggerContextClassifier.TriggerContext triggerContext;
         private boolean flushScheduled;
+
+        private StreamAccumulator(AiTriggerContextClassifier.TriggerContext triggerContext) {
+            this.triggerContext = triggerContext;
+        }
     }
 
     private static final class GhostInlineRenderer implements EditorCustomElementRenderer {
-        private final String text;
-        private final String hint;
+        private String text;
+        private String hint;
+        private GhostTextLayout textLayout;
+        private GhostTextLayout hintLayout;
 
         private GhostInlineRenderer(String text, String hint) {
+            setText(text, hint);
+        }
+
+        private void setText(String text, String hint) {
             this.text = text;
             this.hint = hint == null ? "" : hint;
         }
 
         @Override
         public int calcWidthInPixels(Inlay inlay) {
-            int width = textWidth(inlay, text);
+            layout(inlay);
+            int width = textLayout.width;
             if (!hint.isBlank()) {
-                width += hintGapWidth(inlay) + textWidth(inlay, hint);
+                width += hintGapWidth(textLayout) + hintLayout.width;
             }
             return width;
         }
 
         @Override
         public void paint(Inlay inlay, Graphics graphics, Rectangle targetRegion, TextAttributes textAttributes) {
+            layout(inlay);
             graphics.setColor(GHOST_FOREGROUND);
-            FontMetrics metrics = fontMetrics(inlay, editorFont(inlay));
-            int baseline = targetRegion.y + metrics.getAscent();
-            drawGhostText(inlay, graphics, text, targetRegion.x, baseline);
+            int baseline = targetRegion.y + textLayout.ascent;
+            textLayout.draw(graphics, targetRegion.x, baseline);
             if (!hint.isBlank()) {
-                int hintX = targetRegion.x + textWidth(inlay, text) + hintGapWidth(inlay);
-                drawGhostText(inlay, graphics, hint, hintX, baseline);
+                hintLayout.draw(graphics, targetRegion.x + textLayout.width + hintGapWidth(textLayout), baseline);
             }
         }
+
+        private void layout(Inlay inlay) {
+            Font editorFont = editorFont(inlay);
+            Component component = inlay.getEditor().getContentComponent();
+            textLayout = GhostTextLayout.reuseOrBuild(textLayout, component, editorFont, text);
+            hintLayout = GhostTextLayout.reuseOrBuild(hintLayout, component, editorFont, hint);
+        }
     }
 
     private static final class GhostBlockRenderer implements EditorCustomElementRenderer {
-        private final List<String> lines;
         private final int lineStartX;
+        private List<String> lines;
+        private List<GhostTextLayout> layouts = new ArrayList<>();
 
         private GhostBlockRenderer(String text, int lineStartX) {
-            this.lines = splitLines(text);
             this.lineStartX = Math.max(0, lineStartX);
+            setText(text);
+        }
+
+        private void setText(String text) {
+            this.lines = splitLines(text);
         }
 
         @Override
         public int calcWidthInPixels(Inlay inlay) {
-            FontMetrics metrics = fontMetrics(inlay, editorFont(inlay));
+            layout(inlay);
             int width = 0;
-            for (String line : lines) {
-                width = Math.max(width, textWidth(inlay, line));
+            for (GhostTextLayout layout : layouts) {
+                width = Math.max(width, layout.width);
             }
-            return Math.max(1, width + lineStartX + metrics.charWidth('m'));
+            return Math.max(1, width + lineStartX + layouts.get(0).trailingWidth);
         }
 
         @Override
@@ -582,17 +882,29 @@ public final class AiInlineCompletionService implements Disposable {
 
         @Override
         public void paint(Inlay inlay, Graphics graphics, Rectangle targetRegion, TextAttributes textAttributes) {
+            layout(inlay);
             graphics.setColor(GHOST_FOREGROUND);
-            FontMetrics metrics = fontMetrics(inlay, editorFont(inlay));
-            int y = targetRegion.y + metrics.getAscent();
-            for (String line : lines) {
-                if (!line.isEmpty()) {
-                    drawGhostText(inlay, graphics, line, lineStartX, y);
-                }
+            int y = targetRegion.y + layouts.get(0).ascent;
+            for (GhostTextLayout layout : layouts) {
+                layout.draw(graphics, lineStartX, y);
                 y += inlay.getEditor().getLineHeight();
             }
         }
 
+        /**
+         * 流式追加时前面的行不会变化，按行复用已有布局，只重新测量变化的行。
+         */
+        private void layout(Inlay inlay) {
+            Font editorFont = editorFont(inlay);
+            Component component = inlay.getEditor().getContentComponent();
+            List<GhostTextLayout> updated = new ArrayList<>(lines.size());
+            for (int i = 0; i < lines.size(); i++) {
+                GhostTextLayout cached = i < layouts.size() ? layouts.get(i) : null;
+                updated.add(GhostTextLayout.reuseOrBuild(cached, component, editorFont, lines.get(i)));
+            }
+            layouts = updated;
+        }
+
         private static List<String> splitLines(String text) {
             List<String> result = new ArrayList<>();
             for (String line : text.split("\\n", -1)) {
@@ -602,71 +914,102 @@ public final class AiInlineCompletionService implements Disposable {
         }
     }
 
-    private static Font editorFont(Inlay inlay) {
-        return inlay.getEditor().getColorsScheme().getFont(EditorFontType.PLAIN);
-    }
-
-    private static FontMetrics fontMetrics(Inlay inlay, Font font) {
-        return inlay.getEditor().getContentComponent().getFontMetrics(font);
-    }
-
-    private static int textWidth(Inlay inlay, String text) {
-        Component component = inlay.getEditor().getContentComponent();
-        Font editorFont = editorFont(inlay);
-        int width = 0;
-        int index = 0;
-        while (index < text.length()) {
-            int codePoint = text.codePointAt(index);
-            Font font = displayFont(editorFont, codePoint);
-            int next = nextFontRunEnd(text, index, font, editorFont);
-            width += component.getFontMetrics(font).stringWidth(text.substring(index, next));
-            index = next;
+    /**
+     * 一段幽灵文本按字体回退切好的片段及其横向位置；编辑器字体（含配色方案切换带来的字体变化）
+     * 和文本都不变时直接复用，绘制和计算宽度不再重复查字体与测量字符串。
+     */
+    private static final class GhostTextLayout {
+        private final Font editorFont;
+        private final String text;
+        private final Font[] runFonts;
+        private final String[] runTexts;
+        private final int[] runX;
+        private final int width;
+        private final int ascent;
+        private final int spaceWidth;
+        private final int trailingWidth;
+
+        private GhostTextLayout(Component component, Font editorFont, String text) {
+            this.editorFont = editorFont;
+            this.text = text;
+            FontMetrics editorMetrics = component.getFontMetrics(editorFont);
+            this.ascent = editorMetrics.getAscent();
+            this.spaceWidth = editorMetrics.charWidth(' ');
+            this.trailingWidth = editorMetrics.charWidth('m');
+            List<Font> fonts = new ArrayList<>();
+            List<String> texts = new ArrayList<>();
+            List<Integer> offsets = new ArrayList<>();
+            Font monospaced = null;
+            Font dialog = null;
+            int x = 0;
+            int index = 0;
+            while (index < text.length()) {
+                Font font = editorFont;
+                int next = index;
+                while (next < text.length()) {
+                    int codePoint = text.codePointAt(next);
+                    Font candidate;
+                    if (editorFont.canDisplay(codePoint)) {
+                        candidate = editorFont;
+                    } else {
+                        if (monospaced == null) {
+                            monospaced = new Font(Font.MONOSPACED, editorFont.getStyle(), editorFont.getSize());
+                        }
+                        if (monospaced.canDisplay(codePoint)) {
+                            candidate = monospaced;
+                        } else {
+                            if (dialog == null) {
+                                dialog = new Font(Font.DIALOG, editorFont.getStyle(), editorFont.getSize());
+                            }
+                            candidate = dialog;
+                        }
+                    }
+                    if (next == index) {
+                        font = candidate;
+                    } else if (candidate != font) {
+                        break;
+                    }
+                    next += Character.charCount(codePoint);
+                }
+                String run = text.substring(index, next);
+                fonts.add(font);
+                texts.add(run);
+                offsets.add(x);
+                x += component.getFontMetrics(font).stringWidth(run);
+                index = next;
+            }
+            this.runFonts = fonts.toArray(Font[]::new);
+            this.runTexts = texts.toArray(String[]::new);
+            this.runX = offsets.stream().mapToInt(Integer::intValue).toArray();
+            this.width = x;
+        }
+
+        private static GhostTextLayout reuseOrBuild(
+            GhostTextLayout cached,
+            Component component,
+            Font editorFont,
+            String text
+        ) {
+            if (cached != null && cached.editorFont.equals(editorFont) && cached.text.equals(text)) {
+                return cached;
+            }
+            return new GhostTextLayout(component, editorFont, text);
         }
-        return width;
-    }
 
-    private static int hintGapWidth(Inlay inlay) {
-        return fontMetrics(inlay, editorFont(inlay)).charWidth(' ') * INLINE_HINT_GAP_CHARS;
-    }
-
-    private static void drawGhostText(Inlay inlay, Graphics graphics, String text, int x, int baseline) {
-        Component component = inlay.getEditor().getContentComponent();
-        Font editorFont = editorFont(inlay);
-        int currentX = x;
-        int index = 0;
-        while (index < text.length()) {
-            int codePoint = text.codePointAt(index);
-            Font font = displayFont(editorFont, codePoint);
-            int next = nextFontRunEnd(text, index, font, editorFont);
-            String run = text.substring(index, next);
-            graphics.setFont(font);
-            graphics.drawString(run, currentX, baseline);
-            currentX += component.getFontMetrics(font).stringWidth(run);
-            index = next;
+        private void draw(Graphics graphics, int x, int baseline) {
+            for (int i = 0; i < runTexts.length; i++) {
+                graphics.setFont(runFonts[i]);
+                graphics.drawString(runTexts[i], x + runX[i], baseline);
+            }
         }
     }
 
-    private static int nextFontRunEnd(String text, int start, Font font, Font editorFont) {
-        int index = start;
-        while (index < text.length()) {
-            int codePoint = text.codePointAt(index);
-            if (!displayFont(editorFont, codePoint).equals(font)) {
-                break;
-            }
-            index += Character.charCount(codePoint);
-        }
-        return index;
+    private static Font editorFont(Inlay inlay) {
+        return inlay.getEditor().getColorsScheme().getFont(EditorFontType.PLAIN);
     }
 
-    private static Font displayFont(Font editorFont, int codePoint) {
-        if (editorFont.canDisplay(codePoint)) {
-            return editorFont;
-        }
-        Font monospaced = new Font(Font.MONOSPACED, editorFont.getStyle(), editorFont.getSize());
-        if (monospaced.canDisplay(codePoint)) {
-            return monospaced;
-        }
-        return new Font(Font.DIALOG, editorFont.getStyle(), editorFont.getSize());
+    private static int hintGapWidth(GhostTextLayout layout) {
+        return layout.spaceWidth * INLINE_HINT_GAP_CHARS;
     }
 
     private static int lineStartX(Editor editor, int line) {
@@ -10,6 +10,10 @@ import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.EditorFactory;
 import com.intellij.openapi.editor.actionSystem.EditorActionHandler;
 import com.intellij.openapi.editor.actionSystem.EditorActionManager;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
+import com.intellij.openapi.editor.ex.EditorEventMulticasterEx;
+import com.intellij.openapi.editor.ex.FocusChangeListener;
 import com.intellij.openapi.actionSystem.KeyboardShortcut;
 import com.intellij.openapi.actionSystem.Shortcut;
 import com.intellij.openapi.keymap.Keymap;
@@ -37,6 +41,7 @@ public class AiInlineCompletionStartupActivity implements ProjectActivity {
         ApplicationManager.getApplication().invokeLater(() -> {
             if (!project.isDisposed()) {
                 install(project);
+                AiCompletionRetrievalService.getInstance(project).install();
             }
         });
         return Unit.INSTANCE;
@@ -63,9 +68,35 @@ public class AiInlineCompletionStartupActivity implements ProjectActivity {
             new ScheduleInlineCompletionEnterHandler(originalEnterHandler)
         );
         installAcceptLineKeyDispatcher();
+        installConnectionPrewarm();
+        installHeaderRangeInvalidation();
         syncManualCompletionShortcut();
     }
 
+    private void installHeaderRangeInvalidation() {
+        EditorFactory.getInstance().getEventMulticaster().addDocumentListener(new DocumentListener() {
+            @Override
+            public void documentChanged(@NotNull DocumentEvent event) {
+                AiCompletionContextBuilder.invalidateHeaderRange(event);
+            }
+        }, AiInlineCompletionService.getInstance());
+    }
+
+    private void installConnectionPrewarm() {
+        if (!(EditorFactory.getInstance().getEventMulticaster() instanceof EditorEventMulticasterEx multicaster)) {
+            return;
+        }
+        multicaster.addFocusChangeListener(new FocusChangeListener() {
+            @Override
+            public void focusGained(@NotNull Editor editor) {
+                Project project = editor.getProject();
+                if (project != null && !project.isDisposed()) {
+                    AiInlineCompletionService.getInstance().prewarmConnection(project, editor);
+                }
+            }
+        }, AiInlineCompletionService.getInstance());
+    }
+
     private void installAcceptLineKeyDispatcher() {
         KeyboardFocusManager.getCurrentKeyboardFocusManager().addKeyEventDispatcher(event -> {
             Component component = event.getComponent();
@@ -232,7 +263,7 @@ public class AiInlineCompletionStartupActivity implements ProjectActivity {
             Project project = dataContext.getData(CommonDataKeys.PROJECT);
             if (project != null && shouldScheduleAutoCompletion() && AiCompletionEditorGuard.isEligible(project, editor)) {
                 AiInlineCompletionService.getInstance().hide(editor);
-                AiInlineCompletionService.getInstance().scheduleAuto(project, editor);
+                AiInlineCompletionService.getInstance().scheduleAuto(project, editor, '\n');
             }
         }
 
@@ -0,0 +1,40 @@
+package com.github.mostbean.codingswitch.service;
+
+import java.util.Arrays;
+
+/**
+ * 固定容量的耗时样本环，只保留最近的样本，用于计算分位数。
+ */
+final class AiLatencySamples {
+
+    private final long[] samples;
+    private int count;
+    private int next;
+
+    AiLatencySamples(int capacity) {
+        this.samples = new long[Math.max(1, capacity)];
+    }
+
+    synchronized void add(long value) {
+        samples[next] = Math.max(0, value);
+        next = (next + 1) % samples.length;
+        count = Math.min(samples.length, count + 1);
+    }
+
+    synchronized int count() {
+        return count;
+    }
+
+    /**
+     * 返回最近样本的分位数（0~1），没有样本时返回 -1。
+     */
+    synchronized long percentile(double quantile) {
+        if (count == 0) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.round(Math.max(0, Math.min(1, quantile)) * (count - 1));
+        return sorted[index];
+    }
+}
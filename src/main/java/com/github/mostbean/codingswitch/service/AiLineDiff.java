@@ -0,0 +1,233 @@
+package com.github.mostbean.codingswitch.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按行比较的 Myers 差异算法（线性空间的中间蛇分治版本），时间 O((N+M)·D)。
+ * 行先映射为整数 ID 再比较；只在一侧出现的行必然是改动，比较前直接剔除，
+ * 大范围重写时 D 会明显变小。单个子问题的编辑距离超过上限时整段按删除加插入处理，
+ * 结果仍是合法的差异，只是不一定最短。
+ */
+final class AiLineDiff {
+
+    private static final int MAX_COST = 1024;
+
+    enum Type {
+        EQUAL,
+        DELETE,
+        INSERT
+    }
+
+    /**
+     * oldLine / newLine 从 1 开始，对应一侧不存在时为 0。
+     */
+    record Line(Type type, String text, int oldLine, int newLine) {
+    }
+
+    private final int[] a;
+    private final int[] b;
+    private final int[] aIndex;
+    private final int[] bIndex;
+    private final boolean[] deleted;
+    private final boolean[] inserted;
+
+    private AiLineDiff(int[] a, int[] b, int[] aIndex, int[] bIndex, boolean[] deleted, boolean[] inserted) {
+        this.a = a;
+        this.b = b;
+        this.aIndex = aIndex;
+        this.bIndex = bIndex;
+        this.deleted = deleted;
+        this.inserted = inserted;
+    }
+
+    static List<Line> diff(String[] before, String[] after) {
+        Map<String, Integer> ids = new HashMap<>();
+        int[] oldIds = intern(before, ids);
+        int[] newIds = intern(after, ids);
+        int[] oldCounts = new int[ids.size()];
+        int[] newCounts = new int[ids.size()];
+        for (int id : oldIds) {
+            oldCounts[id]++;
+        }
+        for (int id : newIds) {
+            newCounts[id]++;
+        }
+
+        boolean[] deleted = new boolean[oldIds.length];
+        boolean[] inserted = new boolean[newIds.length];
+        int[] aIndex = keepShared(oldIds, newCounts, deleted);
+        int[] bIndex = keepShared(newIds, oldCounts, inserted);
+        new AiLineDiff(select(oldIds, aIndex), select(newIds, bIndex), aIndex, bIndex, deleted, inserted)
+            .compare(0, aIndex.length, 0, bIndex.length);
+        return toLines(before, after, deleted, inserted);
+    }
+
+    private static int[] intern(String[] lines, Map<String, Integer> ids) {
+        int[] result = new int[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            Integer id = ids.get(lines[i]);
+            if (id == null) {
+                id = ids.size();
+                ids.put(lines[i], id);
+            }
+            result[i] = id;
+        }
+        return result;
+    }
+
+    /**
+     * 返回在另一侧也出现过的行的下标，其余行直接标记为改动。
+     */
+    private static int[] keepShared(int[] ids, int[] otherCounts, boolean[] changed) {
+        int[] kept = new int[ids.length];
+        int size = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (otherCounts[ids[i]] > 0) {
+                kept[size++] = i;
+            } else {
+                changed[i] = true;
+            }
+        }
+        return Arrays.copyOf(kept, size);
+    }
+
+    private static int[] select(int[] ids, int[] indexes) {
+        int[] result = new int[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            result[i] = ids[indexes[i]];
+        }
+        return result;
+    }
+
+    private static List<Line> toLines(String[] before, String[] after, boolean[] deleted, boolean[] inserted) {
+        List<Line> lines = new ArrayList<>(Math.max(before.length, after.length));
+        int i = 0;
+        int j = 0;
+        while (i < before.length || j < after.length) {
+            if (i < before.length && deleted[i]) {
+                lines.add(new Line(Type.DELETE, before[i], i + 1, 0));
+                i++;
+            } else if (j < after.length && inserted[j]) {
+                lines.add(new Line(Type.INSERT, after[j], 0, j + 1));
+                j++;
+            } else {
+                lines.add(new Line(Type.EQUAL, before[i], i + 1, j + 1));
+                i++;
+                j++;
+            }
+        }
+        return lines;
+    }
+
+    private void compare(int aLo, int aHi, int bLo, int bHi) {
+        while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) {
+            aLo++;
+            bLo++;
+        }
+        while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) {
+            aHi--;
+            bHi--;
+        }
+        if (aLo == aHi || bLo == bHi) {
+            markChanged(aLo, aHi, bLo, bHi);
+            return;
+        }
+        long split = middleSnake(aLo, aHi, bLo, bHi);
+        if (split < 0) {
+            markChanged(aLo, aHi, bLo, bHi);
+            return;
+        }
+        int x = aLo + (int) (split >>> 32);
+        int y = bLo + (int) split;
+        compare(aLo, x, bLo, y);
+        compare(x, aHi, y, bHi);
+    }
+
+    /**
+     * 同时从两端搜索，返回相遇点（高 32 位为 a 的偏移，低 32 位为 b 的偏移）；
+     * 超过编辑距离上限或没有公共行时返回 -1。
+     */
+    private long middleSnake(int aLo, int aHi, int bLo, int bHi) {
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        int maxD = Math.min((n + m + 1) / 2, MAX_COST);
+        int offset = maxD + 1;
+        int length = 2 * offset + 1;
+        int[] forward = new int[length];
+        int[] backward = new int[length];
+        Arrays.fill(forward, -1);
+        Arrays.fill(backward, -1);
+        forward[offset + 1] = 0;
+        backward[offset + 1] = 0;
+        int delta = n - m;
+        boolean oddDelta = (delta & 1) != 0;
+        int forwardStart = 0;
+        int forwardEnd = 0;
+        int backwardStart = 0;
+        int backwardEnd = 0;
+        for (int d = 0; d < maxD; d++) {
+            for (int k = -d + forwardStart; k <= d - forwardEnd; k += 2) {
+                int index = offset + k;
+                int x = k == -d || (k != d && forward[index - 1] < forward[index + 1])
+                    ? forward[index + 1]
+                    : forward[index - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && a[aLo + x] == b[bLo + y]) {
+                    x++;
+                    y++;
+                }
+                forward[index] = x;
+                if (x > n) {
+                    forwardEnd += 2;
+                } else if (y > m) {
+                    forwardStart += 2;
+                } else if (oddDelta) {
+                    int other = offset + delta - k;
+                    if (other >= 0 && other < length && backward[other] != -1 && x >= n - backward[other]) {
+                        return ((long) x << 32) | y;
+                    }
+                }
+            }
+            for (int k = -d + backwardStart; k <= d - backwardEnd; k += 2) {
+                int index = offset + k;
+                int x = k == -d || (k != d && backward[index - 1] < backward[index + 1])
+                    ? backward[index + 1]
+                    : backward[index - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && a[aHi - x - 1] == b[bHi - y - 1]) {
+                    x++;
+                    y++;
+                }
+                backward[index] = x;
+                if (x > n) {
+                    backwardEnd += 2;
+                } else if (y > m) {
+                    backwardStart += 2;
+                } else if (!oddDelta) {
+                    int other = offset + delta - k;
+                    if (other >= 0 && other < length && forward[other] != -1) {
+                        int forwardX = forward[other];
+                        int forwardY = forwardX - (other - offset);
+                        if (forwardX >= n - x) {
+                            return ((long) forwardX << 32) | forwardY;
+                        }
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void markChanged(int aLo, int aHi, int bLo, int bHi) {
+        for (int i = aLo; i < aHi; i++) {
+            deleted[aIndex[i]] = true;
+        }
+        for (int j = bLo; j < bHi; j++) {
+            inserted[bIndex[j]] = true;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.mostbean.codingswitch.service;
+
+/**
+ * 单行补全过滤器：跳过开头的空行，只输出第一条非空行，行尾空白在后面出现非空字符前暂缓输出。
+ */
+final class AiSingleLineDeltaFilter implements AiCompletionDeltaFilter {
+
+    private final StringBuilder pendingWhitespace = new StringBuilder();
+    private boolean lineStarted;
+    private boolean done;
+
+    @Override
+    public String append(String delta) {
+        if (done || delta.isEmpty()) {
+            return "";
+        }
+        StringBuilder visible = new StringBuilder(delta.length());
+        for (int i = 0; i < delta.length(); i++) {
+            char ch = delta.charAt(i);
+            if (ch == '\n' || ch == '\r') {
+                if (lineStarted) {
+                    done = true;
+                    break;
+                }
+                pendingWhitespace.setLength(0);
+            } else if (Character.isWhitespace(ch)) {
+                pendingWhitespace.append(ch);
+            } else {
+                visible.append(pendingWhitespace).append(ch);
+                pendingWhitespace.setLength(0);
+                lineStarted = true;
+            }
+        }
+        return visible.toString();
+    }
+
+    @Override
+    public String finish() {
+        done = true;
+        return "";
+    }
+}
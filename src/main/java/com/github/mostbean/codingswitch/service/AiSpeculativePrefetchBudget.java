@@ -0,0 +1,95 @@
+package com.github.mostbean.codingswitch.service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.LongSupplier;
+
+/**
+ * 投机预取的发起预算：每分钟最多发起固定次数；最近的预取命中率过低时暂停，
+ * 暂停期间每隔一段时间放行一次探测请求，避免预取让 token 消耗翻倍。
+ */
+final class AiSpeculativePrefetchBudget {
+
+    private static final long WINDOW_MS = 60_000;
+    private static final long PROBE_INTERVAL_MS = 120_000;
+    private static final int MAX_PER_WINDOW = 6;
+    private static final int HISTORY_SIZE = 20;
+    private static final int MIN_SAMPLES = 5;
+    private static final double MIN_HIT_RATE = 0.25;
+
+    private final LongSupplier clock;
+    private final Deque<Prefetch> history = new ArrayDeque<>();
+    private long nextId;
+
+    AiSpeculativePrefetchBudget() {
+        this(System::currentTimeMillis);
+    }
+
+    AiSpeculativePrefetchBudget(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * 申请一次预取额度，成功时返回用于回报命中的预取 ID，否则返回 0。
+     */
+    synchronized long tryAcquire() {
+        long now = clock.getAsLong();
+        int inWindow = 0;
+        for (Prefetch prefetch : history) {
+            if (now - prefetch.issuedAt < WINDOW_MS) {
+                inWindow++;
+            }
+        }
+        if (inWindow >= MAX_PER_WINDOW) {
+            return 0;
+        }
+        if (history.size() >= MIN_SAMPLES
+            && hitRate() < MIN_HIT_RATE
+            && now - history.peekLast().issuedAt < PROBE_INTERVAL_MS) {
+            return 0;
+        }
+        Prefetch prefetch = new Prefetch(++nextId, now);
+        history.addLast(prefetch);
+        if (history.size() > HISTORY_SIZE) {
+            history.removeFirst();
+        }
+        return prefetch.id;
+    }
+
+    synchronized void recordHit(long id) {
+        for (Prefetch prefetch : history) {
+            if (prefetch.id == id) {
+                prefetch.hit = true;
+                return;
+            }
+        }
+    }
+
+    /**
+     * 归还已申请但最终没有发出请求的额度，不计入频率限制和命中率。
+     */
+    synchronized void release(long id) {
+        history.removeIf(prefetch -> prefetch.id == id);
+    }
+
+    private double hitRate() {
+        int hits = 0;
+        for (Prefetch prefetch : history) {
+            if (prefetch.hit) {
+                hits++;
+            }
+        }
+        return history.isEmpty() ? 1 : (double) hits / history.size();
+    }
+
+    private static final class Prefetch {
+        private final long id;
+        private final long issuedAt;
+        private boolean hit;
+
+        private Prefetch(long id, long issuedAt) {
+            this.id = id;
+            this.issuedAt = issuedAt;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.github.mostbean.codingswitch.service;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 字节级 SSE 分帧：逐字节识别行结束符和 data 字段，只把 data 的值复制到复用的缓冲区，
+ * 事件结束时一次性解码 UTF-8，注释、event、id 等字段不解码也不分配字符串。
+ * data 值两端的空白会被去掉，多行 data 以换行连接，[DONE] 事件直接丢弃。
+ */
+final class AiSseFramer {
+
+    /**
+     * 接收一个完整事件的 data 内容，Reader 只在回调期间有效。
+     */
+    @FunctionalInterface
+    interface EventHandler {
+        void onEvent(Reader data) throws IOException;
+    }
+
+    private static final byte[] DATA_FIELD = {'d', 'a', 't', 'a'};
+    private static final byte[] DONE_EVENT = "[DONE]".getBytes(StandardCharsets.US_ASCII);
+    private static final int LINE_START = 0;
+    private static final int FIELD = 1;
+    private static final int VALUE_START = 2;
+    private static final int VALUE = 3;
+    private static final int IGNORED_LINE = 4;
+
+    private final EventHandler handler;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private byte[] data = new byte[1024];
+    private char[] chars = new char[1024];
+    private int dataLength;
+    private int valueEnd;
+    private int fieldMatched;
+    private int state = LINE_START;
+    private boolean skipLineFeed;
+
+    AiSseFramer(EventHandler handler) {
+        this.handler = handler;
+    }
+
+    void feed(byte[] bytes, int offset, int length) throws IOException {
+        for (int i = offset; i < offset + length; i++) {
+            byte b = bytes[i];
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (b == '\n') {
+                    continue;
+                }
+            }
+            if (b == '\n' || b == '\r') {
+                skipLineFeed = b == '\r';
+                endLine();
+                continue;
+            }
+            switch (state) {
+                case LINE_START -> {
+                    state = b == DATA_FIELD[0] ? FIELD : IGNORED_LINE;
+                    fieldMatched = 1;
+                }
+                case FIELD -> {
+                    if (fieldMatched == DATA_FIELD.length) {
+                        state = b == ':' ? VALUE_START : IGNORED_LINE;
+                        if (state == VALUE_START && dataLength > 0) {
+                            append((byte) '\n');
+                        }
+                        valueEnd = dataLength;
+                    } else if (b == DATA_FIELD[fieldMatched]) {
+                        fieldMatched++;
+                    } else {
+                        state = IGNORED_LINE;
+                    }
+                }
+                case VALUE_START, VALUE -> {
+                    boolean blank = (b & 0xff) <= ' ';
+                    if (state == VALUE_START && blank) {
+                        continue;
+                    }
+                    state = VALUE;
+                    append(b);
+                    if (!blank) {
+                        valueEnd = dataLength;
+                    }
+                }
+                default -> {
+                    // 注释行和其他字段直接跳过。
+                }
+            }
+        }
+    }
+
+    /**
+     * 流结束时派发最后一个未以空行结尾的事件。
+     */
+    void finish() throws IOException {
+        endLine();
+        emitEvent();
+    }
+
+    private void endLine() throws IOException {
+        if (state == LINE_START) {
+            emitEvent();
+        } else if (state == VALUE_START || state == VALUE) {
+            dataLength = valueEnd;
+        }
+        state = LINE_START;
+    }
+
+    private void emitEvent() throws IOException {
+        if (dataLength == 0) {
+            return;
+        }
+        int length = dataLength;
+        dataLength = 0;
+        if (Arrays.equals(data, 0, length, DONE_EVENT, 0, DONE_EVENT.length)) {
+            return;
+        }
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        CharBuffer out = CharBuffer.wrap(chars);
+        decoder.reset();
+        decoder.decode(ByteBuffer.wrap(data, 0, length), out, true);
+        decoder.flush(out);
+        handler.onEvent(new CharArrayReader(chars, 0, out.position()));
+    }
+
+    private void append(byte b) {
+        if (dataLength == data.length) {
+            data = Arrays.copyOf(data, data.length * 2);
+        }
+        data[dataLength++] = b;
+    }
+}
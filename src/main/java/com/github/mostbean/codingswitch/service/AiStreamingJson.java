@@ -0,0 +1,82 @@
+package com.github.mostbean.codingswitch.service;
+
+import com.google.gson.Strictness;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * 流式事件的 JSON 读取辅助：用 JsonReader 按需读取字段，不构建 JsonObject 树，
+ * 不关心的字段直接跳过，找到需要的文本后调用方可以立即返回。
+ */
+final class AiStreamingJson {
+
+    private AiStreamingJson() {
+    }
+
+    static JsonReader open(Reader reader) {
+        JsonReader json = new JsonReader(reader);
+        json.setStrictness(Strictness.LENIENT);
+        return json;
+    }
+
+    /**
+     * 下一个值是对象时进入对象并返回 true，否则跳过该值。
+     */
+    static boolean beginObject(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+            reader.beginObject();
+            return true;
+        }
+        reader.skipValue();
+        return false;
+    }
+
+    /**
+     * 下一个值是首元素为对象的数组时进入该对象并返回 true；读完后用 {@link #endFirstArrayObject} 退出。
+     * 否则跳过整个数组。
+     */
+    static boolean beginFirstArrayObject(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return false;
+        }
+        reader.beginArray();
+        if (reader.hasNext() && reader.peek() == JsonToken.BEGIN_OBJECT) {
+            reader.beginObject();
+            return true;
+        }
+        skipRemainingArray(reader);
+        return false;
+    }
+
+    static void endFirstArrayObject(JsonReader reader) throws IOException {
+        while (reader.hasNext()) {
+            reader.skipValue();
+        }
+        reader.endObject();
+        skipRemainingArray(reader);
+    }
+
+    /**
+     * 读取标量值的文本；null、对象和数组返回 null。
+     */
+    static String nextString(JsonReader reader) throws IOException {
+        return switch (reader.peek()) {
+            case STRING, NUMBER -> reader.nextString();
+            case BOOLEAN -> String.valueOf(reader.nextBoolean());
+            default -> {
+                reader.skipValue();
+                yield null;
+            }
+        };
+    }
+
+    private static void skipRemainingArray(JsonReader reader) throws IOException {
+        while (reader.hasNext()) {
+            reader.skipValue();
+        }
+        reader.endArray();
+    }
+}
@@ -0,0 +1,150 @@
+package com.github.mostbean.codingswitch.service;
+
+/**
+ * 后缀回显过滤器：模型把光标后的第一行代码又生成一遍时，从回显处截断并去掉前面的空白。
+ * 完全相同的回显用 KMP 自动机匹配；忽略空白后相同的整行逐字符比较。
+ * 只暂缓可能成为回显开头的字符和行尾空白，其余内容立即输出，每个字符只处理一次。
+ */
+final class AiSuffixEchoDeltaFilter implements AiCompletionDeltaFilter {
+
+    private final String suffixLine;
+    private final String normalizedSuffixLine;
+    private final int[] failure;
+    /** 最近 suffixLine.length() 个位置之前的内容结束位置，按位置取模存放。 */
+    private final int[] contentEnds;
+    private final StringBuilder raw = new StringBuilder();
+    private int emitted;
+    private int contentEnd;
+    private int matched;
+    private int lineStart;
+    private int lineContentEnd;
+    /** 当前行已匹配的去空白后缀字符数，-1 表示当前行不可能是回显。 */
+    private int lineMatched;
+    private boolean done;
+
+    AiSuffixEchoDeltaFilter(String fimSuffix) {
+        suffixLine = firstEffectiveLine(fimSuffix).strip();
+        normalizedSuffixLine = removeWhitespace(suffixLine);
+        failure = failureTable(suffixLine);
+        contentEnds = new int[Math.max(1, suffixLine.length())];
+        lineMatched = suffixLine.isEmpty() ? -1 : 0;
+    }
+
+    @Override
+    public String append(String delta) {
+        if (done) {
+            return "";
+        }
+        for (int i = 0; i < delta.length(); i++) {
+            char ch = delta.charAt(i);
+            int position = raw.length();
+            raw.append(ch);
+            contentEnds[position % contentEnds.length] = contentEnd;
+            boolean whitespace = Character.isWhitespace(ch);
+            if (!whitespace) {
+                contentEnd = position + 1;
+            }
+            if (suffixLine.isEmpty()) {
+                continue;
+            }
+            if (advanceExact(ch)) {
+                done = true;
+                return emitUntil(contentEndBefore(raw.length() - suffixLine.length()));
+            }
+            if (ch == '\n') {
+                if (lineMatched == normalizedSuffixLine.length()) {
+                    done = true;
+                    return emitUntil(lineContentEnd);
+                }
+                lineStart = position + 1;
+                lineContentEnd = contentEnd;
+                lineMatched = 0;
+            } else if (!whitespace && lineMatched >= 0) {
+                lineMatched = lineMatched < normalizedSuffixLine.length()
+                    && normalizedSuffixLine.charAt(lineMatched) == ch ? lineMatched + 1 : -1;
+            }
+        }
+        int exactStart = raw.length() - matched;
+        if (lineMatched >= 0 && lineStart <= exactStart) {
+            return emitUntil(lineContentEnd);
+        }
+        return emitUntil(contentEndBefore(exactStart));
+    }
+
+    @Override
+    public String finish() {
+        if (done) {
+            return "";
+        }
+        done = true;
+        if (!suffixLine.isEmpty() && lineMatched == normalizedSuffixLine.length()) {
+            return emitUntil(lineContentEnd);
+        }
+        return emitUntil(contentEnd);
+    }
+
+    private boolean advanceExact(char ch) {
+        while (matched > 0 && suffixLine.charAt(matched) != ch) {
+            matched = failure[matched - 1];
+        }
+        if (suffixLine.charAt(matched) == ch) {
+            matched++;
+        }
+        return matched == suffixLine.length();
+    }
+
+    /**
+     * 返回 position 之前最后一个非空白字符的结束位置；position 只会落在最近 suffixLine.length() 个位置内。
+     */
+    private int contentEndBefore(int position) {
+        return position >= raw.length() ? contentEnd : contentEnds[position % contentEnds.length];
+    }
+
+    private String emitUntil(int end) {
+        if (end <= emitted) {
+            return "";
+        }
+        String next = raw.substring(emitted, end);
+        emitted = end;
+        return next;
+    }
+
+    private static int[] failureTable(String pattern) {
+        int[] table = new int[pattern.length()];
+        int length = 0;
+        for (int i = 1; i < pattern.length(); i++) {
+            while (length > 0 && pattern.charAt(i) != pattern.charAt(length)) {
+                length = table[length - 1];
+            }
+            if (pattern.charAt(i) == pattern.charAt(length)) {
+                length++;
+            }
+            table[i] = length;
+        }
+        return table;
+    }
+
+    private static String firstEffectiveLine(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        String normalized = text.replace("\r\n", "\n").replace("\r", "\n");
+        for (String line : normalized.split("\n", -1)) {
+            if (!line.isBlank()) {
+                return line.stripTrailing();
+            }
+        }
+        return "";
+    }
+
+    private static String removeWhitespace(String value) {
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (!Character.isWhitespace(ch)) {
+                result.append(ch);
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.mostbean.codingswitch.service;
+
+import com.github.mostbean.codingswitch.model.AiModelProfile;
+import com.github.mostbean.codingswitch.model.AiTokenizerKind;
+
+/**
+ * 补全上下文的 token 计数与按预算截断。区间参数均为 [start, end)，不截取子串。
+ */
+interface AiTokenizer {
+
+    int countTokens(CharSequence text, int start, int end);
+
+    /**
+     * 从 end 向前保留不超过 budget 个 token，返回保留部分的起始位置。
+     */
+    int fitTail(CharSequence text, int start, int end, int budget);
+
+    /**
+     * 从 start 向后保留不超过 budget 个 token，返回保留部分的结束位置。
+     */
+    int fitHead(CharSequence text, int start, int end, int budget);
+
+    static AiTokenizer forProfile(AiModelProfile profile) {
+        AiTokenizerKind kind = profile == null ? AiTokenizerKind.CHARS_ESTIMATE : profile.getTokenizer();
+        return switch (kind) {
+            case BPE_ESTIMATE -> AiBpeTokenEstimator.INSTANCE;
+            case CHARS_ESTIMATE -> AiCharsTokenEstimator.INSTANCE;
+        };
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.mostbean.codingswitch.service;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 按触发上下文类别学习自动补全的接受率：每次展示建议记一次触发，建议被接受记一次接受，
+ * 计数按指数衰减，只反映最近几十次的表现。接受率低于阈值的类别只保留少量探索请求，
+ * 使用习惯变化后仍能重新放开。
+ */
+final class AiTriggerAcceptanceModel {
+
+    private static final double DECAY = 0.97;
+    private static final double MIN_SAMPLES = 12;
+    private static final double EXPLORE_RATE = 0.1;
+
+    private final Map<AiTriggerContextClassifier.TriggerContext, Counts> counts =
+        new EnumMap<>(AiTriggerContextClassifier.TriggerContext.class);
+
+    synchronized void recordTriggered(AiTriggerContextClassifier.TriggerContext context) {
+        Counts entry = counts.computeIfAbsent(context, ignored -> new Counts());
+        entry.triggered = entry.triggered * DECAY + 1;
+        entry.accepted *= DECAY;
+    }
+
+    synchronized void recordAccepted(AiTriggerContextClassifier.TriggerContext context) {
+        Counts entry = counts.get(context);
+        if (entry != null) {
+            entry.accepted = Math.min(entry.triggered, entry.accepted + 1);
+        }
+    }
+
+    /**
+     * 样本不足或接受率不低于 minAcceptRate 时放行；否则按探索概率放行，random 取 [0, 1)。
+     */
+    synchronized boolean shouldTrigger(AiTriggerContextClassifier.TriggerContext context, double minAcceptRate, double random) {
+        if (suppressed(counts.get(context), minAcceptRate)) {
+            return random < EXPLORE_RATE;
+        }
+        return true;
+    }
+
+    synchronized Map<AiTriggerContextClassifier.TriggerContext, Stats> stats(double minAcceptRate) {
+        Map<AiTriggerContextClassifier.TriggerContext, Stats> stats =
+            new EnumMap<>(AiTriggerContextClassifier.TriggerContext.class);
+        counts.forEach((context, entry) -> stats.put(
+            context,
+            new Stats(entry.triggered, entry.acceptRate(), suppressed(entry, minAcceptRate))
+        ));
+        return stats;
+    }
+
+    private static boolean suppressed(Counts entry, double minAcceptRate) {
+        return entry != null && entry.triggered >= MIN_SAMPLES && entry.acceptRate() < minAcceptRate;
+    }
+
+    /**
+     * 某类上下文的衰减后触发数、接受率，以及当前是否被抑制。
+     */
+    record Stats(double triggered, double acceptRate, boolean suppressed) {
+    }
+
+    private static final class Counts {
+        private double triggered;
+        private double accepted;
+
+        private double acceptRate() {
+            return triggered <= 0 ? 0 : accepted / triggered;
+        }
+    }
+}
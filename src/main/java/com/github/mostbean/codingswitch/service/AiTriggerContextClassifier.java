@@ -0,0 +1,173 @@
+package com.github.mostbean.codingswitch.service;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 自动补全触发点的语法分类：根据光标所在词法 token 的类别、当前行光标前后的文本和刚输入的字符，
+ * 判断这次输入是否值得发请求。单词中间、字符串和注释内、语句已结束等位置直接跳过，
+ * 其余位置归入若干上下文类别，交给接受率模型按历史表现决定。
+ */
+final class AiTriggerContextClassifier {
+
+    private static final String CLOSERS = ")]}>\"'`;,";
+
+    enum TokenKind {
+        CODE,
+        STRING,
+        COMMENT
+    }
+
+    enum TriggerContext {
+        LINE_START,
+        AFTER_OPENER,
+        AFTER_DOT,
+        AFTER_CLOSER,
+        AFTER_OPERATOR,
+        AFTER_SPACE,
+        WORD_END
+    }
+
+    enum SkipReason {
+        IN_STRING,
+        IN_COMMENT,
+        MID_WORD,
+        TEXT_AFTER_CARET,
+        LINE_COMPLETE
+    }
+
+    /**
+     * 按语言区分的规则：语句结束符、开启新代码块或参数列表的符号，以及除字母数字和下划线外可出现在标识符里的字符。
+     */
+    record LanguageRules(String statementTerminators, String openers, String identifierExtras) {
+        static final LanguageRules DEFAULT = new LanguageRules(";", "({[", "");
+    }
+
+    private static final LanguageRules C_LIKE = new LanguageRules(";", "({[", "$");
+    private static final LanguageRules NO_TERMINATOR = new LanguageRules("", "({[", "");
+    private static final LanguageRules PYTHON = new LanguageRules("", "({[:", "");
+    private static final LanguageRules STYLESHEET = new LanguageRules(";", "({[:", "-");
+    private static final LanguageRules SHELL = new LanguageRules(";", "({[", "-");
+
+    private static final Map<String, LanguageRules> RULES_BY_LANGUAGE = Map.ofEntries(
+        Map.entry("java", C_LIKE),
+        Map.entry("javascript", C_LIKE),
+        Map.entry("ecmascript 6", C_LIKE),
+        Map.entry("typescript", C_LIKE),
+        Map.entry("typescript jsx", C_LIKE),
+        Map.entry("php", C_LIKE),
+        Map.entry("kotlin", NO_TERMINATOR),
+        Map.entry("go", NO_TERMINATOR),
+        Map.entry("swift", NO_TERMINATOR),
+        Map.entry("scala", NO_TERMINATOR),
+        Map.entry("python", PYTHON),
+        Map.entry("css", STYLESHEET),
+        Map.entry("scss", STYLESHEET),
+        Map.entry("less", STYLESHEET),
+        Map.entry("shell script", SHELL),
+        Map.entry("yaml", new LanguageRules("", "({[:", "-"))
+    );
+
+    /**
+     * 分类结果：context 与 skipReason 恰有一个非空。
+     */
+    record Decision(TriggerContext context, SkipReason skipReason) {
+        boolean skipped() {
+            return skipReason != null;
+        }
+
+        private static Decision trigger(TriggerContext context) {
+            return new Decision(context, null);
+        }
+
+        private static Decision skip(SkipReason reason) {
+            return new Decision(null, reason);
+        }
+    }
+
+    private AiTriggerContextClassifier() {
+    }
+
+    static LanguageRules rulesFor(String languageId) {
+        if (languageId == null) {
+            return LanguageRules.DEFAULT;
+        }
+        return RULES_BY_LANGUAGE.getOrDefault(languageId.toLowerCase(Locale.ROOT), LanguageRules.DEFAULT);
+    }
+
+    /**
+     * @param linePrefix 当前行从行首到光标的文本，已包含刚输入的字符
+     * @param lineSuffix 当前行从光标到行尾的文本
+     */
+    static Decision classify(
+        LanguageRules rules,
+        TokenKind tokenKind,
+        CharSequence linePrefix,
+        CharSequence lineSuffix,
+        char typed
+    ) {
+        if (tokenKind == TokenKind.STRING) {
+            return Decision.skip(SkipReason.IN_STRING);
+        }
+        if (tokenKind == TokenKind.COMMENT) {
+            return Decision.skip(SkipReason.IN_COMMENT);
+        }
+        if (isIdentifierPart(rules, typed) && !lineSuffix.isEmpty() && isIdentifierPart(rules, lineSuffix.charAt(0))) {
+            return Decision.skip(SkipReason.MID_WORD);
+        }
+        if (!onlyClosers(lineSuffix)) {
+            return Decision.skip(SkipReason.TEXT_AFTER_CARET);
+        }
+
+        int last = lastNonWhitespace(linePrefix);
+        if (last < 0) {
+            return Decision.trigger(TriggerContext.LINE_START);
+        }
+        char previous = linePrefix.charAt(last);
+        if (rules.statementTerminators().indexOf(previous) >= 0 && lineSuffix.toString().isBlank()) {
+            return Decision.skip(SkipReason.LINE_COMPLETE);
+        }
+        if (Character.isWhitespace(typed)) {
+            return Decision.trigger(TriggerContext.AFTER_SPACE);
+        }
+        if (rules.openers().indexOf(previous) >= 0) {
+            return Decision.trigger(TriggerContext.AFTER_OPENER);
+        }
+        if (previous == '.') {
+            return Decision.trigger(TriggerContext.AFTER_DOT);
+        }
+        if (isIdentifierPart(rules, previous)) {
+            return Decision.trigger(TriggerContext.WORD_END);
+        }
+        if (previous == ')' || previous == ']' || previous == '}') {
+            return Decision.trigger(TriggerContext.AFTER_CLOSER);
+        }
+        return Decision.trigger(TriggerContext.AFTER_OPERATOR);
+    }
+
+    private static boolean isIdentifierPart(LanguageRules rules, char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || rules.identifierExtras().indexOf(c) >= 0;
+    }
+
+    /**
+     * 光标后只剩收尾符号（括号、引号、分号、逗号）时仍可补全，例如自动配对后的 foo(|)。
+     */
+    private static boolean onlyClosers(CharSequence lineSuffix) {
+        for (int i = 0; i < lineSuffix.length(); i++) {
+            char c = lineSuffix.charAt(i);
+            if (!Character.isWhitespace(c) && CLOSERS.indexOf(c) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int lastNonWhitespace(CharSequence text) {
+        for (int i = text.length() - 1; i >= 0; i--) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -6,7 +6,9 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
 import java.io.IOException;
+import java.io.Reader;
 import java.net.http.HttpClient;
 import java.util.Map;
 import java.util.function.Consumer;
@@ -17,7 +19,7 @@ final class AnthropicMessagesCompletionClient implements AiCompletionClient {
 
     @Override
     public String complete(AiCompletionRequest request) throws IOException, InterruptedException {
-        HttpClient client = AiCompletionHttpSupport.createClient(request.profile());
+        HttpClient client = AiCompletionHttpSupport.sharedClient(request.profile());
         String response = AiCompletionHttpSupport.postJson(
             client,
             request.profile(),
@@ -32,9 +34,12 @@ final class AnthropicMessagesCompletionClient implements AiCompletionClient {
     }
 
     @Override
-    public void streamComplete(AiCompletionRequest request, Consumer<String> onDelta)
-        throws IOException, InterruptedException {
-        HttpClient client = AiCompletionHttpSupport.createClient(request.profile());
+    public void streamComplete(
+        AiCompletionRequest request,
+        AiCompletionCancellation cancellation,
+        Consumer<String> onDelta
+    ) throws IOException, InterruptedException {
+        HttpClient client = AiCompletionHttpSupport.sharedClient(request.profile());
         AiCompletionHttpSupport.postJsonStreamWithRetry(
             client,
             request.profile(),
@@ -44,6 +49,7 @@ final class AnthropicMessagesCompletionClient implements AiCompletionClient {
                 "anthropic-version", "2023-06-01"
             ),
             GSON.toJson(createBody(request, true)),
+            cancellation,
             event -> {
                 String delta = extractDelta(event);
                 if (!delta.isEmpty()) {
@@ -89,53 +95,71 @@ final class AnthropicMessagesCompletionClient implements AiCompletionClient {
         return "";
     }
 
-    private String extractDelta(String event) {
-        JsonObject root = JsonParser.parseString(event).getAsJsonObject();
-        String anthropicDelta = extractAnthropicDelta(root);
+    private String extractDelta(Reader event) throws IOException {
+        JsonReader reader = AiStreamingJson.open(event);
+        if (!AiStreamingJson.beginObject(reader)) {
+            return "";
+        }
+        // 字段顺序不固定，只读取 type 和三个可能携带文本的对象，其余字段跳过。
+        String type = null;
+        TextFields delta = null;
+        TextFields contentBlock = null;
+        TextFields choiceDelta = null;
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "type" -> type = AiStreamingJson.nextString(reader);
+                case "delta" -> delta = readTextFields(reader);
+                case "content_block" -> contentBlock = readTextFields(reader);
+                case "choices" -> choiceDelta = readFirstChoiceDelta(reader);
+                default -> reader.skipValue();
+            }
+        }
+        String anthropicDelta = "";
+        if ("content_block_delta".equals(type) && delta != null
+            && (delta.type() == null || "text_delta".equals(delta.type()))) {
+            anthropicDelta = delta.text();
+        } else if ("content_block_start".equals(type) && contentBlock != null && "text".equals(contentBlock.type())) {
+            anthropicDelta = contentBlock.text();
+        }
         if (!anthropicDelta.isEmpty()) {
             return anthropicDelta;
         }
-        return extractOpenAiCompatibleDelta(root);
+        return choiceDelta == null ? "" : choiceDelta.text();
     }
 
-    private String extractAnthropicDelta(JsonObject root) {
-        String type = getString(root, "type");
-        if ("content_block_delta".equals(type)) {
-            if (!root.has("delta") || !root.get("delta").isJsonObject()) {
-                return "";
-            }
-            JsonObject delta = root.getAsJsonObject("delta");
-            String deltaType = getString(delta, "type");
-            if (deltaType != null && !"text_delta".equals(deltaType)) {
-                return "";
-            }
-            return firstTextValue(delta);
-        }
-        if ("content_block_start".equals(type)
-            && root.has("content_block")
-            && root.get("content_block").isJsonObject()) {
-            JsonObject contentBlock = root.getAsJsonObject("content_block");
-            if (!"text".equals(getString(contentBlock, "type"))) {
-                return "";
+    private TextFields readFirstChoiceDelta(JsonReader reader) throws IOException {
+        if (!AiStreamingJson.beginFirstArrayObject(reader)) {
+            return null;
+        }
+        TextFields delta = null;
+        while (reader.hasNext()) {
+            if ("delta".equals(reader.nextName())) {
+                delta = readTextFields(reader);
+            } else {
+                reader.skipValue();
             }
-            return firstTextValue(contentBlock);
         }
-        return "";
+        AiStreamingJson.endFirstArrayObject(reader);
+        return delta;
     }
 
-    private String extractOpenAiCompatibleDelta(JsonObject root) {
-        if (!root.has("choices") || !root.get("choices").isJsonArray() || root.getAsJsonArray("choices").isEmpty()) {
-            return "";
-        }
-        JsonElement first = root.getAsJsonArray("choices").get(0);
-        if (!first.isJsonObject()) {
-            return "";
+    private TextFields readTextFields(JsonReader reader) throws IOException {
+        if (!AiStreamingJson.beginObject(reader)) {
+            return null;
         }
-        JsonObject choice = first.getAsJsonObject();
-        if (!choice.has("delta") || !choice.get("delta").isJsonObject()) {
-            return "";
+        String type = null;
+        String text = null;
+        String content = null;
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "type" -> type = AiStreamingJson.nextString(reader);
+                case "text" -> text = AiStreamingJson.nextString(reader);
+                case "content" -> content = AiStreamingJson.nextString(reader);
+                default -> reader.skipValue();
+            }
         }
-        return firstTextValue(choice.getAsJsonObject("delta"));
+        reader.endObject();
+        return new TextFields(type, text != null ? text : content == null ? "" : content);
     }
 
     private String extractContentText(JsonObject root) {
@@ -182,4 +206,7 @@ final class AnthropicMessagesCompletionClient implements AiCompletionClient {
         }
         return object.get(key).getAsString();
     }
+
+    private record TextFields(String type, String text) {
+    }
 }
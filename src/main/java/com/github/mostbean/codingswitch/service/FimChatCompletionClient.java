@@ -5,7 +5,10 @@ import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import java.io.IOException;
+import java.io.Reader;
 import java.net.http.HttpClient;
 import java.util.Map;
 import java.util.function.Consumer;
@@ -16,7 +19,7 @@ final class FimChatCompletionClient implements AiCompletionClient {
 
     @Override
     public String complete(AiCompletionRequest request) throws IOException, InterruptedException {
-        HttpClient client = AiCompletionHttpSupport.createClient(request.profile());
+        HttpClient client = AiCompletionHttpSupport.sharedClient(request.profile());
         String response = AiCompletionHttpSupport.postJson(
             client,
             request.profile(),
@@ -28,15 +31,19 @@ final class FimChatCompletionClient implements AiCompletionClient {
     }
 
     @Override
-    public void streamComplete(AiCompletionRequest request, Consumer<String> onDelta)
-        throws IOException, InterruptedException {
-        HttpClient client = AiCompletionHttpSupport.createClient(request.profile());
+    public void streamComplete(
+        AiCompletionRequest request,
+        AiCompletionCancellation cancellation,
+        Consumer<String> onDelta
+    ) throws IOException, InterruptedException {
+        HttpClient client = AiCompletionHttpSupport.sharedClient(request.profile());
         AiCompletionHttpSupport.postJsonStreamWithRetry(
             client,
             request.profile(),
             AiCompletionHttpSupport.ensurePath(request.profile().getBaseUrl(), "/chat/completions"),
             Map.of("Authorization", "Bearer " + request.apiKey()),
             GSON.toJson(createBody(request, true)),
+            cancellation,
             event -> {
                 String delta = extractDelta(event);
                 if (!delta.isEmpty()) {
@@ -89,13 +96,51 @@ final class FimChatCompletionClient implements AiCompletionClient {
         return extractMessageText(choice.getAsJsonObject("message"));
     }
 
-    private String extractDelta(String event) {
-        JsonObject root = JsonParser.parseString(event).getAsJsonObject();
-        JsonObject choice = firstChoice(root);
-        if (choice == null || !choice.has("delta") || !choice.get("delta").isJsonObject()) {
+    private String extractDelta(Reader event) throws IOException {
+        JsonReader reader = AiStreamingJson.open(event);
+        if (!AiStreamingJson.beginObject(reader)) {
+            return "";
+        }
+        while (reader.hasNext()) {
+            if (!"choices".equals(reader.nextName())) {
+                reader.skipValue();
+                continue;
+            }
+            if (!AiStreamingJson.beginFirstArrayObject(reader)) {
+                return "";
+            }
+            while (reader.hasNext()) {
+                if ("delta".equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    return readMessageText(reader);
+                }
+                reader.skipValue();
+            }
             return "";
         }
-        return extractMessageText(choice.getAsJsonObject("delta"));
+        return "";
+    }
+
+    private String readMessageText(JsonReader reader) throws IOException {
+        String reasoningContent = null;
+        String reasoning = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "content" -> {
+                    String content = AiStreamingJson.nextString(reader);
+                    if (content != null) {
+                        return content;
+                    }
+                }
+                case "reasoning_content" -> reasoningContent = AiStreamingJson.nextString(reader);
+                case "reasoning" -> reasoning = AiStreamingJson.nextString(reader);
+                default -> reader.skipValue();
+            }
+        }
+        if (reasoningContent != null) {
+            return AiCompletionDelta.reasoning(reasoningContent);
+        }
+        return reasoning == null ? "" : AiCompletionDelta.reasoning(reasoning);
     }
 
     private String extractMessageText(JsonObject object) {
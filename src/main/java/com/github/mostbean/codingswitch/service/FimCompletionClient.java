@@ -5,18 +5,24 @@ import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import java.io.IOException;
+import java.io.Reader;
 import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
 
 final class FimCompletionClient implements AiCompletionClient {
 
     private static final Gson GSON = new Gson();
+    private static final double CHOICES_TEMPERATURE = 0.6;
 
     @Override
     public String complete(AiCompletionRequest request) throws IOException, InterruptedException {
-        HttpClient client = AiCompletionHttpSupport.createClient(request.profile());
+        HttpClient client = AiCompletionHttpSupport.sharedClient(request.profile());
         String response = AiCompletionHttpSupport.postJson(
             client,
             request.profile(),
@@ -28,15 +34,53 @@ final class FimCompletionClient implements AiCompletionClient {
     }
 
     @Override
-    public void streamComplete(AiCompletionRequest request, Consumer<String> onDelta)
-        throws IOException, InterruptedException {
-        HttpClient client = AiCompletionHttpSupport.createClient(request.profile());
+    public boolean supportsChoices() {
+        return true;
+    }
+
+    @Override
+    public List<String> completeChoices(AiCompletionRequest request, int count) throws IOException, InterruptedException {
+        JsonObject body = createBody(request, false);
+        body.addProperty("n", count);
+        // 多候选需要一定的采样差异，否则几个结果几乎相同。
+        body.addProperty("temperature", CHOICES_TEMPERATURE);
+        HttpClient client = AiCompletionHttpSupport.sharedClient(request.profile());
+        String response = AiCompletionHttpSupport.postJson(
+            client,
+            request.profile(),
+            AiCompletionHttpSupport.ensurePath(request.profile().getBaseUrl(), "/completions"),
+            Map.of("Authorization", "Bearer " + request.apiKey()),
+            GSON.toJson(body)
+        );
+        List<String> choices = new ArrayList<>();
+        JsonObject root = JsonParser.parseString(response).getAsJsonObject();
+        if (!root.has("choices") || !root.get("choices").isJsonArray()) {
+            return choices;
+        }
+        for (var element : root.getAsJsonArray("choices")) {
+            if (element.isJsonObject()
+                && element.getAsJsonObject().has("text")
+                && !element.getAsJsonObject().get("text").isJsonNull()) {
+                choices.add(AiCompletionHttpSupport.trimCompletion(element.getAsJsonObject().get("text").getAsString()));
+            }
+        }
+        return choices;
+    }
+
+    @Override
+    public void streamComplete(
+        AiCompletionRequest request,
+        AiCompletionCancellation cancellation,
+        Consumer<String> onDelta
+    ) throws IOException, InterruptedException {
+        HttpClient client = AiCompletionHttpSupport.sharedClient(request.profile());
         AiCompletionHttpSupport.postJsonStreamWithRetry(
             client,
             request.profile(),
             AiCompletionHttpSupport.ensurePath(request.profile().getBaseUrl(), "/completions"),
             Map.of("Authorization", "Bearer " + request.apiKey()),
             GSON.toJson(createBody(request, true)),
+            cancellation,
             event -> {
                 String delta = extractDelta(event);
                 if (!delta.isEmpty()) {
@@ -84,23 +128,51 @@ final class FimCompletionClient implements AiCompletionClient {
         return choice.get("text").getAsString();
     }
 
-    private String extractDelta(String event) {
-        JsonObject root = JsonParser.parseString(event).getAsJsonObject();
-        JsonObject choice = firstChoice(root);
-        if (choice == null) {
+    private String extractDelta(Reader event) throws IOException {
+        JsonReader reader = AiStreamingJson.open(event);
+        if (!AiStreamingJson.beginObject(reader)) {
             return "";
         }
-        if (choice.has("text") && !choice.get("text").isJsonNull()) {
-            return choice.get("text").getAsString();
-        }
-        if (!choice.has("delta") || !choice.get("delta").isJsonObject()) {
-            return "";
+        while (reader.hasNext()) {
+            if (!"choices".equals(reader.nextName())) {
+                reader.skipValue();
+                continue;
+            }
+            if (!AiStreamingJson.beginFirstArrayObject(reader)) {
+                return "";
+            }
+            // text 优先于 delta.content，delta 先出现时先记下继续读。
+            String deltaContent = null;
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("text".equals(name)) {
+                    String text = AiStreamingJson.nextString(reader);
+                    if (text != null) {
+                        return text;
+                    }
+                } else if ("delta".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    deltaContent = readContent(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            return deltaContent == null ? "" : deltaContent;
         }
-        JsonObject delta = choice.getAsJsonObject("delta");
-        if (!delta.has("content") || delta.get("content").isJsonNull()) {
-            return "";
+        return "";
+    }
+
+    private String readContent(JsonReader reader) throws IOException {
+        String content = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("content".equals(reader.nextName())) {
+                content = AiStreamingJson.nextString(reader);
+            } else {
+                reader.skipValue();
+            }
         }
-        return delta.get("content").getAsString();
+        reader.endObject();
+        return content;
     }
 
     private JsonObject firstChoice(JsonObject root) {
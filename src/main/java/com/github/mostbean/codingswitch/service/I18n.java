@@ -209,19 +209,46 @@ public final class I18n {
                 m.put("aiSettings.checkbox.codeCompletion", "启用代码补全功能");
                 m.put("aiSettings.checkbox.gitCommitMessage", "启用 Git 提交信息生成功能");
                 m.put("aiSettings.label.gitCommitLanguage", "Git信息生成语言:");
+                m.put("aiSettings.checkbox.gitNativeDiff", "直接使用 git diff 的输出（Git 仓库，不再加载文件全文重新比较）");
+                m.put("aiSettings.checkbox.gitChunkSummary", "diff 过长时先分模块总结再生成（会额外调用模型）");
                 m.put("aiSettings.gitCommitLanguage.chinese", "中文");
                 m.put("aiSettings.gitCommitLanguage.english", "英文");
                 m.put("aiSettings.gitCommitLanguage.japanese", "日语");
                 m.put("aiSettings.hint.globalPreferences", "这些偏好设置为全局配置，会同时影响侧边栏配置管理、会话、提示词、技能、MCP 等功能。");
                 m.put("aiSettings.section.completion", "代码补全");
                 m.put("aiSettings.checkbox.autoCompletion", "启用自动触发补全");
+                m.put("aiSettings.checkbox.crossFileContext", "补全时附带其他已打开文件中的相关代码（这些代码会发送给补全模型）");
+                m.put("aiSettings.checkbox.speculativePrefetch", "接受建议后预取下一条补全（会额外消耗 token）");
                 m.put("aiSettings.label.completionProfile", "补全模型:");
                 m.put("aiSettings.label.gitCommitProfile", "Git 模型:");
                 m.put("aiSettings.option.noProfile", "未配置模型");
+                m.put("aiSettings.label.hedgeProfile", "备用补全模型:");
+                m.put("aiSettings.option.noHedgeProfile", "不启用");
+                m.put("aiSettings.hint.hedgeProfile", "补全模型迟迟没有返回时，同时请求备用模型，采用先返回的结果");
                 m.put("aiSettings.label.autoLength", "自动补全长度:");
                 m.put("aiSettings.label.manualLength", "手动补全长度:");
                 m.put("aiSettings.label.manualShortcut", "手动触发快捷键:");
                 m.put("aiSettings.hint.shortcut", "仅支持一个修饰键 + 一个普通键");
+                m.put("aiSettings.label.diagnostics", "补全诊断:");
+                m.put("aiSettings.button.diagnostics", "查看指标...");
+                m.put("aiSettings.hint.diagnostics", "各模型的请求结果、缓存命中、耗时分位数和接受率，仅保存在内存中");
+                m.put("aiSettings.dialog.diagnostics", "补全诊断");
+                m.put("aiSettings.diagnostics.profile", "模型");
+                m.put("aiSettings.diagnostics.requests", "请求");
+                m.put("aiSettings.diagnostics.success", "成功");
+                m.put("aiSettings.diagnostics.errors", "异常");
+                m.put("aiSettings.diagnostics.cacheHits", "缓存命中");
+                m.put("aiSettings.diagnostics.shown", "展示");
+                m.put("aiSettings.diagnostics.acceptRate", "接受率");
+                m.put("aiSettings.diagnostics.firstToken", "首 token p50/p90/p99");
+                m.put("aiSettings.diagnostics.total", "总耗时 p50/p90/p99");
+                m.put("aiSettings.diagnostics.noProfile", "（未选定模型）");
+                m.put("aiSettings.diagnostics.export", "导出 JSON...");
+                m.put("aiSettings.diagnostics.exported", "指标已导出到 {0}");
+                m.put("aiSettings.diagnostics.exportFailed", "导出指标失败: {0}");
+                m.put("aiSettings.diagnostics.clearCache", "清空补全缓存");
+                m.put("aiSettings.diagnostics.cacheCleared", "补全缓存已清空（含磁盘缓存）");
+                m.put("aiSettings.diagnostics.clearCacheFailed", "清空磁盘缓存失败: {0}");
                 m.put("aiSettings.section.modelConfig", "模型配置");
                 m.put("aiSettings.button.modelConfig", "模型配置...");
                 m.put("aiSettings.placeholder.pressShortcut", "请按快捷键...");
@@ -242,6 +269,9 @@ public final class I18n {
                 m.put("aiSettings.label.timeoutSeconds", "超时秒数:");
                 m.put("aiSettings.label.customHeaders", "自定义 Headers JSON:");
                 m.put("aiSettings.label.fimAdapterEnabled", "FIM格式适配:");
+                m.put("aiSettings.label.tokenizer", "Token 计数方式:");
+                m.put("aiSettings.tokenizer.bpeEstimate", "BPE 估算");
+                m.put("aiSettings.tokenizer.charsEstimate", "按字符估算（4 字符/Token）");
                 m.put("aiSettings.hint.fimModelRecommended", "代码补全推荐使用 FIM 专用模型");
                 m.put("aiSettings.hint.useFimModel", "建议使用 FIM 模型");
                 m.put("aiSettings.hint.useLlmModel", "建议使用 LLM 模型");
@@ -259,6 +289,7 @@ public final class I18n {
                 m.put("aiSettings.dialog.modelCheckFailed", "模型配置检测失败");
                 m.put("aiSettings.dialog.detectedModels", "检测到的模型");
                 m.put("inlineCompletion.hint.acceptLine", "Ctrl+向下箭头 逐行采纳");
+                m.put("inlineCompletion.hint.candidates", "Alt+] 切换候选 {0}/{1}");
 
                 // ── Session 面板 ──
                 m.put("session.empty.selectHint", "选择一个会话查看详情");
@@ -830,19 +861,46 @@ public final class I18n {
                 m.put("aiSettings.checkbox.codeCompletion", "Enable code completion");
                 m.put("aiSettings.checkbox.gitCommitMessage", "Enable Git commit message generation");
                 m.put("aiSettings.label.gitCommitLanguage", "Git message language:");
+                m.put("aiSettings.checkbox.gitNativeDiff", "Use git diff output directly (Git repositories, skips loading full file contents)");
+                m.put("aiSettings.checkbox.gitChunkSummary", "Summarize oversized diffs per module first (extra model calls)");
                 m.put("aiSettings.gitCommitLanguage.chinese", "Chinese");
                 m.put("aiSettings.gitCommitLanguage.english", "English");
                 m.put("aiSettings.gitCommitLanguage.japanese", "Japanese");
                 m.put("aiSettings.hint.globalPreferences", "These preferences are global and also affect sidebar configuration management, sessions, prompts, skills, MCP, and related features.");
                 m.put("aiSettings.section.completion", "Code Completion");
                 m.put("aiSettings.checkbox.autoCompletion", "Enable automatic completion");
+                m.put("aiSettings.checkbox.crossFileContext", "Include related code from other open files (this code is sent to the completion model)");
+                m.put("aiSettings.checkbox.speculativePrefetch", "Prefetch the next completion after accepting a suggestion (uses extra tokens)");
                 m.put("aiSettings.label.completionProfile", "Completion model:");
                 m.put("aiSettings.label.gitCommitProfile", "Git model:");
                 m.put("aiSettings.option.noProfile", "No model configured");
+                m.put("aiSettings.label.hedgeProfile", "Backup completion model:");
+                m.put("aiSettings.option.noHedgeProfile", "Disabled");
+                m.put("aiSettings.hint.hedgeProfile", "When the completion model is slow to respond, also query the backup model and use whichever answers first");
                 m.put("aiSettings.label.autoLength", "Auto completion length:");
                 m.put("aiSettings.label.manualLength", "Manual completion length:");
                 m.put("aiSettings.label.manualShortcut", "Manual trigger shortcut:");
                 m.put("aiSettings.hint.shortcut", "Only one modifier key + one normal key is supported");
+                m.put("aiSettings.label.diagnostics", "Completion diagnostics:");
+                m.put("aiSettings.button.diagnostics", "View Metrics...");
+                m.put("aiSettings.hint.diagnostics", "Per-model outcomes, cache hits, latency percentiles and accept rate, kept in memory only");
+                m.put("aiSettings.dialog.diagnostics", "Completion Diagnostics");
+                m.put("aiSettings.diagnostics.profile", "Model");
+                m.put("aiSettings.diagnostics.requests", "Requests");
+                m.put("aiSettings.diagnostics.success", "Success");
+                m.put("aiSettings.diagnostics.errors", "Errors");
+                m.put("aiSettings.diagnostics.cacheHits", "Cache hits");
+                m.put("aiSettings.diagnostics.shown", "Shown");
+                m.put("aiSettings.diagnostics.acceptRate", "Accept rate");
+                m.put("aiSettings.diagnostics.firstToken", "First token p50/p90/p99");
+                m.put("aiSettings.diagnostics.total", "Total p50/p90/p99");
+                m.put("aiSettings.diagnostics.noProfile", "(no model selected)");
+                m.put("aiSettings.diagnostics.export", "Export JSON...");
+                m.put("aiSettings.diagnostics.exported", "Metrics exported to {0}");
+                m.put("aiSettings.diagnostics.exportFailed", "Failed to export metrics: {0}");
+                m.put("aiSettings.diagnostics.clearCache", "Clear completion cache");
+                m.put("aiSettings.diagnostics.cacheCleared", "Completion cache cleared, including the disk cache");
+                m.put("aiSettings.diagnostics.clearCacheFailed", "Failed to clear the disk cache: {0}");
                 m.put("aiSettings.section.modelConfig", "Model Configuration");
                 m.put("aiSettings.button.modelConfig", "Model Configuration...");
                 m.put("aiSettings.placeholder.pressShortcut", "Press shortcut...");
@@ -863,6 +921,9 @@ public final class I18n {
                 m.put("aiSettings.label.timeoutSeconds", "Timeout seconds:");
                 m.put("aiSettings.label.customHeaders", "Custom Headers JSON:");
                 m.put("aiSettings.label.fimAdapterEnabled", "FIM adaptation:");
+                m.put("aiSettings.label.tokenizer", "Token counting:");
+                m.put("aiSettings.tokenizer.bpeEstimate", "BPE estimate");
+                m.put("aiSettings.tokenizer.charsEstimate", "Character estimate (4 chars/token)");
                 m.put("aiSettings.hint.fimModelRecommended", "FIM-specific models are recommended for code completion");
                 m.put("aiSettings.hint.useFimModel", "FIM model recommended");
                 m.put("aiSettings.hint.useLlmModel", "LLM model recommended");
@@ -880,6 +941,7 @@ public final class I18n {
                 m.put("aiSettings.dialog.modelCheckFailed", "Model Configuration Check Failed");
                 m.put("aiSettings.dialog.detectedModels", "Detected Models");
                 m.put("inlineCompletion.hint.acceptLine", "Ctrl+Down accept line");
+                m.put("inlineCompletion.hint.candidates", "Alt+] next candidate {0}/{1}");
 
                 // ── Session Panel ──
                 m.put("session.empty.selectHint", "Select a session to view details");
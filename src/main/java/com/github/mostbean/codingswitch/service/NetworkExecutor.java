@@ -0,0 +1,117 @@
+package com.github.mostbean.codingswitch.service;
+
+import com.github.mostbean.codingswitch.model.AiModelProfile;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 阻塞网络请求专用执行器：每个任务一个虚拟线程，长时间的 HTTP 流不再占用 IDE 共享线程池；
+ * 同一端点（host:port）同时进行的请求数有上限，超出的任务在虚拟线程上排队等待。
+ */
+@Service(Service.Level.APP)
+public final class NetworkExecutor implements Disposable {
+
+    private static final int MAX_CONCURRENT_PER_ENDPOINT = 4;
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+        Thread.ofVirtual().name("Coding Switch Network-", 0).factory()
+    );
+    private final Map<String, Semaphore> endpointPermits = new ConcurrentHashMap<>();
+
+    public static NetworkExecutor getInstance() {
+        return ApplicationManager.getApplication().getService(NetworkExecutor.class);
+    }
+
+    @FunctionalInterface
+    public interface NetworkCall<T> {
+        T call() throws IOException, InterruptedException;
+    }
+
+    /**
+     * 在虚拟线程上执行任务，拿到端点许可后才开始运行。
+     */
+    public void execute(String endpoint, Runnable task) {
+        executor.execute(() -> {
+            Semaphore permits = permits(endpoint);
+            try {
+                permits.acquire();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                task.run();
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    /**
+     * 在当前线程等待端点许可后执行，供已经运行在后台任务里（例如带进度条的任务）的调用方共享并发上限。
+     */
+    public <T> T callBounded(String endpoint, NetworkCall<T> call) throws IOException, InterruptedException {
+        Semaphore permits = permits(endpoint);
+        permits.acquire();
+        try {
+            return call.call();
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * 不占用端点许可的虚拟线程执行器，只用于已获得许可的请求内部派生的子任务（如对冲请求），
+     * 或在真正发起网络请求时才用 callBounded 申请许可的任务（如可能只订阅已有请求的补全），
+     * 避免外层请求占满许可后互相等待。
+     */
+    Executor unbounded() {
+        return executor;
+    }
+
+    public static String endpointKey(AiModelProfile profile) {
+        return profile == null ? "" : endpointKey(profile.getBaseUrl());
+    }
+
+    /**
+     * 把 URL 归一为 host:port，无法解析时返回去掉首尾空白的小写原文。
+     */
+    public static String endpointKey(String url) {
+        String value = url == null ? "" : url.trim().toLowerCase(Locale.ROOT);
+        try {
+            URI uri = URI.create(value);
+            if (uri.getHost() == null) {
+                return value;
+            }
+            int port = uri.getPort();
+            if (port < 0) {
+                port = "http".equals(uri.getScheme()) ? 80 : 443;
+            }
+            return uri.getHost() + ":" + port;
+        } catch (IllegalArgumentException ex) {
+            return value;
+        }
+    }
+
+    private Semaphore permits(String endpoint) {
+        return endpointPermits.computeIfAbsent(
+            endpoint == null ? "" : endpoint,
+            ignored -> new Semaphore(MAX_CONCURRENT_PER_ENDPOINT, true)
+        );
+    }
+
+    @Override
+    public void dispose() {
+        executor.shutdownNow();
+    }
+}
@@ -5,18 +5,24 @@ import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import java.io.IOException;
+import java.io.Reader;
 import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
 
 final class OpenAiChatCompletionClient implements AiCompletionClient {
 
     private static final Gson GSON = new Gson();
+    private static final double CHOICES_TEMPERATURE = 0.6;
 
     @Override
     public String complete(AiCompletionRequest request) throws IOException, InterruptedException {
-        HttpClient client = AiCompletionHttpSupport.createClient(request.profile());
+        HttpClient client = AiCompletionHttpSupport.sharedClient(request.profile());
         String response = AiCompletionHttpSupport.postJson(
             client,
             request.profile(),
@@ -28,15 +34,55 @@ final class OpenAiChatCompletionClient implements AiCompletionClient {
     }
 
     @Override
-    public void streamComplete(AiCompletionRequest request, Consumer<String> onDelta)
-        throws IOException, InterruptedException {
-        HttpClient client = AiCompletionHttpSupport.createClient(request.profile());
+    public boolean supportsChoices() {
+        return true;
+    }
+
+    @Override
+    public List<String> completeChoices(AiCompletionRequest request, int count) throws IOException, InterruptedException {
+        JsonObject body = createBody(request, false);
+        body.addProperty("n", count);
+        // 多候选需要一定的采样差异，否则几个结果几乎相同。
+        body.addProperty("temperature", CHOICES_TEMPERATURE);
+        HttpClient client = AiCompletionHttpSupport.sharedClient(request.profile());
+        String response = AiCompletionHttpSupport.postJson(
+            client,
+            request.profile(),
+            AiCompletionHttpSupport.ensurePath(request.profile().getBaseUrl(), "/v1/chat/completions"),
+            Map.of("Authorization", "Bearer " + request.apiKey()),
+            GSON.toJson(body)
+        );
+        List<String> choices = new ArrayList<>();
+        JsonObject root = JsonParser.parseString(response).getAsJsonObject();
+        if (!root.has("choices") || !root.get("choices").isJsonArray()) {
+            return choices;
+        }
+        for (var element : root.getAsJsonArray("choices")) {
+            if (element.isJsonObject()
+                && element.getAsJsonObject().has("message")
+                && element.getAsJsonObject().get("message").isJsonObject()) {
+                choices.add(AiCompletionHttpSupport.trimCompletion(
+                    extractMessageText(element.getAsJsonObject().getAsJsonObject("message"))
+                ));
+            }
+        }
+        return choices;
+    }
+
+    @Override
+    public void streamComplete(
+        AiCompletionRequest request,
+        AiCompletionCancellation cancellation,
+        Consumer<String> onDelta
+    ) throws IOException, InterruptedException {
+        HttpClient client = AiCompletionHttpSupport.sharedClient(request.profile());
         AiCompletionHttpSupport.postJsonStreamWithRetry(
             client,
             request.profile(),
             AiCompletionHttpSupport.ensurePath(request.profile().getBaseUrl(), "/v1/chat/completions"),
             Map.of("Authorization", "Bearer " + request.apiKey()),
             GSON.toJson(createBody(request, true)),
+            cancellation,
             event -> {
                 String delta = extractDelta(event);
                 if (!delta.isEmpty()) {
@@ -82,16 +128,51 @@ final class OpenAiChatCompletionClient implements AiCompletionClient {
         return extractMessageText(choice.getAsJsonObject("message"));
     }
 
-    private String extractDelta(String event) {
-        JsonObject root = JsonParser.parseString(event).getAsJsonObject();
-        if (!root.has("choices") || !root.get("choices").isJsonArray() || root.getAsJsonArray("choices").isEmpty()) {
+    private String extractDelta(Reader event) throws IOException {
+        JsonReader reader = AiStreamingJson.open(event);
+        if (!AiStreamingJson.beginObject(reader)) {
             return "";
         }
-        JsonObject choice = root.getAsJsonArray("choices").get(0).getAsJsonObject();
-        if (!choice.has("delta") || !choice.get("delta").isJsonObject()) {
+        while (reader.hasNext()) {
+            if (!"choices".equals(reader.nextName())) {
+                reader.skipValue();
+                continue;
+            }
+            if (!AiStreamingJson.beginFirstArrayObject(reader)) {
+                return "";
+            }
+            while (reader.hasNext()) {
+                if ("delta".equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    return readMessageText(reader);
+                }
+                reader.skipValue();
+            }
             return "";
         }
-        return extractMessageText(choice.getAsJsonObject("delta"));
+        return "";
+    }
+
+    private String readMessageText(JsonReader reader) throws IOException {
+        String reasoningContent = null;
+        String reasoning = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "content" -> {
+                    String content = AiStreamingJson.nextString(reader);
+                    if (content != null) {
+                        return content;
+                    }
+                }
+                case "reasoning_content" -> reasoningContent = AiStreamingJson.nextString(reader);
+                case "reasoning" -> reasoning = AiStreamingJson.nextString(reader);
+                default -> reader.skipValue();
+            }
+        }
+        if (reasoningContent != null) {
+            return AiCompletionDelta.reasoning(reasoningContent);
+        }
+        return reasoning == null ? "" : AiCompletionDelta.reasoning(reasoning);
     }
 
     private String extractMessageText(JsonObject object) {
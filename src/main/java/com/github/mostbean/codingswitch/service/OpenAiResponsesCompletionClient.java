@@ -6,7 +6,9 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
 import java.io.IOException;
+import java.io.Reader;
 import java.net.http.HttpClient;
 import java.util.Map;
 import java.util.function.Consumer;
@@ -17,7 +19,7 @@ final class OpenAiResponsesCompletionClient implements AiCompletionClient {
 
     @Override
     public String complete(AiCompletionRequest request) throws IOException, InterruptedException {
-        HttpClient client = AiCompletionHttpSupport.createClient(request.profile());
+        HttpClient client = AiCompletionHttpSupport.sharedClient(request.profile());
         String response = AiCompletionHttpSupport.postJson(
             client,
             request.profile(),
@@ -29,15 +31,19 @@ final class OpenAiResponsesCompletionClient implements AiCompletionClient {
     }
 
     @Override
-    public void streamComplete(AiCompletionRequest request, Consumer<String> onDelta)
-        throws IOException, InterruptedException {
-        HttpClient client = AiCompletionHttpSupport.createClient(request.profile());
+    public void streamComplete(
+        AiCompletionRequest request,
+        AiCompletionCancellation cancellation,
+        Consumer<String> onDelta
+    ) throws IOException, InterruptedException {
+        HttpClient client = AiCompletionHttpSupport.sharedClient(request.profile());
         AiCompletionHttpSupport.postJsonStreamWithRetry(
             client,
             request.profile(),
             AiCompletionHttpSupport.ensurePath(request.profile().getBaseUrl(), "/v1/responses"),
             Map.of("Authorization", "Bearer " + request.apiKey()),
             GSON.toJson(createBody(request, true)),
+            cancellation,
             event -> {
                 String delta = extractDelta(event);
                 if (!delta.isEmpty()) {
@@ -90,16 +96,35 @@ final class OpenAiResponsesCompletionClient implements AiCompletionClient {
         return out.toString();
     }
 
-    private String extractDelta(String event) {
-        JsonObject root = JsonParser.parseString(event).getAsJsonObject();
-        String type = getString(root, "type");
-        if ("response.output_text.delta".equals(type) || "response.text.delta".equals(type)) {
-            String delta = getString(root, "delta");
-            return delta == null ? "" : delta;
+    private String extractDelta(Reader event) throws IOException {
+        JsonReader reader = AiStreamingJson.open(event);
+        if (!AiStreamingJson.beginObject(reader)) {
+            return "";
+        }
+        String type = null;
+        String delta = null;
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "type" -> {
+                    type = AiStreamingJson.nextString(reader);
+                    if (!isTextDeltaType(type)) {
+                        return "";
+                    }
+                }
+                case "delta" -> delta = AiStreamingJson.nextString(reader);
+                default -> reader.skipValue();
+            }
+            if (type != null && delta != null) {
+                return delta;
+            }
         }
         return "";
     }
 
+    private boolean isTextDeltaType(String type) {
+        return "response.output_text.delta".equals(type) || "response.text.delta".equals(type);
+    }
+
     private String getString(JsonObject object, String key) {
         if (!object.has(key) || object.get(key).isJsonNull()) {
             return null;
@@ -158,6 +158,8 @@ public final class PluginStorageModeService {
         AiFeatureSettings.State empty = AiFeatureSettings.normalize(new AiFeatureSettings.State());
         boolean configured = normalized.codeCompletionEnabled != empty.codeCompletionEnabled
                 || normalized.gitCommitMessageEnabled != empty.gitCommitMessageEnabled
+                || normalized.gitNativeDiffEnabled != empty.gitNativeDiffEnabled
+                || normalized.gitChunkSummaryEnabled != empty.gitChunkSummaryEnabled
                 || normalized.autoCompletionEnabled != empty.autoCompletionEnabled
                 || normalized.autoCompletionMaxTokens != empty.autoCompletionMaxTokens
                 || normalized.manualCompletionMaxTokens != empty.manualCompletionMaxTokens
@@ -166,6 +168,7 @@ public final class PluginStorageModeService {
                 || !java.util.Objects.equals(normalized.manualCompletionLengthLevel, empty.manualCompletionLengthLevel)
                 || !java.util.Objects.equals(normalized.activeCompletionProfileId, empty.activeCompletionProfileId)
                 || !java.util.Objects.equals(normalized.activeGitCommitProfileId, empty.activeGitCommitProfileId)
+                || !java.util.Objects.equals(normalized.hedgeCompletionProfileId, empty.hedgeCompletionProfileId)
                 || !java.util.Objects.equals(normalized.manualCompletionShortcut, empty.manualCompletionShortcut)
                 || !java.util.Objects.equals(normalized.profiles, empty.profiles);
         return configured ? 1 : 0;
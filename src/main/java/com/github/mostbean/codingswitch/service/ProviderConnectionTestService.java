@@ -48,6 +48,18 @@ public final class ProviderConnectionTestService {
         return ApplicationManager.getApplication().getService(ProviderConnectionTestService.class);
     }
 
+    /**
+     * 连接测试要访问的端点（host:port），供 NetworkExecutor 按端点限制并发；配置无法解析时返回空字符串。
+     */
+    public String endpointKey(CliType cliType, JsonObject settingsConfig) {
+        try {
+            List<ProbeRequest> probes = buildProbeRequests(cliType, settingsConfig);
+            return probes.isEmpty() ? "" : NetworkExecutor.endpointKey(probes.get(0).url());
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
     public TestResult test(CliType cliType, JsonObject settingsConfig) {
         long start = System.currentTimeMillis();
         try {
@@ -0,0 +1,36 @@
+package com.github.mostbean.codingswitch.ui.action;
+
+import com.github.mostbean.codingswitch.service.AiInlineCompletionService;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.project.DumbAwareAction;
+import org.jetbrains.annotations.NotNull;
+
+abstract class CycleInlineCompletionAction extends DumbAwareAction {
+
+    private final int direction;
+
+    protected CycleInlineCompletionAction(int direction) {
+        this.direction = direction;
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Editor editor = e.getData(CommonDataKeys.EDITOR);
+        if (editor == null) {
+            return;
+        }
+        AiInlineCompletionService.getInstance().cycleCandidate(editor, direction);
+    }
+
+    @Override
+    public void update(@NotNull AnActionEvent e) {
+        Editor editor = e.getData(CommonDataKeys.EDITOR);
+        e.getPresentation().setEnabled(
+            e.getProject() != null
+                && editor != null
+                && AiInlineCompletionService.getInstance().hasActiveCompletion(editor)
+        );
+    }
+}
@@ -0,0 +1,8 @@
+package com.github.mostbean.codingswitch.ui.action;
+
+public class NextInlineCompletionAction extends CycleInlineCompletionAction {
+
+    public NextInlineCompletionAction() {
+        super(1);
+    }
+}
@@ -0,0 +1,8 @@
+package com.github.mostbean.codingswitch.ui.action;
+
+public class PreviousInlineCompletionAction extends CycleInlineCompletionAction {
+
+    public PreviousInlineCompletionAction() {
+        super(-1);
+    }
+}
@@ -5,6 +5,7 @@ import com.github.mostbean.codingswitch.model.Provider;
 import com.github.mostbean.codingswitch.model.Provider.AuthMode;
 import com.github.mostbean.codingswitch.service.ConfigFileService;
 import com.github.mostbean.codingswitch.service.I18n;
+import com.github.mostbean.codingswitch.service.NetworkExecutor;
 import com.github.mostbean.codingswitch.service.PluginSettings;
 import com.github.mostbean.codingswitch.service.PluginSettings.SecurityPolicy;
 import com.github.mostbean.codingswitch.service.ProviderConnectionTestService;
@@ -1978,8 +1979,9 @@ public class ProviderDialog extends DialogWrapper {
         setTestFailureDetails(null);
         testStatusLabel.setForeground(JBColor.GRAY);
 
-        ApplicationManager.getApplication().executeOnPooledThread(() -> {
-            ProviderConnectionTestService.TestResult result = ProviderConnectionTestService.getInstance().test(cliType, config);
+        ProviderConnectionTestService testService = ProviderConnectionTestService.getInstance();
+        NetworkExecutor.getInstance().execute(testService.endpointKey(cliType, config), () -> {
+            ProviderConnectionTestService.TestResult result = testService.test(cliType, config);
             ApplicationManager.getApplication().invokeLater(() -> {
                 testConnectionButton.setEnabled(true);
                 if (result.success()) {
@@ -2024,9 +2026,9 @@ public class ProviderDialog extends DialogWrapper {
         setTestFailureDetails(null);
         testStatusLabel.setForeground(JBColor.GRAY);
 
-        ApplicationManager.getApplication().executeOnPooledThread(() -> {
-            ProviderConnectionTestService.ModelListResult result =
-                    ProviderConnectionTestService.getInstance().listModels(cliType, config);
+        ProviderConnectionTestService testService = ProviderConnectionTestService.getInstance();
+        NetworkExecutor.getInstance().execute(testService.endpointKey(cliType, config), () -> {
+            ProviderConnectionTestService.ModelListResult result = testService.listModels(cliType, config);
             ApplicationManager.getApplication().invokeLater(() -> {
                 fetchModelsButton.setEnabled(true);
                 if (result.success()) {
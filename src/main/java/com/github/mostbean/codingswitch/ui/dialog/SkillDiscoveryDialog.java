@@ -1,6 +1,7 @@
 package com.github.mostbean.codingswitch.ui.dialog;
 
 import com.github.mostbean.codingswitch.service.I18n;
+import com.github.mostbean.codingswitch.service.NetworkExecutor;
 import com.github.mostbean.codingswitch.service.PluginSettings;
 import com.github.mostbean.codingswitch.service.SkillService;
 import com.intellij.ide.BrowserUtil;
@@ -143,7 +144,7 @@ public class SkillDiscoveryDialog extends DialogWrapper {
         }
 
         setLoading(true, I18n.t("skill.discovery.status.loading"));
-        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+        NetworkExecutor.getInstance().execute(NetworkExecutor.endpointKey(selectedItem.url), () -> {
             SkillService.RepoDiscoveryInfo repoInfo;
             String status;
             try {
@@ -191,7 +192,7 @@ public class SkillDiscoveryDialog extends DialogWrapper {
         String repoName = currentRepoInfo.displayName();
         SkillService.RepoDiscoveryInfo repoToInstall = currentRepoInfo;
         setLoading(true, I18n.t("skill.discovery.status.installing", repoName));
-        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+        NetworkExecutor.getInstance().execute(NetworkExecutor.endpointKey(repoToInstall.repositoryUrl()), () -> {
             SkillService.RepoInstallResult result;
             try {
                 result = SkillService.getInstance().installSkillsFromRepository(repoToInstall);
@@ -3,6 +3,7 @@ package com.github.mostbean.codingswitch.ui.panel;
 import com.github.mostbean.codingswitch.model.CliType;
 import com.github.mostbean.codingswitch.model.Skill;
 import com.github.mostbean.codingswitch.service.I18n;
+import com.github.mostbean.codingswitch.service.NetworkExecutor;
 import com.github.mostbean.codingswitch.service.PluginSettings;
 import com.github.mostbean.codingswitch.service.SkillService;
 import com.github.mostbean.codingswitch.ui.dialog.SkillDiscoveryDialog;
@@ -13,6 +14,7 @@ import com.intellij.ide.ActivityTracker;
 import com.intellij.openapi.actionSystem.ActionUpdateThread;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.ui.Messages;
 import com.intellij.ui.ToolbarDecorator;
 import com.intellij.ui.table.JBTable;
@@ -278,14 +280,18 @@ public class SkillPanel extends JPanel {
             Messages.showWarningDialog(I18n.t("skill.dialog.gitRequired"), I18n.t("provider.dialog.error"));
             return;
         }
-        SkillService.OperationResult result = SkillService.getInstance().updateInstalledSkill(selected.getId());
-        if (result.success()) {
-            Messages.showInfoMessage(I18n.t("skill.dialog.updateSuccess", selected.getName()),
-                    I18n.t("skill.dialog.updateTitle"));
-        } else {
-            Messages.showErrorDialog(I18n.t("skill.dialog.updateFailed", result.message()),
-                    I18n.t("provider.dialog.error"));
-        }
+        NetworkExecutor.getInstance().execute(NetworkExecutor.endpointKey(selected.getRepository()), () -> {
+            SkillService.OperationResult result = SkillService.getInstance().updateInstalledSkill(selected.getId());
+            ApplicationManager.getApplication().invokeLater(() -> {
+                if (result.success()) {
+                    Messages.showInfoMessage(I18n.t("skill.dialog.updateSuccess", selected.getName()),
+                            I18n.t("skill.dialog.updateTitle"));
+                } else {
+                    Messages.showErrorDialog(I18n.t("skill.dialog.updateFailed", result.message()),
+                            I18n.t("provider.dialog.error"));
+                }
+            });
+        });
     }
 
     private void onRemoveSkill() {
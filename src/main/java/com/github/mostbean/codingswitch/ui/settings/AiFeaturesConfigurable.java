@@ -3,11 +3,17 @@ package com.github.mostbean.codingswitch.ui.settings;
 import com.github.mostbean.codingswitch.model.AiModelFormat;
 import com.github.mostbean.codingswitch.model.AiModelProfile;
 import com.github.mostbean.codingswitch.model.AiCompletionLengthLevel;
+import com.github.mostbean.codingswitch.model.AiTokenizerKind;
 import com.github.mostbean.codingswitch.model.CliType;
+import com.github.mostbean.codingswitch.model.CompletionTimingConfig;
+import com.github.mostbean.codingswitch.service.AiCompletionCache;
+import com.github.mostbean.codingswitch.service.AiCompletionMetrics;
+import com.github.mostbean.codingswitch.service.AiCompletionService;
 import com.github.mostbean.codingswitch.service.AiFeatureSettings;
 import com.github.mostbean.codingswitch.service.AiModelConnectionTestService;
 import com.github.mostbean.codingswitch.service.CcSwitchSyncService;
 import com.github.mostbean.codingswitch.service.I18n;
+import com.github.mostbean.codingswitch.service.NetworkExecutor;
 import com.github.mostbean.codingswitch.service.PluginDataStorage;
 import com.github.mostbean.codingswitch.service.PluginSettings;
 import com.github.mostbean.codingswitch.service.PluginStorageModeService;
@@ -51,6 +57,7 @@ import java.awt.event.FocusAdapter;
 import java.awt.event.FocusEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -105,9 +112,13 @@ public class AiFeaturesConfigurable implements SearchableConfigurable {
     private JCheckBox codeCompletionEnabled;
     private JCheckBox gitCommitMessageEnabled;
     private JComboBox<AiFeatureSettings.GitCommitMessageLanguage> gitCommitMessageLanguage;
+    private JCheckBox gitNativeDiffEnabled;
+    private JCheckBox gitChunkSummaryEnabled;
     private JComboBox<PluginSettings.Language> uiLanguageCombo;
     private JComboBox<PluginSettings.DataStorageMode> storageModeCombo;
     private JCheckBox autoCompletionEnabled;
+    private JCheckBox crossFileContextEnabled;
+    private JCheckBox speculativePrefetchEnabled;
     private JComboBox<AiCompletionLengthLevel> autoCompletionLengthLevel;
     private JComboBox<AiCompletionLengthLevel> manualCompletionLengthLevel;
     private JTextField manualShortcutField;
@@ -119,6 +130,8 @@ public class AiFeaturesConfigurable implements SearchableConfigurable {
     private DefaultComboBoxModel<AiModelProfile> activeProfileModel;
     private JComboBox<AiModelProfile> activeGitCommitProfileCombo;
     private DefaultComboBoxModel<AiModelProfile> activeGitCommitProfileModel;
+    private JComboBox<AiModelProfile> hedgeProfileCombo;
+    private DefaultComboBoxModel<AiModelProfile> hedgeProfileModel;
     private JBLabel completionProfileHintLabel;
     private JBLabel gitCommitProfileHintLabel;
     private JTextField ccSwitchConfigDirectoryField;
@@ -185,6 +198,10 @@ public class AiFeaturesConfigurable implements SearchableConfigurable {
         configureGitCommitLanguageCombo();
         gitLanguageRow.add(gitCommitMessageLanguage);
         section.add(gitLanguageRow);
+        gitNativeDiffEnabled = new JCheckBox(I18n.t("aiSettings.checkbox.gitNativeDiff"));
+        section.add(checkBoxRow(gitNativeDiffEnabled));
+        gitChunkSummaryEnabled = new JCheckBox(I18n.t("aiSettings.checkbox.gitChunkSummary"));
+        section.add(checkBoxRow(gitChunkSummaryEnabled));
         return section;
     }
 
@@ -361,6 +378,11 @@ public class AiFeaturesConfigurable implements SearchableConfigurable {
         autoCompletionEnabled.addActionListener(e -> updateFeatureAvailability());
         section.add(checkBoxRow(autoCompletionEnabled));
 
+        crossFileContextEnabled = new JCheckBox(I18n.t("aiSettings.checkbox.crossFileContext"));
+        section.add(checkBoxRow(crossFileContextEnabled));
+        speculativePrefetchEnabled = new JCheckBox(I18n.t("aiSettings.checkbox.speculativePrefetch"));
+        section.add(checkBoxRow(speculativePrefetchEnabled));
+
         JPanel lengthRow = rowPanel();
         lengthRow.add(new JBLabel(I18n.t("aiSettings.label.autoLength")));
         autoCompletionLengthLevel = new JComboBox<>(AiCompletionLengthLevel.values());
@@ -389,6 +411,16 @@ public class AiFeaturesConfigurable implements SearchableConfigurable {
         shortcutRow.add(hint);
         section.add(shortcutRow);
 
+        JPanel diagnosticsRow = rowPanel();
+        diagnosticsRow.add(new JBLabel(I18n.t("aiSettings.label.diagnostics")));
+        JButton diagnosticsButton = new JButton(I18n.t("aiSettings.button.diagnostics"));
+        diagnosticsButton.addActionListener(e -> new CompletionDiagnosticsDialog().show());
+        diagnosticsRow.add(diagnosticsButton);
+        JBLabel diagnosticsHint = new JBLabel(I18n.t("aiSettings.hint.diagnostics"));
+        diagnosticsHint.setForeground(JBColor.GRAY);
+        diagnosticsRow.add(diagnosticsHint);
+        section.add(diagnosticsRow);
+
         return section;
     }
 
@@ -430,9 +462,10 @@ public class AiFeaturesConfigurable implements SearchableConfigurable {
         JPanel section = createSection(I18n.t("aiSettings.section.modelConfig"));
         String completionProfileLabel = I18n.t("aiSettings.label.completionProfile");
         String gitCommitProfileLabel = I18n.t("aiSettings.label.gitCommitProfile");
+        String hedgeProfileLabel = I18n.t("aiSettings.label.hedgeProfile");
         int profileLabelWidth = Math.max(
-            profileSelectionLabelWidth(completionProfileLabel),
-            profileSelectionLabelWidth(gitCommitProfileLabel)
+            Math.max(profileSelectionLabelWidth(completionProfileLabel), profileSelectionLabelWidth(gitCommitProfileLabel)),
+            profileSelectionLabelWidth(hedgeProfileLabel)
         );
 
         JPanel buttonRow = rowPanel();
@@ -451,6 +484,15 @@ public class AiFeaturesConfigurable implements SearchableConfigurable {
         completionRow.add(completionProfileHintLabel);
         section.add(completionRow);
 
+        JPanel hedgeRow = profileSelectionRow();
+        hedgeRow.add(profileSelectionLabel(hedgeProfileLabel, profileLabelWidth));
+        hedgeProfileModel = new DefaultComboBoxModel<>();
+        hedgeProfileCombo = new JComboBox<>(hedgeProfileModel);
+        configureProfileCombo(hedgeProfileCombo, true, I18n.t("aiSettings.option.noHedgeProfile"));
+        hedgeProfileCombo.setToolTipText(I18n.t("aiSettings.hint.hedgeProfile"));
+        hedgeRow.add(hedgeProfileCombo);
+        section.add(hedgeRow);
+
         JPanel gitCommitRow = profileSelectionRow();
         gitCommitRow.add(profileSelectionLabel(gitCommitProfileLabel, profileLabelWidth));
         activeGitCommitProfileModel = new DefaultComboBoxModel<>();
@@ -489,6 +531,10 @@ public class AiFeaturesConfigurable implements SearchableConfigurable {
     }
 
     private void configureProfileCombo(JComboBox<AiModelProfile> comboBox, boolean preferFim) {
+        configureProfileCombo(comboBox, preferFim, I18n.t("aiSettings.option.noProfile"));
+    }
+
+    private void configureProfileCombo(JComboBox<AiModelProfile> comboBox, boolean preferFim, String emptyText) {
         comboBox.setRenderer((JList<? extends AiModelProfile> list, AiModelProfile value, int index,
             boolean isSelected, boolean cellHasFocus) -> {
             JPanel panel = new JPanel(new BorderLayout(8, 0));
@@ -496,7 +542,7 @@ public class AiFeaturesConfigurable implements SearchableConfigurable {
             panel.setBackground(isSelected ? list.getSelectionBackground() : list.getBackground());
             panel.setBorder(JBUI.Borders.empty(2, 6));
 
-            JLabel nameLabel = new JLabel(value == null ? I18n.t("aiSettings.option.noProfile") : activeProfileDisplayName(value));
+            JLabel nameLabel = new JLabel(value == null ? emptyText : activeProfileDisplayName(value));
             nameLabel.setForeground(isSelected ? list.getSelectionForeground() : list.getForeground());
             panel.add(nameLabel, BorderLayout.CENTER);
 
@@ -872,6 +918,8 @@ public class AiFeaturesConfigurable implements SearchableConfigurable {
         String activeId = activeSelection instanceof AiModelProfile activeProfile ? activeProfile.getId() : "";
         Object activeGitSelection = activeGitCommitProfileCombo == null ? null : activeGitCommitProfileCombo.getSelectedItem();
         String activeGitId = activeGitSelection instanceof AiModelProfile activeProfile ? activeProfile.getId() : "";
+        Object hedgeSelection = hedgeProfileCombo == null ? null : hedgeProfileCombo.getSelectedItem();
+        String hedgeId = hedgeSelection instanceof AiModelProfile hedgeProfile ? hedgeProfile.getId() : "";
         suppressFeatureAvailabilityUpdates = true;
         try {
             if (profileTableModel != null) {
@@ -884,6 +932,10 @@ public class AiFeaturesConfigurable implements SearchableConfigurable {
             if (activeGitCommitProfileModel != null) {
                 activeGitCommitProfileModel.removeAllElements();
             }
+            if (hedgeProfileModel != null) {
+                hedgeProfileModel.removeAllElements();
+                hedgeProfileModel.addElement(null);
+            }
             ProfileTypeFilter selectedFilter = selectedProfileTypeFilter();
             for (int i = 0; i < profiles.size(); i++) {
                 AiModelProfile profile = profiles.get(i);
@@ -903,6 +955,9 @@ public class AiFeaturesConfigurable implements SearchableConfigurable {
                 if (activeProfileModel != null) {
                     activeProfileModel.addElement(profile);
                 }
+                if (hedgeProfileModel != null) {
+                    hedgeProfileModel.addElement(profile);
+                }
             }
             for (AiModelProfile profile : sortedProfiles(gitCommitFilter)) {
                 if (activeGitCommitProfileModel != null) {
@@ -911,6 +966,7 @@ public class AiFeaturesConfigurable implements SearchableConfigurable {
             }
             selectProfile(activeProfileCombo, activeId);
             selectProfile(activeGitCommitProfileCombo, activeGitId);
+            selectHedgeProfile(hedgeId);
             if (activeProfileModel != null && activeProfileModel.getSize() > 0 && activeProfileCombo.getSelectedItem() == null) {
                 activeProfileCombo.setSelectedIndex(0);
             }
@@ -949,6 +1005,14 @@ public class AiFeaturesConfigurable implements SearchableConfigurable {
         }
     }
 
+    private void selectHedgeProfile(String profileId) {
+        if (hedgeProfileCombo == null) {
+            return;
+        }
+        hedgeProfileCombo.setSelectedItem(null);
+        selectProfile(hedgeProfileCombo, profileId);
+    }
+
     private void updateFeatureAvailability() {
         updateProfileHints();
         boolean hasCompletionModel = hasConfiguredModel(activeProfileCombo);
@@ -969,6 +1033,12 @@ public class AiFeaturesConfigurable implements SearchableConfigurable {
         if (gitCommitMessageLanguage != null) {
             gitCommitMessageLanguage.setEnabled(gitCommitMessageEnabled == null || gitCommitMessageEnabled.isSelected());
         }
+        if (gitNativeDiffEnabled != null) {
+            gitNativeDiffEnabled.setEnabled(gitCommitMessageEnabled == null || gitCommitMessageEnabled.isSelected());
+        }
+        if (gitChunkSummaryEnabled != null) {
+            gitChunkSummaryEnabled.setEnabled(gitCommitMessageEnabled == null || gitCommitMessageEnabled.isSelected());
+        }
         boolean completionEnabled = codeCompletionEnabled != null
             && codeCompletionEnabled.isEnabled()
             && codeCompletionEnabled.isSelected();
@@ -978,6 +1048,12 @@ public class AiFeaturesConfigurable implements SearchableConfigurable {
                 autoCompletionEnabled.setSelected(false);
             }
         }
+        if (crossFileContextEnabled != null) {
+            crossFileContextEnabled.setEnabled(completionEnabled);
+        }
+        if (speculativePrefetchEnabled != null) {
+            speculativePrefetchEnabled.setEnabled(completionEnabled);
+        }
     }
 
     private boolean hasConfiguredModel(JComboBox<AiModelProfile> comboBox) {
@@ -1047,7 +1123,13 @@ public class AiFeaturesConfigurable implements SearchableConfigurable {
         codeCompletionEnabled.setSelected(state.codeCompletionEnabled);
         gitCommitMessageEnabled.setSelected(state.gitCommitMessageEnabled);
         gitCommitMessageLanguage.setSelectedItem(parseGitCommitLanguage(state.gitCommitMessageLanguage));
+        gitNativeDiffEnabled.setSelected(state.gitNativeDiffEnabled);
+        gitChunkSummaryEnabled.setSelected(state.gitChunkSummaryEnabled);
         autoCompletionEnabled.setSelected(state.autoCompletionEnabled);
+        crossFileContextEnabled.setSelected(state.timingConfig != null && state.timingConfig.isCrossFileContextEnabled());
+        speculativePrefetchEnabled.setSelected(
+            state.timingConfig != null && state.timingConfig.isSpeculativePrefetchEnabled()
+        );
         autoCompletionLengthLevel.setSelectedItem(parseLengthLevel(
             state.autoCompletionLengthLevel,
             AiCompletionLengthLevel.SINGLE_LINE
@@ -1066,6 +1148,7 @@ public class AiFeaturesConfigurable implements SearchableConfigurable {
         reloadProfiles();
         selectProfile(activeProfileCombo, state.activeCompletionProfileId);
         selectProfile(activeGitCommitProfileCombo, state.activeGitCommitProfileId);
+        selectHedgeProfile(state.hedgeCompletionProfileId);
         removedProfileIds.clear();
         editedApiKeys.clear();
         updateFeatureAvailability();
@@ -1262,7 +1345,17 @@ public class AiFeaturesConfigurable implements SearchableConfigurable {
         state.codeCompletionEnabled = codeCompletionEnabled != null && codeCompletionEnabled.isSelected();
         state.gitCommitMessageEnabled = gitCommitMessageEnabled != null && gitCommitMessageEnabled.isSelected();
         state.gitCommitMessageLanguage = selectedGitCommitLanguageName();
+        state.gitNativeDiffEnabled = gitNativeDiffEnabled != null && gitNativeDiffEnabled.isSelected();
+        state.gitChunkSummaryEnabled = gitChunkSummaryEnabled != null && gitChunkSummaryEnabled.isSelected();
         state.autoCompletionEnabled = autoCompletionEnabled != null && autoCompletionEnabled.isSelected();
+        CompletionTimingConfig timingConfig = state.timingConfig == null
+            ? new CompletionTimingConfig()
+            : state.timingConfig.copy();
+        timingConfig.setCrossFileContextEnabled(crossFileContextEnabled != null && crossFileContextEnabled.isSelected());
+        timingConfig.setSpeculativePrefetchEnabled(
+            speculativePrefetchEnabled != null && speculativePrefetchEnabled.isSelected()
+        );
+        state.timingConfig = timingConfig;
         state.autoCompletionLengthLevel = selectedLengthName(
             autoCompletionLengthLevel,
             AiCompletionLengthLevel.SINGLE_LINE
@@ -1280,6 +1373,10 @@ public class AiFeaturesConfigurable implements SearchableConfigurable {
         state.activeGitCommitProfileId = selectedGitCommitProfile instanceof AiModelProfile gitCommitProfile
             ? gitCommitProfile.getId()
             : "";
+        Object selectedHedgeProfile = hedgeProfileCombo == null ? null : hedgeProfileCombo.getSelectedItem();
+        state.hedgeCompletionProfileId = selectedHedgeProfile instanceof AiModelProfile hedgeProfile
+            ? hedgeProfile.getId()
+            : "";
         state.profiles = new ArrayList<>();
         for (AiModelProfile profile : profiles) {
             state.profiles.add(profile.copy());
@@ -1293,11 +1390,14 @@ public class AiFeaturesConfigurable implements SearchableConfigurable {
         return a.codeCompletionEnabled == b.codeCompletionEnabled
             && a.gitCommitMessageEnabled == b.gitCommitMessageEnabled
             && Objects.equals(a.gitCommitMessageLanguage, b.gitCommitMessageLanguage)
+            && a.gitNativeDiffEnabled == b.gitNativeDiffEnabled
+            && a.gitChunkSummaryEnabled == b.gitChunkSummaryEnabled
             && a.autoCompletionEnabled == b.autoCompletionEnabled
             && Objects.equals(a.autoCompletionLengthLevel, b.autoCompletionLengthLevel)
             && Objects.equals(a.manualCompletionLengthLevel, b.manualCompletionLengthLevel)
             && Objects.equals(a.activeCompletionProfileId, b.activeCompletionProfileId)
             && Objects.equals(a.activeGitCommitProfileId, b.activeGitCommitProfileId)
+            && Objects.equals(a.hedgeCompletionProfileId, b.hedgeCompletionProfileId)
             && Objects.equals(a.manualCompletionShortcut, b.manualCompletionShortcut)
             && Objects.equals(a.timingConfig, b.timingConfig)
             && Objects.equals(a.profiles, b.profiles);
@@ -2230,6 +2330,7 @@ public class AiFeaturesConfigurable implements SearchableConfigurable {
         private JSpinner timeoutSpinner;
         private JTextArea headersArea;
         private JComboBox<Boolean> fimEnabledCombo;
+        private JComboBox<AiTokenizerKind> tokenizerCombo;
         private JBLabel completionModelHint;
         private JButton testButton;
         private JButton detectModelsButton;
@@ -2261,6 +2362,9 @@ public class AiFeaturesConfigurable implements SearchableConfigurable {
             fimEnabledCombo = new JComboBox<>(new Boolean[] { false, true });
             fimEnabledCombo.setSelectedItem(original.isFimEnabled());
             configureFimEnabledCombo();
+            tokenizerCombo = new JComboBox<>(AiTokenizerKind.values());
+            tokenizerCombo.setSelectedItem(original.getTokenizer());
+            configureTokenizerCombo();
             formatCombo.addActionListener(e -> updateFormatDependentUi());
 
             FormBuilder form = FormBuilder.createFormBuilder()
@@ -2271,6 +2375,7 @@ public class AiFeaturesConfigurable implements SearchableConfigurable {
                 .addLabeledComponent("API Key:", apiKeyField)
                 .addLabeledComponent(I18n.t("aiSettings.label.timeoutSeconds"), timeoutSpinner)
                 .addLabeledComponent(I18n.t("aiSettings.label.fimAdapterEnabled"), fimEnabledCombo)
+                .addLabeledComponent(I18n.t("aiSettings.label.tokenizer"), tokenizerCombo)
                 .addLabeledComponent(I18n.t("aiSettings.label.customHeaders"), new JBScrollPane(headersArea));
 
             completionModelHint = new JBLabel(I18n.t("aiSettings.hint.fimModelRecommended"));
@@ -2372,6 +2477,7 @@ public class AiFeaturesConfigurable implements SearchableConfigurable {
             profile.setFimPrefixToken("");
             profile.setFimSuffixToken("");
             profile.setFimMiddleToken("");
+            profile.setTokenizer((AiTokenizerKind) tokenizerCombo.getSelectedItem());
             return profile;
         }
 
@@ -2407,6 +2513,28 @@ public class AiFeaturesConfigurable implements SearchableConfigurable {
             });
         }
 
+        private void configureTokenizerCombo() {
+            tokenizerCombo.setRenderer(new DefaultListCellRenderer() {
+                @Override
+                public Component getListCellRendererComponent(
+                    JList<?> list,
+                    Object value,
+                    int index,
+                    boolean isSelected,
+                    boolean cellHasFocus
+                ) {
+                    super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+                    if (value instanceof AiTokenizerKind kind) {
+                        setText(switch (kind) {
+                            case BPE_ESTIMATE -> I18n.t("aiSettings.tokenizer.bpeEstimate");
+                            case CHARS_ESTIMATE -> I18n.t("aiSettings.tokenizer.charsEstimate");
+                        });
+                    }
+                    return this;
+                }
+            });
+        }
+
         private void updateFormatDependentUi() {
             AiModelFormat selected = (AiModelFormat) formatCombo.getSelectedItem();
             boolean nativeFim = AiFeatureSettings.isNativeFimFormat(selected);
@@ -2430,7 +2558,7 @@ public class AiFeaturesConfigurable implements SearchableConfigurable {
             setTestingButtonsEnabled(false);
             setTestStatus(I18n.t("aiSettings.status.testing"), true);
 
-            ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            NetworkExecutor.getInstance().execute(NetworkExecutor.endpointKey(profile), () -> {
                 AiModelConnectionTestService.TestResult result =
                     AiModelConnectionTestService.getInstance().test(profile, apiKey);
                 SwingUtilities.invokeLater(() -> {
@@ -2452,7 +2580,7 @@ public class AiFeaturesConfigurable implements SearchableConfigurable {
             setTestingButtonsEnabled(false);
             setTestStatus(I18n.t("aiSettings.status.detectingModels"), true);
 
-            ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            NetworkExecutor.getInstance().execute(NetworkExecutor.endpointKey(profile), () -> {
                 AiModelConnectionTestService.ModelListResult result =
                     AiModelConnectionTestService.getInstance().listModels(profile, apiKey);
                 SwingUtilities.invokeLater(() -> {
@@ -2510,6 +2638,141 @@ public class AiFeaturesConfigurable implements SearchableConfigurable {
         }
     }
 
+    private static final class CompletionDiagnosticsDialog extends DialogWrapper {
+
+        private DefaultTableModel tableModel;
+
+        private CompletionDiagnosticsDialog() {
+            super(true);
+            setTitle(I18n.t("aiSettings.dialog.diagnostics"));
+            init();
+        }
+
+        @Override
+        protected @Nullable JComponent createCenterPanel() {
+            JPanel panel = new JPanel(new BorderLayout(0, 8));
+            panel.setBorder(JBUI.Borders.empty(8));
+
+            String[] columns = {
+                I18n.t("aiSettings.diagnostics.profile"),
+                I18n.t("aiSettings.diagnostics.requests"),
+                I18n.t("aiSettings.diagnostics.success"),
+                I18n.t("aiSettings.diagnostics.errors"),
+                I18n.t("aiSettings.diagnostics.cacheHits"),
+                I18n.t("aiSettings.diagnostics.shown"),
+                I18n.t("aiSettings.diagnostics.acceptRate"),
+                I18n.t("aiSettings.diagnostics.firstToken"),
+                I18n.t("aiSettings.diagnostics.total")
+            };
+            tableModel = new DefaultTableModel(columns, 0) {
+                @Override
+                public boolean isCellEditable(int row, int column) {
+                    return false;
+                }
+            };
+            JTable table = new JTable(tableModel);
+            table.setRowHeight(JBUI.scale(24));
+            table.getTableHeader().setReorderingAllowed(false);
+            table.getColumnModel().getColumn(0).setPreferredWidth(JBUI.scale(160));
+            table.getColumnModel().getColumn(7).setPreferredWidth(JBUI.scale(150));
+            table.getColumnModel().getColumn(8).setPreferredWidth(JBUI.scale(150));
+            JBScrollPane tablePane = new JBScrollPane(table);
+            tablePane.setPreferredSize(new Dimension(JBUI.scale(900), JBUI.scale(200)));
+            panel.add(tablePane, BorderLayout.CENTER);
+
+            JPanel buttonRow = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 6));
+            JButton refreshButton = new JButton(I18n.t("common.button.refresh"), AllIcons.Actions.Refresh);
+            refreshButton.addActionListener(e -> reload());
+            buttonRow.add(refreshButton);
+            JButton resetButton = new JButton(I18n.t("common.button.reset"));
+            resetButton.addActionListener(e -> {
+                AiCompletionMetrics.getInstance().reset();
+                reload();
+            });
+            buttonRow.add(resetButton);
+            JButton clearCacheButton = new JButton(I18n.t("aiSettings.diagnostics.clearCache"));
+            clearCacheButton.addActionListener(e -> clearCompletionCache());
+            buttonRow.add(clearCacheButton);
+            JButton exportButton = new JButton(I18n.t("aiSettings.diagnostics.export"));
+            exportButton.addActionListener(e -> exportJson(panel));
+            buttonRow.add(exportButton);
+            panel.add(buttonRow, BorderLayout.SOUTH);
+
+            reload();
+            return panel;
+        }
+
+        @Override
+        protected Action[] createActions() {
+            return new Action[] { getOKAction() };
+        }
+
+        private void reload() {
+            tableModel.setRowCount(0);
+            for (AiCompletionMetrics.ProfileSnapshot snapshot : AiCompletionMetrics.getInstance().snapshot()) {
+                long cacheHits = snapshot.cacheHits().values().stream().mapToLong(Long::longValue).sum();
+                double acceptRate = snapshot.acceptRate();
+                tableModel.addRow(new Object[]{
+                    snapshot.profileId().isEmpty() ? I18n.t("aiSettings.diagnostics.noProfile") : snapshot.profileName(),
+                    snapshot.requests(),
+                    snapshot.statuses().get(AiCompletionService.CompletionStatus.SUCCESS),
+                    snapshot.errors(),
+                    cacheHits,
+                    snapshot.suggestions().get(AiCompletionMetrics.SuggestionEvent.SHOWN),
+                    acceptRate < 0 ? "-" : String.format("%.0f%%", acceptRate * 100),
+                    latencyText(snapshot.firstToken()),
+                    latencyText(snapshot.total())
+                });
+            }
+        }
+
+        private static String latencyText(AiCompletionMetrics.LatencySummary summary) {
+            if (summary.count() == 0) {
+                return "-";
+            }
+            return summary.p50() + " / " + summary.p90() + " / " + summary.p99() + " ms";
+        }
+
+        private void clearCompletionCache() {
+            AiCompletionCache cache = AiCompletionCache.getInstance();
+            cache.clear();
+            try {
+                cache.clearPersistent();
+                Messages.showInfoMessage(
+                    I18n.t("aiSettings.diagnostics.cacheCleared"),
+                    I18n.t("aiSettings.dialog.diagnostics")
+                );
+            } catch (IOException ex) {
+                Messages.showErrorDialog(
+                    I18n.t("aiSettings.diagnostics.clearCacheFailed", ex.getMessage()),
+                    I18n.t("aiSettings.dialog.diagnostics")
+                );
+            }
+        }
+
+                private void exportJson(JComponent parent) {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setDialogTitle(I18n.t("aiSettings.diagnostics.export"));
+            chooser.setSelectedFile(new File("coding-switch-completion-metrics.json"));
+            if (chooser.showSaveDialog(parent) != JFileChooser.APPROVE_OPTION || chooser.getSelectedFile() == null) {
+                return;
+            }
+            Path target = chooser.getSelectedFile().toPath();
+            try {
+                Files.writeString(target, AiCompletionMetrics.getInstance().exportJson());
+                Messages.showInfoMessage(
+                    I18n.t("aiSettings.diagnostics.exported", target.toString()),
+                    I18n.t("aiSettings.dialog.diagnostics")
+                );
+            } catch (IOException ex) {
+                Messages.showErrorDialog(
+                    I18n.t("aiSettings.diagnostics.exportFailed", ex.getMessage()),
+                    I18n.t("aiSettings.dialog.diagnostics")
+                );
+            }
+        }
+    }
+
     private static final class ModelSelectionDialog extends DialogWrapper {
 
         private final List<String> models;
@@ -0,0 +1,54 @@
+package com.github.mostbean.codingswitch.service;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class AiAdaptiveDebounceTest {
+
+    @Test
+    public void shouldUseConfiguredDelayUntilCadenceIsKnown() {
+        AiAdaptiveDebounce debounce = new AiAdaptiveDebounce();
+        type(debounce, 0, 3, 90);
+
+        assertEquals(650, debounce.delayMs(150, 650, -1));
+    }
+
+    @Test
+    public void shouldTriggerSoonerForFastTypistWithinBounds() {
+        AiAdaptiveDebounce debounce = new AiAdaptiveDebounce();
+        type(debounce, 0, 20, 100);
+
+        assertEquals(200, debounce.delayMs(150, 650, -1));
+        assertEquals(250, debounce.delayMs(250, 650, -1));
+    }
+
+    @Test
+    public void shouldIgnorePausesAndWaitLongerForSlowTypist() {
+        AiAdaptiveDebounce debounce = new AiAdaptiveDebounce();
+        long now = type(debounce, 0, 20, 260);
+        type(debounce, now + 5_000, 1, 260);
+
+        assertEquals(520, debounce.delayMs(150, 650, -1));
+        assertEquals(400, debounce.delayMs(150, 400, -1));
+    }
+
+    @Test
+    public void shouldFireEarlierWhenModelIsSlowToFirstToken() {
+        AiAdaptiveDebounce debounce = new AiAdaptiveDebounce();
+        type(debounce, 0, 20, 200);
+
+        assertEquals(400, debounce.delayMs(150, 650, 500));
+        assertEquals(350, debounce.delayMs(150, 650, 800));
+        assertEquals(267, debounce.delayMs(150, 650, 3000));
+    }
+
+    private static long type(AiAdaptiveDebounce debounce, long start, int keystrokes, long interval) {
+        long now = start;
+        for (int i = 0; i < keystrokes; i++) {
+            now += interval;
+            debounce.recordKeystroke(now);
+        }
+        return now;
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.mostbean.codingswitch.service;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AiBpeTokenEstimatorTest {
+
+    private final AiBpeTokenEstimator tokenizer = AiBpeTokenEstimator.INSTANCE;
+
+    @Test
+    public void shouldCountCjkCharactersIndividually() {
+        String text = "// 计算补全上下文的预算";
+
+        int tokens = tokenizer.countTokens(text, 0, text.length());
+
+        assertEquals(1 + 10, tokens);
+        assertTrue(tokens > AiCharsTokenEstimator.INSTANCE.countTokens(text, 0, text.length()));
+    }
+
+    @Test
+    public void shouldSplitCamelCaseIdentifiers() {
+        String text = "HTTPClientFactory.getInstance()";
+
+        assertEquals(3 + 1 + 2 + 1, tokenizer.countTokens(text, 0, text.length()));
+    }
+
+    @Test
+    public void shouldFitPrefixAndSuffixWithinBudget() {
+        String text = "int total = computeTotal(items, 42);\nreturn total * 1000;\n".repeat(20);
+        int budget = 37;
+
+        int start = tokenizer.fitTail(text, 0, text.length(), budget);
+        int end = tokenizer.fitHead(text, 0, text.length(), budget);
+
+        assertTrue(tokenizer.countTokens(text, start, text.length()) <= budget);
+        assertTrue(tokenizer.countTokens(text, start, text.length()) >= budget - 2);
+        assertTrue(tokenizer.countTokens(text, 0, end) <= budget);
+        assertEquals(0, tokenizer.fitTail(text, 0, 10, 100));
+        assertEquals(10, tokenizer.fitHead(text, 0, 10, 100));
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.mostbean.codingswitch.service;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import org.junit.Test;
+
+public class AiCommitChunkPlannerTest {
+
+    @Test
+    public void groupsByModuleBelowTheCommonDirectoryInRankOrder() {
+        List<AiCommitChunkPlanner.Chunk> chunks = AiCommitChunkPlanner.plan(List.of(
+            file("/repo/ui/Panel.java", 60),
+            file("/repo/service/Cache.java", 60),
+            file("/repo/ui/Dialog.java", 60),
+            file("/repo/service/Client.java", 60)
+        ), 150);
+
+        assertEquals(List.of("ui", "service"), chunks.stream().map(AiCommitChunkPlanner.Chunk::label).toList());
+        assertEquals(List.of("/repo/ui/Panel.java", "/repo/ui/Dialog.java"), paths(chunks.get(0)));
+    }
+
+    @Test
+    public void keepsFilesInTheCommonDirectoryTogether() {
+        List<AiCommitChunkPlanner.Chunk> chunks = AiCommitChunkPlanner.plan(List.of(
+            file("/repo/src/main/A.java", 100),
+            file("/repo/build.gradle", 100),
+            file("/repo/README.md", 100)
+        ), 250);
+
+        assertEquals(List.of("src", "."), chunks.stream().map(AiCommitChunkPlanner.Chunk::label).toList());
+        assertEquals(List.of("/repo/build.gradle", "/repo/README.md"), paths(chunks.get(1)));
+    }
+
+    @Test
+    public void splitsLargeGroupsAndMergesSmallNeighbours() {
+        List<AiCommitChunkPlanner.Chunk> chunks = AiCommitChunkPlanner.plan(List.of(
+            file("/repo/a/One.java", 80),
+            file("/repo/a/Two.java", 40),
+            file("/repo/b/Three.java", 30),
+            file("/repo/c/Four.java", 30)
+        ), 100);
+
+        assertEquals(List.of("a", "a, b, c"), chunks.stream().map(AiCommitChunkPlanner.Chunk::label).toList());
+        assertEquals(List.of("/repo/a/Two.java", "/repo/b/Three.java", "/repo/c/Four.java"), paths(chunks.get(1)));
+    }
+
+    private static AiCommitChunkPlanner.FileDiff file(String path, int chars) {
+        return new AiCommitChunkPlanner.FileDiff(path, "x".repeat(chars));
+    }
+
+    private static List<String> paths(AiCommitChunkPlanner.Chunk chunk) {
+        return chunk.files().stream().map(AiCommitChunkPlanner.FileDiff::path).toList();
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.mostbean.codingswitch.service;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import org.junit.Test;
+
+public class AiCommitDiffPlannerTest {
+
+    @Test
+    public void ranksSourceChangesBeforeLockFilesAndBuildOutput() {
+        List<AiCommitDiffPlanner.Item> ranked = AiCommitDiffPlanner.rank(List.of(
+            item(0, "package-lock.json", AiCommitDiffPlanner.Kind.MODIFIED, 400_000),
+            item(1, "build/generated/Foo.java", AiCommitDiffPlanner.Kind.ADDED, 2_000),
+            item(2, "README.md", AiCommitDiffPlanner.Kind.MODIFIED, 3_000),
+            item(3, "src/main/java/App.java", AiCommitDiffPlanner.Kind.MODIFIED, 3_000),
+            item(4, "src/main/resources/plugin.xml", AiCommitDiffPlanner.Kind.MODIFIED, 3_000)
+        ));
+
+        assertEquals(List.of(3, 4, 2, 0, 1), ranked.stream().map(AiCommitDiffPlanner.Item::index).toList());
+    }
+
+    @Test
+    public void demotesLargeFilesAndKeepsOriginalOrderOnTies() {
+        List<AiCommitDiffPlanner.Item> ranked = AiCommitDiffPlanner.rank(List.of(
+            item(0, "src/Huge.java", AiCommitDiffPlanner.Kind.MODIFIED, 800_000),
+            item(1, "src/A.java", AiCommitDiffPlanner.Kind.MODIFIED, -1),
+            item(2, "src/B.java", AiCommitDiffPlanner.Kind.MODIFIED, 1_000),
+            item(3, "src/Old.java", AiCommitDiffPlanner.Kind.DELETED, 1_000)
+        ));
+
+        assertEquals(List.of(1, 2, 0, 3), ranked.stream().map(AiCommitDiffPlanner.Item::index).toList());
+    }
+
+    @Test
+    public void ranksByPathInsideRepositoryCheckedOutUnderBuildDirectory() {
+        String root = "/home/dev/build/work/target/app";
+        List<AiCommitDiffPlanner.Item> ranked = AiCommitDiffPlanner.rank(List.of(
+            item(0, AiCommitDiffPlanner.relativize(root + "/yarn.lock", root), AiCommitDiffPlanner.Kind.MODIFIED, 3_000),
+            item(1, AiCommitDiffPlanner.relativize(root + "/docs/guide.md", root), AiCommitDiffPlanner.Kind.MODIFIED, 3_000),
+            item(2, AiCommitDiffPlanner.relativize(root + "/src/App.java", root), AiCommitDiffPlanner.Kind.MODIFIED, 3_000)
+        ));
+
+        assertEquals("src/App.java", AiCommitDiffPlanner.relativize(root + "/src/App.java", root + "/"));
+        assertEquals(List.of(2, 1, 0), ranked.stream().map(AiCommitDiffPlanner.Item::index).toList());
+        assertEquals("/home/dev/test/", AiCommitDiffPlanner.commonDirectory(List.of(
+            "/home/dev/test/src/App.java",
+            "/home/dev/test/README.md"
+        )));
+    }
+
+    private static AiCommitDiffPlanner.Item item(int index, String path, AiCommitDiffPlanner.Kind kind, long size) {
+        return new AiCommitDiffPlanner.Item(index, path, kind, size);
+    }
+}
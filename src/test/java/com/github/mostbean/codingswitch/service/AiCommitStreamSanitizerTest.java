@@ -0,0 +1,49 @@
+package com.github.mostbean.codingswitch.service;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class AiCommitStreamSanitizerTest {
+
+    @Test
+    public void skipsThinkingBlocksSplitAcrossDeltas() {
+        AiCommitStreamSanitizer sanitizer = new AiCommitStreamSanitizer();
+        feed(sanitizer, "<thi", "nk>\n先看看 diff", "\n</th", "ink>\nfeat: 新增缓存\n", "- 支持", "持久化");
+
+        assertEquals("feat: 新增缓存\n\n- 支持持久化", sanitizer.snapshot());
+    }
+
+    @Test
+    public void hidesUnclosedReasoningAndMetaLines() {
+        AiCommitStreamSanitizer sanitizer = new AiCommitStreamSanitizer();
+        feed(sanitizer, "好的，下面是提交信息\n", "fix(ui): 修复预览闪烁\n", "<reasoning type=\"x\">还在想");
+
+        assertEquals("fix(ui): 修复预览闪烁", sanitizer.snapshot());
+    }
+
+    @Test
+    public void startsFromFirstConventionalLineCharByChar() {
+        AiCommitStreamSanitizer sanitizer = new AiCommitStreamSanitizer();
+        String text = "Commit message:\n```\nrefactor: 拆分 diff 收集 <b>\n```\n";
+        for (int i = 0; i < text.length(); i++) {
+            sanitizer.append(String.valueOf(text.charAt(i)));
+        }
+
+        assertEquals("refactor: 拆分 diff 收集 <b>", sanitizer.snapshot());
+    }
+
+    @Test
+    public void dropsToolCallOutputWithoutCommitTitle() {
+        AiCommitStreamSanitizer sanitizer = new AiCommitStreamSanitizer();
+        feed(sanitizer, "<tool_call>git status</tool_call>\n", "更新了文件");
+
+        assertEquals("", sanitizer.snapshot());
+    }
+
+    private static void feed(AiCommitStreamSanitizer sanitizer, String... deltas) {
+        for (String delta : deltas) {
+            sanitizer.append(delta);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.mostbean.codingswitch.service;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import org.junit.Test;
+
+public class AiCompletionCandidateRankerTest {
+
+    @Test
+    public void dropsPrimaryBlanksAndWhitespaceOnlyDuplicates() {
+        List<String> ranked = AiCompletionCandidateRanker.rank(
+            "return value;",
+            List.of("return value;  ", "", "return value + 1;", "return value + 1;\n"),
+            "",
+            ignored -> 0,
+            4
+        );
+
+        assertEquals(List.of("return value + 1;"), ranked);
+    }
+
+    @Test
+    public void prefersSyntacticallyValidCandidates() {
+        List<String> ranked = AiCompletionCandidateRanker.rank(
+            "",
+            List.of("foo(bar", "foo(bar)"),
+            "",
+            candidate -> candidate.contains("(") && !candidate.contains(")") ? 1 : 0,
+            4
+        );
+
+        assertEquals(List.of("foo(bar)", "foo(bar"), ranked);
+    }
+
+    @Test
+    public void penalizesRepeatingTheSuffixAndRewardsAgreement() {
+        List<String> ranked = AiCompletionCandidateRanker.rank(
+            "",
+            List.of("init();\n}", "init();\nstop();", "init();\nstart();", "init();\nstart();"),
+            "\n}\n",
+            ignored -> 0,
+            3
+        );
+
+        assertEquals(List.of("init();\nstart();", "init();\nstop();", "init();\n}"), ranked);
+    }
+}
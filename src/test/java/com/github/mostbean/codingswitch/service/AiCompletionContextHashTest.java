@@ -0,0 +1,38 @@
+package com.github.mostbean.codingswitch.service;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class AiCompletionContextHashTest {
+
+    @Test
+    public void shouldHashRangeSameAsStandaloneText() {
+        String text = "class Demo {\n    void run() {\n        System.out.println(\"hi\");\n    }\n}";
+        int start = 13;
+        int end = 40;
+
+        assertEquals(hash(text.substring(start, end), 0, end - start), hash(text, start, end));
+    }
+
+    @Test
+    public void shouldSeparateStringHashCodeCollisions() {
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        assertNotEquals(hash("Aa", 0, 2), hash("BB", 0, 2));
+        assertNotEquals(hash("AaAa", 0, 4), hash("BBBB", 0, 4));
+    }
+
+    @Test
+    public void shouldProduceFixedWidthHex() {
+        assertEquals(32, hash("", 0, 0).length());
+        assertEquals(32, hash("x".repeat(5000), 0, 5000).length());
+        assertNotEquals(hash("", 0, 0), hash("\0", 0, 1));
+    }
+
+    private static String hash(CharSequence text, int start, int end) {
+        StringBuilder out = new StringBuilder();
+        AiCompletionContextHash.appendHash128(out, text, start, end);
+        return out.toString();
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.mostbean.codingswitch.service;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AiCompletionDeltaFilterTest {
+
+    @Test
+    public void shouldStreamOnlyFirstEffectiveLine() {
+        String raw = "\r\n   \n    total += price;   \r\n    count++;";
+
+        for (int chunk : new int[] {1, 2, 5, raw.length()}) {
+            assertEquals("    total += price;", stream(new AiSingleLineDeltaFilter(), raw, chunk));
+        }
+    }
+
+    @Test
+    public void shouldCutExactSuffixEchoWithoutEmittingIt() {
+        String raw = "if (items.isEmpty()) {\n        return 0;\n    }\n    return sum(items);\n}\n";
+        AiSuffixEchoDeltaFilter filter = new AiSuffixEchoDeltaFilter("\n    return sum(items);\n}");
+
+        StringBuilder visible = new StringBuilder();
+        for (int i = 0; i < raw.length(); i++) {
+            String next = filter.append(raw.substring(i, i + 1));
+            assertFalse(next.contains("sum"));
+            visible.append(next);
+        }
+        visible.append(filter.finish());
+
+        assertEquals("if (items.isEmpty()) {\n        return 0;\n    }", visible.toString());
+    }
+
+    @Test
+    public void shouldCutLineEchoIgnoringWhitespaceAndKeepDivergingLines() {
+        String suffix = "  }, timeoutMs);\n";
+        String echoed = "cancel();\n    },\n    timeoutMs );\n  },timeoutMs);\nrest";
+        String diverging = "cancel();\n  }, timeoutMsFallback);";
+
+        for (int chunk : new int[] {1, 3, 7, 64}) {
+            assertEquals("cancel();\n    },\n    timeoutMs );", stream(new AiSuffixEchoDeltaFilter(suffix), echoed, chunk));
+            assertEquals(diverging, stream(new AiSuffixEchoDeltaFilter(suffix), diverging + "  \n", chunk));
+        }
+    }
+
+    @Test
+    public void shouldHoldBackOnlyPossibleEchoOnLongCompletions() {
+        String suffix = "return result;";
+        String line = "    builder.append(values[index]).append(separator); // retur\n";
+        AiSuffixEchoDeltaFilter filter = new AiSuffixEchoDeltaFilter(suffix);
+        long received = 0;
+        long emitted = 0;
+        int maxHeld = 0;
+        for (int i = 0; i < 32_000; i++) {
+            for (int offset = 0; offset < line.length(); offset += 6) {
+                String delta = line.substring(offset, Math.min(line.length(), offset + 6));
+                received += delta.length();
+                emitted += filter.append(delta).length();
+                maxHeld = (int) Math.max(maxHeld, received - emitted);
+            }
+        }
+        emitted += filter.finish().length();
+
+        // 暂缓的只有可能成为回显开头的字符和行尾空白，与已输出的长度无关。
+        assertEquals(received - 1, emitted);
+        assertTrue("held " + maxHeld + " chars", maxHeld <= suffix.length() + 6);
+    }
+
+    private static String stream(AiCompletionDeltaFilter filter, String raw, int chunk) {
+        StringBuilder visible = new StringBuilder();
+        for (int i = 0; i < raw.length(); i += chunk) {
+            visible.append(filter.append(raw.substring(i, Math.min(raw.length(), i + chunk))));
+        }
+        return visible.append(filter.finish()).toString();
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.mostbean.codingswitch.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+public class AiCompletionDiskCacheTest {
+
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+
+    @Test
+    public void persistsEntriesAcrossReopen() throws IOException {
+        Path file = Files.createTempDirectory("completion-cache").resolve("completions.log");
+        try (AiCompletionDiskCache cache = AiCompletionDiskCache.open(file, 1024 * 1024, DAY_MS)) {
+            cache.put("profile|ctx-1", "return value;");
+            cache.put("profile|ctx-2", "foo();\nbar();");
+            cache.put("profile|ctx-1", "return value + 1;");
+        }
+
+        try (AiCompletionDiskCache cache = AiCompletionDiskCache.open(file, 1024 * 1024, DAY_MS)) {
+            assertEquals("return value + 1;", cache.get("profile|ctx-1"));
+            assertEquals("foo();\nbar();", cache.get("profile|ctx-2"));
+            assertNull(cache.get("profile|missing"));
+        }
+    }
+
+    @Test
+    public void truncatesTornTailRecord() throws IOException {
+        Path file = Files.createTempDirectory("completion-cache").resolve("completions.log");
+        try (AiCompletionDiskCache cache = AiCompletionDiskCache.open(file, 1024 * 1024, DAY_MS)) {
+            cache.put("ctx-1", "first");
+        }
+        long intact = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 1, 2, 3}));
+        }
+
+        try (AiCompletionDiskCache cache = AiCompletionDiskCache.open(file, 1024 * 1024, DAY_MS)) {
+            assertEquals("first", cache.get("ctx-1"));
+            assertEquals(intact, cache.sizeBytes());
+            cache.put("ctx-2", "second");
+        }
+        try (AiCompletionDiskCache cache = AiCompletionDiskCache.open(file, 1024 * 1024, DAY_MS)) {
+            assertEquals("second", cache.get("ctx-2"));
+        }
+    }
+
+    @Test
+    public void expiresOldEntries() throws IOException {
+        Path file = Files.createTempDirectory("completion-cache").resolve("completions.log");
+        AtomicLong now = new AtomicLong(1_000);
+        try (AiCompletionDiskCache cache = AiCompletionDiskCache.open(file, 1024 * 1024, DAY_MS, now::get)) {
+            cache.put("ctx-1", "old");
+            now.addAndGet(DAY_MS + 1);
+            assertNull(cache.get("ctx-1"));
+        }
+    }
+
+    @Test
+    public void compactsToStayWithinSizeBound() throws IOException {
+        Path file = Files.createTempDirectory("completion-cache").resolve("completions.log");
+        AtomicLong now = new AtomicLong(1_000);
+        long maxBytes = 4 * 1024;
+        try (AiCompletionDiskCache cache = AiCompletionDiskCache.open(file, maxBytes, DAY_MS, now::get)) {
+            for (int i = 0; i < 200; i++) {
+                now.incrementAndGet();
+                cache.put("ctx-" + i, "completion number " + i);
+                assertTrue(cache.sizeBytes() <= maxBytes);
+            }
+            assertEquals("completion number 199", cache.get("ctx-199"));
+            assertNull(cache.get("ctx-0"));
+        }
+        assertTrue(Files.size(file) <= maxBytes);
+        try (AiCompletionDiskCache cache = AiCompletionDiskCache.open(file, maxBytes, DAY_MS, now::get)) {
+            assertEquals("completion number 199", cache.get("ctx-199"));
+        }
+    }
+}
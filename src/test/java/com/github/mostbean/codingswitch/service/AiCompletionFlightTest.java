@@ -0,0 +1,95 @@
+package com.github.mostbean.codingswitch.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+public class AiCompletionFlightTest {
+
+    @Test
+    public void lateSubscriberReceivesBufferedTextThenLiveDeltas() throws Exception {
+        AiCompletionFlight flight = new AiCompletionFlight();
+        StringBuilder leader = new StringBuilder();
+        StringBuilder follower = new StringBuilder();
+        AiCompletionFlight.Subscription first = flight.join(leader::append);
+        flight.publish("foo");
+        AiCompletionFlight.Subscription second = flight.join(follower::append);
+        flight.publish("bar");
+        flight.complete(AiCompletionService.CompletionStatus.SUCCESS);
+
+        assertEquals("foobar", leader.toString());
+        assertEquals("foobar", follower.toString());
+        assertEquals(AiCompletionService.CompletionStatus.SUCCESS, first.await());
+        assertEquals(AiCompletionService.CompletionStatus.SUCCESS, second.await());
+    }
+
+    @Test
+    public void upstreamIsCancelledOnlyWhenLastSubscriberLeaves() throws Exception {
+        AiCompletionFlight flight = new AiCompletionFlight();
+        StringBuilder remaining = new StringBuilder();
+        AiCompletionFlight.Subscription first = flight.join(delta -> { });
+        AiCompletionFlight.Subscription second = flight.join(remaining::append);
+
+        first.leave();
+        assertFalse(flight.upstream().isCancelled());
+        assertNull(first.await());
+        flight.publish("x");
+        assertEquals("x", remaining.toString());
+
+        second.leave();
+        assertTrue(flight.upstream().isCancelled());
+    }
+
+    @Test
+    public void failureIsDeliveredToEverySubscriber() throws Exception {
+        AiCompletionFlight flight = new AiCompletionFlight();
+        AiCompletionFlight.Subscription subscription = flight.join(delta -> { });
+        flight.fail(new IOException("boom"));
+        try {
+            subscription.await();
+            fail("expected IOException");
+        } catch (IOException ex) {
+            assertEquals("boom", ex.getMessage());
+        }
+        try {
+            flight.join(delta -> { }).await();
+            fail("expected IOException");
+        } catch (IOException ex) {
+            assertEquals("boom", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void subscriberCanLeaveFromAnotherThreadWhileDeltaIsDelivered() throws Exception {
+        AiCompletionFlight flight = new AiCompletionFlight();
+        AtomicReference<AiCompletionFlight.Subscription> other = new AtomicReference<>();
+        CountDownLatch left = new CountDownLatch(1);
+        AiCompletionFlight.Subscription blocking = flight.join(delta -> {
+            new Thread(() -> {
+                other.get().leave();
+                left.countDown();
+            }).start();
+            try {
+                assertTrue(left.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        other.set(flight.join(delta -> { }));
+
+        flight.publish("x");
+
+        assertNull(other.get().await());
+        assertFalse(flight.upstream().isCancelled());
+        blocking.leave();
+        assertTrue(flight.upstream().isCancelled());
+    }
+}
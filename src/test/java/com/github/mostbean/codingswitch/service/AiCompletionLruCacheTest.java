@@ -0,0 +1,88 @@
+package com.github.mostbean.codingswitch.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class AiCompletionLruCacheTest {
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedEntryWhenWeightExceeded() {
+        AtomicLong now = new AtomicLong(1_000);
+        AiCompletionLruCache<String> cache = new AiCompletionLruCache<>(300, 60_000, String::length, 1, now::get);
+        cache.put("a", "x".repeat(40));
+        cache.put("b", "y".repeat(40));
+        cache.get("a");
+        cache.put("c", "z".repeat(40));
+
+        assertEquals("x".repeat(40), cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("z".repeat(40), cache.get("c"));
+        assertEquals(1, cache.stats().evictions());
+    }
+
+    @Test
+    public void shouldRejectEntryHeavierThanSegment() {
+        AtomicLong now = new AtomicLong(1_000);
+        AiCompletionLruCache<String> cache = new AiCompletionLruCache<>(300, 60_000, String::length, 1, now::get);
+        cache.put("large", "x".repeat(400));
+
+        assertNull(cache.get("large"));
+        assertEquals(0, cache.stats().weight());
+    }
+
+    @Test
+    public void shouldExpireEntriesOnReadAndSweep() {
+        AtomicLong now = new AtomicLong(1_000);
+        AiCompletionLruCache<String> cache = new AiCompletionLruCache<>(64 * 1024, 100, String::length, 4, now::get);
+        cache.put("first", "value");
+        cache.put("second", "value");
+
+        now.addAndGet(101);
+        assertNull(cache.get("first"));
+        cache.sweepExpired();
+
+        AiCompletionLruCache.Stats stats = cache.stats();
+        assertEquals(0, stats.size());
+        assertEquals(0, stats.weight());
+        assertEquals(2, stats.expirations());
+        assertEquals(1, stats.misses());
+    }
+
+    @Test
+    public void shouldRemoveEntriesMatchingKeyFilter() {
+        AiCompletionLruCache<String> cache = new AiCompletionLruCache<>(64 * 1024, 60_000, String::length);
+        cache.put("/a.java:1:1", "one");
+        cache.put("/a.java:2:1", "two");
+        cache.put("/b.java:1:1", "three");
+
+        cache.removeIf(key -> key.startsWith("/a.java:"));
+
+        assertNull(cache.get("/a.java:1:1"));
+        assertNull(cache.get("/a.java:2:1"));
+        assertEquals("three", cache.get("/b.java:1:1"));
+        assertEquals(1, cache.stats().hits());
+    }
+
+    @Test
+    public void shouldRemoveAndComputeWithoutCountingLookups() {
+        AtomicLong now = new AtomicLong(1_000);
+        AiCompletionLruCache<String> cache = new AiCompletionLruCache<>(64 * 1024, 100, String::length, 1, now::get);
+        cache.put("a", "one");
+        cache.compute("a", previous -> previous + "+two");
+        cache.compute("b", previous -> previous == null ? "fresh" : previous);
+
+        assertEquals("one+two", cache.remove("a"));
+        assertNull(cache.remove("a"));
+        now.addAndGet(101);
+        assertNull(cache.remove("b"));
+
+        AiCompletionLruCache.Stats stats = cache.stats();
+        assertEquals(0, stats.hits());
+        assertEquals(0, stats.misses());
+        assertEquals(1, stats.expirations());
+        assertEquals(0, stats.weight());
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.mostbean.codingswitch.service;
+
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AiCompletionSnippetIndexTest {
+
+    @Test
+    public void shouldRankWindowSharingCaretIdentifiersFirst() {
+        AiCompletionSnippetIndex index = new AiCompletionSnippetIndex(8);
+        index.update("/p/OrderRepository.java", """
+            class OrderRepository {
+                Order findOrder(long orderId) {
+                    return jdbcTemplate.queryForObject(ORDER_QUERY, orderMapper, orderId);
+                }
+            }
+            """, 1, 1);
+        index.update("/p/Weather.java", """
+            class Weather {
+                double temperature(String city) {
+                    return forecastClient.currentTemperature(city);
+                }
+            }
+            """, 1, 2);
+
+        String caret = "Order order = orderRepository.findOrder(orderId);\norderMapper";
+        List<AiCompletionSnippetIndex.Snippet> snippets =
+            index.query("/p/Current.java", caret, 0, caret.length(), 4);
+
+        assertEquals(1, snippets.size());
+        assertEquals("/p/OrderRepository.java", snippets.get(0).path());
+        assertTrue(snippets.get(0).text().contains("jdbcTemplate"));
+    }
+
+    @Test
+    public void shouldExcludeCurrentFileAndEvictLeastRecentlyTouched() {
+        AiCompletionSnippetIndex index = new AiCompletionSnippetIndex(1);
+        String source = "alphaValue betaValue gammaValue deltaValue";
+        index.update("/p/A.java", source, 1, 1);
+        index.update("/p/B.java", source, 1, 2);
+
+        assertEquals(0, index.query("/p/B.java", source, 0, source.length(), 4).size());
+        assertEquals("/p/B.java", index.query("/p/C.java", source, 0, source.length(), 4).get(0).path());
+    }
+
+    @Test
+    public void shouldIgnoreKeywordsAndShortIdentifiers() {
+        String text = "public static final int a = b; return this;";
+
+        assertEquals(0, AiCompletionSnippetIndex.identifierHashes(text, 0, text.length()).length);
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.mostbean.codingswitch.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import org.junit.Test;
+
+public class AiGitNativeDiffTest {
+
+    private static final String OUTPUT = String.join("\n",
+        "diff --git a/src/App.java b/src/App.java",
+        "index 1111111..2222222 100644",
+        "--- a/src/App.java",
+        "+++ b/src/App.java",
+        "@@ -1,3 +1,3 @@",
+        " class App {",
+        "-    int a;",
+        "+    int b;",
+        " }",
+        "diff --git a/docs/old name.md b/docs/new name.md",
+        "similarity index 90%",
+        "rename from docs/old name.md",
+        "rename to docs/new name.md",
+        "diff --git a/gone.txt b/gone.txt",
+        "deleted file mode 100644",
+        "--- a/gone.txt",
+        "+++ /dev/null",
+        "@@ -1 +0,0 @@",
+        "-bye",
+        ""
+    );
+
+    @Test
+    public void splitsOutputPerFileUsingNewPaths() throws IOException {
+        AiGitNativeDiff.Parsed parsed = AiGitNativeDiff.parse(reader(OUTPUT), Integer.MAX_VALUE);
+
+        assertFalse(parsed.truncated());
+        assertEquals(List.of("src/App.java", "docs/new name.md", "gone.txt"), List.copyOf(parsed.diffs().keySet()));
+        assertTrue(parsed.diffs().get("src/App.java").startsWith("diff --git a/src/App.java b/src/App.java\n"));
+        assertTrue(parsed.diffs().get("src/App.java").endsWith("+    int b;\n }\n"));
+        assertTrue(parsed.diffs().get("gone.txt").endsWith("-bye\n"));
+    }
+
+    @Test
+    public void stopsAtBudgetAndDropsIncompleteBlock() throws IOException {
+        AiGitNativeDiff.Parsed parsed = AiGitNativeDiff.parse(reader(OUTPUT), 250);
+
+        assertTrue(parsed.truncated());
+        assertEquals(List.of("src/App.java"), List.copyOf(parsed.diffs().keySet()));
+    }
+
+    private static BufferedReader reader(String text) {
+        return new BufferedReader(new StringReader(text));
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.mostbean.codingswitch.service;
+
+import com.github.mostbean.codingswitch.model.AiCompletionRequest;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AiHedgedCompletionTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldKeepPrimaryWhenFirstTokenArrivesBeforeHedgeDelay() throws Exception {
+        StubClient primary = new StubClient(0, "primary");
+        StubClient secondary = new StubClient(0, "secondary");
+        StringBuilder output = new StringBuilder();
+
+        AiHedgedCompletion.Outcome outcome = hedged(primary, secondary)
+            .stream(500, new AiCompletionCancellation(), (winner, latency) -> {
+            }, output::append);
+
+        assertEquals(new AiHedgedCompletion.Outcome(AiHedgedCompletion.Winner.PRIMARY, false), outcome);
+        assertEquals("primary", output.toString());
+        assertFalse(secondary.started.get());
+    }
+
+    @Test
+    public void shouldUseSecondaryAndCancelSlowPrimary() throws Exception {
+        StubClient primary = new StubClient(5_000, "primary");
+        StubClient secondary = new StubClient(0, "secondary");
+        StringBuilder output = new StringBuilder();
+        StringBuilder winners = new StringBuilder();
+
+        AiHedgedCompletion.Outcome outcome = hedged(primary, secondary)
+            .stream(30, new AiCompletionCancellation(), (winner, latency) -> winners.append(winner), output::append);
+
+        assertEquals(new AiHedgedCompletion.Outcome(AiHedgedCompletion.Winner.SECONDARY, true), outcome);
+        assertEquals("secondary", output.toString());
+        assertEquals("SECONDARY", winners.toString());
+        assertTrue(primary.cancelled.get());
+    }
+
+    @Test
+    public void shouldFailOverImmediatelyWhenPrimaryFailsBeforeFirstToken() throws Exception {
+        StubClient primary = new StubClient(0, null);
+        StubClient secondary = new StubClient(0, "secondary");
+        StringBuilder output = new StringBuilder();
+
+        AiHedgedCompletion.Outcome outcome = hedged(primary, secondary)
+            .stream(5_000, new AiCompletionCancellation(), (winner, latency) -> {
+            }, output::append);
+
+        assertEquals(AiHedgedCompletion.Winner.SECONDARY, outcome.winner());
+        assertEquals("secondary", output.toString());
+    }
+
+    private AiHedgedCompletion hedged(StubClient primary, StubClient secondary) {
+        return new AiHedgedCompletion(
+            new AiHedgedCompletion.Attempt(primary, null),
+            new AiHedgedCompletion.Attempt(secondary, null),
+            scheduler,
+            executor
+        );
+    }
+
+    private static final class StubClient implements AiCompletionClient {
+        private final long firstTokenDelayMs;
+        private final String text;
+        private final AtomicBoolean started = new AtomicBoolean(false);
+        private final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+        private StubClient(long firstTokenDelayMs, String text) {
+            this.firstTokenDelayMs = firstTokenDelayMs;
+            this.text = text;
+        }
+
+        @Override
+        public String complete(AiCompletionRequest request) {
+            return text;
+        }
+
+        @Override
+        public void streamComplete(
+            AiCompletionRequest request,
+            AiCompletionCancellation cancellation,
+            Consumer<String> onDelta
+        ) throws IOException, InterruptedException {
+            started.set(true);
+            CountDownLatch aborted = new CountDownLatch(1);
+            cancellation.onCancel(() -> {
+                cancelled.set(true);
+                aborted.countDown();
+            });
+            if (aborted.await(firstTokenDelayMs, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+            if (text == null) {
+                throw new IOException("HTTP 503");
+            }
+            onDelta.accept(text);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.mostbean.codingswitch.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AiLatencyHistogramTest {
+
+    @Test
+    public void bucketsStayWithinRelativeErrorBound() {
+        for (long value = 0; value < 100_000; value += 7) {
+            long upper = AiLatencyHistogram.bucketUpperBound(AiLatencyHistogram.bucketIndex(value));
+            assertTrue("value " + value, upper >= value);
+            assertTrue("value " + value, upper - value <= Math.max(0, value / 16));
+        }
+    }
+
+    @Test
+    public void reportsPercentilesOfRecordedLatencies() {
+        AiLatencyHistogram histogram = new AiLatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(1000, histogram.count());
+        assertEquals(500, histogram.mean());
+        assertEquals(1000, histogram.max());
+        assertTrue(Math.abs(histogram.percentile(0.5) - 500) <= 500 / 16);
+        assertTrue(Math.abs(histogram.percentile(0.9) - 900) <= 900 / 16);
+        long p99 = histogram.percentile(0.99);
+        assertTrue(p99 <= 1000 && p99 >= 990 - 990 / 16);
+    }
+
+    @Test
+    public void emptyHistogramReportsMissingValues() {
+        AiLatencyHistogram histogram = new AiLatencyHistogram();
+        assertEquals(0, histogram.count());
+        assertEquals(-1, histogram.mean());
+        assertEquals(-1, histogram.percentile(0.5));
+        assertEquals(-1, histogram.max());
+    }
+}
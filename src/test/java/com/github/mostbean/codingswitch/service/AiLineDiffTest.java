@@ -0,0 +1,97 @@
+package com.github.mostbean.codingswitch.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class AiLineDiffTest {
+
+    @Test
+    public void producesMinimalEditForSingleLineChange() {
+        List<AiLineDiff.Line> lines = AiLineDiff.diff(
+            new String[] {"a", "b", "c", "d"},
+            new String[] {"a", "x", "c", "d", "e"}
+        );
+
+        assertEquals(List.of(
+            new AiLineDiff.Line(AiLineDiff.Type.EQUAL, "a", 1, 1),
+            new AiLineDiff.Line(AiLineDiff.Type.DELETE, "b", 2, 0),
+            new AiLineDiff.Line(AiLineDiff.Type.INSERT, "x", 0, 2),
+            new AiLineDiff.Line(AiLineDiff.Type.EQUAL, "c", 3, 3),
+            new AiLineDiff.Line(AiLineDiff.Type.EQUAL, "d", 4, 4),
+            new AiLineDiff.Line(AiLineDiff.Type.INSERT, "e", 0, 5)
+        ), lines);
+    }
+
+    @Test
+    public void reconstructsBothSidesOfRandomEdits() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            String[] before = randomLines(random, random.nextInt(40));
+            String[] after = mutate(random, before);
+            List<AiLineDiff.Line> lines = AiLineDiff.diff(before, after);
+
+            assertArrayEquals(before, side(lines, AiLineDiff.Type.INSERT));
+            assertArrayEquals(after, side(lines, AiLineDiff.Type.DELETE));
+        }
+    }
+
+    @Test
+    public void diffsLargeFilesWithSparseChanges() {
+        int size = 50_000;
+        String[] before = new String[size];
+        String[] after = new String[size];
+        for (int i = 0; i < size; i++) {
+            before[i] = "line " + i;
+            after[i] = i % 100 == 0 ? "changed " + i : "line " + i;
+        }
+
+        List<AiLineDiff.Line> lines = AiLineDiff.diff(before, after);
+
+        long changed = lines.stream().filter(line -> line.type() != AiLineDiff.Type.EQUAL).count();
+        assertEquals(1_000, changed);
+        assertArrayEquals(before, side(lines, AiLineDiff.Type.INSERT));
+        assertArrayEquals(after, side(lines, AiLineDiff.Type.DELETE));
+    }
+
+    private static String[] randomLines(Random random, int count) {
+        String[] lines = new String[count];
+        for (int i = 0; i < count; i++) {
+            lines[i] = String.valueOf((char) ('a' + random.nextInt(6)));
+        }
+        return lines;
+    }
+
+    private static String[] mutate(Random random, String[] lines) {
+        List<String> result = new ArrayList<>(List.of(lines));
+        int edits = random.nextInt(8);
+        for (int i = 0; i < edits; i++) {
+            int position = result.isEmpty() ? 0 : random.nextInt(result.size());
+            switch (random.nextInt(3)) {
+                case 0 -> result.add(position, String.valueOf((char) ('a' + random.nextInt(8))));
+                case 1 -> {
+                    if (!result.isEmpty()) {
+                        result.remove(position);
+                    }
+                }
+                default -> {
+                    if (!result.isEmpty()) {
+                        result.set(position, String.valueOf((char) ('a' + random.nextInt(8))));
+                    }
+                }
+            }
+        }
+        return result.toArray(String[]::new);
+    }
+
+    private static String[] side(List<AiLineDiff.Line> lines, AiLineDiff.Type excluded) {
+        return lines.stream()
+            .filter(line -> line.type() != excluded)
+            .map(AiLineDiff.Line::text)
+            .toArray(String[]::new);
+    }
+}
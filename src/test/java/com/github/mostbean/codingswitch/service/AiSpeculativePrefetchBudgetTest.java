@@ -0,0 +1,81 @@
+package com.github.mostbean.codingswitch.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class AiSpeculativePrefetchBudgetTest {
+
+    @Test
+    public void shouldCapPrefetchesPerMinute() {
+        AtomicLong now = new AtomicLong(1_000);
+        AiSpeculativePrefetchBudget budget = new AiSpeculativePrefetchBudget(now::get);
+        for (int i = 0; i < 6; i++) {
+            long id = budget.tryAcquire();
+            assertNotEquals(0, id);
+            budget.recordHit(id);
+            now.addAndGet(1_000);
+        }
+
+        assertEquals(0, budget.tryAcquire());
+        now.set(61_000);
+        assertNotEquals(0, budget.tryAcquire());
+    }
+
+    @Test
+    public void shouldPauseBelowQuarterHitRateAndProbeEveryTwoMinutes() {
+        AtomicLong now = new AtomicLong(1_000);
+        AiSpeculativePrefetchBudget budget = new AiSpeculativePrefetchBudget(now::get);
+        budget.recordHit(budget.tryAcquire());
+        for (int i = 0; i < 4; i++) {
+            now.addAndGet(60_000);
+            assertNotEquals(0, budget.tryAcquire());
+        }
+
+        // 5 次预取命中 1 次，命中率 20% 低于 25%，暂停。
+        now.addAndGet(60_000);
+        assertEquals(0, budget.tryAcquire());
+        now.addAndGet(59_999);
+        assertEquals(0, budget.tryAcquire());
+
+        // 距上次发起满 2 分钟，放行一次探测，之后重新计时。
+        now.addAndGet(1);
+        assertNotEquals(0, budget.tryAcquire());
+        now.addAndGet(60_000);
+        assertEquals(0, budget.tryAcquire());
+    }
+
+    @Test
+    public void shouldKeepIssuingWhileHitRateStaysAtQuarter() {
+        AtomicLong now = new AtomicLong(1_000);
+        AiSpeculativePrefetchBudget budget = new AiSpeculativePrefetchBudget(now::get);
+        for (int i = 0; i < 8; i++) {
+            long id = budget.tryAcquire();
+            assertNotEquals(0, id);
+            if (i % 4 == 0) {
+                budget.recordHit(id);
+            }
+            now.addAndGet(60_000);
+        }
+
+        assertNotEquals(0, budget.tryAcquire());
+    }
+
+    @Test
+    public void shouldReturnReleasedSlotToWindow() {
+        AtomicLong now = new AtomicLong(1_000);
+        AiSpeculativePrefetchBudget budget = new AiSpeculativePrefetchBudget(now::get);
+        for (int i = 0; i < 5; i++) {
+            budget.recordHit(budget.tryAcquire());
+        }
+        long unused = budget.tryAcquire();
+        assertEquals(0, budget.tryAcquire());
+
+        budget.release(unused);
+
+        assertNotEquals(0, budget.tryAcquire());
+        assertEquals(0, budget.tryAcquire());
+    }
+}
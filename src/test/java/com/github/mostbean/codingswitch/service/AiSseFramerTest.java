@@ -0,0 +1,64 @@
+package com.github.mostbean.codingswitch.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class AiSseFramerTest {
+
+    @Test
+    public void shouldFrameEventsRegardlessOfChunkBoundaries() throws IOException {
+        String stream = ": keep-alive\r\n"
+            + "event: delta\r\n"
+            + "data: {\"text\":\"你好\"}\r\n"
+            + "\r\n"
+            + "data:  first  \n"
+            + "data:second\n"
+            + "id: 7\n"
+            + "\n"
+            + "database: ignored\n"
+            + "\n"
+            + "data: [DONE]\n"
+            + "\n"
+            + "data: {\"tail\":true}";
+        byte[] bytes = stream.getBytes(StandardCharsets.UTF_8);
+        List<String> expected = List.of("{\"text\":\"你好\"}", "first\nsecond", "{\"tail\":true}");
+
+        for (int chunk : new int[] {1, 2, 3, 7, bytes.length}) {
+            assertEquals("chunk=" + chunk, expected, frame(bytes, chunk));
+        }
+    }
+
+    @Test
+    public void shouldHandleBareCarriageReturnsAndLargeEvents() throws IOException {
+        String large = "x".repeat(5000);
+        byte[] bytes = ("data: a\r\rdata: " + large + "\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(List.of("a", large), frame(bytes, 100));
+    }
+
+    private static List<String> frame(byte[] bytes, int chunk) throws IOException {
+        List<String> events = new ArrayList<>();
+        AiSseFramer framer = new AiSseFramer(data -> events.add(readAll(data)));
+        for (int offset = 0; offset < bytes.length; offset += chunk) {
+            framer.feed(bytes, offset, Math.min(chunk, bytes.length - offset));
+        }
+        framer.finish();
+        return events;
+    }
+
+    private static String readAll(Reader reader) throws IOException {
+        StringBuilder out = new StringBuilder();
+        char[] buffer = new char[64];
+        int read;
+        while ((read = reader.read(buffer)) >= 0) {
+            out.append(buffer, 0, read);
+        }
+        return out.toString();
+    }
+}
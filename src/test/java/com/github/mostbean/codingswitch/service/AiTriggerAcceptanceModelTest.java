@@ -0,0 +1,52 @@
+package com.github.mostbean.codingswitch.service;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.github.mostbean.codingswitch.service.AiTriggerContextClassifier.TriggerContext;
+import org.junit.Test;
+
+public class AiTriggerAcceptanceModelTest {
+
+    @Test
+    public void triggersUntilEnoughSamples() {
+        AiTriggerAcceptanceModel model = new AiTriggerAcceptanceModel();
+        for (int i = 0; i < 5; i++) {
+            model.recordTriggered(TriggerContext.WORD_END);
+        }
+
+        assertTrue(model.shouldTrigger(TriggerContext.WORD_END, 0.1, 0.99));
+    }
+
+    @Test
+    public void suppressesRarelyAcceptedContextButKeepsExploring() {
+        AiTriggerAcceptanceModel model = new AiTriggerAcceptanceModel();
+        for (int i = 0; i < 40; i++) {
+            model.recordTriggered(TriggerContext.WORD_END);
+            model.recordTriggered(TriggerContext.LINE_START);
+            if (i % 3 == 0) {
+                model.recordAccepted(TriggerContext.LINE_START);
+            }
+        }
+
+        assertFalse(model.shouldTrigger(TriggerContext.WORD_END, 0.1, 0.5));
+        assertTrue(model.shouldTrigger(TriggerContext.WORD_END, 0.1, 0.05));
+        assertTrue(model.shouldTrigger(TriggerContext.LINE_START, 0.1, 0.5));
+        assertTrue(model.stats(0.1).get(TriggerContext.WORD_END).suppressed());
+    }
+
+    @Test
+    public void recoversWhenAcceptanceImproves() {
+        AiTriggerAcceptanceModel model = new AiTriggerAcceptanceModel();
+        for (int i = 0; i < 40; i++) {
+            model.recordTriggered(TriggerContext.AFTER_DOT);
+        }
+        assertFalse(model.shouldTrigger(TriggerContext.AFTER_DOT, 0.1, 0.5));
+
+        for (int i = 0; i < 10; i++) {
+            model.recordTriggered(TriggerContext.AFTER_DOT);
+            model.recordAccepted(TriggerContext.AFTER_DOT);
+        }
+        assertTrue(model.shouldTrigger(TriggerContext.AFTER_DOT, 0.1, 0.5));
+    }
+}
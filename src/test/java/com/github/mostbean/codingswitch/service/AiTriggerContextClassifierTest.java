@@ -0,0 +1,59 @@
+package com.github.mostbean.codingswitch.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.github.mostbean.codingswitch.service.AiTriggerContextClassifier.Decision;
+import com.github.mostbean.codingswitch.service.AiTriggerContextClassifier.LanguageRules;
+import com.github.mostbean.codingswitch.service.AiTriggerContextClassifier.SkipReason;
+import com.github.mostbean.codingswitch.service.AiTriggerContextClassifier.TokenKind;
+import com.github.mostbean.codingswitch.service.AiTriggerContextClassifier.TriggerContext;
+import org.junit.Test;
+
+public class AiTriggerContextClassifierTest {
+
+    private static final LanguageRules JAVA = AiTriggerContextClassifier.rulesFor("JAVA");
+    private static final LanguageRules PYTHON = AiTriggerContextClassifier.rulesFor("Python");
+
+    @Test
+    public void skipsStringsCommentsAndMidWord() {
+        assertEquals(SkipReason.IN_STRING, classify(JAVA, TokenKind.STRING, "log(\"hel", "\")", 'l').skipReason());
+        assertEquals(SkipReason.IN_COMMENT, classify(JAVA, TokenKind.COMMENT, "// todo ", "", ' ').skipReason());
+        assertEquals(SkipReason.MID_WORD, classify(JAVA, TokenKind.CODE, "int cou", "nter = 0;", 'u').skipReason());
+        assertEquals(SkipReason.TEXT_AFTER_CARET, classify(JAVA, TokenKind.CODE, "if (", "x > 0) {", '(').skipReason());
+    }
+
+    @Test
+    public void skipsCompletedStatementsOnlyWhereLanguageTerminatesThem() {
+        assertEquals(SkipReason.LINE_COMPLETE, classify(JAVA, TokenKind.CODE, "    foo();", "", ';').skipReason());
+        assertEquals(SkipReason.LINE_COMPLETE, classify(JAVA, TokenKind.CODE, "    foo(); ", "", ' ').skipReason());
+        assertFalse(classify(JAVA, TokenKind.CODE, "for (int i = 0;", ")", ';').skipped());
+        assertFalse(classify(PYTHON, TokenKind.CODE, "x = 1;", "", ';').skipped());
+    }
+
+    @Test
+    public void classifiesTriggerContexts() {
+        assertEquals(TriggerContext.LINE_START, classify(JAVA, TokenKind.CODE, "        ", "", '\n').context());
+        assertEquals(TriggerContext.AFTER_OPENER, classify(JAVA, TokenKind.CODE, "call(", ")", '(').context());
+        assertEquals(TriggerContext.AFTER_OPENER, classify(PYTHON, TokenKind.CODE, "def run():", "", ':').context());
+        assertEquals(TriggerContext.AFTER_DOT, classify(JAVA, TokenKind.CODE, "list.", "", '.').context());
+        assertEquals(TriggerContext.AFTER_CLOSER, classify(JAVA, TokenKind.CODE, "if (ready)", "", ')').context());
+        assertEquals(TriggerContext.AFTER_OPERATOR, classify(JAVA, TokenKind.CODE, "int x =", "", '=').context());
+        assertEquals(TriggerContext.AFTER_SPACE, classify(JAVA, TokenKind.CODE, "return ", "", ' ').context());
+        assertEquals(TriggerContext.WORD_END, classify(JAVA, TokenKind.CODE, "String na", "", 'a').context());
+        assertEquals(TriggerContext.WORD_END, classify(JAVA, TokenKind.CODE, "foo(ba", ");", 'a').context());
+    }
+
+    @Test
+    public void usesLanguageIdentifierCharacters() {
+        LanguageRules css = AiTriggerContextClassifier.rulesFor("CSS");
+        assertTrue(classify(css, TokenKind.CODE, "  font-", "size: 12px;", '-').skipped());
+        assertEquals(TriggerContext.WORD_END, classify(css, TokenKind.CODE, "  font-", "", '-').context());
+        assertEquals(TriggerContext.AFTER_OPERATOR, classify(JAVA, TokenKind.CODE, "a -", "", '-').context());
+    }
+
+    private static Decision classify(LanguageRules rules, TokenKind kind, String prefix, String suffix, char typed) {
+        return AiTriggerContextClassifier.classify(rules, kind, prefix, suffix, typed);
+    }
+}